@@ -83,6 +83,10 @@ final class Arguments extends IdScriptableObject {
 		defineProperty(SymbolKey.ITERATOR, iteratorMethod, DONTENUM);
 	}
 
+	NativeCall getActivation() {
+		return activation;
+	}
+
 	@Override
 	public String getClassName() {
 		return FTAG;
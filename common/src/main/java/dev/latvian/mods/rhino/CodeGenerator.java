@@ -99,6 +99,9 @@ class CodeGenerator extends Icode {
 		if (theFunction.isES6Generator()) {
 			itsData.isES6Generator = true;
 		}
+		if (theFunction.isAsync()) {
+			itsData.isAsync = true;
+		}
 
 		itsData.declaredAsVar = (theFunction.getParent() instanceof VariableInitializer);
 
@@ -183,6 +186,10 @@ class CodeGenerator extends Icode {
 			gen.generateFunctionICode();
 			array[i] = gen.itsData;
 
+			if (fn.isLazy()) {
+				gen.itsData.lazy = new InterpreterData.LazyBody(compilerEnv, fn.getLazySource(), fn.getLazySourceStart(), fn.getLazySourceEnd(), fn.getLazyLineno());
+			}
+
 			final AstNode fnParent = fn.getParent();
 			if (!(fnParent instanceof AstRoot || fnParent instanceof Scope || fnParent instanceof Block)) {
 				gen.itsData.declaredAsFunctionExpression = true;
@@ -345,9 +352,11 @@ class CodeGenerator extends Icode {
 			case Token.IFEQ:
 			case Token.IFNE: {
 				Node target = ((Jump) node).target;
-				visitExpression(child, 0);
-				addGoto(target, type);
-				stackChange(-1);
+				if (!addVarsCompareGoto(child, target, type)) {
+					visitExpression(child, 0);
+					addGoto(target, type);
+					stackChange(-1);
+				}
 			}
 			break;
 
@@ -380,6 +389,9 @@ class CodeGenerator extends Icode {
 			case Token.EXPR_VOID:
 			case Token.EXPR_RESULT:
 				updateLineNumber(node);
+				if (type == Token.EXPR_VOID && addVarIncDecVoid(child)) {
+					break;
+				}
 				visitExpression(child, 0);
 				addIcode((type == Token.EXPR_VOID) ? Icode_POP : Icode_POP_RESULT);
 				stackChange(-1);
@@ -604,6 +616,17 @@ class CodeGenerator extends Icode {
 				resolveForwardGoto(afterElseJumpStart);
 			}
 			case Token.GETPROP, Token.GETPROPNOWARN, Token.GETOPTIONAL -> {
+				if (type == Token.GETPROP && child.getType() == Token.GETVAR) {
+					int index = scriptOrFn.getIndexForNameNode(child);
+					if (index < 128) {
+						// stack: ... -> ... value
+						addStringPrefix(child.getNext().getString());
+						addIcode(Icode_GETVAR1_GETPROP);
+						addUint8(index);
+						stackChange(1);
+						break;
+					}
+				}
 				visitExpression(child, 0);
 				child = child.getNext();
 				addStringOp(type, child.getString());
@@ -752,26 +775,19 @@ class CodeGenerator extends Icode {
 				stackChange(1);
 			}
 			case Token.GETVAR -> {
-				if (itsData.itsNeedsActivation) {
-					Kit.codeBug();
-				}
 				int index = scriptOrFn.getIndexForNameNode(node);
 				addVarOp(Token.GETVAR, index);
 				stackChange(1);
 			}
 			case Token.SETVAR -> {
-				if (itsData.itsNeedsActivation) {
-					Kit.codeBug();
-				}
 				int index = scriptOrFn.getIndexForNameNode(child);
 				child = child.getNext();
-				visitExpression(child, 0);
-				addVarOp(Token.SETVAR, index);
+				if (!addVarAddShort(index, child)) {
+					visitExpression(child, 0);
+					addVarOp(Token.SETVAR, index);
+				}
 			}
 			case Token.SETCONSTVAR -> {
-				if (itsData.itsNeedsActivation) {
-					Kit.codeBug();
-				}
 				int index = scriptOrFn.getIndexForNameNode(child);
 				child = child.getNext();
 				visitExpression(child, 0);
@@ -862,14 +878,93 @@ class CodeGenerator extends Icode {
 		}
 	}
 
+	/**
+	 * Emits {@link Icode#Icode_VAR_INC_DEC1_VOID} for <code>i++</code> / <code>i--</code> statements on locals.
+	 */
+	private boolean addVarIncDecVoid(Node expr) {
+		int type = expr.getType();
+		if (type != Token.INC && type != Token.DEC) {
+			return false;
+		}
+		Node var = expr.getFirstChild();
+		if (var.getType() != Token.GETVAR) {
+			return false;
+		}
+		int index = scriptOrFn.getIndexForNameNode(var);
+		if (index >= 128) {
+			return false;
+		}
+		addIcode(Icode_VAR_INC_DEC1_VOID);
+		addUint8(index);
+		addUint8(expr.getExistingIntProp(Node.INCRDECR_PROP));
+		// Non-number operands go through doVarIncDec, which needs a slot for the result
+		stackChange(1);
+		stackChange(-1);
+		return true;
+	}
+
+	/**
+	 * Emits {@link Icode#Icode_VAR_ADD_SHORT1} for <code>i = i + c</code> / <code>i = i - c</code>
+	 * on locals where <code>c</code> is a small integer literal. Value of the assignment is left on the stack.
+	 */
+	private boolean addVarAddShort(int index, Node value) {
+		int type = value.getType();
+		if (index >= 128 || (type != Token.ADD && type != Token.SUB)) {
+			return false;
+		}
+		Node left = value.getFirstChild();
+		Node right = left.getNext();
+		if (left.getType() != Token.GETVAR || right.getType() != Token.NUMBER || scriptOrFn.getIndexForNameNode(left) != index) {
+			return false;
+		}
+		double num = right.getDouble();
+		int inum = (int) num;
+		// 0 is excluded as x - 0 and x + 0 differ for -0
+		if (inum != num || inum == 0 || (short) inum != inum) {
+			return false;
+		}
+		addIcode(Icode_VAR_ADD_SHORT1);
+		addUint8(index);
+		addUint8(type == Token.SUB ? 1 : 0);
+		addUint16(inum & 0xFFFF);
+		// Non-number operands go through doAdd, which needs the constant in a second slot
+		stackChange(2);
+		stackChange(-1);
+		return true;
+	}
+
+	/**
+	 * Emits {@link Icode#Icode_VARS_CMP_IFEQ} / {@link Icode#Icode_VARS_CMP_IFNE} when a jump condition
+	 * is a relational comparison of two locals.
+	 */
+	private boolean addVarsCompareGoto(Node condition, Node target, int jumpType) {
+		int type = condition.getType();
+		if (type != Token.LT && type != Token.LE && type != Token.GT && type != Token.GE) {
+			return false;
+		}
+		Node left = condition.getFirstChild();
+		Node right = left.getNext();
+		if (left.getType() != Token.GETVAR || right.getType() != Token.GETVAR) {
+			return false;
+		}
+		int leftIndex = scriptOrFn.getIndexForNameNode(left);
+		int rightIndex = scriptOrFn.getIndexForNameNode(right);
+		if (leftIndex >= 128 || rightIndex >= 128) {
+			return false;
+		}
+		// Operands are stored after jump offset so the usual jump code can be reused
+		addGoto(target, jumpType == Token.IFNE ? Icode_VARS_CMP_IFNE : Icode_VARS_CMP_IFEQ);
+		addUint8(type);
+		addUint8(leftIndex);
+		addUint8(rightIndex);
+		return true;
+	}
+
 	private void visitIncDec(Node node, Node child) {
 		int incrDecrMask = node.getExistingIntProp(Node.INCRDECR_PROP);
 		int childType = child.getType();
 		switch (childType) {
 			case Token.GETVAR -> {
-				if (itsData.itsNeedsActivation) {
-					Kit.codeBug();
-				}
 				int i = scriptOrFn.getIndexForNameNode(child);
 				addVarOp(Icode_VAR_INC_DEC, i);
 				addUint8(incrDecrMask);
@@ -8,6 +8,7 @@ package dev.latvian.mods.rhino;
 
 public class CompilerEnvirons {
 	private ErrorReporter errorReporter;
+	private boolean lazyFunctions;
 
 	public CompilerEnvirons() {
 		errorReporter = DefaultErrorReporter.instance;
@@ -15,6 +16,7 @@ public class CompilerEnvirons {
 
 	public void initFromContext(Context cx) {
 		setErrorReporter(cx.getErrorReporter());
+		lazyFunctions = cx.isLazyFunctions();
 	}
 
 	public final ErrorReporter getErrorReporter() {
@@ -28,6 +30,17 @@ public class CompilerEnvirons {
 		this.errorReporter = errorReporter;
 	}
 
+	/**
+	 * @see Context#setLazyFunctions(boolean)
+	 */
+	public final boolean isLazyFunctions() {
+		return lazyFunctions;
+	}
+
+	public void setLazyFunctions(boolean lazyFunctions) {
+		this.lazyFunctions = lazyFunctions;
+	}
+
 	public final boolean isStrictMode() {
 		return false;
 	}
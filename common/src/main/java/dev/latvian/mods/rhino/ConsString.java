@@ -7,6 +7,9 @@
 package dev.latvian.mods.rhino;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * <p>This class represents a string composed of two components, each of which
@@ -15,8 +18,17 @@ import java.util.ArrayDeque;
  * <p>This string representation is optimized for concatenation using the "+"
  * operator. Instead of immediately copying both components to a new character
  * array, ConsString keeps references to the original components and only
- * converts them to a String if either toString() is called or a certain depth
- * level is reached.</p>
+ * converts them to a String if toString() is called. {@link #length()} and
+ * {@link #charAt(int)} walk the tree without copying it, and trees that get
+ * too deep are rebalanced by {@link #concat(CharSequence, CharSequence)}.</p>
+ *
+ * <p>Strings that are appended to over and over, like <code>s += x</code> in a
+ * loop, are moved into an append buffer. A string that ends where the buffer
+ * ends can be appended to in place, while every other string sharing the
+ * buffer keeps seeing its own prefix of it. A string that starts with a
+ * buffered string is only copied into a new buffer once it is twice as long,
+ * so strings that keep losing the end of their buffer to a branch, like
+ * <code>s += x; t = s + '!'</code>, aren't copied over and over.</p>
  *
  * <p>Note that instances of this class are only immutable if both parts are
  * immutable, i.e. either Strings or ConsStrings that are ultimately composed
@@ -25,54 +37,254 @@ import java.util.ArrayDeque;
  * <p>Both the name and the concept are borrowed from V8.</p>
  */
 public class ConsString implements CharSequence {
+	/**
+	 * Depth at which the left side of a concatenation is moved into an append buffer.
+	 */
+	private static final int APPEND_DEPTH = 8;
+
+	/**
+	 * Depth above which a tree is rebalanced.
+	 */
+	private static final int MAX_DEPTH = 64;
+
+	/**
+	 * Subtrees shallower than this are kept as they are when a tree is rebalanced, so only the deep part
+	 * of it is rebuilt.
+	 */
+	private static final int KEEP_DEPTH = MAX_DEPTH / 2;
+
+	/**
+	 * Adjacent leaves shorter than this are joined when a tree is rebalanced.
+	 */
+	private static final int CHUNK = 256;
+
+	/**
+	 * Concatenations shorter than this are copied into a String, which is smaller than a ConsString and its parts.
+	 */
+	private static final int MIN_LENGTH = 13;
+
+	/**
+	 * Characters shared by all strings that were appended to each other in place. Only the thread that
+	 * created the buffer appends to it, so it needs no locking, other threads only read the prefixes
+	 * that were already written.
+	 */
+	private static final class Buffer {
+		private final Thread owner;
+		private char[] chars;
+		private int used;
+
+		private Buffer(char[] chars, int used) {
+			this.owner = Thread.currentThread();
+			this.chars = chars;
+			this.used = used;
+		}
+	}
+
+	/**
+	 * Joins two strings, appending to the buffer of <code>str1</code> in place when it is the last string
+	 * appended to it, and rebalancing the result when it gets too deep.
+	 */
+	public static CharSequence concat(CharSequence str1, CharSequence str2) {
+		int length1 = str1.length();
+		int length2 = str2.length();
+
+		if (length2 == 0) {
+			return str1;
+		} else if (length1 == 0) {
+			return str2;
+		} else if (length1 + length2 < MIN_LENGTH) {
+			return str1.toString().concat(str2.toString());
+		}
+
+		if (str1 instanceof ConsString c) {
+			var buffer = c.buffer;
+
+			if (buffer != null && buffer.owner == Thread.currentThread() && buffer.used == length1) {
+				int length = length1 + length2;
+				var chars = buffer.chars;
+
+				if (length > chars.length) {
+					chars = buffer.chars = Arrays.copyOf(chars, grow(length));
+				}
+
+				getChars(str2, chars, length);
+				buffer.used = length;
+				return new ConsString(buffer, chars, length);
+			} else if (buffer == null && c.depth >= APPEND_DEPTH && length1 >= 2 * c.bufferedPrefix) {
+				int length = length1 + length2;
+				var chars = new char[grow(length)];
+				getChars(str1, chars, length1);
+				getChars(str2, chars, length);
+				return new ConsString(new Buffer(chars, length), chars, length);
+			}
+		}
+
+		var result = new ConsString(str1, str2);
+		return result.depth > MAX_DEPTH ? result.rebalance() : result;
+	}
+
+	private static int grow(int length) {
+		return Math.max(16, length + (length >> 1));
+	}
+
+	private static int depth(CharSequence s) {
+		return s instanceof ConsString c ? c.depth : 0;
+	}
+
 	private final int length;
-	private CharSequence left;
-	private CharSequence right;
-	private boolean isFlat;
+	private final int depth;
+	private final CharSequence left;
+	private final CharSequence right;
+	private final Buffer buffer;
+	private final char[] chars;
+	/**
+	 * Length of the buffered string this one starts with, or 0 if it doesn't start with one.
+	 */
+	private final int bufferedPrefix;
+	private volatile String flat;
 
 	public ConsString(CharSequence str1, CharSequence str2) {
 		left = str1;
 		right = str2;
 		length = left.length() + right.length();
-		isFlat = false;
+		depth = Math.max(depth(left), depth(right)) + 1;
+		buffer = null;
+		chars = null;
+		bufferedPrefix = left instanceof ConsString c ? c.bufferedPrefix : 0;
+	}
+
+	private ConsString(Buffer buffer, char[] chars, int length) {
+		left = null;
+		right = null;
+		this.length = length;
+		depth = 0;
+		this.buffer = buffer;
+		this.chars = chars;
+		bufferedPrefix = length;
 	}
 
 	@Override
 	public String toString() {
-		return isFlat ? (String) left : flatten();
-	}
-
-	private synchronized String flatten() {
-		if (!isFlat) {
-			final char[] chars = new char[length];
-			int charPos = length;
-
-			ArrayDeque<CharSequence> stack = new ArrayDeque<>();
-			stack.addFirst(left);
-
-			CharSequence next = right;
-			do {
-				if (next instanceof ConsString casted) {
-					if (casted.isFlat) {
-						next = casted.left;
-					} else {
-						stack.addFirst(casted.left);
-						next = casted.right;
-						continue;
+		String str = flat;
+		return str == null ? flatten() : str;
+	}
+
+	/**
+	 * Copies the characters once and caches the string. Threads that flatten the same string at the same
+	 * time each build an equal copy and one of them wins, none of them waits for another.
+	 */
+	private String flatten() {
+		String str;
+
+		if (chars != null) {
+			str = new String(chars, 0, length);
+		} else {
+			char[] result = new char[length];
+			getChars(this, result, length);
+			str = new String(result);
+		}
+
+		flat = str;
+		return str;
+	}
+
+	/**
+	 * Copies the characters of a string so that they end at <code>end</code>, right to left to
+	 * keep the stack small for trees built by appending.
+	 */
+	private static void getChars(CharSequence s, char[] dst, int end) {
+		ArrayDeque<CharSequence> stack = null;
+		CharSequence next = s;
+
+		while (true) {
+			if (next instanceof ConsString c) {
+				String str = c.flat;
+
+				if (str != null) {
+					next = str;
+				} else if (c.chars != null) {
+					end -= c.length;
+					System.arraycopy(c.chars, 0, dst, end, c.length);
+					next = null;
+				} else {
+					if (stack == null) {
+						stack = new ArrayDeque<>();
 					}
+
+					stack.addFirst(c.left);
+					next = c.right;
+					continue;
 				}
+			}
+
+			if (next != null) {
+				String str = next.toString();
+				end -= str.length();
+				str.getChars(0, str.length(), dst, end);
+			}
 
-				final String str = (String) next;
-				charPos -= str.length();
-				str.getChars(0, str.length(), chars, charPos);
-				next = stack.isEmpty() ? null : stack.removeFirst();
-			} while (next != null);
+			if (stack == null || stack.isEmpty()) {
+				return;
+			}
 
-			left = new String(chars);
-			right = "";
-			isFlat = true;
+			next = stack.removeFirst();
 		}
-		return (String) left;
+	}
+
+	/**
+	 * Rebuilds the deep part of the tree with a depth logarithmic in the count of its leaves, joining short
+	 * neighbouring leaves so that trees built by prepending stay small.
+	 */
+	private CharSequence rebalance() {
+		List<CharSequence> leaves = new ArrayList<>();
+		var small = new StringBuilder();
+		ArrayDeque<CharSequence> stack = new ArrayDeque<>();
+		CharSequence next = this;
+
+		while (true) {
+			if (next instanceof ConsString c && c.flat == null && c.chars == null && c.depth >= KEEP_DEPTH) {
+				stack.addFirst(c.right);
+				next = c.left;
+				continue;
+			}
+
+			if (next.length() >= CHUNK) {
+				if (small.length() > 0) {
+					leaves.add(small.toString());
+					small.setLength(0);
+				}
+
+				leaves.add(next);
+			} else {
+				small.append(next instanceof ConsString c ? c.toString() : next);
+
+				if (small.length() >= CHUNK) {
+					leaves.add(small.toString());
+					small.setLength(0);
+				}
+			}
+
+			if (stack.isEmpty()) {
+				break;
+			}
+
+			next = stack.removeFirst();
+		}
+
+		if (small.length() > 0) {
+			leaves.add(small.toString());
+		}
+
+		return balanced(leaves, 0, leaves.size());
+	}
+
+	private static CharSequence balanced(List<CharSequence> leaves, int from, int to) {
+		if (to - from == 1) {
+			return leaves.get(from);
+		}
+
+		int mid = (from + to) >>> 1;
+		return new ConsString(balanced(leaves, from, mid), balanced(leaves, mid, to));
 	}
 
 	@Override
@@ -82,13 +294,107 @@ public class ConsString implements CharSequence {
 
 	@Override
 	public char charAt(int index) {
-		String str = isFlat ? (String) left : flatten();
-		return str.charAt(index);
+		if (index < 0 || index >= length) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+
+		CharSequence s = this;
+
+		while (s instanceof ConsString c) {
+			String str = c.flat;
+
+			if (str != null) {
+				return str.charAt(index);
+			} else if (c.chars != null) {
+				return c.chars[index];
+			}
+
+			int leftLength = c.left.length();
+
+			if (index < leftLength) {
+				s = c.left;
+			} else {
+				index -= leftLength;
+				s = c.right;
+			}
+		}
+
+		return s.charAt(index);
 	}
 
 	@Override
 	public CharSequence subSequence(int start, int end) {
-		String str = isFlat ? (String) left : flatten();
-		return str.substring(start, end);
+		if (flat == null && chars != null) {
+			if (start < 0 || end > length || start > end) {
+				throw new StringIndexOutOfBoundsException("begin " + start + ", end " + end + ", length " + length);
+			}
+
+			return new String(chars, start, end - start);
+		}
+
+		return toString().substring(start, end);
+	}
+
+	/**
+	 * Same as {@link String#indexOf(String, int)}, searching the append buffer of a string in place
+	 * instead of copying it first.
+	 */
+	public static int indexOf(CharSequence s, String target, int fromIndex) {
+		if (s instanceof ConsString c && c.flat == null && c.chars != null) {
+			return indexOf(c.chars, c.length, target, fromIndex);
+		}
+
+		return s.toString().indexOf(target, fromIndex);
+	}
+
+	private static int indexOf(char[] chars, int length, String target, int fromIndex) {
+		int targetLength = target.length();
+		int max = length - targetLength;
+
+		if (fromIndex < 0) {
+			fromIndex = 0;
+		}
+
+		if (targetLength == 0) {
+			return Math.min(fromIndex, length);
+		}
+
+		char first = target.charAt(0);
+
+		for (int i = fromIndex; i <= max; i++) {
+			if (chars[i] == first) {
+				int j = 1;
+
+				while (j < targetLength && chars[i + j] == target.charAt(j)) {
+					j++;
+				}
+
+				if (j == targetLength) {
+					return i;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Checks if <code>target</code> appears in <code>s</code> at <code>offset</code>, reading characters
+	 * through {@link #charAt(int)} so that ropes are not flattened.
+	 */
+	public static boolean regionMatches(CharSequence s, int offset, String target) {
+		if (offset < 0 || offset > s.length() - target.length()) {
+			return false;
+		} else if (s instanceof String str) {
+			return str.startsWith(target, offset);
+		}
+
+		for (int i = 0; i < target.length(); i++) {
+			if (s.charAt(offset + i) != target.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
 	}
 }
@@ -21,8 +21,13 @@ import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class represents the runtime context of an executing script.
@@ -64,8 +69,7 @@ public class Context {
 	 * @see ContextFactory#call(ContextAction)
 	 */
 	public static Context getCurrentContext() {
-		Object helper = VMBridge.getThreadContextHelper();
-		return VMBridge.getContext(helper);
+		return VMBridge.getCurrentContext();
 	}
 
 	/**
@@ -164,7 +168,13 @@ public class Context {
 	 * The method implements {@link ContextFactory#call(ContextAction)} logic.
 	 */
 	static <T> T call(ContextFactory factory, ContextAction<T> action) {
-		Context cx = enter(null, factory);
+		Context cx = VMBridge.getCurrentContext();
+		if (cx != null) {
+			// Already entered on this thread, a nested enter/exit pair
+			// would leave the binding unchanged.
+			return action.run(cx);
+		}
+		cx = enter(null, factory);
 		try {
 			return action.run(cx);
 		} finally {
@@ -526,9 +536,17 @@ public class Context {
 	// For the interpreter to store information about previous invocations
 	// interpreter invocations
 	ObjArray previousInterpreterInvocations;
+	// For the interpreter to reuse stack arrays of frames that have returned
+	Interpreter.FramePool interpreterFramePool;
 	// For instruction counting (interpreter only)
 	int instructionCount;
 	int instructionThreshold;
+	// For opcode pair profiling (interpreter only)
+	OpcodeProfiler opcodeProfiler;
+	// For function and line profiling (interpreter only)
+	ScriptProfiler scriptProfiler;
+	// Task whose slice is running, see ScriptScheduler
+	ScriptScheduler.Task scheduledTask;
 	// It can be used to return the second uint32 result from function
 	long scratchUint32;
 	// It can be used to return the second Scriptable result from function
@@ -542,6 +560,11 @@ public class Context {
 	private Object propertyListeners;
 	private Map<Object, Object> threadLocalMap;
 	private ClassLoader applicationClassLoader;
+	private JobQueue jobQueue;
+	private boolean capturingJavaStack = true;
+	private boolean lazyFunctions;
+	private final Queue<Runnable> microtasks = new ConcurrentLinkedQueue<>();
+	private boolean processingMicrotasks;
 
 	/**
 	 * Creates a new context. Provided as a preferred super constructor for
@@ -914,6 +937,48 @@ public class Context {
 		return ScriptRuntime.initSafeStandardObjects(this, scope, sealed);
 	}
 
+	/**
+	 * Create a sealed scope holding the standard objects, meant to be passed
+	 * to {@link #newScopeFromTemplate(ScriptableObject)}.
+	 * <p>
+	 * Initializing the standard objects is by far the most expensive part of
+	 * creating a top-level scope. A template pays that cost once; every scope
+	 * created from it shares its sealed builtins instead of defining its own.
+	 *
+	 * @param safe whether to leave out the objects that give access to Java
+	 *             code, see {@link #initSafeStandardObjects(ScriptableObject, boolean)}
+	 * @return the sealed template scope
+	 */
+	public ScriptableObject initStandardObjectsTemplate(boolean safe) {
+		ScriptableObject template = safe ? initSafeStandardObjects(null, true) : initStandardObjects(null, true);
+		template.sealObject();
+		return template;
+	}
+
+	/**
+	 * Create a new top-level scope from a template created by
+	 * {@link #initStandardObjectsTemplate(boolean)}.
+	 * <p>
+	 * The new scope inherits the standard objects from the template through
+	 * its prototype, so this only allocates the scope itself and its
+	 * {@link SharedContextData}. Variables, functions and assignments to
+	 * global bindings like <code>parseInt</code> land in the new scope and
+	 * are not visible to other scopes created from the same template. The
+	 * builtin constructors and prototypes are shared and sealed, so scripts
+	 * can't add properties to them.
+	 * <p>
+	 * If the template's {@link SharedContextData} was {@link SharedContextData#seal() sealed},
+	 * the new scope shares it, including the Java reflection caches and type
+	 * wrappers, instead of getting its own. Such a template is safe to use
+	 * from several threads at once, each with its own Context and scopes.
+	 *
+	 * @param template sealed scope with the standard objects
+	 * @return the new scope
+	 */
+	public ScriptableObject newScopeFromTemplate(ScriptableObject template) {
+		return ScriptRuntime.newScopeFromTemplate(this, template);
+	}
+
 	/**
 	 * Evaluate a JavaScript source string.
 	 * <p>
@@ -1109,6 +1174,32 @@ public class Context {
 		return (Script) compileImpl(null, Kit.readReader(in), sourceName, lineno, securityDomain, false, null, null);
 	}
 
+	/**
+	 * Compiles the UTF-8 source in the given file.
+	 * <p>
+	 * The file is decoded in one pass into the source string, without the buffers of a Reader. The
+	 * source of ASCII files takes one byte per character.
+	 *
+	 * @param path           the file to read
+	 * @param sourceName     a string describing the source, the path if null
+	 * @param lineno         the starting line number for reporting errors
+	 * @param securityDomain an arbitrary object that specifies security
+	 *                       information about the origin or owner of the script. For
+	 *                       implementations that don't care about security, this value
+	 *                       may be null.
+	 * @return a script that may later be executed
+	 * @throws IOException if the file can't be read
+	 * @see Script
+	 */
+	public final Script compileFile(Path path, String sourceName, int lineno, Object securityDomain) throws IOException {
+		if (lineno < 0) {
+			lineno = 0;
+		}
+
+		String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		return (Script) compileImpl(null, source, sourceName == null ? path.toString() : sourceName, lineno, securityDomain, false, null, null);
+	}
+
 	/**
 	 * Compiles the source in the given string.
 	 * <p>
@@ -1421,6 +1512,156 @@ public class Context {
 		setGenerateObserverCount(threshold > 0);
 	}
 
+	/**
+	 * Get the profiler that records executed interpreter opcodes, or null if profiling is disabled.
+	 */
+	public final OpcodeProfiler getOpcodeProfiler() {
+		return opcodeProfiler;
+	}
+
+	/**
+	 * Set the profiler that records executed interpreter opcodes and pairs of consecutive opcodes.
+	 * Pass null to disable profiling.
+	 *
+	 * @param profiler the profiler to record into
+	 */
+	public final void setOpcodeProfiler(OpcodeProfiler profiler) {
+		if (sealed) {
+			onSealedMutation();
+		}
+		opcodeProfiler = profiler;
+	}
+
+	/**
+	 * Get the profiler that records time spent in interpreted functions, or null if profiling is disabled.
+	 */
+	public final ScriptProfiler getScriptProfiler() {
+		return scriptProfiler;
+	}
+
+	/**
+	 * Set the profiler that records invocation counts, time and line hits of interpreted functions.
+	 * Pass null to disable profiling.
+	 *
+	 * @param profiler the profiler to record into
+	 */
+	public final void setScriptProfiler(ScriptProfiler profiler) {
+		if (sealed) {
+			onSealedMutation();
+		}
+		scriptProfiler = profiler;
+	}
+
+	/**
+	 * Whether exceptions thrown by the engine record the Java stack, see {@link #setCapturingJavaStack(boolean)}.
+	 */
+	public final boolean isCapturingJavaStack() {
+		return capturingJavaStack;
+	}
+
+	/**
+	 * Set whether exceptions thrown by the engine while this Context is current record the Java stack.
+	 * <p>
+	 * Walking the Java stack is the most expensive part of a script <code>throw</code>, and of errors
+	 * caught by scripts around Java calls. Without it, {@link RhinoException} only keeps the interpreter
+	 * frames, resolved to lines when {@link RhinoException#getScriptStack()} or the <code>stack</code>
+	 * property of an error is read, and {@link Throwable#getStackTrace()} is empty. Defaults to true,
+	 * turn it off when scripts aren't being debugged.
+	 *
+	 * @param capturingJavaStack false to skip filling in the Java stack
+	 */
+	public final void setCapturingJavaStack(boolean capturingJavaStack) {
+		if (sealed) {
+			onSealedMutation();
+		}
+		this.capturingJavaStack = capturingJavaStack;
+	}
+
+	/**
+	 * Whether scripts compiled by this Context parse function bodies on first call, see {@link #setLazyFunctions(boolean)}.
+	 */
+	public final boolean isLazyFunctions() {
+		return lazyFunctions;
+	}
+
+	/**
+	 * Set whether scripts compiled while this Context is current parse function bodies on first call.
+	 * <p>
+	 * When enabled, the body of a <code>function</code> is only scanned when the script is compiled:
+	 * strings, comments, regular expressions and brackets must be well-formed, but the body is not
+	 * parsed and has no code generated for it. The function is compiled from its source range when it is
+	 * called for the first time, so other syntax errors in it are thrown from that call. This cuts
+	 * compile time and memory of large scripts where most functions are never called. Arrow functions,
+	 * methods and getters or setters of object literals are always compiled up front. Defaults to false.
+	 *
+	 * @param lazyFunctions true to compile function bodies on first call
+	 */
+	public final void setLazyFunctions(boolean lazyFunctions) {
+		if (sealed) {
+			onSealedMutation();
+		}
+		this.lazyFunctions = lazyFunctions;
+	}
+
+	/**
+	 * Get the queue that receives promise jobs, or null if this Context uses its own queue.
+	 */
+	public final JobQueue getJobQueue() {
+		return jobQueue;
+	}
+
+	/**
+	 * Set the queue that receives promise reactions and other jobs scheduled by scripts.
+	 * The host is then responsible for running them, typically at the end of a tick.
+	 * Pass null to use the queue of this Context, which is drained after every
+	 * top-level call and by {@link #processMicrotasks()}.
+	 *
+	 * @param queue the queue to schedule jobs on
+	 */
+	public final void setJobQueue(JobQueue queue) {
+		if (sealed) {
+			onSealedMutation();
+		}
+		jobQueue = queue;
+	}
+
+	/**
+	 * Schedule a job on the job queue of this Context. May be called from any thread.
+	 *
+	 * @param job the job, run later with a Context entered on the running thread
+	 */
+	public final void enqueueMicrotask(Runnable job) {
+		JobQueue queue = jobQueue;
+
+		if (queue != null) {
+			queue.enqueue(job);
+		} else {
+			microtasks.add(job);
+		}
+	}
+
+	/**
+	 * Run all jobs in the queue of this Context, including jobs scheduled while draining it.
+	 * Does nothing when called from a job that is already being run by this method.
+	 */
+	public final void processMicrotasks() {
+		if (processingMicrotasks) {
+			return;
+		}
+
+		processingMicrotasks = true;
+
+		try {
+			Runnable job;
+
+			while ((job = microtasks.poll()) != null) {
+				job.run();
+			}
+		} finally {
+			processingMicrotasks = false;
+		}
+	}
+
 	/**
 	 * Turn on or off generation of code with callbacks to
 	 * track the count of executed instructions.
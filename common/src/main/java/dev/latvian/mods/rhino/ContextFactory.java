@@ -8,6 +8,9 @@
 
 package dev.latvian.mods.rhino;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Factory class that Rhino runtime uses to create new {@link Context}
  * instances.  A <code>ContextFactory</code> can also notify listeners
@@ -280,6 +283,25 @@ public class ContextFactory {
 		return Context.call(this, action);
 	}
 
+	/**
+	 * Run a script task asynchronously on the given executor, in the same
+	 * way as {@link #call(ContextAction)}.
+	 * <p>
+	 * Each task binds a Context to its thread only for as long as it runs
+	 * and never hands it to another thread, so this works the same with a
+	 * platform thread pool or with one virtual thread per task. Calls back
+	 * into scripts made by the task, such as interface adapters invoked
+	 * from Java, run in the task's Context without entering it again.
+	 *
+	 * @param executor executor that runs the task
+	 * @param action   the task
+	 * @return future completed with the result of the task, or
+	 * exceptionally if it throws
+	 */
+	public final <T> CompletableFuture<T> submit(Executor executor, ContextAction<T> action) {
+		return CompletableFuture.supplyAsync(() -> Context.call(this, action), executor);
+	}
+
 	/**
 	 * Get a context associated with the current thread, creating one if need
 	 * be. The Context stores the execution state of the JavaScript engine, so
@@ -0,0 +1,726 @@
+package dev.latvian.mods.rhino;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes captured continuations to a compact binary form and restores them, so suspended
+ * scripts can be kept outside of memory or across restarts.
+ * <p>
+ * Interpreter frames, their stacks and every scope and object reachable from them are written by value.
+ * Compiled code is written as the content hash of its {@link InterpreterData}, the reading side has to
+ * {@link #registerScript(Script) register} the same scripts. Objects of the shared standard scope passed
+ * to the constructor, typically a template from {@link Context#initStandardObjectsTemplate(boolean)},
+ * are written by name, such as {@code "Math"} or {@code "Array.prototype.push"}. Scopes created from
+ * the template with {@link Context#newScopeFromTemplate(ScriptableObject)} are written by value.
+ * <p>
+ * Plain objects, arrays, interpreted functions, activations, {@code with} scopes, continuations and
+ * primitives are supported. Other objects, such as wrapped Java objects, make writing fail with an
+ * {@link IllegalArgumentException}. Accessor properties are written as their current value and changes
+ * to an {@code arguments} object that are not reflected in its function's variables are not kept.
+ */
+public final class ContinuationSerializer {
+	private static final int MAGIC = 0x524A4332;
+
+	static final int T_NULL = 0;
+	static final int T_REF = 1;
+	static final int T_UNDEFINED = 2;
+	static final int T_TRUE = 3;
+	static final int T_FALSE = 4;
+	static final int T_INT = 5;
+	static final int T_DOUBLE = 6;
+	static final int T_STRING = 7;
+	static final int T_DOUBLE_MARK = 8;
+	static final int T_NOT_FOUND = 9;
+	static final int T_NULL_VALUE = 10;
+	static final int T_BUILTIN = 11;
+	static final int T_OBJECT = 12;
+	static final int T_ARRAY = 13;
+	static final int T_FUNCTION = 14;
+	static final int T_CALL = 15;
+	static final int T_ARGUMENTS = 16;
+	static final int T_WITH = 17;
+	static final int T_CONTINUATION = 18;
+	static final int T_FRAME = 19;
+
+	private final Map<Object, String> builtinNames;
+	private final Map<String, Object> builtinValues;
+	private final Map<Long, InterpreterData> scripts;
+	// Registered functions whose nested functions are only known once they are compiled
+	private final ArrayDeque<InterpreterData> lazyScripts;
+
+	/**
+	 * Indexes the objects of the shared scope, has to be called with a Context entered.
+	 *
+	 * @param builtins the shared standard scope, its objects are written by name
+	 */
+	public ContinuationSerializer(Scriptable builtins) {
+		builtinNames = new IdentityHashMap<>();
+		builtinValues = new HashMap<>();
+		scripts = new HashMap<>();
+		lazyScripts = new ArrayDeque<>();
+
+		addBuiltin("", builtins);
+
+		for (Object id : builtins.getIds()) {
+			if (id instanceof String name) {
+				addBuiltinMembers(name, ScriptableObject.getProperty(builtins, name));
+			}
+		}
+
+		if (builtins instanceof ScriptableObject so) {
+			for (Object id : so.getIds(true, false)) {
+				if (id instanceof String name && !builtinValues.containsKey(name)) {
+					addBuiltinMembers(name, ScriptableObject.getProperty(builtins, name));
+				}
+			}
+		}
+	}
+
+	private void addBuiltinMembers(String name, Object value) {
+		if (!(value instanceof Scriptable scriptable) || !addBuiltin(name, scriptable)) {
+			return;
+		}
+
+		addBuiltinProperties(name, scriptable);
+
+		if (scriptable instanceof BaseFunction && ScriptableObject.getProperty(scriptable, "prototype") instanceof Scriptable prototype && addBuiltin(name + ".prototype", prototype)) {
+			addBuiltinProperties(name + ".prototype", prototype);
+		}
+	}
+
+	private void addBuiltinProperties(String name, Scriptable object) {
+		if (object instanceof ScriptableObject so) {
+			for (Object id : so.getIds(true, false)) {
+				if (id instanceof String key && !(so instanceof BaseFunction && isFunctionInstanceId(key)) && !key.equals("prototype") && !key.equals("constructor") && !so.isGetterOrSetter(key, 0, false) && so.get(key, so) instanceof Scriptable value) {
+					addBuiltin(name + "." + key, value);
+				}
+			}
+		}
+	}
+
+	private static boolean isFunctionInstanceId(Object id) {
+		return "length".equals(id) || "name".equals(id) || "arity".equals(id) || "arguments".equals(id);
+	}
+
+	private boolean addBuiltin(String name, Scriptable value) {
+		if (builtinNames.containsKey(value)) {
+			return false;
+		}
+
+		builtinNames.put(value, name);
+		builtinValues.put(name, value);
+		return true;
+	}
+
+	/**
+	 * Makes the code of a script and its nested functions known to {@link #read(Context, InputStream)}.
+	 *
+	 * @param script a script compiled by this runtime
+	 */
+	public void registerScript(Script script) {
+		if (!(script instanceof InterpretedFunction f)) {
+			throw new IllegalArgumentException("Script was not created by interpreted mode");
+		}
+
+		registerData(f.idata);
+	}
+
+	private void registerData(InterpreterData idata) {
+		synchronized (scripts) {
+			scripts.put(idata.contentHash(), idata);
+
+			if (idata.lazy != null) {
+				lazyScripts.add(idata);
+				return;
+			}
+		}
+
+		for (int i = 0; i < idata.getFunctionCount(); i++) {
+			registerData(idata.getFunction(i));
+		}
+	}
+
+	InterpreterData getScript(long hash) throws IOException {
+		InterpreterData idata;
+
+		synchronized (scripts) {
+			idata = scripts.get(hash);
+		}
+
+		while (idata == null) {
+			// The function may be nested in one that wasn't compiled yet
+			InterpreterData lazy;
+
+			synchronized (scripts) {
+				lazy = lazyScripts.poll();
+			}
+
+			if (lazy == null) {
+				break;
+			}
+
+			lazy.ensureCompiled();
+
+			for (int i = 0; i < lazy.getFunctionCount(); i++) {
+				registerData(lazy.getFunction(i));
+			}
+
+			synchronized (scripts) {
+				idata = scripts.get(hash);
+			}
+		}
+
+		if (idata == null) {
+			throw new IOException("Unknown script " + Long.toHexString(hash) + ", it has to be registered before reading");
+		}
+
+		return idata;
+	}
+
+	/**
+	 * Writes a continuation.
+	 *
+	 * @param continuation the value of {@link ContinuationPending#getContinuation()}
+	 * @param stream       the stream to write to
+	 */
+	public void write(Object continuation, OutputStream stream) throws IOException {
+		if (!(continuation instanceof NativeContinuation)) {
+			throw new IllegalArgumentException("Not a continuation: " + continuation);
+		}
+
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		new Output(this, out).writeValue(continuation);
+		out.flush();
+	}
+
+	public byte[] write(Object continuation) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+		try {
+			write(continuation, bytes);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a continuation, which can then be passed to {@link Context#resumeContinuation(Object, Scriptable, Object)}.
+	 *
+	 * @param cx     the current Context
+	 * @param stream the stream to read from
+	 * @return the restored continuation
+	 */
+	public NativeContinuation read(Context cx, InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
+
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a serialized continuation");
+		}
+
+		Object value = new Input(this, cx, in).readValue();
+
+		if (!(value instanceof NativeContinuation continuation)) {
+			throw new IOException("Not a serialized continuation");
+		}
+
+		return continuation;
+	}
+
+	public NativeContinuation read(Context cx, byte[] data) throws IOException {
+		return read(cx, new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * One write operation, tracks the objects already written so shared and cyclic references
+	 * are written once.
+	 */
+	static final class Output {
+		private final ContinuationSerializer serializer;
+		private final DataOutputStream out;
+		private final Map<Object, Integer> objects = new IdentityHashMap<>();
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		private Output(ContinuationSerializer serializer, DataOutputStream out) {
+			this.serializer = serializer;
+			this.out = out;
+		}
+
+		void writeInt(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				out.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			out.writeByte(value);
+		}
+
+		void writeBoolean(boolean value) throws IOException {
+			out.writeBoolean(value);
+		}
+
+		void writeDouble(double value) throws IOException {
+			out.writeDouble(value);
+		}
+
+		void writeLong(long value) throws IOException {
+			out.writeLong(value);
+		}
+
+		/**
+		 * Writes a string once and later occurrences as its index. Strings are written as their
+		 * byte count followed by the UTF-8 encoding of each char on its own, so unpaired
+		 * surrogates come back unchanged.
+		 */
+		void writeString(String value) throws IOException {
+			Integer index = strings.get(value);
+
+			if (index != null) {
+				writeInt(index + 1);
+				return;
+			}
+
+			strings.put(value, strings.size());
+			writeInt(0);
+
+			int length = value.length();
+			int size = length;
+
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+
+				if (c >= 0x800) {
+					size += 2;
+				} else if (c >= 0x80) {
+					size++;
+				}
+			}
+
+			byte[] bytes = new byte[size];
+			int pos = 0;
+
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+
+				if (c < 0x80) {
+					bytes[pos++] = (byte) c;
+				} else if (c < 0x800) {
+					bytes[pos++] = (byte) (0xC0 | (c >> 6));
+					bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+				} else {
+					bytes[pos++] = (byte) (0xE0 | (c >> 12));
+					bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+					bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+				}
+			}
+
+			writeInt(size);
+			out.write(bytes);
+		}
+
+		/**
+		 * Writes a back reference if the object was already written, otherwise assigns it the next id.
+		 *
+		 * @return true if a reference was written
+		 */
+		boolean writeReference(Object value) throws IOException {
+			Integer id = objects.get(value);
+
+			if (id != null) {
+				writeInt(T_REF);
+				writeInt(id);
+				return true;
+			}
+
+			objects.put(value, objects.size());
+			return false;
+		}
+
+		void writeValue(Object value) throws IOException {
+			if (value == null) {
+				writeInt(T_NULL);
+			} else if (value == Undefined.instance) {
+				writeInt(T_UNDEFINED);
+			} else if (value == UniqueTag.DOUBLE_MARK) {
+				writeInt(T_DOUBLE_MARK);
+			} else if (value == UniqueTag.NOT_FOUND) {
+				writeInt(T_NOT_FOUND);
+			} else if (value == UniqueTag.NULL_VALUE) {
+				writeInt(T_NULL_VALUE);
+			} else if (value instanceof Boolean b) {
+				writeInt(b ? T_TRUE : T_FALSE);
+			} else if (value instanceof Integer i) {
+				writeInt(T_INT);
+				writeInt((i << 1) ^ (i >> 31));
+			} else if (value instanceof Number n) {
+				writeInt(T_DOUBLE);
+				writeDouble(n.doubleValue());
+			} else if (value instanceof CharSequence s) {
+				writeInt(T_STRING);
+				writeString(s.toString());
+			} else if (value instanceof Scriptable s) {
+				writeScriptable(s);
+			} else {
+				throw new IllegalArgumentException("Can't serialize " + value.getClass().getName());
+			}
+		}
+
+		private void writeScriptable(Scriptable value) throws IOException {
+			String builtin = serializer.builtinNames.get(value);
+
+			if (builtin != null) {
+				writeInt(T_BUILTIN);
+				writeString(builtin);
+				return;
+			}
+
+			if (value instanceof Arguments args && !objects.containsKey(args)) {
+				// Arguments are created from their activation, so it's written first. If the activation
+				// refers to the arguments object, it was written as part of it and is referenced here
+				writeInt(T_ARGUMENTS);
+				writeValue(args.getActivation());
+				Integer id = objects.get(args);
+
+				if (id != null) {
+					writeInt(id + 1);
+				} else {
+					objects.put(args, objects.size());
+					writeInt(0);
+				}
+
+				return;
+			}
+
+			if (writeReference(value)) {
+				return;
+			}
+
+			if (value instanceof NativeContinuation c) {
+				writeInt(T_CONTINUATION);
+				writeValue(c.getParentScope());
+				writeValue(c.getPrototype());
+				Interpreter.writeFrame(this, c.getImplementation());
+			} else if (value instanceof InterpretedFunction f) {
+				writeInt(T_FUNCTION);
+				writeLong(f.idata.contentHash());
+				writeValue(f.getParentScope());
+				writeValue(f.getPrototype());
+				writeProperties(f);
+			} else if (value instanceof NativeCall call) {
+				writeInt(T_CALL);
+				writeValue(call.function);
+				writeBoolean(call.isStrict);
+				writeInt(call.originalArgs.length);
+
+				for (Object arg : call.originalArgs) {
+					writeValue(arg);
+				}
+
+				writeValue(call.getParentScope());
+				writeProperties(call);
+			} else if (value instanceof NativeWith with) {
+				writeInt(T_WITH);
+				writeValue(with.getParentScope());
+				writeValue(with.getPrototype());
+			} else if (value.getClass() == NativeArray.class) {
+				NativeArray array = (NativeArray) value;
+				writeInt(T_ARRAY);
+				writeDouble(array.getLength());
+				writeValue(array.getParentScope());
+				writeValue(array.getPrototype());
+				writeProperties(array);
+			} else if (value.getClass() == NativeObject.class) {
+				writeInt(T_OBJECT);
+				writeValue(value.getParentScope());
+				writeValue(value.getPrototype());
+				writeProperties((ScriptableObject) value);
+			} else {
+				throw new IllegalArgumentException("Can't serialize " + value.getClass().getName());
+			}
+		}
+
+		private void writeProperties(ScriptableObject object) throws IOException {
+			List<Object> ids = new ArrayList<>();
+
+			for (Object id : object.getIds(true, false)) {
+				if (!(object instanceof BaseFunction) || !isFunctionInstanceId(id)) {
+					if (!(object instanceof NativeArray) || !"length".equals(id)) {
+						ids.add(id);
+					}
+				}
+			}
+
+			writeInt(ids.size());
+
+			for (Object id : ids) {
+				if (id instanceof String name) {
+					writeBoolean(false);
+					writeString(name);
+					writeInt(object.getAttributes(name));
+					writeValue(object.get(name, object));
+				} else {
+					int index = ((Number) id).intValue();
+					writeBoolean(true);
+					writeInt(index);
+					writeInt(object.getAttributes(index));
+					writeValue(object.get(index, object));
+				}
+			}
+		}
+	}
+
+	/**
+	 * One read operation, mirrors {@link Output}.
+	 */
+	static final class Input {
+		private final ContinuationSerializer serializer;
+		final Context cx;
+		private final DataInputStream in;
+		private final List<Object> objects = new ArrayList<>();
+		private final List<String> strings = new ArrayList<>();
+
+		private Input(ContinuationSerializer serializer, Context cx, DataInputStream in) {
+			this.serializer = serializer;
+			this.cx = cx;
+			this.in = in;
+		}
+
+		int readInt() throws IOException {
+			int value = 0;
+
+			for (int shift = 0; ; shift += 7) {
+				int b = in.readUnsignedByte();
+				value |= (b & 0x7F) << shift;
+
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+		}
+
+		boolean readBoolean() throws IOException {
+			return in.readBoolean();
+		}
+
+		double readDouble() throws IOException {
+			return in.readDouble();
+		}
+
+		InterpreterData readScript() throws IOException {
+			return serializer.getScript(in.readLong());
+		}
+
+		String readString() throws IOException {
+			int index = readInt();
+
+			if (index != 0) {
+				return strings.get(index - 1);
+			}
+
+			byte[] bytes = new byte[readInt()];
+			in.readFully(bytes);
+			char[] chars = new char[bytes.length];
+			int length = 0;
+
+			try {
+				for (int i = 0; i < bytes.length; ) {
+					int b = bytes[i++] & 0xFF;
+
+					if (b < 0x80) {
+						chars[length++] = (char) b;
+					} else if (b < 0xE0) {
+						chars[length++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+					} else {
+						chars[length++] = (char) (((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+					}
+				}
+			} catch (ArrayIndexOutOfBoundsException ex) {
+				throw new IOException("Malformed string");
+			}
+
+			String value = new String(chars, 0, length);
+			strings.add(value);
+			return value;
+		}
+
+		/**
+		 * Reserves the id of an object that can only be created after reading some of its fields.
+		 */
+		int reserve() {
+			objects.add(null);
+			return objects.size() - 1;
+		}
+
+		<T> T set(int id, T value) {
+			objects.set(id, value);
+			return value;
+		}
+
+		Object getReference() throws IOException {
+			return getReference(readInt());
+		}
+
+		private Object getReference(int id) throws IOException {
+			if (id >= objects.size() || objects.get(id) == null) {
+				throw new IOException("Invalid reference " + id);
+			}
+
+			return objects.get(id);
+		}
+
+		Scriptable readScriptable() throws IOException {
+			Object value = readValue();
+
+			if (value != null && !(value instanceof Scriptable)) {
+				throw new IOException("Expected an object, got " + value);
+			}
+
+			return (Scriptable) value;
+		}
+
+		Object readValue() throws IOException {
+			int tag = readInt();
+
+			switch (tag) {
+				case T_NULL:
+					return null;
+				case T_REF:
+					return getReference();
+				case T_UNDEFINED:
+					return Undefined.instance;
+				case T_TRUE:
+					return Boolean.TRUE;
+				case T_FALSE:
+					return Boolean.FALSE;
+				case T_INT: {
+					int value = readInt();
+					return (value >>> 1) ^ -(value & 1);
+				}
+				case T_DOUBLE:
+					return readDouble();
+				case T_STRING:
+					return readString();
+				case T_DOUBLE_MARK:
+					return UniqueTag.DOUBLE_MARK;
+				case T_NOT_FOUND:
+					return UniqueTag.NOT_FOUND;
+				case T_NULL_VALUE:
+					return UniqueTag.NULL_VALUE;
+				case T_BUILTIN: {
+					String name = readString();
+					Object value = serializer.builtinValues.get(name);
+
+					if (value == null) {
+						throw new IOException("Unknown builtin " + name);
+					}
+
+					return value;
+				}
+				case T_CONTINUATION: {
+					NativeContinuation c = set(reserve(), new NativeContinuation());
+					c.setParentScope(readScriptable());
+					c.setPrototype(readScriptable());
+					c.initImplementation(Interpreter.readFrame(this));
+					return c;
+				}
+				case T_FUNCTION: {
+					int id = reserve();
+					InterpretedFunction f = set(id, InterpretedFunction.createScript(readScript(), null));
+					f.setParentScope(readScriptable());
+					f.setPrototype(readScriptable());
+					readProperties(f);
+					return f;
+				}
+				case T_CALL: {
+					NativeCall call = set(reserve(), new NativeCall());
+					call.function = (NativeFunction) readValue();
+					call.isStrict = readBoolean();
+					Object[] args = new Object[readInt()];
+
+					for (int i = 0; i < args.length; i++) {
+						args[i] = readValue();
+					}
+
+					call.originalArgs = args;
+					call.setParentScope(readScriptable());
+					readProperties(call);
+					return call;
+				}
+				case T_ARGUMENTS: {
+					NativeCall call = (NativeCall) readValue();
+					int id = readInt();
+
+					if (id != 0) {
+						// Already read as part of its activation
+						return getReference(id - 1);
+					}
+
+					return set(reserve(), new Arguments(call));
+				}
+				case T_WITH: {
+					NativeWith with = set(reserve(), new NativeWith(null, null));
+					with.setParentScope(readScriptable());
+					with.setPrototype(readScriptable());
+					return with;
+				}
+				case T_ARRAY: {
+					int id = reserve();
+					NativeArray array = set(id, new NativeArray((long) readDouble()));
+					array.setParentScope(readScriptable());
+					array.setPrototype(readScriptable());
+					readProperties(array);
+					return array;
+				}
+				case T_OBJECT: {
+					NativeObject object = set(reserve(), new NativeObject());
+					object.setParentScope(readScriptable());
+					object.setPrototype(readScriptable());
+					readProperties(object);
+					return object;
+				}
+				default:
+					throw new IOException("Invalid tag " + tag);
+			}
+		}
+
+		private void readProperties(ScriptableObject object) throws IOException {
+			int count = readInt();
+
+			for (int i = 0; i < count; i++) {
+				if (readBoolean()) {
+					int index = readInt();
+					int attributes = readInt();
+					object.put(index, object, readValue());
+
+					if (attributes != ScriptableObject.EMPTY) {
+						object.setAttributes(index, attributes);
+					}
+				} else {
+					String name = readString();
+					int attributes = readInt();
+					Object value = readValue();
+
+					if (object instanceof BaseFunction) {
+						object.put(name, object, value);
+					} else {
+						object.defineProperty(name, value, attributes);
+					}
+				}
+			}
+		}
+	}
+}
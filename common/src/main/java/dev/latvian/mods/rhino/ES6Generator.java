@@ -240,6 +240,16 @@ public final class ES6Generator extends IdScriptableObject {
 		}
 	}
 
+	/**
+	 * Resumes the body of an async function, see {@link NativePromise}.
+	 */
+	Scriptable resume(Context cx, Scriptable scope, int operation, Object value) {
+		if (operation == GeneratorState.GENERATOR_SEND) {
+			return resumeLocal(cx, scope, value);
+		}
+		return resumeAbruptLocal(cx, scope, operation, value);
+	}
+
 	private Scriptable resumeLocal(Context cx, Scriptable scope, Object value) {
 		if (state == State.COMPLETED) {
 			return ES6Iterator.makeIteratorResult(cx, scope, Boolean.TRUE);
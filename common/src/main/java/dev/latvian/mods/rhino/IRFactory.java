@@ -140,7 +140,7 @@ public final class IRFactory extends Parser {
 		int functionCount = fnNode.getFunctionCount();
 		if (functionCount != 0) {
 			// Functions containing other functions require activation objects
-			fnNode.setRequiresActivation();
+			fnNode.setRequiresActivationForClosures();
 		}
 
 		if (functionType == FunctionNode.FUNCTION_EXPRESSION) {
@@ -6,12 +6,33 @@
 
 package dev.latvian.mods.rhino;
 
+import dev.latvian.mods.rhino.classfile.ByteCode;
+import dev.latvian.mods.rhino.classfile.ClassFileWriter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Adapter to use JS function as implementation of Java interfaces with
  * single method or multiple methods with the same signature.
+ * <p>
+ * Public interfaces get a generated glue class extending {@link Glue} whose
+ * methods call straight into the script without going through reflection;
+ * everything else falls back to a {@link java.lang.reflect.Proxy}.
+ * <p>
+ * Default methods are only routed to the script when the object has a
+ * function of the same name, otherwise the interface's own implementation
+ * runs.
  */
 public class InterfaceAdapter {
 	/**
@@ -58,9 +79,19 @@ public class InterfaceAdapter {
 					}
 				}
 			}
-			adapter = new InterfaceAdapter(cf, cl);
+			adapter = new InterfaceAdapter(cx, cache, cl);
 			cache.cacheInterfaceAdapter(cl, adapter);
 		}
+		if (adapter.glueConstructor != null) {
+			try {
+				return adapter.glueConstructor.newInstance(adapter, cf, object, topScope);
+			} catch (InvocationTargetException ex) {
+				throw Context.throwAsScriptRuntimeEx(ex);
+			} catch (ReflectiveOperationException ex) {
+				// Should not happen
+				throw new IllegalStateException(ex);
+			}
+		}
 		return VMBridge.newInterfaceProxy(adapter.proxyHelper, cf, adapter, object, topScope);
 	}
 
@@ -79,35 +110,357 @@ public class InterfaceAdapter {
 			return Modifier.isAbstract(method.getModifiers());
 		}
 	}
+
+	/**
+	 * Checks if a call to a default method should go to the script instead of
+	 * the interface's implementation. Functions only implement the abstract
+	 * methods, objects override a default method by having a function of the
+	 * same name.
+	 */
+	static boolean overridesDefault(Object target, String methodName) {
+		return !(target instanceof Callable) && ScriptableObject.getProperty((Scriptable) target, methodName) instanceof Callable;
+	}
+
+	/**
+	 * Collects the methods a glue class has to implement: every abstract
+	 * and default method except the ones {@link Glue} already provides,
+	 * once per name and descriptor.
+	 */
+	private static Method[] getGlueMethods(Class<?> cl) {
+		List<Method> list = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		for (Method method : cl.getMethods()) {
+			if ((Modifier.isAbstract(method.getModifiers()) || method.isDefault()) && !isObjectMethod(method)) {
+				StringBuilder sb = new StringBuilder(method.getName());
+				JavaAdapter.appendMethodSignature(method.getParameterTypes(), method.getReturnType(), sb);
+				if (seen.add(sb.toString())) {
+					list.add(method);
+				}
+			}
+		}
+		return list.toArray(new Method[0]);
+	}
+
+	private static boolean isObjectMethod(Method method) {
+		try {
+			Object.class.getMethod(method.getName(), method.getParameterTypes());
+			return true;
+		} catch (NoSuchMethodException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Defines the glue class for <code>cl</code>, or returns null when the
+	 * interface can't be implemented from a generated class, in which case
+	 * a reflection proxy is used instead.
+	 */
+	private static Constructor<?> createGlueClass(Context cx, SharedContextData cache, Class<?> cl, Method[] methods) {
+		if (!Modifier.isPublic(cl.getModifiers())) {
+			return null;
+		}
+
+		ClassLoader parent = cl.getClassLoader();
+		if (parent == null || !Kit.testIfCanLoadRhinoClasses(parent)) {
+			parent = cx.getApplicationClassLoader();
+			if (Kit.classOrNull(parent, cl.getName()) != cl) {
+				return null;
+			}
+		}
+
+		String glueName = "iadapter" + cache.newClassSerialNumber();
+		byte[] code = createGlueCode(glueName, cl, methods);
+
+		try {
+			GeneratedClassLoader loader = cx.createClassLoader(parent);
+			Class<?> glueClass = loader.defineClass(glueName, code);
+			loader.linkClass(glueClass);
+			return glueClass.getConstructor(InterfaceAdapter.class, ContextFactory.class, Object.class, Scriptable.class);
+		} catch (LinkageError | ReflectiveOperationException | SecurityException ex) {
+			return null;
+		}
+	}
+
+	private static byte[] createGlueCode(String glueName, Class<?> cl, Method[] methods) {
+		String superName = Glue.class.getName();
+		String ctorSignature = "(Ldev/latvian/mods/rhino/InterfaceAdapter;Ldev/latvian/mods/rhino/ContextFactory;Ljava/lang/Object;Ldev/latvian/mods/rhino/Scriptable;)V";
+
+		ClassFileWriter cfw = new ClassFileWriter(glueName, superName, "<adapter>");
+		cfw.addInterface(cl.getName());
+
+		cfw.startMethod("<init>", ctorSignature, ClassFileWriter.ACC_PUBLIC);
+		cfw.add(ByteCode.ALOAD_0);
+		cfw.add(ByteCode.ALOAD_1);
+		cfw.add(ByteCode.ALOAD_2);
+		cfw.add(ByteCode.ALOAD_3);
+		cfw.addALoad(4);
+		cfw.addInvoke(ByteCode.INVOKESPECIAL, superName, "<init>", ctorSignature);
+		cfw.add(ByteCode.RETURN);
+		cfw.stopMethod((short) 5);
+
+		for (int i = 0; i < methods.length; i++) {
+			generateGlueMethod(cfw, superName, cl, i, methods[i]);
+		}
+
+		return cfw.toByteArray();
+	}
+
+	/**
+	 * Generates a method that boxes its arguments into an Object[] and
+	 * passes it to the matching <code>call</code> helper of {@link Glue}.
+	 * boolean, int, long and double results have their own helpers so
+	 * the common cases don't box the return value. Default methods first
+	 * check if the script overrides them and call the interface's
+	 * implementation if it doesn't.
+	 */
+	private static void generateGlueMethod(ClassFileWriter cfw, String superName, Class<?> cl, int index, Method method) {
+		Class<?>[] parms = method.getParameterTypes();
+		Class<?> returnType = method.getReturnType();
+		StringBuilder sb = new StringBuilder();
+		int paramsEnd = JavaAdapter.appendMethodSignature(parms, returnType, sb);
+		String signature = sb.toString();
+		cfw.startMethod(method.getName(), signature, ClassFileWriter.ACC_PUBLIC);
+
+		int defaultLabel = -1;
+		if (method.isDefault()) {
+			defaultLabel = cfw.acquireLabel();
+			cfw.add(ByteCode.ALOAD_0);
+			cfw.addPush(index);
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, superName, "overridesDefault", "(I)Z");
+			cfw.add(ByteCode.IFEQ, defaultLabel);
+		}
+
+		cfw.add(ByteCode.ALOAD_0);
+		cfw.addPush(index);
+
+		if (parms.length == 0) {
+			cfw.add(ByteCode.GETSTATIC, "dev/latvian/mods/rhino/ScriptRuntime", "EMPTY_OBJECTS", "[Ljava/lang/Object;");
+		} else {
+			cfw.addPush(parms.length);
+			cfw.add(ByteCode.ANEWARRAY, "java/lang/Object");
+			int paramOffset = 1;
+			for (int i = 0; i < parms.length; i++) {
+				cfw.add(ByteCode.DUP);
+				cfw.addPush(i);
+				paramOffset += generateBoxedParam(cfw, paramOffset, parms[i]);
+				cfw.add(ByteCode.AASTORE);
+			}
+		}
+
+		if (returnType == Void.TYPE) {
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, superName, "call", "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+			cfw.add(ByteCode.POP);
+			cfw.add(ByteCode.RETURN);
+		} else if (returnType == Boolean.TYPE) {
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, superName, "callBoolean", "(I[Ljava/lang/Object;)Z");
+			cfw.add(ByteCode.IRETURN);
+		} else if (returnType == Integer.TYPE) {
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, superName, "callInt", "(I[Ljava/lang/Object;)I");
+			cfw.add(ByteCode.IRETURN);
+		} else if (returnType == Long.TYPE) {
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, superName, "callLong", "(I[Ljava/lang/Object;)J");
+			cfw.add(ByteCode.LRETURN);
+		} else if (returnType == Double.TYPE) {
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, superName, "callDouble", "(I[Ljava/lang/Object;)D");
+			cfw.add(ByteCode.DRETURN);
+		} else if (returnType.isPrimitive()) {
+			// byte, short, char and float come back boxed from jsToJava
+			String boxedName = getBoxedName(returnType);
+			String typeName = returnType.getName();
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, superName, "call", "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+			cfw.add(ByteCode.CHECKCAST, boxedName);
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, boxedName, typeName + "Value", "()" + sb.charAt(sb.length() - 1));
+			cfw.add(returnType == Float.TYPE ? ByteCode.FRETURN : ByteCode.IRETURN);
+		} else {
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, superName, "call", "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+			cfw.add(ByteCode.CHECKCAST, returnType.getName());
+			cfw.add(ByteCode.ARETURN);
+		}
+
+		if (defaultLabel != -1) {
+			cfw.markLabel(defaultLabel);
+			cfw.add(ByteCode.ALOAD_0);
+			int paramOffset = 1;
+			for (Class<?> parm : parms) {
+				paramOffset += generateLoadParam(cfw, paramOffset, parm);
+			}
+			cfw.addInvoke(ByteCode.INVOKESPECIAL, cl.getName(), method.getName(), signature, true);
+			cfw.add(getReturnOpcode(returnType));
+		}
+
+		cfw.stopMethod((short) paramsEnd);
+	}
+
+	private static int generateLoadParam(ClassFileWriter cfw, int paramOffset, Class<?> paramType) {
+		if (!paramType.isPrimitive()) {
+			cfw.addALoad(paramOffset);
+			return 1;
+		}
+		switch (paramType.getName().charAt(0)) {
+			case 'l' -> {
+				cfw.addLLoad(paramOffset);
+				return 2;
+			}
+			case 'f' -> {
+				cfw.addFLoad(paramOffset);
+				return 1;
+			}
+			case 'd' -> {
+				cfw.addDLoad(paramOffset);
+				return 2;
+			}
+			default -> {
+				cfw.addILoad(paramOffset);
+				return 1;
+			}
+		}
+	}
+
+	private static int getReturnOpcode(Class<?> returnType) {
+		if (returnType == Void.TYPE) {
+			return ByteCode.RETURN;
+		} else if (!returnType.isPrimitive()) {
+			return ByteCode.ARETURN;
+		}
+		return switch (returnType.getName().charAt(0)) {
+			case 'l' -> ByteCode.LRETURN;
+			case 'f' -> ByteCode.FRETURN;
+			case 'd' -> ByteCode.DRETURN;
+			default -> ByteCode.IRETURN;
+		};
+	}
+
+	/**
+	 * Generates code to box a parameter the same way reflection does for
+	 * proxies, leaving the boxed value on the top of the stack.
+	 */
+	private static int generateBoxedParam(ClassFileWriter cfw, int paramOffset, Class<?> paramType) {
+		if (!paramType.isPrimitive()) {
+			cfw.addALoad(paramOffset);
+			return 1;
+		}
+		String boxedName = getBoxedName(paramType);
+		int size = 1;
+		String descriptor;
+		switch (paramType.getName().charAt(0)) {
+			case 'z' -> {
+				cfw.addILoad(paramOffset);
+				descriptor = "Z";
+			}
+			case 'b' -> {
+				cfw.addILoad(paramOffset);
+				descriptor = "B";
+			}
+			case 'c' -> {
+				cfw.addILoad(paramOffset);
+				descriptor = "C";
+			}
+			case 's' -> {
+				cfw.addILoad(paramOffset);
+				descriptor = "S";
+			}
+			case 'i' -> {
+				cfw.addILoad(paramOffset);
+				descriptor = "I";
+			}
+			case 'l' -> {
+				cfw.addLLoad(paramOffset);
+				descriptor = "J";
+				size = 2;
+			}
+			case 'f' -> {
+				cfw.addFLoad(paramOffset);
+				descriptor = "F";
+			}
+			case 'd' -> {
+				cfw.addDLoad(paramOffset);
+				descriptor = "D";
+				size = 2;
+			}
+			default -> throw Kit.codeBug();
+		}
+		cfw.addInvoke(ByteCode.INVOKESTATIC, boxedName, "valueOf", "(" + descriptor + ")L" + boxedName + ";");
+		return size;
+	}
+
+	private static String getBoxedName(Class<?> type) {
+		return switch (type.getName().charAt(0)) {
+			case 'z' -> "java/lang/Boolean";
+			case 'b' -> "java/lang/Byte";
+			case 'c' -> "java/lang/Character";
+			case 's' -> "java/lang/Short";
+			case 'i' -> "java/lang/Integer";
+			case 'l' -> "java/lang/Long";
+			case 'f' -> "java/lang/Float";
+			case 'd' -> "java/lang/Double";
+			default -> throw Kit.codeBug();
+		};
+	}
+
 	private final Object proxyHelper;
+	private final Method[] glueMethods;
+	private final Constructor<?> glueConstructor;
+	private final Map<Method, MethodHandle> defaultMethods = new ConcurrentHashMap<>();
 
-	private InterfaceAdapter(ContextFactory cf, Class<?> cl) {
-		this.proxyHelper = VMBridge.getInterfaceProxyHelper(cf, new Class[]{cl});
+	private InterfaceAdapter(Context cx, SharedContextData cache, Class<?> cl) {
+		Method[] methods = getGlueMethods(cl);
+		Constructor<?> ctor = createGlueClass(cx, cache, cl, methods);
+		if (ctor != null) {
+			this.proxyHelper = null;
+			this.glueMethods = methods;
+			this.glueConstructor = ctor;
+		} else {
+			this.proxyHelper = VMBridge.getInterfaceProxyHelper(cx.getFactory(), new Class[]{cl});
+			this.glueMethods = null;
+			this.glueConstructor = null;
+		}
 	}
 
 	public Object invoke(ContextFactory cf, final Object target, final Scriptable topScope, final Object thisObject, final Method method, final Object[] args) {
-		return cf.call(cx -> invokeImpl(cx, target, topScope, thisObject, method, args));
+		return cf.call(cx -> invokeImpl(cx, target, topScope, thisObject, method.getName(), method.getReturnType(), args));
+	}
+
+	/**
+	 * Calls the interface's implementation of a default method on a proxy.
+	 * The handle is looked up with private access to the interface, so this
+	 * works for non-public interfaces that {@link java.lang.reflect.InvocationHandler#invokeDefault}
+	 * can't reach from here.
+	 */
+	Object invokeDefault(Object proxy, Method method, Object[] args) throws Throwable {
+		MethodHandle handle = defaultMethods.get(method);
+		if (handle == null) {
+			Class<?> cl = method.getDeclaringClass();
+			handle = MethodHandles.privateLookupIn(cl, MethodHandles.lookup()).unreflectSpecial(method, cl);
+			defaultMethods.put(method, handle);
+		}
+		return handle.bindTo(proxy).invokeWithArguments(args == null ? ScriptRuntime.EMPTY_OBJECTS : args);
 	}
 
-	Object invokeImpl(Context cx, Object target, Scriptable topScope, Object thisObject, Method method, Object[] args) {
-		SharedContextData data = SharedContextData.get(cx, topScope);
+	Object invokeImpl(Context cx, Object target, Scriptable topScope, Object thisObject, String methodName, Class<?> resultType, Object[] args) {
+		Object result = callTarget(cx, target, topScope, thisObject, methodName, resultType, args);
+		if (resultType == Void.TYPE) {
+			return null;
+		}
+		return Context.jsToJava(SharedContextData.get(cx, topScope), result, resultType);
+	}
+
+	/**
+	 * Calls the script side of the adapter and returns its result as is,
+	 * without converting it to the Java return type.
+	 */
+	private Object callTarget(Context cx, Object target, Scriptable topScope, Object thisObject, String methodName, Class<?> resultType, Object[] args) {
 		Callable function;
 		if (target instanceof Callable) {
 			function = (Callable) target;
 		} else {
 			Scriptable s = (Scriptable) target;
-			String methodName = method.getName();
 			Object value = ScriptableObject.getProperty(s, methodName);
 			if (value == Scriptable.NOT_FOUND) {
 				// We really should throw an error here, but for the sake of
 				// compatibility with JavaAdapter we silently ignore undefined
 				// methods.
 				Context.reportWarning(ScriptRuntime.getMessage1("msg.undefined.function.interface", methodName));
-				Class<?> resultType = method.getReturnType();
-				if (resultType == Void.TYPE) {
-					return null;
-				}
-				return Context.jsToJava(data, null, resultType);
+				return null;
 			}
 			if (!(value instanceof Callable)) {
 				throw Context.reportRuntimeError1("msg.not.function.interface", methodName);
@@ -129,13 +482,129 @@ public class InterfaceAdapter {
 		}
 		Scriptable thisObj = wf.wrapAsJavaObject(contextData, topScope, thisObject, null);
 
-		Object result = function.call(cx, topScope, thisObj, args);
-		Class<?> javaResultType = method.getReturnType();
-		if (javaResultType == Void.TYPE) {
-			result = null;
-		} else {
-			result = Context.jsToJava(data, result, javaResultType);
+		return function.call(cx, topScope, thisObj, args);
+	}
+
+	/**
+	 * Base class of generated interface glue. Calls made while a Context
+	 * from the same factory is entered on the current thread run in that
+	 * Context directly instead of entering it again.
+	 */
+	public static abstract class Glue {
+		private final InterfaceAdapter adapter;
+		private final ContextFactory factory;
+		private final Object target;
+		private final Scriptable topScope;
+
+		public Glue(InterfaceAdapter adapter, ContextFactory factory, Object target, Scriptable topScope) {
+			this.adapter = adapter;
+			this.factory = factory;
+			this.target = target;
+			this.topScope = topScope;
+		}
+
+		private Object callRaw(Context cx, int index, Object[] args) {
+			Method method = adapter.glueMethods[index];
+			return adapter.callTarget(cx, target, topScope, this, method.getName(), method.getReturnType(), args);
+		}
+
+		public final boolean overridesDefault(int index) {
+			return InterfaceAdapter.overridesDefault(target, adapter.glueMethods[index].getName());
+		}
+
+		private Context currentContext() {
+			Context cx = Context.getCurrentContext();
+			return cx != null && cx.getFactory() == factory ? cx : null;
+		}
+
+		public final Object call(int index, Object[] args) {
+			Context cx = currentContext();
+			if (cx == null) {
+				return factory.call(c -> call(c, index, args));
+			}
+			return call(cx, index, args);
+		}
+
+		private Object call(Context cx, int index, Object[] args) {
+			Method method = adapter.glueMethods[index];
+			return adapter.invokeImpl(cx, target, topScope, this, method.getName(), method.getReturnType(), args);
+		}
+
+		public final boolean callBoolean(int index, Object[] args) {
+			Context cx = currentContext();
+			if (cx == null) {
+				return (Boolean) call(index, args);
+			}
+			Object result = callRaw(cx, index, args);
+			SharedContextData data = SharedContextData.get(cx, topScope);
+			if (result instanceof Boolean b && !data.hasTypeWrappers()) {
+				return b;
+			}
+			return (Boolean) Context.jsToJava(data, result, Boolean.TYPE);
+		}
+
+		public final int callInt(int index, Object[] args) {
+			Context cx = currentContext();
+			if (cx == null) {
+				return (Integer) call(index, args);
+			}
+			Object result = callRaw(cx, index, args);
+			SharedContextData data = SharedContextData.get(cx, topScope);
+			if (!data.hasTypeWrappers()) {
+				if (result instanceof Integer i) {
+					return i;
+				} else if (result instanceof Double d && d == d.intValue()) {
+					return d.intValue();
+				}
+			}
+			return (Integer) Context.jsToJava(data, result, Integer.TYPE);
+		}
+
+		public final long callLong(int index, Object[] args) {
+			Context cx = currentContext();
+			if (cx == null) {
+				return (Long) call(index, args);
+			}
+			Object result = callRaw(cx, index, args);
+			SharedContextData data = SharedContextData.get(cx, topScope);
+			if (!data.hasTypeWrappers()) {
+				if (result instanceof Integer i) {
+					return i;
+				} else if (result instanceof Long l) {
+					return l;
+				}
+			}
+			return (Long) Context.jsToJava(data, result, Long.TYPE);
+		}
+
+		public final double callDouble(int index, Object[] args) {
+			Context cx = currentContext();
+			if (cx == null) {
+				return (Double) call(index, args);
+			}
+			Object result = callRaw(cx, index, args);
+			SharedContextData data = SharedContextData.get(cx, topScope);
+			if (result instanceof Double d && !data.hasTypeWrappers()) {
+				return d;
+			}
+			return (Double) Context.jsToJava(data, result, Double.TYPE);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			// Glue objects are cached in the wrapped ScriptableObject
+			// (see NativeJavaObject.createInterfaceAdapter()), so identity suffices
+			return this == obj;
+		}
+
+		@Override
+		public int hashCode() {
+			return target.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return "Proxy[" + target.toString() + "]";
 		}
-		return result;
 	}
 }
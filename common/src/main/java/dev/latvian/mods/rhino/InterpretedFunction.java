@@ -22,7 +22,7 @@ final class InterpretedFunction extends NativeFunction implements Script {
 	static InterpretedFunction createFunction(Context cx, Scriptable scope, InterpreterData idata, Object staticSecurityDomain) {
 		InterpretedFunction f;
 		f = new InterpretedFunction(idata, staticSecurityDomain);
-		f.initScriptFunction(cx, scope, f.idata.isES6Generator);
+		f.initScriptFunction(cx, scope, f.idata.isES6Generator && !f.idata.isAsync);
 		return f;
 	}
 
@@ -31,7 +31,7 @@ final class InterpretedFunction extends NativeFunction implements Script {
 	 */
 	static InterpretedFunction createFunction(Context cx, Scriptable scope, InterpretedFunction parent, int index) {
 		InterpretedFunction f = new InterpretedFunction(parent, index);
-		f.initScriptFunction(cx, scope, f.idata.isES6Generator);
+		f.initScriptFunction(cx, scope, f.idata.isES6Generator && !f.idata.isAsync);
 		return f;
 	}
 
@@ -67,6 +67,8 @@ final class InterpretedFunction extends NativeFunction implements Script {
 	@Override
 	public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
 		if (!ScriptRuntime.hasTopCall(cx)) {
+			// Strict mode may be declared in the body
+			idata.ensureCompiled();
 			return ScriptRuntime.doTopCall(this, cx, scope, thisObj, args, idata.isStrict);
 		}
 		return Interpreter.interpret(this, cx, scope, thisObj, args);
@@ -9,6 +9,7 @@ package dev.latvian.mods.rhino;
 import dev.latvian.mods.rhino.ast.FunctionNode;
 import dev.latvian.mods.rhino.ast.ScriptNode;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -80,6 +81,8 @@ public final class Interpreter extends Icode implements Evaluator {
 		/*final*/ int frameIndex;
 		// If true indicates read-only frame that is a part of continuation
 		boolean frozen;
+		// If true stack arrays are owned by this frame and can be returned to FramePool on exit
+		boolean poolable;
 		/*final*/ Object[] stack;
 		/*final*/ int[] stackAttributes;
 		/*final*/ double[] sDbl;
@@ -96,8 +99,15 @@ public final class Interpreter extends Icode implements Evaluator {
 		int savedCallOp;
 		Object throwable;
 
+		// Used only when Context has a ScriptProfiler
+		ScriptProfiler.Node profileNode;
+		CallFrame profileCaller;
+		long profileStart;
+		long profileChildNanos;
+
 		CallFrame(Context cx, Scriptable thisObj, InterpretedFunction fnOrScript, CallFrame parentFrame) {
 			idata = fnOrScript.idata;
+			idata.ensureCompiled();
 
 			useActivation = idata.itsNeedsActivation;
 
@@ -121,6 +131,25 @@ public final class Interpreter extends Icode implements Evaluator {
 			savedStackTop = emptyStackTop;
 		}
 
+		/**
+		 * Creates a frozen frame to be filled by {@link #readFrame(ContinuationSerializer.Input)}.
+		 */
+		CallFrame(InterpretedFunction fnOrScript, Scriptable thisObj, CallFrame parentFrame, CallFrame varSource) {
+			idata = fnOrScript.idata;
+			idata.ensureCompiled();
+			useActivation = idata.itsNeedsActivation;
+			emptyStackTop = idata.itsMaxVars + idata.itsMaxLocals - 1;
+			this.fnOrScript = fnOrScript;
+			this.varSource = varSource == null ? this : varSource;
+			localShift = idata.itsMaxVars;
+			this.thisObj = thisObj;
+			this.parentFrame = parentFrame;
+			frozen = true;
+			stack = new Object[idata.itsMaxFrameArray];
+			stackAttributes = new int[idata.itsMaxFrameArray];
+			sDbl = new double[idata.itsMaxFrameArray];
+		}
+
 		void initializeArgs(Context cx, Scriptable callerScope, Object[] args, double[] argsDbl, int argShift, int argCount) {
 			if (useActivation) {
 				// Copy args to new array to pass to enterActivationFunction
@@ -167,9 +196,13 @@ public final class Interpreter extends Icode implements Evaluator {
 
 			// Initialize args, vars, locals and stack
 
-			stack = new Object[maxFrameArray];
-			stackAttributes = new int[maxFrameArray];
-			sDbl = new double[maxFrameArray];
+			FramePool pool = cx.interpreterFramePool;
+			if (pool == null || !pool.acquire(this, maxFrameArray)) {
+				stack = new Object[maxFrameArray];
+				stackAttributes = new int[maxFrameArray];
+				sDbl = new double[maxFrameArray];
+			}
+			poolable = true;
 
 			int varCount = idata.getParamAndVarCount();
 			for (int i = 0; i < varCount; i++) {
@@ -213,6 +246,7 @@ public final class Interpreter extends Icode implements Evaluator {
 			copy.sDbl = sDbl.clone();
 
 			copy.frozen = false;
+			copy.poolable = false;
 			return copy;
 		}
 
@@ -277,6 +311,73 @@ public final class Interpreter extends Icode implements Evaluator {
 		}
 	}
 
+	/**
+	 * Per-Context LIFO cache of frame arrays. Interpreted calls nest, so arrays released by a returning frame
+	 * are usually exactly what the next call at the same depth needs. Only frames that did not escape
+	 * into a generator or continuation release their arrays, and arrays are cleared on release so a pooled
+	 * frame is indistinguishable from a freshly allocated one.
+	 */
+	static final class FramePool {
+		private static final int MAX_SIZE = 32;
+		private static final int MAX_ARRAY_LENGTH = 512;
+
+		private final Object[][] stacks = new Object[MAX_SIZE][];
+		private final int[][] stackAttributes = new int[MAX_SIZE][];
+		private final double[][] sDbls = new double[MAX_SIZE][];
+		private int size;
+
+		private boolean acquire(CallFrame frame, int length) {
+			for (int i = size - 1; i >= 0; i--) {
+				if (stacks[i].length == length) {
+					int last = --size;
+					frame.stack = stacks[i];
+					frame.stackAttributes = stackAttributes[i];
+					frame.sDbl = sDbls[i];
+					stacks[i] = stacks[last];
+					stackAttributes[i] = stackAttributes[last];
+					sDbls[i] = sDbls[last];
+					stacks[last] = null;
+					stackAttributes[last] = null;
+					sDbls[last] = null;
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		private void release(CallFrame frame) {
+			Object[] stack = frame.stack;
+			int[] stackAttributes = frame.stackAttributes;
+			double[] sDbl = frame.sDbl;
+			frame.poolable = false;
+			frame.stack = null;
+			frame.stackAttributes = null;
+			frame.sDbl = null;
+
+			if (stack.length > MAX_ARRAY_LENGTH) {
+				return;
+			}
+
+			Arrays.fill(stack, null);
+			Arrays.fill(stackAttributes, 0);
+			Arrays.fill(sDbl, 0D);
+
+			if (size == MAX_SIZE) {
+				// Drop the oldest entry, it is the least likely to be reused
+				System.arraycopy(stacks, 1, stacks, 0, MAX_SIZE - 1);
+				System.arraycopy(this.stackAttributes, 1, this.stackAttributes, 0, MAX_SIZE - 1);
+				System.arraycopy(sDbls, 1, sDbls, 0, MAX_SIZE - 1);
+				size--;
+			}
+
+			stacks[size] = stack;
+			this.stackAttributes[size] = stackAttributes;
+			sDbls[size] = sDbl;
+			size++;
+		}
+	}
+
 	private static final class ContinuationJump {
 		CallFrame capturedFrame;
 		CallFrame branchFrame;
@@ -475,6 +576,8 @@ public final class Interpreter extends Icode implements Evaluator {
 		final Object undefined = Undefined.instance;
 
 		final boolean instructionCounting = (cx.instructionThreshold != 0);
+		final OpcodeProfiler opcodeProfiler = cx.opcodeProfiler;
+		final ScriptProfiler scriptProfiler = cx.scriptProfiler;
 		// arbitrary number to add to instructionCount when calling
 		// other functions
 		final int INVOCATION_COST = 100;
@@ -482,6 +585,7 @@ public final class Interpreter extends Icode implements Evaluator {
 		final int EXCEPTION_COST = 100;
 
 		String stringReg = null;
+		int stringIndexReg = 0;
 		int indexReg = -1;
 
 		if (cx.lastInterpreterFrame != null) {
@@ -507,6 +611,9 @@ public final class Interpreter extends Icode implements Evaluator {
 
 				// reestablish this call frame
 				enterFrame(cx, frame, ScriptRuntime.EMPTY_OBJECTS, true);
+				if (cx.scriptProfiler != null) {
+					profileEnter(cx, frame, false);
+				}
 				throwable = null;
 			} else if (!(throwable instanceof ContinuationJump)) {
 				// It should be continuation
@@ -561,6 +668,9 @@ public final class Interpreter extends Icode implements Evaluator {
 					// pass the instruction start when it searches the
 					// exception handler
 					int op = iCode[frame.pc++];
+					if (opcodeProfiler != null) {
+						opcodeProfiler.record(op);
+					}
 					jumplessRun:
 					{
 
@@ -573,7 +683,27 @@ public final class Interpreter extends Icode implements Evaluator {
 									frame.pc--; // we want to come back here when we resume
 									CallFrame generatorFrame = captureFrameForGenerator(frame);
 									generatorFrame.frozen = true;
-									frame.result = new ES6Generator(frame.scope, generatorFrame.fnOrScript, generatorFrame);
+									ES6Generator generator = new ES6Generator(frame.scope, generatorFrame.fnOrScript, generatorFrame);
+									if (frame.idata.isAsync) {
+										// Run the body up to its first await. The body shares this frame's
+										// activation, so it has to leave the activation chain until the body
+										// yields, or the body would enter it a second time
+										frame.savedStackTop = stackTop;
+										NativeCall activation = frame.idata.itsNeedsActivation ? cx.currentActivationCall : null;
+										if (activation != null) {
+											ScriptRuntime.exitActivationFunction(cx);
+										}
+										try {
+											frame.result = NativePromise.async(cx, frame.scope, generator);
+										} finally {
+											if (activation != null) {
+												activation.parentActivationCall = cx.currentActivationCall;
+												cx.currentActivationCall = activation;
+											}
+										}
+									} else {
+										frame.result = generator;
+									}
 									break Loop;
 								}
 								// We are now resuming execution. Fall through to YIELD case.
@@ -928,13 +1058,23 @@ public final class Interpreter extends Icode implements Evaluator {
 								indexReg += frame.localShift;
 								stack[indexReg] = null;
 								continue;
-							case Icode_NAME_AND_THIS:
+							case Icode_NAME_AND_THIS: {
 								// stringReg: name
+								Object fn = getGlobalName(frame, stringIndexReg);
 								++stackTop;
+								if (fn instanceof Callable) {
+									// For top scope thisObj for functions is always scope itself
+									stack[stackTop] = fn;
+									++stackTop;
+									stack[stackTop] = frame.scope;
+									continue;
+								}
 								stack[stackTop] = ScriptRuntime.getNameFunctionAndThis(stringReg, cx, frame.scope);
 								++stackTop;
 								stack[stackTop] = ScriptRuntime.lastStoredScriptable(cx);
+								cacheGlobalName(frame, stringReg, stringIndexReg);
 								continue;
+							}
 							case Icode_PROP_AND_THIS: {
 								Object obj = stack[stackTop];
 								if (obj == DBL_MRK) {
@@ -1154,7 +1294,7 @@ public final class Interpreter extends Icode implements Evaluator {
 								sDbl[stackTop] = frame.idata.itsDoubleTable[indexReg];
 								continue;
 							case Token.NAME:
-								stack[++stackTop] = ScriptRuntime.name(cx, frame.scope, stringReg);
+								stack[++stackTop] = doName(cx, frame, stringReg, stringIndexReg);
 								continue;
 							case Icode_NAME_INC_DEC:
 								stack[++stackTop] = ScriptRuntime.nameIncrDecr(frame.scope, stringReg, cx, iCode[frame.pc]);
@@ -1182,6 +1322,42 @@ public final class Interpreter extends Icode implements Evaluator {
 								stackTop = doVarIncDec(cx, frame, stack, sDbl, stackTop, vars, varDbls, varAttributes, indexReg);
 								continue;
 							}
+							case Icode_VAR_INC_DEC1_VOID: {
+								indexReg = iCode[frame.pc];
+								if (vars[indexReg] == DBL_MRK && (varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
+									varDbls[indexReg] += (iCode[frame.pc + 1] & Node.DECR_FLAG) == 0 ? 1.0 : -1.0;
+									frame.pc += 2;
+									continue;
+								}
+								++frame.pc;
+								stackTop = doVarIncDec(cx, frame, stack, sDbl, stackTop, vars, varDbls, varAttributes, indexReg);
+								stack[stackTop] = null;
+								stackTop--;
+								continue;
+							}
+							case Icode_VAR_ADD_SHORT1: {
+								stackTop = doVarAddShort(cx, frame, iCode, stack, sDbl, stackTop, vars, varDbls, varAttributes);
+								continue;
+							}
+							case Icode_GETVAR1_GETPROP: {
+								indexReg = iCode[frame.pc++];
+								stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, indexReg);
+								Object lhs = stack[stackTop];
+								if (lhs == DBL_MRK) {
+									lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+								}
+								stack[stackTop] = ScriptRuntime.getObjectProp(lhs, stringReg, cx, frame.scope);
+								continue;
+							}
+							case Icode_VARS_CMP_IFEQ:
+							case Icode_VARS_CMP_IFNE: {
+								// pc points to jump offset, operands follow it
+								if (doVarsCompare(iCode[frame.pc + 2], vars, varDbls, iCode[frame.pc + 3], iCode[frame.pc + 4]) == (op == Icode_VARS_CMP_IFEQ)) {
+									break jumplessRun;
+								}
+								frame.pc += 5;
+								continue;
+							}
 							case Icode_ZERO:
 								++stackTop;
 								stack[stackTop] = DBL_MRK;
@@ -1380,6 +1556,9 @@ public final class Interpreter extends Icode implements Evaluator {
 							}
 							case Icode_LINE:
 								frame.pcSourceLineStart = frame.pc;
+								if (scriptProfiler != null && frame.profileNode != null) {
+									frame.profileNode.function.lineHit(getIndex(iCode, frame.pc));
+								}
 								frame.pc += 2;
 								continue;
 							case Icode_REG_IND_C0:
@@ -1414,26 +1593,33 @@ public final class Interpreter extends Icode implements Evaluator {
 								continue;
 							case Icode_REG_STR_C0:
 								stringReg = strings[0];
+								stringIndexReg = 0;
 								continue;
 							case Icode_REG_STR_C1:
 								stringReg = strings[1];
+								stringIndexReg = 1;
 								continue;
 							case Icode_REG_STR_C2:
 								stringReg = strings[2];
+								stringIndexReg = 2;
 								continue;
 							case Icode_REG_STR_C3:
 								stringReg = strings[3];
+								stringIndexReg = 3;
 								continue;
 							case Icode_REG_STR1:
-								stringReg = strings[0xFF & iCode[frame.pc]];
+								stringIndexReg = 0xFF & iCode[frame.pc];
+								stringReg = strings[stringIndexReg];
 								++frame.pc;
 								continue;
 							case Icode_REG_STR2:
-								stringReg = strings[getIndex(iCode, frame.pc)];
+								stringIndexReg = getIndex(iCode, frame.pc);
+								stringReg = strings[stringIndexReg];
 								frame.pc += 2;
 								continue;
 							case Icode_REG_STR4:
-								stringReg = strings[getInt(iCode, frame.pc)];
+								stringIndexReg = getInt(iCode, frame.pc);
+								stringReg = strings[stringIndexReg];
 								frame.pc += 4;
 								continue;
 							default:
@@ -1456,12 +1642,22 @@ public final class Interpreter extends Icode implements Evaluator {
 					}
 					if (instructionCounting) {
 						frame.pcPrevBranch = frame.pc;
+
+						if (cx.scheduledTask != null && cx.scheduledTask.yieldRequested && canPreempt(cx, frame)) {
+							// Taken jumps are the only points where a slice can end, the next
+							// instruction starts from a clean state that a continuation can restore
+							frame.savedStackTop = stackTop;
+							frame.savedCallOp = Token.YIELD;
+							throwable = cx.scheduledTask.preempt(captureContinuation(cx, frame, true));
+							break withoutExceptions;
+						}
 					}
 					continue;
 
 				} // end of Loop: for
 
 				exitFrame(cx, frame, null);
+				releaseFrame(cx, frame);
 				interpreterResult = frame.result;
 				interpreterResultDbl = frame.resultDbl;
 				if (frame.parentFrame != null) {
@@ -1553,6 +1749,7 @@ public final class Interpreter extends Icode implements Evaluator {
 				// to parent and try to look there
 
 				exitFrame(cx, frame, throwable);
+				releaseFrame(cx, frame);
 
 				frame = frame.parentFrame;
 				if (frame == null) {
@@ -1798,57 +1995,96 @@ public final class Interpreter extends Icode implements Evaluator {
 		return stackTop;
 	}
 
-	private static int doSetConstVar(CallFrame frame, Object[] stack, double[] sDbl, int stackTop, Object[] vars, double[] varDbls, int[] varAttributes, int indexReg) {
-		if (!frame.useActivation) {
-			if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
-				throw Context.reportRuntimeError1("msg.var.redecl", frame.idata.argNames[indexReg]);
-			}
-			if ((varAttributes[indexReg] & ScriptableObject.UNINITIALIZED_CONST) != 0) {
-				vars[indexReg] = stack[stackTop];
-				varAttributes[indexReg] &= ~ScriptableObject.UNINITIALIZED_CONST;
-				varDbls[indexReg] = sDbl[stackTop];
+	// Variable opcodes are only generated for variables that live in the frame, even when
+	// the function has an activation object, see NodeTransformer.closureNames
+
+	/**
+	 * Looks up a name through the global slot cache of the function, falling back to {@link ScriptRuntime#name}.
+	 */
+	private static Object doName(Context cx, CallFrame frame, String name, int nameIndex) {
+		Object value = getGlobalName(frame, nameIndex);
+		if (value != Scriptable.NOT_FOUND) {
+			return value;
+		}
+		value = ScriptRuntime.name(cx, frame.scope, name);
+		cacheGlobalName(frame, name, nameIndex);
+		return value;
+	}
+
+	/**
+	 * @return value of a name that was previously found as own property of the top-level scope the
+	 * frame is running in, or NOT_FOUND if there is no valid cache entry
+	 */
+	private static Object getGlobalName(CallFrame frame, int nameIndex) {
+		InterpreterData.GlobalSlot[] slots = frame.idata.itsGlobalSlots;
+		if (slots != null) {
+			InterpreterData.GlobalSlot g = slots[nameIndex];
+			if (g != null && g.scope() == frame.scope && g.version() == g.scope().getSlotVersion()) {
+				return g.slot().getValue(g.scope());
 			}
-		} else {
-			Object val = stack[stackTop];
-			if (val == UniqueTag.DOUBLE_MARK) {
-				val = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+		}
+		return Scriptable.NOT_FOUND;
+	}
+
+	private static void cacheGlobalName(CallFrame frame, String name, int nameIndex) {
+		// Only lookups that start from top-level scope can't be shadowed by other scopes
+		if (frame.scope.getParentScope() == null && frame.scope instanceof ScriptableObject scope && hasSlotGet(scope.getClass())) {
+			ScriptableObject.Slot slot = scope.querySlot(name);
+			if (slot != null) {
+				InterpreterData idata = frame.idata;
+				InterpreterData.GlobalSlot[] slots = idata.itsGlobalSlots;
+				if (slots == null) {
+					idata.itsGlobalSlots = slots = new InterpreterData.GlobalSlot[idata.itsStringTable.length];
+				}
+				// Entries are immutable, a race between threads can only lose an entry
+				slots[nameIndex] = new InterpreterData.GlobalSlot(scope, slot, scope.getSlotVersion());
 			}
-			String stringReg = frame.idata.argNames[indexReg];
-			if (frame.scope instanceof ConstProperties cp) {
-				cp.putConst(stringReg, frame.scope, val);
-			} else {
-				throw Kit.codeBug();
+		}
+	}
+
+	/**
+	 * @return true if get(String, Scriptable) of the class returns own slot value when there is one
+	 */
+	private static boolean hasSlotGet(Class<?> type) {
+		return HAS_SLOT_GET.get(type);
+	}
+
+	private static final ClassValue<Boolean> HAS_SLOT_GET = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			try {
+				Class<?> declaring = type.getMethod("get", String.class, Scriptable.class).getDeclaringClass();
+				return declaring == ScriptableObject.class || declaring == IdScriptableObject.class;
+			} catch (NoSuchMethodException ex) {
+				return false;
 			}
 		}
+	};
+
+	private static int doSetConstVar(CallFrame frame, Object[] stack, double[] sDbl, int stackTop, Object[] vars, double[] varDbls, int[] varAttributes, int indexReg) {
+		if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
+			throw Context.reportRuntimeError1("msg.var.redecl", frame.idata.argNames[indexReg]);
+		}
+		if ((varAttributes[indexReg] & ScriptableObject.UNINITIALIZED_CONST) != 0) {
+			vars[indexReg] = stack[stackTop];
+			varAttributes[indexReg] &= ~ScriptableObject.UNINITIALIZED_CONST;
+			varDbls[indexReg] = sDbl[stackTop];
+		}
 		return stackTop;
 	}
 
 	private static int doSetVar(CallFrame frame, Object[] stack, double[] sDbl, int stackTop, Object[] vars, double[] varDbls, int[] varAttributes, int indexReg) {
-		if (!frame.useActivation) {
-			if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
-				vars[indexReg] = stack[stackTop];
-				varDbls[indexReg] = sDbl[stackTop];
-			}
-		} else {
-			Object val = stack[stackTop];
-			if (val == UniqueTag.DOUBLE_MARK) {
-				val = ScriptRuntime.wrapNumber(sDbl[stackTop]);
-			}
-			String stringReg = frame.idata.argNames[indexReg];
-			frame.scope.put(stringReg, frame.scope, val);
+		if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
+			vars[indexReg] = stack[stackTop];
+			varDbls[indexReg] = sDbl[stackTop];
 		}
 		return stackTop;
 	}
 
 	private static int doGetVar(CallFrame frame, Object[] stack, double[] sDbl, int stackTop, Object[] vars, double[] varDbls, int indexReg) {
 		++stackTop;
-		if (!frame.useActivation) {
-			stack[stackTop] = vars[indexReg];
-			sDbl[stackTop] = varDbls[indexReg];
-		} else {
-			String stringReg = frame.idata.argNames[indexReg];
-			stack[stackTop] = frame.scope.get(stringReg, frame.scope);
-		}
+		stack[stackTop] = vars[indexReg];
+		sDbl[stackTop] = varDbls[indexReg];
 		return stackTop;
 	}
 
@@ -1856,39 +2092,94 @@ public final class Interpreter extends Icode implements Evaluator {
 		// indexReg : varindex
 		++stackTop;
 		int incrDecrMask = frame.idata.itsICode[frame.pc];
-		if (!frame.useActivation) {
-			Object varValue = vars[indexReg];
-			double d;
-			if (varValue == UniqueTag.DOUBLE_MARK) {
-				d = varDbls[indexReg];
-			} else {
-				d = ScriptRuntime.toNumber(varValue);
+		Object varValue = vars[indexReg];
+		double d;
+		if (varValue == UniqueTag.DOUBLE_MARK) {
+			d = varDbls[indexReg];
+		} else {
+			d = ScriptRuntime.toNumber(varValue);
+		}
+		double d2 = ((incrDecrMask & Node.DECR_FLAG) == 0) ? d + 1.0 : d - 1.0;
+		boolean post = ((incrDecrMask & Node.POST_FLAG) != 0);
+		if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
+			if (varValue != UniqueTag.DOUBLE_MARK) {
+				vars[indexReg] = UniqueTag.DOUBLE_MARK;
 			}
-			double d2 = ((incrDecrMask & Node.DECR_FLAG) == 0) ? d + 1.0 : d - 1.0;
-			boolean post = ((incrDecrMask & Node.POST_FLAG) != 0);
-			if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
-				if (varValue != UniqueTag.DOUBLE_MARK) {
-					vars[indexReg] = UniqueTag.DOUBLE_MARK;
-				}
-				varDbls[indexReg] = d2;
+			varDbls[indexReg] = d2;
+			stack[stackTop] = UniqueTag.DOUBLE_MARK;
+			sDbl[stackTop] = post ? d : d2;
+		} else {
+			if (post && varValue != UniqueTag.DOUBLE_MARK) {
+				stack[stackTop] = varValue;
+			} else {
 				stack[stackTop] = UniqueTag.DOUBLE_MARK;
 				sDbl[stackTop] = post ? d : d2;
-			} else {
-				if (post && varValue != UniqueTag.DOUBLE_MARK) {
-					stack[stackTop] = varValue;
-				} else {
-					stack[stackTop] = UniqueTag.DOUBLE_MARK;
-					sDbl[stackTop] = post ? d : d2;
-				}
 			}
-		} else {
-			String varName = frame.idata.argNames[indexReg];
-			stack[stackTop] = ScriptRuntime.nameIncrDecr(frame.scope, varName, cx, incrDecrMask);
 		}
 		++frame.pc;
 		return stackTop;
 	}
 
+	private static int doVarAddShort(Context cx, CallFrame frame, byte[] iCode, Object[] stack, double[] sDbl, int stackTop, Object[] vars, double[] varDbls, int[] varAttributes) {
+		// operands: var index, 1 for subtraction, short constant
+		int indexReg = iCode[frame.pc];
+		boolean sub = iCode[frame.pc + 1] != 0;
+		double rDbl = getShort(iCode, frame.pc + 2);
+		frame.pc += 4;
+
+		if (vars[indexReg] == UniqueTag.DOUBLE_MARK) {
+			double d = sub ? varDbls[indexReg] - rDbl : varDbls[indexReg] + rDbl;
+			if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
+				varDbls[indexReg] = d;
+			}
+			++stackTop;
+			stack[stackTop] = UniqueTag.DOUBLE_MARK;
+			sDbl[stackTop] = d;
+			return stackTop;
+		}
+
+		stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, indexReg);
+		if (sub) {
+			double lDbl = stack_double(frame, stackTop);
+			stack[stackTop] = UniqueTag.DOUBLE_MARK;
+			sDbl[stackTop] = lDbl - rDbl;
+		} else {
+			stack[stackTop + 1] = UniqueTag.DOUBLE_MARK;
+			sDbl[stackTop + 1] = rDbl;
+			doAdd(stack, sDbl, stackTop, cx);
+		}
+		return doSetVar(frame, stack, sDbl, stackTop, vars, varDbls, varAttributes, indexReg);
+	}
+
+	private static boolean doVarsCompare(int op, Object[] vars, double[] varDbls, int leftIndex, int rightIndex) {
+		Object lhs = vars[leftIndex];
+		Object rhs = vars[rightIndex];
+		if (lhs == UniqueTag.DOUBLE_MARK && rhs == UniqueTag.DOUBLE_MARK) {
+			double lDbl = varDbls[leftIndex];
+			double rDbl = varDbls[rightIndex];
+			return switch (op) {
+				case Token.GE -> lDbl >= rDbl;
+				case Token.LE -> lDbl <= rDbl;
+				case Token.GT -> lDbl > rDbl;
+				case Token.LT -> lDbl < rDbl;
+				default -> throw Kit.codeBug();
+			};
+		}
+		if (lhs == UniqueTag.DOUBLE_MARK) {
+			lhs = ScriptRuntime.wrapNumber(varDbls[leftIndex]);
+		}
+		if (rhs == UniqueTag.DOUBLE_MARK) {
+			rhs = ScriptRuntime.wrapNumber(varDbls[rightIndex]);
+		}
+		return switch (op) {
+			case Token.GE -> ScriptRuntime.cmp_LE(rhs, lhs);
+			case Token.LE -> ScriptRuntime.cmp_LE(lhs, rhs);
+			case Token.GT -> ScriptRuntime.cmp_LT(rhs, lhs);
+			case Token.LT -> ScriptRuntime.cmp_LT(lhs, rhs);
+			default -> throw Kit.codeBug();
+		};
+	}
+
 	/**
 	 * Call __noSuchMethod__.
 	 */
@@ -2028,6 +2319,9 @@ public final class Interpreter extends Icode implements Evaluator {
 				if (!x.frozen) {
 					Kit.codeBug();
 				}
+				if (cx.scriptProfiler != null) {
+					profileEnter(cx, x, false);
+				}
 				if (x.useActivation) {
 					if (enterFrames == null) {
 						// Allocate enough space to store the rest
@@ -2074,6 +2368,9 @@ public final class Interpreter extends Icode implements Evaluator {
 		frame.savedStackTop = stackTop;
 		frame.pc--; // we want to come back here when we resume
 		ScriptRuntime.exitActivationFunction(cx);
+		if (cx.scriptProfiler != null) {
+			profileExit(frame);
+		}
 		final Object result = (frame.result != UniqueTag.DOUBLE_MARK) ? frame.result : ScriptRuntime.wrapNumber(frame.resultDbl);
 		if (yieldStar) {
 			return new ES6Generator.YieldStarResult(result);
@@ -2144,11 +2441,42 @@ public final class Interpreter extends Icode implements Evaluator {
 
 	private static CallFrame initFrame(Context cx, Scriptable callerScope, Scriptable thisObj, Object[] args, double[] argsDbl, int argShift, int argCount, InterpretedFunction fnOrScript, CallFrame parentFrame) {
 		CallFrame frame = new CallFrame(cx, thisObj, fnOrScript, parentFrame);
+		if (cx.scriptProfiler != null) {
+			profileEnter(cx, frame, true);
+		}
 		frame.initializeArgs(cx, callerScope, args, argsDbl, argShift, argCount);
 		enterFrame(cx, frame, args, false);
 		return frame;
 	}
 
+	private static void profileEnter(Context cx, CallFrame frame, boolean invocation) {
+		CallFrame caller = frame.parentFrame;
+		if (caller == null && cx.lastInterpreterFrame instanceof CallFrame f && f != frame) {
+			// Called from Java code that was called from another interpreter loop invocation
+			caller = f;
+		}
+		if (invocation || frame.profileNode == null) {
+			frame.profileNode = cx.scriptProfiler.enter(caller == null ? null : caller.profileNode, frame.idata);
+		}
+		frame.profileCaller = caller;
+		frame.profileChildNanos = 0L;
+		frame.profileStart = System.nanoTime();
+	}
+
+	private static void profileExit(CallFrame frame) {
+		ScriptProfiler.Node node = frame.profileNode;
+		if (node == null) {
+			// Frame was entered before profiler was installed
+			return;
+		}
+		long elapsed = System.nanoTime() - frame.profileStart;
+		node.exit(elapsed, elapsed - frame.profileChildNanos);
+		frame.profileChildNanos = 0L;
+		if (frame.profileCaller != null) {
+			frame.profileCaller.profileChildNanos += elapsed;
+		}
+	}
+
 	private static void enterFrame(Context cx, CallFrame frame, Object[] args, boolean continuationRestart) {
 		boolean usesActivation = frame.idata.itsNeedsActivation;
 		if (usesActivation) {
@@ -2189,10 +2517,26 @@ public final class Interpreter extends Icode implements Evaluator {
 		}
 	}
 
+	/**
+	 * Return stack arrays of a frame that has finished executing to the Context's pool. Must not be called for
+	 * frames whose arrays may still be read, like the exiting frame of a tail call.
+	 */
+	private static void releaseFrame(Context cx, CallFrame frame) {
+		if (frame.poolable && !frame.frozen) {
+			if (cx.interpreterFramePool == null) {
+				cx.interpreterFramePool = new FramePool();
+			}
+			cx.interpreterFramePool.release(frame);
+		}
+	}
+
 	private static void exitFrame(Context cx, CallFrame frame, Object throwable) {
 		if (frame.idata.itsNeedsActivation) {
 			ScriptRuntime.exitActivationFunction(cx);
 		}
+		if (cx.scriptProfiler != null) {
+			profileExit(frame);
+		}
 	}
 
 	private static void setCallResult(CallFrame frame, Object callResult, double callResultDbl) {
@@ -2206,7 +2550,8 @@ public final class Interpreter extends Icode implements Evaluator {
 			if (callResult instanceof Scriptable) {
 				frame.stack[frame.savedStackTop] = callResult;
 			}
-		} else {
+		} else if (frame.savedCallOp != Token.YIELD) {
+			// Token.YIELD marks a frame preempted by ScriptScheduler, there is no call to return from
 			Kit.codeBug();
 		}
 		frame.savedCallOp = 0;
@@ -2237,7 +2582,7 @@ public final class Interpreter extends Icode implements Evaluator {
 			if (x.savedCallOp == Token.CALL) {
 				// the call will always overwrite the stack top with the result
 				x.stack[x.savedStackTop] = null;
-			} else {
+			} else if (x.savedCallOp != Token.YIELD) {
 				if (x.savedCallOp != Token.NEW) {
 					Kit.codeBug();
 				}
@@ -2263,6 +2608,105 @@ public final class Interpreter extends Icode implements Evaluator {
 		return c;
 	}
 
+	static void writeFrame(ContinuationSerializer.Output out, Object implementation) throws IOException {
+		CallFrame frame = (CallFrame) implementation;
+
+		if (frame == null) {
+			out.writeInt(ContinuationSerializer.T_NULL);
+			return;
+		} else if (out.writeReference(frame)) {
+			return;
+		}
+
+		out.writeInt(ContinuationSerializer.T_FRAME);
+		out.writeValue(frame.fnOrScript);
+		out.writeValue(frame.thisObj);
+		writeFrame(out, frame.parentFrame);
+		writeFrame(out, frame.varSource == frame ? null : frame.varSource);
+		out.writeInt(frame.frameIndex);
+		out.writeBoolean(frame.isContinuationsTopFrame);
+		out.writeValue(frame.result);
+		out.writeDouble(frame.resultDbl);
+		out.writeInt(frame.pc);
+		out.writeInt(frame.pcPrevBranch);
+		out.writeInt(frame.pcSourceLineStart);
+		out.writeValue(frame.scope);
+		out.writeInt(frame.savedStackTop);
+		out.writeInt(frame.savedCallOp);
+
+		// Stack above savedStackTop was cleared when the frame was frozen
+		for (int i = 0; i <= frame.savedStackTop; i++) {
+			Object value = frame.stack[i];
+			out.writeValue(value);
+			out.writeInt(frame.stackAttributes[i]);
+
+			if (value == UniqueTag.DOUBLE_MARK) {
+				out.writeDouble(frame.sDbl[i]);
+			}
+		}
+	}
+
+	static CallFrame readFrame(ContinuationSerializer.Input in) throws IOException {
+		int tag = in.readInt();
+
+		if (tag == ContinuationSerializer.T_NULL) {
+			return null;
+		} else if (tag == ContinuationSerializer.T_REF) {
+			return (CallFrame) in.getReference();
+		} else if (tag != ContinuationSerializer.T_FRAME) {
+			throw new IOException("Expected a frame, got tag " + tag);
+		}
+
+		int id = in.reserve();
+		InterpretedFunction fnOrScript = (InterpretedFunction) in.readValue();
+		Scriptable thisObj = in.readScriptable();
+		CallFrame parentFrame = readFrame(in);
+		CallFrame varSource = readFrame(in);
+		CallFrame frame = in.set(id, new CallFrame(fnOrScript, thisObj, parentFrame, varSource));
+		frame.frameIndex = in.readInt();
+		frame.isContinuationsTopFrame = in.readBoolean();
+		frame.result = in.readValue();
+		frame.resultDbl = in.readDouble();
+		frame.pc = in.readInt();
+		frame.pcPrevBranch = in.readInt();
+		frame.pcSourceLineStart = in.readInt();
+		frame.scope = in.readScriptable();
+		frame.savedStackTop = in.readInt();
+		frame.savedCallOp = in.readInt();
+
+		if (frame.savedStackTop >= frame.stack.length) {
+			throw new IOException("Frame doesn't match its script");
+		}
+
+		for (int i = 0; i <= frame.savedStackTop; i++) {
+			Object value = in.readValue();
+			frame.stack[i] = value;
+			frame.stackAttributes[i] = in.readInt();
+
+			if (value == UniqueTag.DOUBLE_MARK) {
+				frame.sDbl[i] = in.readDouble();
+			}
+		}
+
+		return frame;
+	}
+
+	/**
+	 * Whether the current interpreter invocation was started with continuations and has no Java code
+	 * between its frames, so it can be captured without a call to {@link Context#captureContinuation()}.
+	 */
+	private static boolean canPreempt(Context cx, CallFrame frame) {
+		if (cx.previousInterpreterInvocations != null && cx.previousInterpreterInvocations.size() != 0) {
+			return false;
+		}
+
+		while (frame.parentFrame != null) {
+			frame = frame.parentFrame;
+		}
+
+		return frame.isContinuationsTopFrame;
+	}
+
 	private static int stack_int32(CallFrame frame, int i) {
 		Object x = frame.stack[i];
 		if (x == UniqueTag.DOUBLE_MARK) {
@@ -2325,12 +2769,12 @@ public final class Interpreter extends Icode implements Evaluator {
 				// to reduce method calls
 			} else if (lhs instanceof CharSequence) {
 				if (rhs instanceof CharSequence) {
-					stack[stackTop] = new ConsString((CharSequence) lhs, (CharSequence) rhs);
+					stack[stackTop] = ConsString.concat((CharSequence) lhs, (CharSequence) rhs);
 				} else {
-					stack[stackTop] = new ConsString((CharSequence) lhs, ScriptRuntime.toCharSequence(rhs));
+					stack[stackTop] = ConsString.concat((CharSequence) lhs, ScriptRuntime.toCharSequence(rhs));
 				}
 			} else if (rhs instanceof CharSequence) {
-				stack[stackTop] = new ConsString(ScriptRuntime.toCharSequence(lhs), (CharSequence) rhs);
+				stack[stackTop] = ConsString.concat(ScriptRuntime.toCharSequence(lhs), (CharSequence) rhs);
 
 			} else {
 				double lDbl = (lhs instanceof Number) ? ((Number) lhs).doubleValue() : ScriptRuntime.toNumber(lhs);
@@ -2353,9 +2797,9 @@ public final class Interpreter extends Icode implements Evaluator {
 		} else if (lhs instanceof CharSequence) {
 			CharSequence rstr = ScriptRuntime.numberToString(d, 10);
 			if (leftRightOrder) {
-				stack[stackTop] = new ConsString((CharSequence) lhs, rstr);
+				stack[stackTop] = ConsString.concat((CharSequence) lhs, rstr);
 			} else {
-				stack[stackTop] = new ConsString(rstr, (CharSequence) lhs);
+				stack[stackTop] = ConsString.concat(rstr, (CharSequence) lhs);
 			}
 		} else {
 			double lDbl = (lhs instanceof Number) ? ((Number) lhs).doubleValue() : ScriptRuntime.toNumber(lhs);
@@ -2398,6 +2842,9 @@ public final class Interpreter extends Icode implements Evaluator {
 	private static void addInstructionCount(Context cx, CallFrame frame, int extra) {
 		cx.instructionCount += frame.pc - frame.pcPrevBranch + extra;
 		if (cx.instructionCount > cx.instructionThreshold) {
+			if (cx.scheduledTask != null) {
+				cx.scheduledTask.addInstructions(cx.instructionCount);
+			}
 			cx.observeInstructionCount(cx.instructionCount);
 			cx.instructionCount = 0;
 		}
@@ -6,6 +6,10 @@
 
 package dev.latvian.mods.rhino;
 
+import dev.latvian.mods.rhino.ast.AstRoot;
+import dev.latvian.mods.rhino.ast.FunctionNode;
+import dev.latvian.mods.rhino.ast.ScriptNode;
+
 import java.util.Arrays;
 
 final class InterpreterData {
@@ -35,6 +39,7 @@ final class InterpreterData {
 	boolean isStrict;
 	boolean topLevel;
 	boolean isES6Generator;
+	boolean isAsync;
 	Object[] literalIds;
 	UintMap longJumps;
 	int firstLinePC = -1; // PC for the first LINE icode
@@ -49,6 +54,29 @@ final class InterpreterData {
 	 */
 	boolean declaredAsFunctionExpression;
 	private int icodeHashCode = 0;
+	private long contentHash = 0L;
+	/**
+	 * Global name lookups indexed like itsStringTable, created on first lookup of a name from top-level scope.
+	 */
+	GlobalSlot[] itsGlobalSlots;
+	/**
+	 * Source of a function whose body is compiled on first call, null once it is compiled.
+	 */
+	volatile LazyBody lazy;
+
+	/**
+	 * Slot of a variable in top-level scope. It is valid as long as lookup starts from the same scope
+	 * and no slot was removed or replaced in it since.
+	 */
+	record GlobalSlot(ScriptableObject scope, ScriptableObject.Slot slot, int version) {
+	}
+
+	/**
+	 * Range of a function in its script source, from the opening parenthesis of the parameters
+	 * to the closing brace of the body. See {@link Context#setLazyFunctions(boolean)}.
+	 */
+	record LazyBody(CompilerEnvirons compilerEnv, String source, int start, int end, int lineno) {
+	}
 
 	InterpreterData(String sourceFile, boolean isStrict) {
 		this.itsSourceFile = sourceFile;
@@ -92,6 +120,73 @@ final class InterpreterData {
 		return parentData;
 	}
 
+	/**
+	 * Compiles the body of this function if it was skipped by the parser.
+	 */
+	void ensureCompiled() {
+		if (lazy != null) {
+			compileLazy();
+		}
+	}
+
+	private synchronized void compileLazy() {
+		LazyBody body = lazy;
+		if (body == null) {
+			return;
+		}
+
+		// Hash the source before the code is replaced, so it is the same whether the function was called or not
+		contentHash();
+
+		StringBuilder source = new StringBuilder(body.end - body.start + 32);
+		if (isAsync) {
+			source.append("async ");
+		}
+		source.append(isES6Generator && !isAsync ? "function* " : "function ");
+		if (itsFunctionType == FunctionNode.FUNCTION_EXPRESSION && itsName != null) {
+			// Named function expressions can refer to themselves
+			source.append(itsName);
+		}
+		source.append(body.source, body.start, body.end);
+
+		ErrorReporter errorReporter = body.compilerEnv.getErrorReporter();
+		Parser p = new Parser(body.compilerEnv, errorReporter);
+		p.calledByCompileFunction = true;
+		p.setDefaultUseStrictDirective(isStrict);
+		AstRoot ast = p.parse(source.toString(), itsSourceFile, body.lineno);
+		ScriptNode tree = new IRFactory(body.compilerEnv, errorReporter).transformTree(ast);
+		InterpreterData data = new CodeGenerator().compile(body.compilerEnv, tree, true);
+
+		itsNeedsActivation = data.itsNeedsActivation;
+		itsStringTable = data.itsStringTable;
+		itsDoubleTable = data.itsDoubleTable;
+		itsNestedFunctions = data.itsNestedFunctions;
+		itsRegExpLiterals = data.itsRegExpLiterals;
+		itsTemplateLiterals = data.itsTemplateLiterals;
+		itsICode = data.itsICode;
+		itsExceptionTable = data.itsExceptionTable;
+		itsMaxVars = data.itsMaxVars;
+		itsMaxLocals = data.itsMaxLocals;
+		itsMaxStack = data.itsMaxStack;
+		itsMaxFrameArray = data.itsMaxFrameArray;
+		argNames = data.argNames;
+		argIsConst = data.argIsConst;
+		argCount = data.argCount;
+		itsMaxCalleeArgs = data.itsMaxCalleeArgs;
+		isStrict |= data.isStrict;
+		literalIds = data.literalIds;
+		longJumps = data.longJumps;
+		firstLinePC = data.firstLinePC;
+		itsGlobalSlots = null;
+		icodeHashCode = 0;
+
+		for (int i = 0; i < getFunctionCount(); i++) {
+			itsNestedFunctions[i].parentData = this;
+		}
+
+		lazy = null;
+	}
+
 	public int icodeHashCode() {
 		int h = icodeHashCode;
 		if (h == 0) {
@@ -99,4 +194,77 @@ final class InterpreterData {
 		}
 		return h;
 	}
+
+	/**
+	 * 64-bit FNV-1a hash of the compiled code, its tables and nested functions. Identifies the
+	 * function across recompilations of the same source, see {@link ContinuationSerializer}.
+	 * Functions compiled on first call are identified by their source instead.
+	 */
+	long contentHash() {
+		// Read before the hash, it is set before the body is compiled
+		LazyBody body = lazy;
+		long h = contentHash;
+		if (h == 0L) {
+			h = hash(0xcbf29ce484222325L, itsSourceFile);
+			h = hash(h, itsName);
+			h = hash(h, itsFunctionType);
+			h = hash(h, argCount);
+			if (body != null) {
+				h = hash(h, body.lineno);
+				h = hash(h, body.source, body.start, body.end);
+			} else {
+				h = hash(h, itsMaxFrameArray);
+				for (byte b : itsICode) {
+					h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+				}
+				for (String s : itsStringTable) {
+					h = hash(h, s);
+				}
+				if (itsDoubleTable != null) {
+					for (double d : itsDoubleTable) {
+						long bits = Double.doubleToLongBits(d);
+						h = hash(hash(h, (int) bits), (int) (bits >>> 32));
+					}
+				}
+				if (argNames != null) {
+					for (String s : argNames) {
+						h = hash(h, s);
+					}
+				}
+				for (int i = 0; i < getFunctionCount(); i++) {
+					long n = itsNestedFunctions[i].contentHash();
+					h = hash(hash(h, (int) n), (int) (n >>> 32));
+				}
+			}
+			if (h == 0L) {
+				h = 1L;
+			}
+			contentHash = h;
+		}
+		return h;
+	}
+
+	private static long hash(long h, int value) {
+		for (int i = 0; i < 4; i++) {
+			h = (h ^ ((value >>> (i * 8)) & 0xFF)) * 0x100000001b3L;
+		}
+		return h;
+	}
+
+	private static long hash(long h, String s) {
+		if (s == null) {
+			return hash(h, -1);
+		}
+		return hash(h, s, 0, s.length());
+	}
+
+	private static long hash(long h, String s, int start, int end) {
+		h = hash(h, end - start);
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			h = (h ^ (c & 0xFF)) * 0x100000001b3L;
+			h = (h ^ (c >>> 8)) * 0x100000001b3L;
+		}
+		return h;
+	}
 }
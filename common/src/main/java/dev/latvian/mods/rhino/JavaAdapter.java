@@ -179,7 +179,7 @@ public final class JavaAdapter implements IdFunctionCall {
 				System.arraycopy(args, classCount + 1, ctorArgs, 2, argsCount);
 				// TODO: cache class wrapper?
 				NativeJavaClass classWrapper = new NativeJavaClass(scope, adapterClass, true);
-				NativeJavaMethod ctors = classWrapper.members.ctors;
+				NativeJavaMethod ctors = classWrapper.members.getConstructors();
 				int index = ctors.findCachedFunction(contextData, ctorArgs);
 				if (index < 0) {
 					String sig = NativeJavaMethod.scriptSignature(args);
@@ -7,8 +7,6 @@
 package dev.latvian.mods.rhino;
 
 import dev.latvian.mods.rhino.util.HideFromJS;
-import dev.latvian.mods.rhino.util.RemapForJS;
-import dev.latvian.mods.rhino.util.RemapPrefixForJS;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -19,10 +17,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * @author Mike Shaver
@@ -112,18 +108,6 @@ public class JavaMembers {
 		return sb.toString();
 	}
 
-	private static MemberBox findGetter(boolean isStatic, Map<String, Object> ht, String prefix, String propertyName) {
-		String getterName = prefix.concat(propertyName);
-		if (ht.containsKey(getterName)) {
-			// Check that the getter is a method.
-			Object member = ht.get(getterName);
-			if (member instanceof NativeJavaMethod njmGet) {
-				return extractGetMethod(njmGet.methods, isStatic);
-			}
-		}
-		return null;
-	}
-
 	private static MemberBox extractGetMethod(MemberBox[] methods, boolean isStatic) {
 		// Inspect the list of all MemberBox for the only one having no
 		// parameters
@@ -239,13 +223,29 @@ public class JavaMembers {
 		return members;
 	}
 
+	/**
+	 * Members of one name, reflected into a {@link NativeJavaMethod}, {@link FieldAndMethods}, {@link Field}
+	 * or {@link BeanProperty} the first time the name is looked up.
+	 */
+	private static final class LazyMember {
+		final boolean isStatic;
+		List<Method> methods;
+		Field field;
+		String beanName; // name without get/is/set prefix, for bean properties
+		volatile Object value;
+
+		LazyMember(boolean isStatic) {
+			this.isStatic = isStatic;
+		}
+	}
+
 	public final SharedContextData contextData;
 	private final Class<?> cl;
 	private final Map<String, Object> members;
 	private final Map<String, Object> staticMembers;
-	NativeJavaMethod ctors; // we use NativeJavaMethod for ctor overload resolution
-	private Map<String, FieldAndMethods> fieldAndMethods;
-	private Map<String, FieldAndMethods> staticFieldAndMethods;
+	private volatile NativeJavaMethod ctors; // we use NativeJavaMethod for ctor overload resolution
+	private List<LazyMember> fieldAndMethods;
+	private List<LazyMember> staticFieldAndMethods;
 
 	JavaMembers(SharedContextData contextData, Class<?> cl, boolean includeProtected) {
 		this.contextData = contextData;
@@ -257,7 +257,7 @@ public class JavaMembers {
 		this.members = new HashMap<>();
 		this.staticMembers = new HashMap<>();
 		this.cl = cl;
-		reflect(contextData.topLevelScope, includeProtected);
+		reflect(includeProtected);
 	}
 
 	public boolean has(String name, boolean isStatic) {
@@ -271,10 +271,10 @@ public class JavaMembers {
 
 	public Object get(Scriptable scope, String name, Object javaObject, boolean isStatic) {
 		Map<String, Object> ht = isStatic ? staticMembers : members;
-		Object member = ht.get(name);
+		Object member = getMember(ht, name);
 		if (!isStatic && member == null) {
 			// Try to get static member from instance (LC3)
-			member = staticMembers.get(name);
+			member = getMember(staticMembers, name);
 		}
 		if (member == null) {
 			member = this.getExplicitFunction(scope, name, javaObject, isStatic);
@@ -309,16 +309,15 @@ public class JavaMembers {
 
 	public void put(Scriptable scope, String name, Object javaObject, Object value, boolean isStatic) {
 		Map<String, Object> ht = isStatic ? staticMembers : members;
-		Object member = ht.get(name);
+		Object member = getMember(ht, name);
 		if (!isStatic && member == null) {
 			// Try to get static member from instance (LC3)
-			member = staticMembers.get(name);
+			member = getMember(staticMembers, name);
 		}
 		if (member == null) {
 			throw reportMemberNotFound(name);
 		}
-		if (member instanceof FieldAndMethods) {
-			FieldAndMethods fam = (FieldAndMethods) ht.get(name);
+		if (member instanceof FieldAndMethods fam) {
 			member = fam.field;
 		}
 
@@ -372,6 +371,120 @@ public class JavaMembers {
 		return map.keySet().toArray(ScriptRuntime.EMPTY_OBJECTS);
 	}
 
+	/**
+	 * @return constructors of the class, reflected on first use
+	 */
+	NativeJavaMethod getConstructors() {
+		NativeJavaMethod c = ctors;
+		if (c == null) {
+			synchronized (this) {
+				c = ctors;
+				if (c == null) {
+					MemberBox[] ctorMembers;
+					if (cl.isAnnotationPresent(HideFromJS.class)) {
+						ctorMembers = new MemberBox[0];
+					} else {
+						List<Constructor<?>> constructors = getAccessibleConstructors();
+						ctorMembers = new MemberBox[constructors.size()];
+						for (int i = 0; i != constructors.size(); ++i) {
+							ctorMembers[i] = new MemberBox(constructors.get(i));
+						}
+					}
+					ctors = c = new NativeJavaMethod(ctorMembers, cl.getSimpleName());
+				}
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * @return member of the given name, reflecting it if this is the first lookup
+	 */
+	private Object getMember(Map<String, Object> ht, String name) {
+		Object member = ht.get(name);
+		if (member instanceof LazyMember lazy) {
+			Object value = lazy.value;
+			return value != null ? value : reflectMember(lazy);
+		}
+		return member;
+	}
+
+	private synchronized Object reflectMember(LazyMember lazy) {
+		Object value = lazy.value;
+		if (value != null) {
+			return value;
+		}
+
+		if (lazy.methods != null) {
+			MemberBox[] methodBoxes = new MemberBox[lazy.methods.size()];
+			for (int i = 0; i != methodBoxes.length; ++i) {
+				methodBoxes[i] = new MemberBox(lazy.methods.get(i));
+			}
+			Scriptable scope = contextData.topLevelScope;
+			if (lazy.field != null) {
+				value = new FieldAndMethods(scope, methodBoxes, lazy.field);
+			} else {
+				NativeJavaMethod fun = new NativeJavaMethod(methodBoxes);
+				if (scope != null) {
+					ScriptRuntime.setFunctionProtoAndParent(fun, scope);
+				}
+				value = fun;
+			}
+		} else if (lazy.field != null) {
+			value = lazy.field;
+		} else {
+			value = reflectBeanProperty(lazy.isStatic, lazy.beanName);
+		}
+
+		lazy.value = value;
+		return value;
+	}
+
+	private BeanProperty reflectBeanProperty(boolean isStatic, String nameComponent) {
+		Map<String, Object> ht = isStatic ? staticMembers : members;
+
+		// Find the getter method, or if there is none, the is-
+		// method.
+		MemberBox getter;
+		getter = findGetter(isStatic, ht, "get", nameComponent);
+		// If there was no valid getter, check for an is- method.
+		if (getter == null) {
+			getter = findGetter(isStatic, ht, "is", nameComponent);
+		}
+
+		// setter
+		MemberBox setter = null;
+		NativeJavaMethod setters = null;
+
+		// Is this value a method?
+		Object member = getMember(ht, "set".concat(nameComponent));
+		if (member instanceof NativeJavaMethod njmSet) {
+			if (getter != null) {
+				// We have a getter. Now, do we have a matching
+				// setter?
+				Class<?> type = getter.method().getReturnType();
+				setter = extractSetMethod(type, njmSet.methods, isStatic);
+			} else {
+				// No getter, find any set method
+				setter = extractSetMethod(njmSet.methods, isStatic);
+			}
+			if (njmSet.methods.length > 1) {
+				setters = njmSet;
+			}
+		}
+
+		return new BeanProperty(getter, setter, setters);
+	}
+
+	private MemberBox findGetter(boolean isStatic, Map<String, Object> ht, String prefix, String propertyName) {
+		// Check that the getter is a method.
+		Object member = getMember(ht, prefix.concat(propertyName));
+		if (member instanceof NativeJavaMethod njmGet) {
+			return extractGetMethod(njmGet.methods, isStatic);
+		}
+		return null;
+	}
+
 	private MemberBox findExplicitFunction(String name, boolean isStatic) {
 		int sigStart = name.indexOf('(');
 		if (sigStart < 0) {
@@ -384,14 +497,14 @@ public class JavaMembers {
 
 		if (isCtor) {
 			// Explicit request for an overloaded constructor
-			methodsOrCtors = ctors.methods;
+			methodsOrCtors = getConstructors().methods;
 		} else {
 			// Explicit request for an overloaded method
 			String trueName = name.substring(0, sigStart);
-			Object obj = ht.get(trueName);
+			Object obj = getMember(ht, trueName);
 			if (!isStatic && obj == null) {
 				// Try to get static member from instance (LC3)
-				obj = staticMembers.get(trueName);
+				obj = getMember(staticMembers, trueName);
 			}
 			if (obj instanceof NativeJavaMethod njm) {
 				methodsOrCtors = njm.methods;
@@ -426,7 +539,7 @@ public class JavaMembers {
 				ht.put(name, fun);
 			} else {
 				String trueName = methodOrCtor.getName();
-				member = ht.get(trueName);
+				member = getMember(ht, trueName);
 
 				if (member instanceof NativeJavaMethod && ((NativeJavaMethod) member).methods.length > 1) {
 					NativeJavaMethod fun = new NativeJavaMethod(methodOrCtor, name);
@@ -440,9 +553,12 @@ public class JavaMembers {
 		return member;
 	}
 
-	private void reflect(Scriptable scope, boolean includeProtected) {
+	/**
+	 * Index the names of all members. Only the names are resolved here, the script objects for a
+	 * name are made by {@link #getMember(Map, String)} when it is first looked up.
+	 */
+	private void reflect(boolean includeProtected) {
 		if (cl.isAnnotationPresent(HideFromJS.class)) {
-			ctors = new NativeJavaMethod(new MemberBox[0], cl.getSimpleName());
 			return;
 		}
 
@@ -452,105 +568,54 @@ public class JavaMembers {
 
 		for (MethodInfo methodInfo : getAccessibleMethods(includeProtected)) {
 			var method = methodInfo.method;
-			int mods = method.getModifiers();
-			boolean isStatic = Modifier.isStatic(mods);
+			boolean isStatic = Modifier.isStatic(method.getModifiers());
 			Map<String, Object> ht = isStatic ? staticMembers : members;
 			String name = methodInfo.name.isEmpty() ? method.getName() : methodInfo.name;
 
-			Object value = ht.get(name);
-			if (value == null) {
-				ht.put(name, method);
-			} else {
-				ObjArray overloadedMethods;
-				if (value instanceof ObjArray) {
-					overloadedMethods = (ObjArray) value;
-				} else {
-					if (!(value instanceof Method)) {
-						Kit.codeBug();
-					}
-					// value should be instance of Method as at this stage
-					// staticMembers and members can only contain methods
-					overloadedMethods = new ObjArray();
-					overloadedMethods.add(value);
-					ht.put(name, overloadedMethods);
-				}
-				overloadedMethods.add(method);
-			}
-		}
-
-		// replace Method instances by wrapped NativeJavaMethod objects
-		// first in staticMembers and then in members
-		for (int tableCursor = 0; tableCursor != 2; ++tableCursor) {
-			boolean isStatic = (tableCursor == 0);
-			Map<String, Object> ht = isStatic ? staticMembers : members;
-			for (Map.Entry<String, Object> entry : ht.entrySet()) {
-				MemberBox[] methodBoxes;
-				Object value = entry.getValue();
-				if (value instanceof Method) {
-					methodBoxes = new MemberBox[1];
-					methodBoxes[0] = new MemberBox((Method) value);
-				} else {
-					ObjArray overloadedMethods = (ObjArray) value;
-					int N = overloadedMethods.size();
-					if (N < 2) {
-						Kit.codeBug();
-					}
-					methodBoxes = new MemberBox[N];
-					for (int i = 0; i != N; ++i) {
-						Method method = (Method) overloadedMethods.get(i);
-						methodBoxes[i] = new MemberBox(method);
-					}
-				}
-				NativeJavaMethod fun = new NativeJavaMethod(methodBoxes);
-				if (scope != null) {
-					ScriptRuntime.setFunctionProtoAndParent(fun, scope);
-				}
-				ht.put(entry.getKey(), fun);
+			LazyMember lazy = (LazyMember) ht.get(name);
+			if (lazy == null) {
+				lazy = new LazyMember(isStatic);
+				lazy.methods = new ArrayList<>(1);
+				ht.put(name, lazy);
 			}
+			lazy.methods.add(method);
 		}
 
 		// Reflect fields.
 		for (FieldInfo fieldInfo : getAccessibleFields(includeProtected)) {
 			var field = fieldInfo.field;
 			String name = fieldInfo.name.isEmpty() ? field.getName() : fieldInfo.name;
+			boolean isStatic = Modifier.isStatic(field.getModifiers());
+			Map<String, Object> ht = isStatic ? staticMembers : members;
 
-			int mods = field.getModifiers();
-			try {
-				boolean isStatic = Modifier.isStatic(mods);
-				Map<String, Object> ht = isStatic ? staticMembers : members;
-				Object member = ht.get(name);
-				if (member == null) {
-					ht.put(name, field);
-				} else if (member instanceof NativeJavaMethod method) {
-					FieldAndMethods fam = new FieldAndMethods(scope, method.methods, field);
-					Map<String, FieldAndMethods> fmht = isStatic ? staticFieldAndMethods : fieldAndMethods;
-					if (fmht == null) {
-						fmht = new HashMap<>();
+			LazyMember lazy = (LazyMember) ht.get(name);
+			if (lazy == null) {
+				lazy = new LazyMember(isStatic);
+				lazy.field = field;
+				ht.put(name, lazy);
+			} else if (lazy.methods != null) {
+				// Becomes a FieldAndMethods with the last field of this name
+				if (lazy.field == null) {
+					List<LazyMember> fmList = isStatic ? staticFieldAndMethods : fieldAndMethods;
+					if (fmList == null) {
+						fmList = new ArrayList<>();
 						if (isStatic) {
-							staticFieldAndMethods = fmht;
+							staticFieldAndMethods = fmList;
 						} else {
-							fieldAndMethods = fmht;
+							fieldAndMethods = fmList;
 						}
 					}
-					fmht.put(name, fam);
-					ht.put(name, fam);
-				} else if (member instanceof Field oldField) {
-					// If this newly reflected field shadows an inherited field,
-					// then replace it. Otherwise, since access to the field
-					// would be ambiguous from Java, no field should be
-					// reflected.
-					// For now, the first field found wins, unless another field
-					// explicitly shadows it.
-					if (oldField.getDeclaringClass().isAssignableFrom(field.getDeclaringClass())) {
-						ht.put(name, field);
-					}
-				} else {
-					// "unknown member type"
-					Kit.codeBug();
+					fmList.add(lazy);
 				}
-			} catch (SecurityException e) {
-				// skip this field
-				Context.reportWarning("Could not access field " + name + " of class " + cl.getName() + " due to lack of privileges.");
+				lazy.field = field;
+			} else if (lazy.field.getDeclaringClass().isAssignableFrom(field.getDeclaringClass())) {
+				// If this newly reflected field shadows an inherited field,
+				// then replace it. Otherwise, since access to the field
+				// would be ambiguous from Java, no field should be
+				// reflected.
+				// For now, the first field found wins, unless another field
+				// explicitly shadows it.
+				lazy.field = field;
 			}
 		}
 
@@ -560,7 +625,7 @@ public class JavaMembers {
 			boolean isStatic = (tableCursor == 0);
 			Map<String, Object> ht = isStatic ? staticMembers : members;
 
-			Map<String, BeanProperty> toAdd = new HashMap<>();
+			Map<String, Object> toAdd = new HashMap<>();
 
 			// Now, For each member, make "bean" properties.
 			for (String name : ht.keySet()) {
@@ -594,46 +659,14 @@ public class JavaMembers {
 					if (toAdd.containsKey(beanPropertyName)) {
 						continue;
 					}
-					Object v = ht.get(beanPropertyName);
-					if (v != null) {
+					if (ht.containsKey(beanPropertyName)) {
 						// A private field shouldn't mask a public getter/setter
 						continue;
 					}
 
-					// Find the getter method, or if there is none, the is-
-					// method.
-					MemberBox getter;
-					getter = findGetter(isStatic, ht, "get", nameComponent);
-					// If there was no valid getter, check for an is- method.
-					if (getter == null) {
-						getter = findGetter(isStatic, ht, "is", nameComponent);
-					}
-
-					// setter
-					MemberBox setter = null;
-					NativeJavaMethod setters = null;
-					String setterName = "set".concat(nameComponent);
-
-					if (ht.containsKey(setterName)) {
-						// Is this value a method?
-						Object member = ht.get(setterName);
-						if (member instanceof NativeJavaMethod njmSet) {
-							if (getter != null) {
-								// We have a getter. Now, do we have a matching
-								// setter?
-								Class<?> type = getter.method().getReturnType();
-								setter = extractSetMethod(type, njmSet.methods, isStatic);
-							} else {
-								// No getter, find any set method
-								setter = extractSetMethod(njmSet.methods, isStatic);
-							}
-							if (njmSet.methods.length > 1) {
-								setters = njmSet;
-							}
-						}
-					}
-					// Make the property.
-					BeanProperty bp = new BeanProperty(getter, setter, setters);
+					// The getter and setter are found when the property is first used
+					LazyMember bp = new LazyMember(isStatic);
+					bp.beanName = nameComponent;
 					toAdd.put(beanPropertyName, bp);
 				}
 			}
@@ -641,98 +674,47 @@ public class JavaMembers {
 			// Add the new bean properties.
 			ht.putAll(toAdd);
 		}
-
-		// Reflect constructors
-		List<Constructor<?>> constructors = getAccessibleConstructors();
-		MemberBox[] ctorMembers = new MemberBox[constructors.size()];
-		for (int i = 0; i != constructors.size(); ++i) {
-			ctorMembers[i] = new MemberBox(constructors.get(i));
-		}
-		ctors = new NativeJavaMethod(ctorMembers, cl.getSimpleName());
 	}
 
 	public List<Constructor<?>> getAccessibleConstructors() {
-		List<Constructor<?>> constructorsList = new ArrayList<>();
-
-		for (Constructor<?> c : cl.getConstructors()) {
-			if (!c.isAnnotationPresent(HideFromJS.class)) {
-				if (Modifier.isPublic(c.getModifiers())) {
-					constructorsList.add(c);
-				}
-			}
-		}
-
-		return constructorsList;
+		return contextData.getClassDataCache().of(cl).getDeclaredConstructors();
 	}
 
 	public List<FieldInfo> getAccessibleFields(boolean includeProtected) {
+		var cache = contextData.getClassDataCache();
 		List<FieldInfo> fieldList = new ArrayList<>();
+		Class<?> currentClass = cl;
 
-		try {
-			Class<?> currentClass = cl;
-
-			while (currentClass != null) {
-				// get all declared fields in this class, make them
-				// accessible, and save
-				Set<String> remapPrefixes = new HashSet<>();
-
-				for (RemapPrefixForJS r : currentClass.getAnnotationsByType(RemapPrefixForJS.class)) {
-					String s = r.value().trim();
-
-					if (!s.isEmpty()) {
-						remapPrefixes.add(s);
-					}
-				}
-
-				for (Field field : getDeclaredFieldsSafe(currentClass)) {
-					int mods = field.getModifiers();
-
-					if (!Modifier.isTransient(mods) && (Modifier.isPublic(mods) || includeProtected && Modifier.isProtected(mods)) && !field.isAnnotationPresent(HideFromJS.class)) {
-						try {
-							if (includeProtected && Modifier.isProtected(mods) && !field.isAccessible()) {
-								field.setAccessible(true);
-							}
+		while (currentClass != null) {
+			for (var declared : cache.of(currentClass).getDeclaredFields()) {
+				var field = declared.field;
+				int mods = field.getModifiers();
 
-							FieldInfo info = new FieldInfo(field);
-
-							var remap = field.getAnnotation(RemapForJS.class);
-
-							if (remap != null) {
-								info.name = remap.value().trim();
-							}
-
-							if (info.name.isEmpty()) {
-								for (String s : remapPrefixes) {
-									if (field.getName().startsWith(s)) {
-										info.name = field.getName().substring(s.length()).trim();
-										break;
-									}
-								}
-							}
-
-							if (info.name.isEmpty()) {
-								info.name = contextData.getRemapper().getMappedField(currentClass, field);
-							}
-
-							fieldList.add(info);
-						} catch (Exception ex) {
-							// ex.printStackTrace();
+				if (Modifier.isPublic(mods) || includeProtected && Modifier.isProtected(mods)) {
+					try {
+						if (includeProtected && Modifier.isProtected(mods) && !field.isAccessible()) {
+							field.setAccessible(true);
 						}
+
+						FieldInfo info = new FieldInfo(field);
+						info.name = declared.name;
+						fieldList.add(info);
+					} catch (Exception ex) {
+						// ex.printStackTrace();
 					}
 				}
-
-				// walk up superclass chain.  no need to deal specially with
-				// interfaces, since they can't have fields
-				currentClass = currentClass.getSuperclass();
 			}
-		} catch (SecurityException e) {
-			// fall through to !includePrivate case
+
+			// walk up superclass chain.  no need to deal specially with
+			// interfaces, since they can't have fields
+			currentClass = currentClass.getSuperclass();
 		}
 
 		return fieldList;
 	}
 
 	public Collection<MethodInfo> getAccessibleMethods(boolean includeProtected) {
+		var cache = contextData.getClassDataCache();
 		var methodMap = new HashMap<MethodSignature, MethodInfo>();
 
 		var stack = new ArrayDeque<Class<?>>();
@@ -740,28 +722,19 @@ public class JavaMembers {
 
 		while (!stack.isEmpty()) {
 			var currentClass = stack.pop();
-			Set<String> remapPrefixes = new HashSet<>();
-
-			for (RemapPrefixForJS r : currentClass.getAnnotationsByType(RemapPrefixForJS.class)) {
-				String s = r.value().trim();
 
-				if (!s.isEmpty()) {
-					remapPrefixes.add(s);
-				}
-			}
-
-			for (var method : getDeclaredMethodsSafe(currentClass)) {
+			for (var declared : cache.of(currentClass).getDeclaredMethods()) {
+				var method = declared.method;
 				int mods = method.getModifiers();
 
 				if ((Modifier.isPublic(mods) || includeProtected && Modifier.isProtected(mods))) {
-					MethodSignature signature = new MethodSignature(method);
+					MethodSignature signature = new MethodSignature(method.getName(), declared.signature.types);
 
 					var info = methodMap.get(signature);
-					boolean hidden = method.isAnnotationPresent(HideFromJS.class);
 
 					if (info == null) {
 						try {
-							if (!hidden && includeProtected && Modifier.isProtected(mods) && !method.isAccessible()) {
+							if (!declared.isHidden && includeProtected && Modifier.isProtected(mods) && !method.isAccessible()) {
 								method.setAccessible(true);
 							}
 
@@ -773,28 +746,14 @@ public class JavaMembers {
 					}
 
 					if (info != null) {
-						if (hidden) {
+						if (declared.isHidden) {
 							info.hidden = true;
 							continue;
 						}
 
-						var remap = method.getAnnotation(RemapForJS.class);
-
-						if (remap != null) {
-							info.name = remap.value().trim();
-						}
-
-						if (info.name.isEmpty()) {
-							for (String s : remapPrefixes) {
-								if (method.getName().startsWith(s)) {
-									info.name = method.getName().substring(s.length()).trim();
-									break;
-								}
-							}
-						}
-
-						if (info.name.isEmpty()) {
-							info.name = contextData.getRemapper().getMappedMethod(currentClass, method);
+						// A @RemapForJS name wins, otherwise the mapping of the most derived declaration
+						if (declared.hasRemapForJS || info.name.isEmpty() && declared.isRemapped) {
+							info.name = declared.name;
 						}
 					}
 				}
@@ -820,32 +779,15 @@ public class JavaMembers {
 		return list;
 	}
 
-	private static Method[] getDeclaredMethodsSafe(Class<?> cl) {
-		try {
-			return cl.getDeclaredMethods();
-		} catch (Throwable t) {
-			System.err.println("[Rhino] Failed to get declared methods for " + cl.getName() + ": " + t);
-			return new Method[0];
-		}
-	}
-
-	private static Field[] getDeclaredFieldsSafe(Class<?> cl) {
-		try {
-			return cl.getDeclaredFields();
-		} catch (Throwable t) {
-			System.err.println("[Rhino] Failed to get declared fields for " + cl.getName() + ": " + t);
-			return new Field[0];
-		}
-	}
-
 	public Map<String, FieldAndMethods> getFieldAndMethodsObjects(Scriptable scope, Object javaObject, boolean isStatic) {
-		Map<String, FieldAndMethods> ht = isStatic ? staticFieldAndMethods : fieldAndMethods;
-		if (ht == null) {
+		List<LazyMember> list = isStatic ? staticFieldAndMethods : fieldAndMethods;
+		if (list == null) {
 			return null;
 		}
-		int len = ht.size();
+		int len = list.size();
 		Map<String, FieldAndMethods> result = new HashMap<>(len);
-		for (FieldAndMethods fam : ht.values()) {
+		for (LazyMember lazy : list) {
+			FieldAndMethods fam = (FieldAndMethods) reflectMember(lazy);
 			FieldAndMethods famNew = new FieldAndMethods(scope, fam.methods, fam.field);
 			famNew.javaObject = javaObject;
 			result.put(fam.field.getName(), famNew);
@@ -0,0 +1,19 @@
+package dev.latvian.mods.rhino;
+
+/**
+ * Receives promise reactions and other jobs that scripts schedule to run after
+ * the current call, so the host can run them at its own tick boundary.
+ * Jobs may be enqueued from any thread, an implementation has to be thread safe.
+ *
+ * @see Context#setJobQueue(JobQueue)
+ */
+@FunctionalInterface
+public interface JobQueue {
+	/**
+	 * Schedule a job. Jobs must be run in the order they were enqueued, on a
+	 * thread that may enter a Context.
+	 *
+	 * @param job the job to run
+	 */
+	void enqueue(Runnable job);
+}
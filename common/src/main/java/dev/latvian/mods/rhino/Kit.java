@@ -6,10 +6,10 @@
 
 package dev.latvian.mods.rhino;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -329,15 +329,22 @@ public class Kit {
 		return new ComplexKey(key1, key2);
 	}
 
+	/**
+	 * Reads all characters of the reader into one growing buffer, without the intermediate
+	 * StringBuilder. The String is created from that buffer with one final copy.
+	 */
 	public static String readReader(Reader reader) throws IOException {
-		try (BufferedReader in = new BufferedReader(reader)) {
-			char[] cbuf = new char[1024];
-			StringBuilder sb = new StringBuilder(1024);
-			int bytes_read;
-			while ((bytes_read = in.read(cbuf, 0, 1024)) != -1) {
-				sb.append(cbuf, 0, bytes_read);
+		try (reader) {
+			char[] buffer = new char[8192];
+			int length = 0;
+			int read;
+			while ((read = reader.read(buffer, length, buffer.length - length)) != -1) {
+				length += read;
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, length * 2);
+				}
 			}
-			return sb.toString();
+			return new String(buffer, 0, length);
 		}
 	}
 
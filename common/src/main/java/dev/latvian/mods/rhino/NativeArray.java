@@ -42,8 +42,7 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 	private static final Long NEGATIVE_ONE = (long) -1;
 	private static final int Id_length = 1;
 	private static final int MAX_INSTANCE_ID = 1;
-	private static final Comparator<Object> STRING_COMPARATOR = new StringLikeComparator();
-	private static final Comparator<Object> DEFAULT_COMPARATOR = new ElementComparator();
+	private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L, 10000000000000000L};
 	private static final int Id_constructor = 1;
 	private static final int Id_toString = 2;
 	private static final int Id_toLocaleString = 3;
@@ -115,53 +114,6 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 	 */
 	private static int maximumInitialCapacity = 10000;
 
-	public static final class StringLikeComparator implements Comparator<Object> {
-		@Override
-		public int compare(final Object x, final Object y) {
-			final String a = ScriptRuntime.toString(x);
-			final String b = ScriptRuntime.toString(y);
-			return a.compareTo(b);
-		}
-	}
-
-	public static final class ElementComparator implements Comparator<Object> {
-		private final Comparator<Object> child;
-
-		public ElementComparator() {
-			child = STRING_COMPARATOR;
-		}
-
-		public ElementComparator(Comparator<Object> c) {
-			child = c;
-		}
-
-		@Override
-		public int compare(final Object x, final Object y) {
-			// Sort NOT_FOUND to very end, Undefined before that, exclusively, as per
-			// ECMA 22.1.3.25.1.
-			if (x == Undefined.instance) {
-				if (y == Undefined.instance) {
-					return 0;
-				}
-				if (y == NOT_FOUND) {
-					return -1;
-				}
-				return 1;
-			} else if (x == NOT_FOUND) {
-				return y == NOT_FOUND ? 0 : 1;
-			}
-
-			if (y == NOT_FOUND) {
-				return -1;
-			}
-			if (y == Undefined.instance) {
-				return -1;
-			}
-
-			return child.compare(x, y);
-		}
-	}
-
 	static void init(Scriptable scope, boolean sealed) {
 		NativeArray obj = new NativeArray(0);
 		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
@@ -524,7 +476,9 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 					}
 					if (i < na.dense.length) {
 						Object temp = na.dense[i];
-						if (temp != null && temp != Undefined.instance && temp != NOT_FOUND) {
+						if (temp instanceof Number n) {
+							ScriptRuntime.numberToString(n.doubleValue(), sb);
+						} else if (temp != null && temp != Undefined.instance && temp != NOT_FOUND) {
 							sb.append(ScriptRuntime.toString(temp));
 						}
 					}
@@ -600,8 +554,7 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			final Callable jsCompareFunction = ScriptRuntime.getValueFunctionAndThis(args[0], cx);
 			final Scriptable funThis = ScriptRuntime.lastStoredScriptable(cx);
 			final Object[] cmpBuf = new Object[2]; // Buffer for cmp arguments
-			comparator = new ElementComparator((x, y) -> {
-				// This comparator is invoked only for non-undefined objects
+			comparator = (x, y) -> {
 				cmpBuf[0] = x;
 				cmpBuf[1] = y;
 				Object ret = jsCompareFunction.call(cx, scope, funThis, cmpBuf);
@@ -613,9 +566,9 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 					return +1;
 				}
 				return 0;
-			});
+			};
 		} else {
-			comparator = DEFAULT_COMPARATOR;
+			comparator = null;
 		}
 
 		long llength = getLengthProperty(cx, o, false);
@@ -624,22 +577,111 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 			throw Context.reportRuntimeError1("msg.arraylength.too.big", String.valueOf(llength));
 		}
 		// copy the JS array into a working array, so it can be
-		// sorted cheaply.
-		final Object[] working = new Object[length];
+		// sorted cheaply. Undefined and missing elements are never
+		// compared, they go to the end as per ECMA 22.1.3.25.1.
+		Object[] working = new Object[length];
+		int count = 0;
+		int undefinedCount = 0;
 		for (int i = 0; i != length; ++i) {
-			working[i] = getRawElem(o, i);
+			Object elem = getRawElem(o, i);
+			if (elem == Undefined.instance) {
+				undefinedCount++;
+			} else if (elem != NOT_FOUND) {
+				working[count++] = elem;
+			}
+		}
+		if (count != length) {
+			working = Arrays.copyOf(working, count);
 		}
 
-		Sorting.get().hybridSort(working, comparator);
+		if (comparator != null) {
+			Sorting.get().timSort(working, comparator);
+		} else {
+			sortAsStrings(working);
+		}
 
 		// copy the working array back into thisObj
 		for (int i = 0; i < length; ++i) {
-			setRawElem(cx, o, i, working[i]);
+			setRawElem(cx, o, i, i < count ? working[i] : i < count + undefinedCount ? Undefined.instance : NOT_FOUND);
 		}
 
 		return o;
 	}
 
+	/**
+	 * Sorts elements by their strings without converting them on every comparison. Integers are compared
+	 * as their strings would be, other elements are converted once. Neither calls scripts, so large arrays
+	 * are sorted in parallel.
+	 */
+	private static void sortAsStrings(Object[] working) {
+		boolean integers = true;
+		for (Object elem : working) {
+			if (!(elem instanceof Number n) || !isSafeInteger(n.doubleValue())) {
+				integers = false;
+				break;
+			}
+		}
+
+		if (integers) {
+			Arrays.parallelSort(working, (x, y) -> compareAsStrings(((Number) x).longValue(), ((Number) y).longValue()));
+			return;
+		}
+
+		SortKey[] keys = new SortKey[working.length];
+		for (int i = 0; i < working.length; i++) {
+			keys[i] = new SortKey(ScriptRuntime.toString(working[i]), working[i]);
+		}
+
+		Arrays.parallelSort(keys);
+
+		for (int i = 0; i < working.length; i++) {
+			working[i] = keys[i].value;
+		}
+	}
+
+	private record SortKey(String key, Object value) implements Comparable<SortKey> {
+		@Override
+		public int compareTo(SortKey o) {
+			return key.compareTo(o.key);
+		}
+	}
+
+	private static boolean isSafeInteger(double d) {
+		return d == (long) d && Math.abs(d) < 9007199254740992D;
+	}
+
+	/**
+	 * Compares two integers the way their strings compare, without creating the strings.
+	 */
+	private static int compareAsStrings(long x, long y) {
+		if ((x < 0) != (y < 0)) {
+			return x < 0 ? -1 : 1;
+		}
+
+		// "-12" is before "-3" just like "12" is before "3"
+		x = Math.abs(x);
+		y = Math.abs(y);
+		int xDigits = digits(x);
+		int yDigits = digits(y);
+
+		if (xDigits == yDigits) {
+			return Long.compare(x, y);
+		} else if (xDigits < yDigits) {
+			// A prefix sorts before the longer string
+			return x <= y / POWERS_OF_TEN[yDigits - xDigits] ? -1 : 1;
+		} else {
+			return x / POWERS_OF_TEN[xDigits - yDigits] < y ? -1 : 1;
+		}
+	}
+
+	private static int digits(long x) {
+		int digits = 1;
+		while (digits < POWERS_OF_TEN.length && x >= POWERS_OF_TEN[digits]) {
+			digits++;
+		}
+		return digits;
+	}
+
 	private static Object js_push(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
 		Scriptable o = ScriptRuntime.toObject(cx, scope, thisObj);
 
@@ -921,8 +963,6 @@ public class NativeArray extends IdScriptableObject implements List, DataObject
 		return newlen;
 	}
 
-	// Comparators for the js_sort method. Putting them here lets us unit-test them better.
-
 	private static long doConcat(Context cx, Scriptable scope, Scriptable result, Object arg, long offset) {
 		if (isConcatSpreadable(cx, scope, arg)) {
 			return concatSpreadArg(cx, result, (Scriptable) arg, offset);
@@ -6,10 +6,15 @@
 
 package dev.latvian.mods.rhino;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.zone.ZoneRules;
 
 /**
  * This class implements the Date native object.
@@ -93,14 +98,102 @@ final class NativeDate extends IdScriptableObject {
 	private static final int Id_toJSON = 47;
 	private static final int MAX_PROTOTYPE_ID = Id_toJSON;
 	private static final int Id_toGMTString = Id_toUTCString; // Alias, see Ecma B.2.6
-	/* cached values */
-	private static final TimeZone thisTimeZone = TimeZone.getDefault();
-	private static final double LocalTZA = thisTimeZone.getRawOffset();
-	//not thread safe
-	private static final DateFormat timeZoneFormatter = new SimpleDateFormat("zzz");
-	private static final DateFormat localeDateTimeFormatter = new SimpleDateFormat("MMMM d, yyyy h:mm:ss a z");
-	private static final DateFormat localeDateFormatter = new SimpleDateFormat("MMMM d, yyyy");
-	private static final DateFormat localeTimeFormatter = new SimpleDateFormat("h:mm:ss a z");
+	/**
+	 * Offsets of a time zone, from UTC and from local time. The last offset looked up each way is kept
+	 * with the range of times it is valid for, between the transitions around it, so that dates close
+	 * to each other don't search the zone rules again.
+	 */
+	private static final class ZoneOffsets {
+		private record Range(long start, long end, long localStart, long localEnd, int offset) {
+		}
+
+		private final ZoneRules rules;
+		private volatile Range utc;
+		private volatile Range local;
+
+		private ZoneOffsets(ZoneRules rules) {
+			this.rules = rules;
+
+			if (rules.isFixedOffset()) {
+				utc = local = new Range(Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000);
+			}
+		}
+
+		private Range rangeAt(long t) {
+			var instant = Instant.ofEpochMilli(t);
+			int offset = rules.getOffset(instant).getTotalSeconds() * 1000;
+			var previous = rules.previousTransition(instant.plusMillis(1L));
+			var next = rules.nextTransition(instant);
+			long start = Long.MIN_VALUE;
+			long localStart = Long.MIN_VALUE;
+			long end = Long.MAX_VALUE;
+			long localEnd = Long.MAX_VALUE;
+
+			if (previous != null) {
+				start = previous.toEpochSecond() * 1000L;
+				// Local times repeated by a transition to a smaller offset use the offset before it
+				localStart = start + Math.max(offset, previous.getOffsetBefore().getTotalSeconds() * 1000);
+			}
+
+			if (next != null) {
+				end = next.toEpochSecond() * 1000L;
+				localEnd = end + offset;
+			}
+
+			return new Range(start, end, localStart, localEnd, offset);
+		}
+
+		/**
+		 * @return offset in milliseconds of local time from UTC at the given UTC time
+		 */
+		private int getOffset(long t) {
+			var r = utc;
+
+			if (r == null || t < r.start || t >= r.end) {
+				utc = r = rangeAt(t);
+			}
+
+			return r.offset;
+		}
+
+		/**
+		 * @return offset in milliseconds of the given local time from UTC. Local times skipped or repeated by
+		 * a transition use the offset before it
+		 */
+		private int getOffsetFromLocal(long t) {
+			var r = local;
+
+			if (r != null && t >= r.localStart && t < r.localEnd) {
+				return r.offset;
+			}
+
+			var dateTime = LocalDateTime.ofEpochSecond(Math.floorDiv(t, 1000L), (int) Math.floorMod(t, 1000L) * 1_000_000, ZoneOffset.UTC);
+			int offset = rules.getOffset(dateTime).getTotalSeconds() * 1000;
+			r = rangeAt(t - offset);
+
+			if (r.offset == offset && t >= r.localStart && t < r.localEnd) {
+				local = r;
+			}
+
+			return offset;
+		}
+	}
+
+	private static final ZoneId timeZone = ZoneId.systemDefault();
+	private static final ZoneOffsets timeZoneOffsets = new ZoneOffsets(timeZone.getRules());
+	private static final DateTimeFormatter timeZoneFormatter = DateTimeFormatter.ofPattern("zzz").withZone(timeZone);
+	private static final DateTimeFormatter localeDateTimeFormatter = localeDate().appendPattern(" h:mm:ss a z").toFormatter().withZone(timeZone);
+	private static final DateTimeFormatter localeDateFormatter = localeDate().toFormatter().withZone(timeZone);
+	private static final DateTimeFormatter localeTimeFormatter = DateTimeFormatter.ofPattern("h:mm:ss a z").withZone(timeZone);
+
+	/**
+	 * "MMMM d, yyyy" as SimpleDateFormat printed it, the yyyy pattern of
+	 * DateTimeFormatter would put a plus sign in front of years with more
+	 * than four digits.
+	 */
+	private static DateTimeFormatterBuilder localeDate() {
+		return new DateTimeFormatterBuilder().appendPattern("MMMM d, ").appendValue(ChronoField.YEAR_OF_ERA, 4, 10, SignStyle.NORMAL);
+	}
 
 	static void init(Scriptable scope, boolean sealed) {
 		NativeDate obj = new NativeDate();
@@ -335,82 +428,12 @@ final class NativeDate extends IdScriptableObject {
 		return System.currentTimeMillis();
 	}
 
-	private static double DaylightSavingTA(double t) {
-		// Another workaround!  The JRE doesn't seem to know about DST
-		// before year 1 AD, so we map to equivalent dates for the
-		// purposes of finding DST. To be safe, we do this for years
-		// before 1970.
-		if (t < 0.0) {
-			int year = EquivalentYear(YearFromTime(t));
-			double day = MakeDay(year, MonthFromTime(t), DateFromTime(t));
-			t = MakeDate(day, TimeWithinDay(t));
-		}
-		Date date = new Date((long) t);
-		if (thisTimeZone.inDaylightTime(date)) {
-			return msPerHour;
-		}
-		return 0;
-	}
-
-	/*
-	 * Find a year for which any given date will fall on the same weekday.
-	 *
-	 * This function should be used with caution when used other than
-	 * for determining DST; it hasn't been proven not to produce an
-	 * incorrect year for times near year boundaries.
-	 */
-	private static int EquivalentYear(int year) {
-		int day = (int) DayFromYear(year) + 4;
-		day = day % 7;
-		if (day < 0) {
-			day += 7;
-		}
-		// Years and leap years on which Jan 1 is a Sunday, Monday, etc.
-		if (IsLeapYear(year)) {
-			switch (day) {
-				case 0:
-					return 1984;
-				case 1:
-					return 1996;
-				case 2:
-					return 1980;
-				case 3:
-					return 1992;
-				case 4:
-					return 1976;
-				case 5:
-					return 1988;
-				case 6:
-					return 1972;
-			}
-		} else {
-			switch (day) {
-				case 0:
-					return 1978;
-				case 1:
-					return 1973;
-				case 2:
-					return 1985;
-				case 3:
-					return 1986;
-				case 4:
-					return 1981;
-				case 5:
-					return 1971;
-				case 6:
-					return 1977;
-			}
-		}
-		// Unreachable
-		throw Kit.codeBug();
-	}
-
 	private static double LocalTime(double t) {
-		return t + LocalTZA + DaylightSavingTA(t);
+		return t + timeZoneOffsets.getOffset((long) t);
 	}
 
 	private static double internalUTC(double t) {
-		return t - LocalTZA - DaylightSavingTA(t - LocalTZA);
+		return t - timeZoneOffsets.getOffsetFromLocal((long) t);
 	}
 
 	private static int HourFromTime(double t) {
@@ -529,6 +552,62 @@ final class NativeDate extends IdScriptableObject {
 		return TimeClip(date_msecFromArgs(args));
 	}
 
+	private static int digits(String s, int start, int end) {
+		int value = 0;
+
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+
+			value = value * 10 + (c - '0');
+		}
+
+		return value;
+	}
+
+	/**
+	 * Parse the two most common forms of ISO-8601 dates, the one written by toISOString and a plain date:
+	 * <ul>
+	 * <li><code>YYYY-MM-DD'T'HH:mm:ss.sss'Z'</code></li>
+	 * <li><code>YYYY-MM-DD</code></li>
+	 * </ul>
+	 *
+	 * @return NaN if the string isn't exactly one of these, {@link #parseISOString(String)} handles the rest
+	 */
+	private static double parseISOFast(String s) {
+		int len = s.length();
+
+		if (len != 24 && len != 10 || s.charAt(4) != '-' || s.charAt(7) != '-') {
+			return ScriptRuntime.NaN;
+		}
+
+		int year = digits(s, 0, 4);
+		int month = digits(s, 5, 7);
+		int day = digits(s, 8, 10);
+
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > DaysInMonth(year, month)) {
+			return ScriptRuntime.NaN;
+		} else if (len == 10) {
+			return date_msecFromDate(year, month - 1, day, 0, 0, 0, 0);
+		} else if (s.charAt(10) != 'T' || s.charAt(13) != ':' || s.charAt(16) != ':' || s.charAt(19) != '.' || s.charAt(23) != 'Z') {
+			return ScriptRuntime.NaN;
+		}
+
+		int hour = digits(s, 11, 13);
+		int min = digits(s, 14, 16);
+		int sec = digits(s, 17, 19);
+		int msec = digits(s, 20, 23);
+
+		if (hour < 0 || hour > 23 || min < 0 || min > 59 || sec < 0 || sec > 59 || msec < 0) {
+			return ScriptRuntime.NaN;
+		}
+
+		return date_msecFromDate(year, month - 1, day, hour, min, sec, msec);
+	}
+
 	/**
 	 * 15.9.1.15 Date Time String Format<br>
 	 * Parse input string according to simplified ISO-8601 Extended Format:
@@ -667,7 +746,12 @@ final class NativeDate extends IdScriptableObject {
 	}
 
 	private static double date_parseString(String s) {
-		double d = parseISOString(s);
+		double d = parseISOFast(s);
+		if (!Double.isNaN(d)) {
+			return d;
+		}
+
+		d = parseISOString(s);
 		if (!Double.isNaN(d)) {
 			return d;
 		}
@@ -923,7 +1007,7 @@ final class NativeDate extends IdScriptableObject {
 
 			// offset from GMT in minutes.  The offset includes daylight
 			// savings, if it applies.
-			int minutes = (int) Math.floor((LocalTZA + DaylightSavingTA(t)) / msPerMinute);
+			int minutes = (int) Math.floor(timeZoneOffsets.getOffset((long) t) / msPerMinute);
 			// map 510 minutes to 0830 hours
 			int offset = (minutes / 60) * 100 + minutes % 60;
 			if (offset > 0) {
@@ -934,18 +1018,8 @@ final class NativeDate extends IdScriptableObject {
 			}
 			append0PaddedUint(result, offset, 4);
 
-			// Find an equivalent year before getting the timezone
-			// comment.  See DaylightSavingTA.
-			if (t < 0.0) {
-				int equiv = EquivalentYear(YearFromTime(local));
-				double day = MakeDay(equiv, MonthFromTime(t), DateFromTime(t));
-				t = MakeDate(day, TimeWithinDay(t));
-			}
 			result.append(" (");
-			Date date = new Date((long) t);
-			synchronized (timeZoneFormatter) {
-				result.append(timeZoneFormatter.format(date));
-			}
+			timeZoneFormatter.formatTo(Instant.ofEpochMilli((long) t), result);
 			result.append(')');
 		}
 		return result.toString();
@@ -996,16 +1070,14 @@ final class NativeDate extends IdScriptableObject {
 	}
 
 	private static String toLocale_helper(double t, int methodId) {
-		DateFormat formatter = switch (methodId) {
+		DateTimeFormatter formatter = switch (methodId) {
 			case Id_toLocaleString -> localeDateTimeFormatter;
 			case Id_toLocaleTimeString -> localeTimeFormatter;
 			case Id_toLocaleDateString -> localeDateFormatter;
 			default -> throw new AssertionError(); // unreachable
 		};
 
-		synchronized (formatter) {
-			return formatter.format(new Date((long) t));
-		}
+		return formatter.format(Instant.ofEpochMilli((long) t));
 	}
 
 	private static String js_toUTCString(double date) {
@@ -1851,7 +1923,7 @@ final class NativeDate extends IdScriptableObject {
 			case "setYear" -> Id_setYear;
 			case "toISOString" -> Id_toISOString;
 			case "toJSON" -> Id_toJSON;
-			default -> super.findPrototypeId(s);
+			default -> 0;
 		};
 	}
 }
@@ -254,7 +254,8 @@ public final class NativeJSON extends IdScriptableObject {
 			array++;
 		}
 
-		var mcl = remapper.getMappedClass(cl);
+		var names = remapper.remapClass(cl);
+		var mcl = names.getMappedClass();
 		StringBuilder clName = new StringBuilder(mcl.isEmpty() ? cl.getName() : mcl);
 
 		if (array > 0) {
@@ -316,7 +317,7 @@ public final class NativeJSON extends IdScriptableObject {
 
 			type(remapper, builder, field.getType());
 			builder.append(' ');
-			builder.append(remapper.getMappedField(cl, field));
+			builder.append(names.getMappedField(field));
 			list.add(builder.toString());
 		}
 
@@ -339,7 +340,7 @@ public final class NativeJSON extends IdScriptableObject {
 
 			type(remapper, builder, method.getReturnType());
 			builder.append(' ');
-			builder.append(remapper.getMappedMethod(cl, method));
+			builder.append(names.getMappedMethod(method));
 			params(remapper, builder, method.getParameterTypes());
 
 			String s = builder.toString();
@@ -438,7 +439,7 @@ public final class NativeJSON extends IdScriptableObject {
 			case "toSource" -> Id_toSource;
 			case "parse" -> Id_parse;
 			case "stringify" -> Id_stringify;
-			default -> super.findPrototypeId(s);
+			default -> 0;
 		};
 	}
 }
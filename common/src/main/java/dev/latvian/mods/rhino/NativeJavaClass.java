@@ -222,7 +222,7 @@ public class NativeJavaClass extends NativeJavaObject implements Function {
 		Class<?> classObject = getClassObject();
 		int modifiers = classObject.getModifiers();
 		if (!(Modifier.isInterface(modifiers) || Modifier.isAbstract(modifiers))) {
-			NativeJavaMethod ctors = members.ctors;
+			NativeJavaMethod ctors = members.getConstructors();
 			int index = ctors.findCachedFunction(members.contextData, args);
 			if (index < 0) {
 				String sig = NativeJavaMethod.scriptSignature(args);
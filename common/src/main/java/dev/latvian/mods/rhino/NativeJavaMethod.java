@@ -8,6 +8,7 @@ package dev.latvian.mods.rhino;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -471,6 +472,10 @@ public class NativeJavaMethod extends BaseFunction {
 			System.err.println(" ----- Returned " + retval + " actual = " + actualType + " expect = " + staticType);
 		}
 
+		if (retval instanceof CompletionStage<?> stage) {
+			return NativePromise.fromCompletionStage(cx, scope, stage);
+		}
+
 		SharedContextData contextData = SharedContextData.get(cx, scope);
 		Object wrapped = contextData.getWrapFactory().wrap(contextData, scope, retval, staticType);
 		if (debug) {
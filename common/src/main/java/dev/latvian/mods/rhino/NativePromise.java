@@ -0,0 +1,639 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package dev.latvian.mods.rhino;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * This class implements the Promise builtin and drives async functions.
+ * Reactions are scheduled with {@link Context#enqueueMicrotask(Runnable)}.
+ */
+public class NativePromise extends IdScriptableObject {
+	private static final Object PROMISE_TAG = "Promise";
+	private static final int Id_constructor = 1;
+	private static final int Id_then = 2;
+	private static final int Id_catch = 3;
+	private static final int Id_finally = 4;
+	private static final int SymbolId_toStringTag = 5;
+	private static final int MAX_PROTOTYPE_ID = SymbolId_toStringTag;
+	private static final int ConstructorId_resolve = -1;
+	private static final int ConstructorId_reject = -2;
+	private static final int ConstructorId_all = -3;
+	private static final int ConstructorId_allSettled = -4;
+	private static final int ConstructorId_any = -5;
+	private static final int ConstructorId_race = -6;
+
+	private enum State {
+		PENDING,
+		FULFILLED,
+		REJECTED
+	}
+
+	static void init(Scriptable scope, boolean sealed) {
+		NativePromise obj = new NativePromise();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+
+		// Promises created by then() and async functions have no constructor
+		// call to take the prototype from, same as ES6Generator.
+		if (scope instanceof ScriptableObject so) {
+			so.associateValue(PROMISE_TAG, obj);
+		}
+	}
+
+	/**
+	 * Starts an async function body and returns the promise of its result.
+	 * Each {@code await} is compiled as a yield, the awaited value is resolved
+	 * to a promise and the body resumes from a reaction job once it settles.
+	 */
+	static NativePromise async(Context cx, Scriptable scope, ES6Generator body) {
+		NativePromise promise = new NativePromise(scope);
+		new AsyncStep(promise, body, scope).resume(cx, GeneratorState.GENERATOR_SEND, Undefined.instance);
+		return promise;
+	}
+
+	/**
+	 * Converts a Java future to a promise. A future that completes later settles
+	 * the promise from a job scheduled on the job queue of the given Context.
+	 */
+	static NativePromise fromCompletionStage(Context cx, Scriptable scope, CompletionStage<?> stage) {
+		NativePromise promise = new NativePromise(scope);
+
+		if (stage instanceof CompletableFuture<?> future && future.isDone()) {
+			Object value;
+
+			try {
+				value = future.get();
+			} catch (ExecutionException | InterruptedException | RuntimeException ex) {
+				promise.reject(cx, javaRejection(cx, scope, ex));
+				return promise;
+			}
+
+			promise.resolve(cx, scope, javaValue(cx, scope, value));
+			return promise;
+		}
+
+		stage.whenComplete((value, error) -> enqueueJob(cx, scope, c -> {
+			if (error == null) {
+				promise.resolve(c, scope, javaValue(c, scope, value));
+			} else {
+				promise.reject(c, javaRejection(c, scope, error));
+			}
+		}));
+
+		return promise;
+	}
+
+	/**
+	 * Schedules a job on the job queue of the given Context. The job runs as a
+	 * top-level call, so script functions and async bodies may be resumed from it.
+	 */
+	private static void enqueueJob(Context cx, Scriptable scope, Consumer<Context> job) {
+		ContextFactory factory = cx.getFactory();
+		cx.enqueueMicrotask(() -> factory.call(c -> {
+			if (ScriptRuntime.hasTopCall(c)) {
+				job.accept(c);
+			} else {
+				ScriptRuntime.doTopCall((c1, s, thisObj, args) -> {
+					job.accept(c1);
+					return Undefined.instance;
+				}, c, scope, null, ScriptRuntime.EMPTY_OBJECTS, false);
+			}
+
+			return null;
+		}));
+	}
+
+	private static Object javaValue(Context cx, Scriptable scope, Object value) {
+		if (value == null) {
+			return Undefined.instance;
+		}
+
+		SharedContextData data = SharedContextData.get(cx, scope);
+		return data.getWrapFactory().wrap(data, scope, value, null);
+	}
+
+	private static Object javaRejection(Context cx, Scriptable scope, Throwable error) {
+		while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+			error = error.getCause();
+		}
+
+		if (error instanceof RhinoException re) {
+			return rejection(cx, scope, re);
+		}
+
+		return ScriptRuntime.wrapException(new WrappedException(error), scope, cx);
+	}
+
+	/**
+	 * Returns the value a script would catch for the given exception.
+	 */
+	static Object rejection(Context cx, Scriptable scope, RhinoException ex) {
+		if (ex instanceof JavaScriptException jse) {
+			return jse.getValue();
+		}
+
+		return ScriptRuntime.wrapException(ex, scope, cx);
+	}
+
+	private static NativePromise promiseResolve(Context cx, Scriptable scope, Object value) {
+		if (value instanceof NativePromise promise) {
+			return promise;
+		}
+
+		NativePromise promise = new NativePromise(scope);
+		promise.resolve(cx, scope, value);
+		return promise;
+	}
+
+	private static Callable toCallable(Object[] args, int index) {
+		return args.length > index && args[index] instanceof Callable c ? c : null;
+	}
+
+	private static NativePromise realThis(Scriptable thisObj, IdFunctionObject f) {
+		if (thisObj instanceof NativePromise promise) {
+			return promise;
+		}
+
+		throw incompatibleCallError(f);
+	}
+
+	private State state = State.PENDING;
+	private Object result = Undefined.instance;
+	private List<Reaction> reactions;
+
+	/**
+	 * Only for constructing the prototype object.
+	 */
+	private NativePromise() {
+	}
+
+	NativePromise(Scriptable scope) {
+		Scriptable top = ScriptableObject.getTopLevelScope(scope);
+		setParentScope(top);
+		setPrototype((Scriptable) ScriptableObject.getTopScopeValue(top, PROMISE_TAG));
+	}
+
+	@Override
+	public String getClassName() {
+		return "Promise";
+	}
+
+	@Override
+	protected void fillConstructorProperties(IdFunctionObject ctor) {
+		addIdFunctionProperty(ctor, PROMISE_TAG, ConstructorId_resolve, "resolve", 1);
+		addIdFunctionProperty(ctor, PROMISE_TAG, ConstructorId_reject, "reject", 1);
+		addIdFunctionProperty(ctor, PROMISE_TAG, ConstructorId_all, "all", 1);
+		addIdFunctionProperty(ctor, PROMISE_TAG, ConstructorId_allSettled, "allSettled", 1);
+		addIdFunctionProperty(ctor, PROMISE_TAG, ConstructorId_any, "any", 1);
+		addIdFunctionProperty(ctor, PROMISE_TAG, ConstructorId_race, "race", 1);
+		super.fillConstructorProperties(ctor);
+	}
+
+	@Override
+	public Object execIdCall(IdFunctionObject f, Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+		if (!f.hasTag(PROMISE_TAG)) {
+			return super.execIdCall(f, cx, scope, thisObj, args);
+		}
+
+		Object arg = args.length > 0 ? args[0] : Undefined.instance;
+
+		switch (f.methodId()) {
+			case Id_constructor:
+				if (thisObj != null) {
+					throw ScriptRuntime.typeError0("msg.promise.no.new");
+				}
+				return construct(cx, scope, arg);
+			case Id_then: {
+				NativePromise derived = new NativePromise(scope);
+				realThis(thisObj, f).addReaction(cx, new Reaction(scope, derived, toCallable(args, 0), toCallable(args, 1)));
+				return derived;
+			}
+			case Id_catch: {
+				NativePromise derived = new NativePromise(scope);
+				realThis(thisObj, f).addReaction(cx, new Reaction(scope, derived, null, toCallable(args, 0)));
+				return derived;
+			}
+			case Id_finally:
+				return realThis(thisObj, f).js_finally(cx, scope, toCallable(args, 0));
+			case ConstructorId_resolve:
+				return promiseResolve(cx, scope, arg);
+			case ConstructorId_reject: {
+				NativePromise promise = new NativePromise(scope);
+				promise.reject(cx, arg);
+				return promise;
+			}
+			case ConstructorId_all:
+			case ConstructorId_allSettled:
+			case ConstructorId_any:
+			case ConstructorId_race:
+				return combine(cx, scope, f.methodId(), arg);
+		}
+		throw new IllegalArgumentException("Promise.prototype has no method: " + f.getFunctionName());
+	}
+
+	private static NativePromise construct(Context cx, Scriptable scope, Object executor) {
+		if (!(executor instanceof Callable callable)) {
+			throw ScriptRuntime.notFunctionError(executor);
+		}
+
+		NativePromise promise = new NativePromise(scope);
+		ResolvingFunctions functions = new ResolvingFunctions(promise);
+
+		try {
+			callable.call(cx, scope, Undefined.SCRIPTABLE_UNDEFINED, new Object[]{functions.resolveFunction(scope), functions.rejectFunction(scope)});
+		} catch (RhinoException ex) {
+			functions.reject(cx, rejection(cx, scope, ex));
+		}
+
+		return promise;
+	}
+
+	private Object js_finally(Context cx, Scriptable scope, Callable onFinally) {
+		NativePromise derived = new NativePromise(scope);
+
+		if (onFinally == null) {
+			addReaction(cx, new Reaction(scope, derived, null, null));
+			return derived;
+		}
+
+		Callable thenFinally = (c, s, thisObj, args) -> {
+			Object value = args.length > 0 ? args[0] : Undefined.instance;
+			NativePromise done = promiseResolve(c, s, onFinally.call(c, s, Undefined.SCRIPTABLE_UNDEFINED, ScriptRuntime.EMPTY_OBJECTS));
+			NativePromise next = new NativePromise(s);
+			done.addReaction(c, new Reaction(s, next, (c1, s1, t1, a1) -> value, null));
+			return next;
+		};
+
+		Callable catchFinally = (c, s, thisObj, args) -> {
+			Object reason = args.length > 0 ? args[0] : Undefined.instance;
+			NativePromise done = promiseResolve(c, s, onFinally.call(c, s, Undefined.SCRIPTABLE_UNDEFINED, ScriptRuntime.EMPTY_OBJECTS));
+			NativePromise next = new NativePromise(s);
+			done.addReaction(c, new Reaction(s, next, (c1, s1, t1, a1) -> {
+				throw new JavaScriptException(reason, null, 0);
+			}, null));
+			return next;
+		};
+
+		addReaction(cx, new Reaction(scope, derived, thenFinally, catchFinally));
+		return derived;
+	}
+
+	/**
+	 * Implements Promise.all, allSettled, any and race, which only differ in
+	 * how they react to each element and when they settle the result.
+	 */
+	private static NativePromise combine(Context cx, Scriptable scope, int id, Object iterable) {
+		NativePromise promise = new NativePromise(scope);
+		ResolvingFunctions functions = new ResolvingFunctions(promise);
+		List<Object> values = new ArrayList<>();
+		int[] remaining = {1};
+
+		Consumer<Context> complete = c -> {
+			if (--remaining[0] == 0) {
+				Scriptable array = c.newArray(scope, values.toArray());
+
+				if (id == ConstructorId_any) {
+					Scriptable error = ScriptRuntime.newNativeError(c, scope, TopLevel.NativeErrors.Error, new Object[]{ScriptRuntime.getMessage0("msg.promise.any.reject")});
+					ScriptableObject.putProperty(error, "errors", array);
+					functions.reject(c, error);
+				} else {
+					functions.resolve(c, scope, array);
+				}
+			}
+		};
+
+		try {
+			Object iterator = ScriptRuntime.callIterator(iterable, cx, scope);
+
+			try (IteratorLikeIterable it = new IteratorLikeIterable(cx, scope, iterator)) {
+				for (Object item : it) {
+					int index = values.size();
+					values.add(Undefined.instance);
+					remaining[0]++;
+
+					Callable onFulfilled, onRejected;
+
+					switch (id) {
+						case ConstructorId_all -> {
+							onFulfilled = (c, s, t, a) -> {
+								values.set(index, a.length > 0 ? a[0] : Undefined.instance);
+								complete.accept(c);
+								return Undefined.instance;
+							};
+							onRejected = (c, s, t, a) -> {
+								functions.reject(c, a.length > 0 ? a[0] : Undefined.instance);
+								return Undefined.instance;
+							};
+						}
+						case ConstructorId_allSettled -> {
+							onFulfilled = (c, s, t, a) -> {
+								Scriptable entry = c.newObject(s);
+								ScriptableObject.putProperty(entry, "status", "fulfilled");
+								ScriptableObject.putProperty(entry, "value", a.length > 0 ? a[0] : Undefined.instance);
+								values.set(index, entry);
+								complete.accept(c);
+								return Undefined.instance;
+							};
+							onRejected = (c, s, t, a) -> {
+								Scriptable entry = c.newObject(s);
+								ScriptableObject.putProperty(entry, "status", "rejected");
+								ScriptableObject.putProperty(entry, "reason", a.length > 0 ? a[0] : Undefined.instance);
+								values.set(index, entry);
+								complete.accept(c);
+								return Undefined.instance;
+							};
+						}
+						case ConstructorId_any -> {
+							onFulfilled = (c, s, t, a) -> {
+								functions.resolve(c, s, a.length > 0 ? a[0] : Undefined.instance);
+								return Undefined.instance;
+							};
+							onRejected = (c, s, t, a) -> {
+								values.set(index, a.length > 0 ? a[0] : Undefined.instance);
+								complete.accept(c);
+								return Undefined.instance;
+							};
+						}
+						default -> {
+							onFulfilled = (c, s, t, a) -> {
+								functions.resolve(c, s, a.length > 0 ? a[0] : Undefined.instance);
+								return Undefined.instance;
+							};
+							onRejected = (c, s, t, a) -> {
+								functions.reject(c, a.length > 0 ? a[0] : Undefined.instance);
+								return Undefined.instance;
+							};
+						}
+					}
+
+					promiseResolve(cx, scope, item).addReaction(cx, new Reaction(scope, null, onFulfilled, onRejected));
+				}
+			}
+
+			if (id != ConstructorId_race) {
+				complete.accept(cx);
+			}
+		} catch (RhinoException ex) {
+			functions.reject(cx, rejection(cx, scope, ex));
+		}
+
+		return promise;
+	}
+
+	/**
+	 * Resolves this promise with a value, adopting its state if it is a thenable.
+	 */
+	void resolve(Context cx, Scriptable scope, Object value) {
+		if (value == this) {
+			reject(cx, ScriptRuntime.wrapException(ScriptRuntime.typeError0("msg.promise.cycle"), scope, cx));
+			return;
+		}
+
+		if (value instanceof Scriptable thenable) {
+			Object then;
+
+			try {
+				then = ScriptableObject.getProperty(thenable, "then");
+			} catch (RhinoException ex) {
+				reject(cx, rejection(cx, scope, ex));
+				return;
+			}
+
+			if (then instanceof Callable thenCallable) {
+				enqueueJob(cx, scope, c -> {
+					ResolvingFunctions functions = new ResolvingFunctions(this);
+
+					try {
+						thenCallable.call(c, scope, thenable, new Object[]{functions.resolveFunction(scope), functions.rejectFunction(scope)});
+					} catch (RhinoException ex) {
+						functions.reject(c, rejection(c, scope, ex));
+					}
+				});
+				return;
+			}
+		}
+
+		settle(cx, State.FULFILLED, value);
+	}
+
+	void reject(Context cx, Object reason) {
+		settle(cx, State.REJECTED, reason);
+	}
+
+	private void settle(Context cx, State newState, Object value) {
+		if (state != State.PENDING) {
+			return;
+		}
+
+		state = newState;
+		result = value;
+		List<Reaction> pending = reactions;
+		reactions = null;
+
+		if (pending != null) {
+			for (Reaction reaction : pending) {
+				reaction.schedule(cx, newState == State.FULFILLED, value);
+			}
+		}
+	}
+
+	private void addReaction(Context cx, Reaction reaction) {
+		if (state == State.PENDING) {
+			if (reactions == null) {
+				reactions = new ArrayList<>(1);
+			}
+
+			reactions.add(reaction);
+		} else {
+			reaction.schedule(cx, state == State.FULFILLED, result);
+		}
+	}
+
+	@Override
+	protected void initPrototypeId(int id) {
+		if (id == SymbolId_toStringTag) {
+			initPrototypeValue(SymbolId_toStringTag, SymbolKey.TO_STRING_TAG, getClassName(), DONTENUM | READONLY);
+			return;
+		}
+
+		String s;
+		int arity;
+		switch (id) {
+			case Id_constructor -> {
+				arity = 1;
+				s = "constructor";
+			}
+			case Id_then -> {
+				arity = 2;
+				s = "then";
+			}
+			case Id_catch -> {
+				arity = 1;
+				s = "catch";
+			}
+			case Id_finally -> {
+				arity = 1;
+				s = "finally";
+			}
+			default -> throw new IllegalArgumentException(String.valueOf(id));
+		}
+		initPrototypeMethod(PROMISE_TAG, id, s, arity);
+	}
+
+	@Override
+	protected int findPrototypeId(Symbol k) {
+		if (SymbolKey.TO_STRING_TAG.equals(k)) {
+			return SymbolId_toStringTag;
+		}
+		return 0;
+	}
+
+	@Override
+	protected int findPrototypeId(String s) {
+		return switch (s) {
+			case "constructor" -> Id_constructor;
+			case "then" -> Id_then;
+			case "catch" -> Id_catch;
+			case "finally" -> Id_finally;
+			default -> 0;
+		};
+	}
+
+	/**
+	 * A handler pair registered with then(), settling the derived promise with its result.
+	 */
+	private record Reaction(Scriptable scope, NativePromise derived, Callable onFulfilled, Callable onRejected) {
+		void schedule(Context cx, boolean fulfilled, Object value) {
+			enqueueJob(cx, scope, c -> run(c, fulfilled, value));
+		}
+
+		private void run(Context cx, boolean fulfilled, Object value) {
+			Callable handler = fulfilled ? onFulfilled : onRejected;
+
+			if (handler == null) {
+				if (derived != null) {
+					if (fulfilled) {
+						derived.resolve(cx, scope, value);
+					} else {
+						derived.reject(cx, value);
+					}
+				}
+
+				return;
+			}
+
+			Object handlerResult;
+
+			try {
+				handlerResult = handler.call(cx, scope, Undefined.SCRIPTABLE_UNDEFINED, new Object[]{value});
+			} catch (RhinoException ex) {
+				if (derived != null) {
+					derived.reject(cx, rejection(cx, scope, ex));
+				}
+
+				return;
+			}
+
+			if (derived != null) {
+				derived.resolve(cx, scope, handlerResult);
+			}
+		}
+	}
+
+	/**
+	 * The resolve and reject functions of a promise, of which only the first call has any effect.
+	 */
+	private static final class ResolvingFunctions {
+		private final NativePromise promise;
+		private boolean alreadyResolved;
+
+		private ResolvingFunctions(NativePromise promise) {
+			this.promise = promise;
+		}
+
+		void resolve(Context cx, Scriptable scope, Object value) {
+			if (!alreadyResolved) {
+				alreadyResolved = true;
+				promise.resolve(cx, scope, value);
+			}
+		}
+
+		void reject(Context cx, Object reason) {
+			if (!alreadyResolved) {
+				alreadyResolved = true;
+				promise.reject(cx, reason);
+			}
+		}
+
+		BaseFunction resolveFunction(Scriptable scope) {
+			BaseFunction f = new BaseFunction() {
+				@Override
+				public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+					resolve(cx, scope, args.length > 0 ? args[0] : Undefined.instance);
+					return Undefined.instance;
+				}
+			};
+
+			ScriptRuntime.setFunctionProtoAndParent(f, scope);
+			return f;
+		}
+
+		BaseFunction rejectFunction(Scriptable scope) {
+			BaseFunction f = new BaseFunction() {
+				@Override
+				public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+					reject(cx, args.length > 0 ? args[0] : Undefined.instance);
+					return Undefined.instance;
+				}
+			};
+
+			ScriptRuntime.setFunctionProtoAndParent(f, scope);
+			return f;
+		}
+	}
+
+	/**
+	 * Resumes the body of an async function each time an awaited promise settles.
+	 */
+	private record AsyncStep(NativePromise promise, ES6Generator body, Scriptable scope) {
+		void resume(Context cx, int operation, Object value) {
+			Scriptable step;
+
+			try {
+				step = body.resume(cx, scope, operation, value);
+			} catch (RhinoException ex) {
+				promise.reject(cx, rejection(cx, scope, ex));
+				return;
+			}
+
+			Object awaited = ScriptableObject.getProperty(step, ES6Iterator.VALUE_PROPERTY);
+
+			if (awaited == NOT_FOUND) {
+				awaited = Undefined.instance;
+			}
+
+			if (ScriptRuntime.isIteratorDone(cx, step)) {
+				promise.resolve(cx, scope, awaited);
+				return;
+			}
+
+			promiseResolve(cx, scope, awaited).addReaction(cx, new Reaction(scope, null, (c, s, t, args) -> {
+				resume(c, GeneratorState.GENERATOR_SEND, args[0]);
+				return Undefined.instance;
+			}, (c, s, t, args) -> {
+				resume(c, GeneratorState.GENERATOR_THROW, args[0]);
+				return Undefined.instance;
+			}));
+		}
+	}
+}
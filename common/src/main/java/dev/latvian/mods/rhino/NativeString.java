@@ -137,7 +137,7 @@ final class NativeString extends IdScriptableObject implements Wrapper {
 	 * See ECMA 15.5.4.6.  Uses Java String.indexOf()
 	 * OPT to add - BMH searching from jsstr.c.
 	 */
-	private static int js_indexOf(int methodId, String target, Object[] args) {
+	private static int js_indexOf(int methodId, CharSequence target, Object[] args) {
 		String searchStr = ScriptRuntime.toString(args, 0);
 		double position = ScriptRuntime.toInteger(args, 1);
 
@@ -161,9 +161,9 @@ final class NativeString extends IdScriptableObject implements Wrapper {
 			if (args.length == 0 || args.length == 1 || (args.length == 2 && args[1] == Undefined.instance)) {
 				position = target.length();
 			}
-			return target.substring(0, (int) position).endsWith(searchStr) ? 0 : -1;
+			return ConsString.regionMatches(target, (int) position - searchStr.length(), searchStr) ? 0 : -1;
 		}
-		return methodId == Id_startsWith ? target.startsWith(searchStr, (int) position) ? 0 : -1 : target.indexOf(searchStr, (int) position);
+		return methodId == Id_startsWith ? ConsString.regionMatches(target, (int) position, searchStr) ? 0 : -1 : ConsString.indexOf(target, searchStr, (int) position);
 	}
 
 	/*
@@ -862,14 +862,14 @@ final class NativeString extends IdScriptableObject implements Wrapper {
 				}
 
 				case Id_indexOf: {
-					String thisString = ScriptRuntime.toString(ScriptRuntimeES6.requireObjectCoercible(cx, thisObj, f));
+					CharSequence thisString = ScriptRuntime.toCharSequence(ScriptRuntimeES6.requireObjectCoercible(cx, thisObj, f));
 					return ScriptRuntime.wrapInt(js_indexOf(Id_indexOf, thisString, args));
 				}
 
 				case Id_includes:
 				case Id_startsWith:
 				case Id_endsWith:
-					String thisString = ScriptRuntime.toString(ScriptRuntimeES6.requireObjectCoercible(cx, thisObj, f));
+					CharSequence thisString = ScriptRuntime.toCharSequence(ScriptRuntimeES6.requireObjectCoercible(cx, thisObj, f));
 					if (args.length > 0 && args[0] instanceof NativeRegExp) {
 						throw ScriptRuntime.typeError2("msg.first.arg.not.regexp", String.class.getSimpleName(), f.getFunctionName());
 					}
@@ -1246,7 +1246,7 @@ final class NativeString extends IdScriptableObject implements Wrapper {
 			case "padEnd" -> Id_padEnd;
 			case "trimStart" -> Id_trimStart;
 			case "trimEnd" -> Id_trimEnd;
-			default -> super.findPrototypeId(s);
+			default -> 0;
 		};
 	}
 }
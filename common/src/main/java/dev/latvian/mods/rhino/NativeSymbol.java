@@ -6,8 +6,8 @@
 
 package dev.latvian.mods.rhino;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is an implementation of the standard "Symbol" type that implements
@@ -243,7 +243,10 @@ public class NativeSymbol extends IdScriptableObject implements Symbol {
 
 		if (ret == null) {
 			ret = construct(cx, scope, new Object[]{name});
-			table.put(name, ret);
+			NativeSymbol existing = table.putIfAbsent(name, ret);
+			if (existing != null) {
+				ret = existing;
+			}
 		}
 		return ret;
 	}
@@ -330,8 +333,9 @@ public class NativeSymbol extends IdScriptableObject implements Symbol {
 		ScriptableObject top = (ScriptableObject) getTopLevelScope(this);
 		Map<String, NativeSymbol> map = (Map<String, NativeSymbol>) top.getAssociatedValue(GLOBAL_TABLE_KEY);
 		if (map == null) {
-			map = new HashMap<>();
-			top.associateValue(GLOBAL_TABLE_KEY, map);
+			// The table lives in the scope that defined Symbol, which may be a
+			// template shared by scopes running on other threads
+			map = (Map<String, NativeSymbol>) top.associateValue(GLOBAL_TABLE_KEY, new ConcurrentHashMap<String, NativeSymbol>());
 		}
 		return map;
 	}
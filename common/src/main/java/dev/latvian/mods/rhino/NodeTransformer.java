@@ -6,13 +6,17 @@
 
 package dev.latvian.mods.rhino;
 
+import dev.latvian.mods.rhino.ast.AstSymbol;
 import dev.latvian.mods.rhino.ast.FunctionNode;
 import dev.latvian.mods.rhino.ast.Jump;
+import dev.latvian.mods.rhino.ast.Name;
 import dev.latvian.mods.rhino.ast.Scope;
 import dev.latvian.mods.rhino.ast.ScriptNode;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class transforms a tree to a lower-level representation for codegen.
@@ -54,9 +58,65 @@ public class NodeTransformer {
 		return replacement;
 	}
 
+	/**
+	 * Collects every name used inside nested functions of a function, including
+	 * names of the nested functions themselves.
+	 *
+	 * @return false if nested functions use <code>eval</code>, <code>arguments</code> or <code>with</code>,
+	 * which can reach any variable of the enclosing function
+	 */
+	private static boolean collectClosureNames(ScriptNode tree, Set<String> names) {
+		for (int i = 0; i != tree.getFunctionCount(); ++i) {
+			FunctionNode fn = tree.getFunctionNode(i);
+			if (fn.getFunctionName() != null) {
+				names.add(fn.getFunctionName().getIdentifier());
+			}
+			if (fn.isLazy()) {
+				// Body wasn't parsed, all its words count as names
+				if (fn.getLazyNames().contains("with")) {
+					return false;
+				}
+				names.addAll(fn.getLazyNames());
+			}
+			if (!collectNames(fn, names) || !collectClosureNames(fn, names)) {
+				return false;
+			}
+		}
+		return !names.contains("eval") && !names.contains("arguments");
+	}
+
+	private static boolean isBlockScoped(ScriptNode tree, Set<String> names) {
+		for (AstSymbol symbol : tree.getSymbols()) {
+			if (symbol.getContainingTable() != tree && names.contains(symbol.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean collectNames(Node node, Set<String> names) {
+		for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+			int type = child.getType();
+			if (type == Token.ENTERWITH || type == Token.WITH) {
+				return false;
+			}
+			if (child instanceof Name name) {
+				names.add(name.getIdentifier());
+			}
+			if (!collectNames(child, names)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private ObjArray loops;
 	private ObjArray loopEnds;
 	private boolean hasFinally;
+	// Names that must stay in the activation object of a function that only
+	// requires one for its nested functions, null if all variables must
+	// or the function has no activation object
+	private Set<String> closureNames;
 
 	public NodeTransformer() {
 	}
@@ -89,6 +149,18 @@ public class NodeTransformer {
 
 		// Flatten all only if we are not using scope objects for block scope
 		boolean createScopeObjects = tree.getType() != Token.FUNCTION || ((FunctionNode) tree).requiresActivation();
+
+		closureNames = null;
+		if (createScopeObjects && tree instanceof FunctionNode fn && fn.requiresActivationForClosuresOnly()) {
+			Set<String> names = new HashSet<>();
+			if (collectClosureNames(fn, names) && !isBlockScoped(fn, names)) {
+				// Nested functions only see variables declared at top level of the function,
+				// so blocks can be treated like in functions without activation objects
+				closureNames = names;
+				createScopeObjects = false;
+			}
+		}
+
 		tree.flattenSymbolTable(!createScopeObjects);
 
 		transformCompilationUnit_r(tree, tree, tree, createScopeObjects, inStrictMode);
@@ -283,8 +355,7 @@ public class NodeTransformer {
 					if (child.getType() == Token.LET) {
 						// We have a let statement or expression rather than a
 						// let declaration
-						boolean createWith = tree.getType() != Token.FUNCTION || ((FunctionNode) tree).requiresActivation();
-						node = visitLet(createWith, parent, previous, node);
+						node = visitLet(createScopeObjects, parent, previous, node);
 						break;
 					}
 					// fall through to process let declaration...
@@ -324,6 +395,14 @@ public class NodeTransformer {
 					Scope defining = scope.getDefiningScope(node.getString());
 					if (defining != null) {
 						node.setScope(defining);
+						if (closureNames != null && !closureNames.contains(node.getString())) {
+							// Activation object does not hold this variable, read it from frame
+							Node typeof = new Node(Token.TYPEOF);
+							replaceCurrent(parent, previous, node, typeof);
+							node.setType(Token.GETVAR);
+							typeof.addChildToBack(node);
+							node = typeof;
+						}
 					}
 				}
 				break;
@@ -384,6 +463,10 @@ public class NodeTransformer {
 					}
 					String name = nameSource.getString();
 					Scope defining = scope.getDefiningScope(name);
+					if (defining != null && closureNames != null && closureNames.contains(name)) {
+						// Nested functions may refer to it, keep in activation object
+						break;
+					}
 					if (defining != null) {
 						nameSource.setScope(defining);
 						if (type == Token.NAME) {
@@ -0,0 +1,96 @@
+package dev.latvian.mods.rhino;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts executed interpreter opcodes and pairs of consecutive opcodes.
+ * Used to pick candidates for superinstructions from real workloads.
+ * <p>
+ * Install with {@link Context#setOpcodeProfiler(OpcodeProfiler)}. A profiler is
+ * not thread-safe and should only be installed in one Context at a time.
+ */
+public final class OpcodeProfiler {
+	private static final int OPCODE_COUNT = Token.LAST_BYTECODE_TOKEN - Icode.MIN_ICODE + 1;
+
+	public record OpcodePair(String first, String second, long count) {
+		@Override
+		public String toString() {
+			return first + " -> " + second + ": " + count;
+		}
+	}
+
+	private final long[] counts = new long[OPCODE_COUNT];
+	private final long[] pairCounts = new long[OPCODE_COUNT * OPCODE_COUNT];
+	private int previous = -1;
+
+	void record(int op) {
+		int index = op - Icode.MIN_ICODE;
+		counts[index]++;
+
+		if (previous != -1) {
+			pairCounts[previous * OPCODE_COUNT + index]++;
+		}
+
+		previous = index;
+	}
+
+	public void reset() {
+		previous = -1;
+
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0L;
+		}
+
+		for (int i = 0; i < pairCounts.length; i++) {
+			pairCounts[i] = 0L;
+		}
+	}
+
+	public long getTotalCount() {
+		long total = 0L;
+
+		for (long count : counts) {
+			total += count;
+		}
+
+		return total;
+	}
+
+	public long getCount(int op) {
+		return counts[op - Icode.MIN_ICODE];
+	}
+
+	/**
+	 * @param limit maximum amount of pairs to return
+	 * @return most frequently executed opcode pairs, most frequent first
+	 */
+	public List<OpcodePair> getTopPairs(int limit) {
+		List<OpcodePair> list = new ArrayList<>();
+
+		for (int i = 0; i < pairCounts.length; i++) {
+			long count = pairCounts[i];
+
+			if (count > 0L) {
+				list.add(new OpcodePair(Icode.bytecodeName(i / OPCODE_COUNT + Icode.MIN_ICODE), Icode.bytecodeName(i % OPCODE_COUNT + Icode.MIN_ICODE), count));
+			}
+		}
+
+		list.sort((a, b) -> Long.compare(b.count, a.count));
+		return list.size() > limit ? new ArrayList<>(list.subList(0, limit)) : list;
+	}
+
+	public String report(int limit) {
+		StringBuilder sb = new StringBuilder();
+		long total = getTotalCount();
+		sb.append("Executed opcodes: ").append(total);
+
+		for (OpcodePair pair : getTopPairs(limit)) {
+			sb.append('\n');
+			sb.append(pair);
+			sb.append(String.format(" (%.2f%%)", pair.count * 100D / Math.max(total, 1L)));
+		}
+
+		return sb.toString();
+	}
+}
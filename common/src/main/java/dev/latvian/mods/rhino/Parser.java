@@ -575,6 +575,8 @@ public class Parser {
 					} catch (ParserException e) {
 						break;
 					}
+				} else if (tt == Token.NAME && isAsyncFunctionAhead()) {
+					n = asyncFunction(calledByCompileFunction ? FunctionNode.FUNCTION_EXPRESSION : FunctionNode.FUNCTION_STATEMENT);
 				} else if (tt == Token.COMMENT) {
 					n = scannedComments.get(scannedComments.size() - 1);
 					consumeToken();
@@ -670,6 +672,12 @@ public class Parser {
 							consumeToken();
 							n = function(FunctionNode.FUNCTION_STATEMENT);
 							break;
+						case Token.NAME:
+							if (isAsyncFunctionAhead()) {
+								n = asyncFunction(FunctionNode.FUNCTION_STATEMENT);
+								break;
+							}
+							// fall through
 						default:
 							n = statement();
 							if (inDirectivePrologue) {
@@ -705,6 +713,23 @@ public class Parser {
 		return pn;
 	}
 
+	/**
+	 * Creates the empty body of a function that is compiled on first call. The body was skipped
+	 * by the token stream after its opening brace, which is the current token.
+	 */
+	private AstNode lazyFunctionBody(FunctionNode fnNode, int lpPos, int lpLineno, Set<String> names) throws IOException {
+		int pos = ts.tokenBeg;
+		Block pn = new Block(pos);
+		pn.setLineno(lpLineno);
+		consumeToken();
+		getAndResetJsDoc();
+		mustMatchToken(Token.RC, "msg.no.brace.after.body", true);
+		int end = ts.tokenEnd;
+		pn.setLength(end - pos);
+		fnNode.setLazyBody(ts.getSourceString(), lpPos, end, lpLineno, names);
+		return pn;
+	}
+
 	private void parseFunctionParams(FunctionNode fnNode) throws IOException {
 		if (matchToken(Token.RP, true)) {
 			fnNode.setRp(ts.tokenBeg - fnNode.getPosition());
@@ -771,13 +796,34 @@ public class Parser {
 	}
 
 	private FunctionNode function(int type) throws IOException {
-		return function(type, false);
+		return function(type, false, false);
+	}
+
+	/**
+	 * Checks whether the current name token is {@code async} followed by {@code function}
+	 * on the same line.
+	 */
+	private boolean isAsyncFunctionAhead() {
+		return "async".equals(ts.getString()) && ts.isFunctionKeywordAhead();
+	}
+
+	private FunctionNode asyncFunction(int type) throws IOException {
+		consumeToken();
+		mustMatchToken(Token.FUNCTION, "msg.syntax", true);
+		return function(type, false, true);
+	}
+
+	private boolean insideAsyncFunction() {
+		return currentScriptOrFn instanceof FunctionNode fn && fn.isAsync();
 	}
 
-	private FunctionNode function(int type, boolean isGenerator) throws IOException {
+	private FunctionNode function(int type, boolean isGenerator, boolean isAsync) throws IOException {
 		int syntheticType = type;
 		int baseLineno = ts.lineno;  // line number where source starts
 		int functionSourceStart = ts.tokenBeg;  // start of "function" kwd
+		// Bodies of functions declared with the keyword can be compiled on first call,
+		// but not the function compiled by compileFunction
+		boolean lazy = compilerEnv.isLazyFunctions() && (currentToken == Token.FUNCTION || isGenerator && currentToken == Token.MUL) && !(calledByCompileFunction && nestingOfFunction == 0);
 		Name name = null;
 		AstNode memberExprNode = null;
 
@@ -796,11 +842,15 @@ public class Parser {
 			// Anonymous function:  leave name as null
 		} else if (matchToken(Token.MUL, true)) {
 			// ES6 generator function
-			return function(type, true);
+			if (isAsync) {
+				reportError("msg.async.generator");
+			}
+			return function(type, true, false);
 		} else {
 			mustMatchToken(Token.LP, "msg.no.paren.parms", true);
 		}
 		int lpPos = currentToken == Token.LP ? ts.tokenBeg : -1;
+		int lpLineno = ts.lineno;
 
 		if (memberExprNode != null) {
 			syntheticType = FunctionNode.FUNCTION_EXPRESSION;
@@ -813,7 +863,9 @@ public class Parser {
 
 		FunctionNode fnNode = new FunctionNode(functionSourceStart, name);
 		fnNode.setFunctionType(type);
-		if (isGenerator) {
+		if (isAsync) {
+			fnNode.setIsAsync();
+		} else if (isGenerator) {
 			fnNode.setIsES6Generator();
 		}
 		if (lpPos != -1) {
@@ -825,7 +877,12 @@ public class Parser {
 		PerFunctionVariables savedVars = new PerFunctionVariables(fnNode);
 		try {
 			parseFunctionParams(fnNode);
-			fnNode.setBody(parseFunctionBody(type, fnNode));
+			Set<String> names = lazy && lpPos != -1 && peekToken() == Token.LC ? new HashSet<>() : null;
+			if (names != null && ts.skipFunctionBody(names, isGenerator)) {
+				fnNode.setBody(lazyFunctionBody(fnNode, lpPos, lpLineno, names));
+			} else {
+				fnNode.setBody(parseFunctionBody(type, fnNode));
+			}
 			fnNode.setLength(ts.tokenEnd - functionSourceStart);
 
 			if (compilerEnv.isStrictMode() && !fnNode.getBody().hasConsistentReturnUsage()) {
@@ -1109,6 +1166,9 @@ public class Parser {
 				return function(FunctionNode.FUNCTION_EXPRESSION_STATEMENT);
 
 			case Token.NAME:
+				if (isAsyncFunctionAhead()) {
+					return asyncFunction(FunctionNode.FUNCTION_EXPRESSION_STATEMENT);
+				}
 				pn = nameOrLabel();
 				if (pn instanceof ExpressionStatement) {
 					break;
@@ -2415,6 +2475,19 @@ public class Parser {
 		}
 		int line = ts.lineno;
 
+		if (tt == Token.RESERVED && "await".equals(ts.getString()) && insideAsyncFunction()) {
+			// await suspends the async function body like a yield, see NativePromise
+			consumeToken();
+			int pos = ts.tokenBeg;
+			AstNode operand = unaryExpr();
+			node = new Yield(pos, getNodeEnd(operand) - pos, operand, false);
+			node.setLineno(line);
+			endFlags |= Node.END_YIELDS;
+			setRequiresActivation();
+			setIsGenerator();
+			return node;
+		}
+
 		switch (tt) {
 			case Token.VOID, Token.NOT, Token.BITNOT, Token.TYPEOF, Token.DELPROP -> {
 				consumeToken();
@@ -2818,6 +2891,10 @@ public class Parser {
 	private AstNode name(int ttFlagged, int tt) throws IOException {
 		String nameString = ts.getString();
 		int namePos = ts.tokenBeg, nameLineno = ts.lineno;
+		if ("async".equals(nameString) && ts.isFunctionKeywordAhead()) {
+			mustMatchToken(Token.FUNCTION, "msg.syntax", true);
+			return function(FunctionNode.FUNCTION_EXPRESSION, false, true);
+		}
 		if (0 != (ttFlagged & TI_CHECK_LABEL) && peekToken() == Token.COLON) {
 			// Do not consume colon.  It is used as an unwind indicator
 			// to return to statementHelper.
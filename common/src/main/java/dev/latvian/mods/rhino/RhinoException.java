@@ -57,6 +57,18 @@ public abstract class RhinoException extends RuntimeException {
 		}
 	}
 
+	/**
+	 * Skips walking the Java stack unless the current Context is {@link Context#isCapturingJavaStack() capturing} it.
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		Context cx = Context.getCurrentContext();
+		if (cx != null && !cx.isCapturingJavaStack()) {
+			return this;
+		}
+		return super.fillInStackTrace();
+	}
+
 	@Override
 	public final String getMessage() {
 		String details = details();
@@ -197,6 +209,9 @@ public abstract class RhinoException extends RuntimeException {
 	}
 
 	private String generateStackTrace() {
+		if (getStackTrace().length == 0) {
+			return this + System.lineSeparator() + getScriptStackTrace(-1, null);
+		}
 		// Get stable reference to work properly with concurrent access
 		CharArrayWriter writer = new CharArrayWriter();
 		super.printStackTrace(new PrintWriter(writer));
@@ -281,6 +296,21 @@ public abstract class RhinoException extends RuntimeException {
 		int count = 0;
 		boolean printStarted = (hideFunction == null);
 
+		if (stack.length == 0 && interpreterStack != null) {
+			// Java stack wasn't captured, interpreter frames are all there is
+			for (ScriptStackElement[] group : interpreterStack) {
+				for (ScriptStackElement elem : group) {
+					if (!printStarted && hideFunction.equals(elem.functionName)) {
+						printStarted = true;
+					} else if (printStarted && ((limit < 0) || (count < limit))) {
+						list.add(elem);
+						count++;
+					}
+				}
+			}
+			return list.toArray(new ScriptStackElement[list.size()]);
+		}
+
 		// Pattern to recover function name from java method name -
 		// see Codegen.getBodyMethodName()
 		// kudos to Marc Guillemot for coming up with this
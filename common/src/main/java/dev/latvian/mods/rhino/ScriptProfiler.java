@@ -0,0 +1,240 @@
+package dev.latvian.mods.rhino;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records invocation counts, self and total time and line hit counts of interpreted scripts and functions.
+ * <p>
+ * Install with {@link Context#setScriptProfiler(ScriptProfiler)}. Timing is taken with {@link System#nanoTime()}
+ * when interpreter frames are entered and exited, there is no sampling. When no profiler is installed the interpreter
+ * skips all profiling code. A profiler is not thread-safe and should only be installed in one Context at a time.
+ */
+public final class ScriptProfiler {
+	/**
+	 * Statistics of a single script or function, summed over all of its call sites.
+	 */
+	public static final class FunctionProfile {
+		private final String name;
+		private final String sourceFile;
+		private final int line;
+		private long invocations;
+		private long selfNanos;
+		private long totalNanos;
+		private long[] lineHits;
+
+		private FunctionProfile(InterpreterData idata) {
+			name = idata.itsFunctionType == 0 ? "<script>" : idata.itsName == null || idata.itsName.isEmpty() ? "<anonymous>" : idata.itsName;
+			sourceFile = idata.itsSourceFile;
+			line = idata.itsFunctionType == 0 ? -1 : idata.firstLinePC;
+		}
+
+		void lineHit(int line) {
+			if (lineHits == null) {
+				lineHits = new long[Math.max(line + 1, 16)];
+			} else if (line >= lineHits.length) {
+				long[] tmp = new long[Math.max(line + 1, lineHits.length * 2)];
+				System.arraycopy(lineHits, 0, tmp, 0, lineHits.length);
+				lineHits = tmp;
+			}
+
+			lineHits[line]++;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getSourceFile() {
+			return sourceFile;
+		}
+
+		/**
+		 * @return first line of the function, or -1 if unknown
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		public long getInvocations() {
+			return invocations;
+		}
+
+		/**
+		 * @return time spent in this function, excluding time spent in interpreted functions it called
+		 */
+		public long getSelfNanos() {
+			return selfNanos;
+		}
+
+		/**
+		 * @return time spent in this function including callees. Recursive calls are counted at every level
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/**
+		 * @return amount of times statements starting at the given line were executed
+		 */
+		public long getLineHits(int line) {
+			return lineHits == null || line < 0 || line >= lineHits.length ? 0L : lineHits[line];
+		}
+
+		/**
+		 * @return line to hit count map of all lines that were executed at least once
+		 */
+		public Map<Integer, Long> getLineHits() {
+			if (lineHits == null) {
+				return Collections.emptyMap();
+			}
+
+			Map<Integer, Long> map = new HashMap<>();
+
+			for (int i = 0; i < lineHits.length; i++) {
+				if (lineHits[i] > 0L) {
+					map.put(i, lineHits[i]);
+				}
+			}
+
+			return map;
+		}
+
+		@Override
+		public String toString() {
+			return line == -1 ? name + '@' + sourceFile : name + '@' + sourceFile + ':' + line;
+		}
+	}
+
+	/**
+	 * Node of the call tree, one for every distinct interpreted call path.
+	 */
+	static final class Node {
+		final Node parent;
+		final FunctionProfile function;
+		private Map<InterpreterData, Node> children;
+		private long invocations;
+		private long selfNanos;
+		private long totalNanos;
+
+		private Node(Node parent, FunctionProfile function) {
+			this.parent = parent;
+			this.function = function;
+		}
+
+		void exit(long totalNanos, long selfNanos) {
+			this.totalNanos += totalNanos;
+			this.selfNanos += selfNanos;
+			function.totalNanos += totalNanos;
+			function.selfNanos += selfNanos;
+		}
+	}
+
+	private final Map<InterpreterData, FunctionProfile> functions = new HashMap<>();
+	private Node root = new Node(null, null);
+
+	Node enter(Node parent, InterpreterData idata) {
+		if (parent == null) {
+			parent = root;
+		}
+
+		if (parent.children == null) {
+			parent.children = new HashMap<>();
+		}
+
+		Node node = parent.children.get(idata);
+
+		if (node == null) {
+			node = new Node(parent, functions.computeIfAbsent(idata, FunctionProfile::new));
+			parent.children.put(idata, node);
+		}
+
+		node.invocations++;
+		node.function.invocations++;
+		return node;
+	}
+
+	/**
+	 * Discards all recorded data. Frames that are active when this is called will not be recorded.
+	 */
+	public void reset() {
+		functions.clear();
+		root = new Node(null, null);
+	}
+
+	public Collection<FunctionProfile> getFunctions() {
+		return Collections.unmodifiableCollection(functions.values());
+	}
+
+	/**
+	 * @param limit maximum amount of functions to return
+	 * @return functions with the highest self time, highest first
+	 */
+	public List<FunctionProfile> getHotFunctions(int limit) {
+		List<FunctionProfile> list = new ArrayList<>(functions.values());
+		list.sort((a, b) -> Long.compare(b.selfNanos, a.selfNanos));
+		return list.size() > limit ? new ArrayList<>(list.subList(0, limit)) : list;
+	}
+
+	public String report(int limit) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%12s %12s %12s  %s", "calls", "self ms", "total ms", "function"));
+
+		for (FunctionProfile f : getHotFunctions(limit)) {
+			sb.append('\n');
+			sb.append(String.format("%12d %12.3f %12.3f  %s", f.invocations, f.selfNanos / 1000000D, f.totalNanos / 1000000D, f));
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the call tree in collapsed stack format (<code>a;b;c 123</code>, one stack per line) that is accepted by
+	 * flame graph tools. Values are self time in microseconds. Functions called from a tail position appear
+	 * as children of their caller's caller, as the caller frame is gone by then.
+	 */
+	public void writeCollapsedStacks(Writer writer) throws IOException {
+		if (root.children != null) {
+			StringBuilder sb = new StringBuilder();
+
+			for (Node node : root.children.values()) {
+				writeCollapsedStacks(writer, sb, node);
+			}
+		}
+
+		writer.flush();
+	}
+
+	private void writeCollapsedStacks(Writer writer, StringBuilder sb, Node node) throws IOException {
+		int length = sb.length();
+
+		if (length > 0) {
+			sb.append(';');
+		}
+
+		sb.append(node.function.toString().replace(';', ':'));
+
+		long micros = node.selfNanos / 1000L;
+
+		if (micros > 0L) {
+			writer.write(sb.toString());
+			writer.write(' ');
+			writer.write(Long.toString(micros));
+			writer.write('\n');
+		}
+
+		if (node.children != null) {
+			for (Node child : node.children.values()) {
+				writeCollapsedStacks(writer, sb, child);
+			}
+		}
+
+		sb.setLength(length);
+	}
+}
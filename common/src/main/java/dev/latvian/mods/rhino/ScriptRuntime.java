@@ -10,7 +10,7 @@ import dev.latvian.mods.rhino.ast.FunctionNode;
 import dev.latvian.mods.rhino.regexp.RegExp;
 import dev.latvian.mods.rhino.util.SpecialEquality;
 import dev.latvian.mods.rhino.v8dtoa.DoubleConversion;
-import dev.latvian.mods.rhino.v8dtoa.FastDtoa;
+import dev.latvian.mods.rhino.v8dtoa.RyuDtoa;
 
 import java.text.MessageFormat;
 import java.util.Arrays;
@@ -60,6 +60,10 @@ public class ScriptRuntime {
 	public static final int ENUMERATE_VALUES_IN_ORDER = 6;
 	public static final MessageProvider messageProvider = new DefaultMessageProvider();
 	private static final Object LIBRARY_SCOPE_KEY = "LIBRARY_SCOPE";
+	private static final long MAX_SAFE_INTEGER = 1L << 53;
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+	// Filled in as integers are converted, a race only creates an equal string twice
+	private static final String[] SMALL_INTEGER_STRINGS = new String[1024];
 
 	static class NoSuchMethodShim implements Callable {
 		String methodName;
@@ -227,6 +231,7 @@ public class ScriptRuntime {
 		NativeSet.init(cx, scope, sealed);
 		NativeWeakMap.init(scope, sealed);
 		NativeWeakSet.init(scope, sealed);
+		NativePromise.init(scope, sealed);
 
 		if (scope instanceof TopLevel) {
 			((TopLevel) scope).cacheBuiltins(scope, sealed);
@@ -243,6 +248,25 @@ public class ScriptRuntime {
 		return s;
 	}
 
+	public static ScriptableObject newScopeFromTemplate(Context cx, ScriptableObject template) {
+		if (!template.isSealed() || getLibraryScopeOrNull(template) == null) {
+			throw new IllegalArgumentException("Scope template must be a sealed scope with standard objects");
+		}
+
+		ScriptableObject scope = new NativeObject();
+		scope.setPrototype(template);
+		SharedContextData data = SharedContextData.get(template);
+
+		if (data.isSealed()) {
+			// Found through the prototype chain by SharedContextData.get(scope)
+			cx.sharedContextData = data;
+		} else {
+			scope.associateValue(SharedContextData.AKEY, cx.sharedContextData = new SharedContextData(scope));
+		}
+
+		return scope;
+	}
+
 	public static ScriptableObject getLibraryScopeOrNull(Scriptable scope) {
 		ScriptableObject libScope;
 		libScope = (ScriptableObject) ScriptableObject.getTopScopeValue(scope, LIBRARY_SCOPE_KEY);
@@ -551,6 +575,14 @@ public class ScriptRuntime {
 	public static double toNumber(String s) {
 		final int len = s.length();
 
+		if (len <= 17) {
+			double d = toNumberFast(s);
+
+			if (d == d) {
+				return d;
+			}
+		}
+
 		// Skip whitespace at the start
 		int start = 0;
 		char startChar;
@@ -645,6 +677,46 @@ public class ScriptRuntime {
 		}
 	}
 
+	/**
+	 * Parses plain decimals with at most 15 digits, like <code>-12</code> or <code>3.25</code>. These are exact
+	 * as a long divided by a power of ten, so they are correctly rounded without {@link Double#parseDouble(String)}.
+	 * Returns NaN for anything else, which is then left to the general conversion.
+	 */
+	private static double toNumberFast(String s) {
+		int len = s.length();
+		int i = 0;
+		boolean negative = false;
+
+		if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+			negative = s.charAt(0) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int point = -1;
+
+		for (; i < len; i++) {
+			char c = s.charAt(i);
+
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+			} else if (c == '.' && point == -1) {
+				point = digits;
+			} else {
+				return NaN;
+			}
+		}
+
+		if (digits == 0 || digits > 15) {
+			return NaN;
+		}
+
+		double d = point == -1 ? mantissa : mantissa / POWERS_OF_TEN[digits - point];
+		return negative ? -d : d;
+	}
+
 	/**
 	 * Helper function for builtin objects that use the varargs form.
 	 * ECMA function formal arguments are undefined if not supplied;
@@ -820,6 +892,15 @@ public class ScriptRuntime {
 			throw Context.reportRuntimeError1("msg.bad.radix", Integer.toString(base));
 		}
 
+		if (base == 10) {
+			long l = (long) d;
+
+			// Also takes care of -0, NaN is never equal to the cast
+			if (l == d && l > -MAX_SAFE_INTEGER && l < MAX_SAFE_INTEGER) {
+				return integerToString(l);
+			}
+		}
+
 		if (Double.isNaN(d)) {
 			return "NaN";
 		}
@@ -836,15 +917,43 @@ public class ScriptRuntime {
 		if (base != 10) {
 			return DToA.JS_dtobasestr(base, d);
 		}
-		// V8 FastDtoa can't convert all numbers, so try it first but
-		// fall back to old DToA in case it fails
-		String result = FastDtoa.numberToString(d);
-		if (result != null) {
-			return result;
+		// Ryu is faster than V8 FastDtoa and, unlike it, never has to
+		// fall back to the slow DToA
+		return RyuDtoa.numberToString(d);
+	}
+
+	/**
+	 * Same as {@link #numberToString(double, int)} in base 10, appending to the builder instead of creating a string.
+	 */
+	public static void numberToString(double d, StringBuilder out) {
+		long l = (long) d;
+
+		if (l == d && l > -MAX_SAFE_INTEGER && l < MAX_SAFE_INTEGER) {
+			if (l >= 0 && l < SMALL_INTEGER_STRINGS.length) {
+				out.append(integerToString(l));
+			} else {
+				out.append(l);
+			}
+		} else if (Double.isNaN(d) || Double.isInfinite(d)) {
+			out.append(numberToString(d, 10));
+		} else {
+			RyuDtoa.numberToString(d, out);
 		}
-		StringBuilder buffer = new StringBuilder();
-		DToA.JS_dtostr(buffer, DToA.DTOSTR_STANDARD, 0, d);
-		return buffer.toString();
+	}
+
+	private static String integerToString(long l) {
+		if (l >= 0 && l < SMALL_INTEGER_STRINGS.length) {
+			String s = SMALL_INTEGER_STRINGS[(int) l];
+
+			if (s == null) {
+				s = Long.toString(l);
+				SMALL_INTEGER_STRINGS[(int) l] = s;
+			}
+
+			return s;
+		}
+
+		return Long.toString(l);
 	}
 
 	static String uneval(Context cx, Scriptable scope, Object value) {
@@ -2119,15 +2228,15 @@ public class ScriptRuntime {
 			}
 			return wrapNumber(toNumber(val1) + toNumber(val2));
 		}
-		return new ConsString(toCharSequence(val1), toCharSequence(val2));
+		return ConsString.concat(toCharSequence(val1), toCharSequence(val2));
 	}
 
 	public static CharSequence add(CharSequence val1, Object val2) {
-		return new ConsString(val1, toCharSequence(val2));
+		return ConsString.concat(val1, toCharSequence(val2));
 	}
 
 	public static CharSequence add(Object val1, CharSequence val2) {
-		return new ConsString(toCharSequence(val1), val2);
+		return ConsString.concat(toCharSequence(val1), val2);
 	}
 
 	public static Object nameIncrDecr(Scriptable scopeChain, String id, Context cx, int incrDecrMask) {
@@ -2651,6 +2760,11 @@ public class ScriptRuntime {
 				throw new IllegalStateException();
 			}
 		}
+
+		if (cx.getJobQueue() == null) {
+			cx.processMicrotasks();
+		}
+
 		return result;
 	}
 
@@ -0,0 +1,332 @@
+package dev.latvian.mods.rhino;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs script tasks round-robin in slices, so heavy scripts are spread over several ticks of the host
+ * instead of blocking one.
+ * <p>
+ * Each call to {@link #tick()} gives the queued tasks a slice each until the tick budget is used up.
+ * A slice ends when the task has run for its instruction or time budget, the task is then suspended
+ * with a continuation and resumed in a later slice. Slices can only end at taken jumps (loops,
+ * conditionals) of interpreted code started by the scheduler; while the task runs Java code, or
+ * script code called back from Java such as an <code>Array.prototype.forEach</code> callback, it
+ * keeps running until it returns to such a point.
+ * <p>
+ * Tasks run on the thread calling {@link #tick()}, which must not be running a script itself.
+ *
+ * @see Context#captureContinuation()
+ */
+public class ScriptScheduler {
+	public enum State {
+		QUEUED,
+		SUSPENDED,
+		DONE,
+		FAILED
+	}
+
+	/**
+	 * A script task, with its result and how much of its budget it used.
+	 */
+	public static final class Task {
+		private final Callable function;
+		private final Scriptable scope;
+		private final Object[] args;
+		private final CompletableFuture<Object> result = new CompletableFuture<>();
+		private Object continuation;
+		private State state = State.QUEUED;
+
+		// Current slice
+		int sliceInstructionBudget;
+		long sliceDeadline;
+		int sliceInstructions;
+		boolean yieldRequested;
+		private boolean preempted;
+
+		// Metrics
+		private long instructions;
+		private long nanos;
+		private int slices;
+		private int lastSliceInstructions;
+		private long lastSliceNanos;
+		private long maxSliceNanos;
+
+		private Task(Callable function, Scriptable scope, Object[] args) {
+			this.function = function;
+			this.scope = scope;
+			this.args = args;
+		}
+
+		/**
+		 * Called by the interpreter every {@link Context#getInstructionObserverThreshold()} instructions.
+		 */
+		void addInstructions(int count) {
+			sliceInstructions += count;
+
+			if (sliceInstructions >= sliceInstructionBudget || System.nanoTime() >= sliceDeadline) {
+				yieldRequested = true;
+			}
+		}
+
+		/**
+		 * Called by the interpreter when it suspended the task at the end of its slice.
+		 */
+		ContinuationPending preempt(NativeContinuation continuation) {
+			yieldRequested = false;
+			preempted = true;
+			return new ContinuationPending(continuation);
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		/**
+		 * @return future completed with the result of the task, or exceptionally if it throws
+		 */
+		public CompletableFuture<Object> getResult() {
+			return result;
+		}
+
+		/**
+		 * @return instructions run in all slices of this task so far
+		 */
+		public long getInstructions() {
+			return instructions;
+		}
+
+		/**
+		 * @return nanoseconds spent in all slices of this task so far
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * @return number of slices this task ran in
+		 */
+		public int getSlices() {
+			return slices;
+		}
+
+		public int getLastSliceInstructions() {
+			return lastSliceInstructions;
+		}
+
+		public long getLastSliceNanos() {
+			return lastSliceNanos;
+		}
+
+		/**
+		 * @return nanoseconds the longest slice of this task took
+		 */
+		public long getMaxSliceNanos() {
+			return maxSliceNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "Task[" + state + ", " + slices + " slices, " + instructions + " instructions, " + nanos / 1000L + " us, longest slice " + maxSliceNanos / 1000L + " us]";
+		}
+	}
+
+	private final ContextFactory factory;
+	private final ArrayDeque<Task> queue;
+	private long tickNanos;
+	private long sliceNanos;
+	private int sliceInstructions;
+	private int checkInterval;
+	private int lastTickTasks;
+	private long lastTickNanos;
+
+	public ScriptScheduler(ContextFactory factory) {
+		this.factory = factory;
+		queue = new ArrayDeque<>();
+		tickNanos = 5_000_000L;
+		sliceNanos = 1_000_000L;
+		sliceInstructions = 1_000_000;
+		checkInterval = 10_000;
+	}
+
+	/**
+	 * Set the time all slices of one tick may take together. Defaults to 5 ms.
+	 */
+	public void setTickNanos(long tickNanos) {
+		if (tickNanos <= 0L) {
+			throw new IllegalArgumentException("Tick budget must be positive");
+		}
+
+		this.tickNanos = tickNanos;
+	}
+
+	/**
+	 * Set the time one slice of a task may take. Defaults to 1 ms.
+	 */
+	public void setSliceNanos(long sliceNanos) {
+		if (sliceNanos <= 0L) {
+			throw new IllegalArgumentException("Slice budget must be positive");
+		}
+
+		this.sliceNanos = sliceNanos;
+	}
+
+	/**
+	 * Set the number of instructions one slice of a task may run. Defaults to 1 000 000.
+	 */
+	public void setSliceInstructions(int sliceInstructions) {
+		if (sliceInstructions <= 0) {
+			throw new IllegalArgumentException("Slice budget must be positive");
+		}
+
+		this.sliceInstructions = sliceInstructions;
+	}
+
+	/**
+	 * Set how many instructions run between budget checks. Smaller values end slices closer to
+	 * their budget, but check the time more often. Defaults to 10 000.
+	 */
+	public void setCheckInterval(int checkInterval) {
+		if (checkInterval <= 0) {
+			throw new IllegalArgumentException("Check interval must be positive");
+		}
+
+		this.checkInterval = checkInterval;
+	}
+
+	/**
+	 * Queue a script to be run in the given scope.
+	 *
+	 * @param script a script compiled in interpreted mode
+	 */
+	public Task submit(Script script, Scriptable scope) {
+		if (!(script instanceof InterpretedFunction f) || !f.isScript()) {
+			throw new IllegalArgumentException("Script argument was not a script or was not created by interpreted mode");
+		}
+
+		return submit(f, scope, ScriptRuntime.EMPTY_OBJECTS);
+	}
+
+	/**
+	 * Queue a call of an interpreted function.
+	 */
+	public Task submit(Callable function, Scriptable scope, Object... args) {
+		if (!(function instanceof InterpretedFunction)) {
+			throw new IllegalArgumentException("Function argument was not created by interpreted mode");
+		}
+
+		Task task = new Task(function, scope, args);
+		queue.add(task);
+		return task;
+	}
+
+	/**
+	 * @return number of tasks that are queued or suspended
+	 */
+	public int getPendingTasks() {
+		return queue.size();
+	}
+
+	/**
+	 * @return number of slices that ran in the last tick
+	 */
+	public int getLastTickTasks() {
+		return lastTickTasks;
+	}
+
+	/**
+	 * @return nanoseconds the last tick took
+	 */
+	public long getLastTickNanos() {
+		return lastTickNanos;
+	}
+
+	/**
+	 * Run a slice of each pending task, in order, until all got one or the tick budget is used up.
+	 * Tasks that didn't get a slice go first in the next tick.
+	 *
+	 * @return whether tasks are still pending
+	 */
+	public boolean tick() {
+		long start = System.nanoTime();
+		long deadline = start + tickNanos;
+		int count = queue.size();
+		int ran = 0;
+
+		while (ran < count && !queue.isEmpty()) {
+			Task task = queue.poll();
+			long now = System.nanoTime();
+			task.sliceDeadline = Math.min(deadline, now + sliceNanos);
+			task.sliceInstructionBudget = sliceInstructions;
+			runSlice(task);
+			ran++;
+
+			if (task.state == State.SUSPENDED) {
+				queue.add(task);
+			}
+
+			if (System.nanoTime() >= deadline) {
+				break;
+			}
+		}
+
+		lastTickTasks = ran;
+		lastTickNanos = System.nanoTime() - start;
+		return !queue.isEmpty();
+	}
+
+	private void runSlice(Task task) {
+		factory.call(cx -> {
+			int threshold = cx.getInstructionObserverThreshold();
+			Task previous = cx.scheduledTask;
+			cx.setInstructionObserverThreshold(checkInterval);
+			cx.instructionCount = 0;
+			cx.scheduledTask = task;
+			task.sliceInstructions = 0;
+			task.yieldRequested = false;
+			task.preempted = false;
+			long start = System.nanoTime();
+
+			try {
+				Object value;
+
+				if (task.continuation == null) {
+					value = cx.callFunctionWithContinuations(task.function, task.scope, task.args);
+				} else {
+					Object continuation = task.continuation;
+					task.continuation = null;
+					value = cx.resumeContinuation(continuation, task.scope, Undefined.instance);
+				}
+
+				task.state = State.DONE;
+				task.result.complete(value);
+			} catch (ContinuationPending ex) {
+				if (task.preempted) {
+					task.state = State.SUSPENDED;
+					task.continuation = ex.getContinuation();
+				} else {
+					// Captured by the script itself, the scheduler can't know what to resume it with
+					task.state = State.FAILED;
+					task.result.completeExceptionally(ex);
+				}
+			} catch (RuntimeException ex) {
+				task.state = State.FAILED;
+				task.result.completeExceptionally(ex);
+			} finally {
+				long time = System.nanoTime() - start;
+				int instructions = task.sliceInstructions + cx.instructionCount;
+				task.instructions += instructions;
+				task.lastSliceInstructions = instructions;
+				task.nanos += time;
+				task.lastSliceNanos = time;
+				task.maxSliceNanos = Math.max(task.maxSliceNanos, time);
+				task.slices++;
+				cx.instructionCount = 0;
+				cx.scheduledTask = previous;
+				cx.setInstructionObserverThreshold(threshold);
+			}
+
+			return null;
+		});
+	}
+}
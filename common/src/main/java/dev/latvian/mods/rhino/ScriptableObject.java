@@ -29,6 +29,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is the default implementation of the Scriptable interface. This
@@ -1386,6 +1387,18 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 		slotMap = createSlotMap(0);
 	}
 
+	/**
+	 * Returns own slot of named property, or null if there is none.
+	 * Valid only while {@link #getSlotVersion()} doesn't change.
+	 */
+	final Slot querySlot(String name) {
+		return slotMap.query(name, 0);
+	}
+
+	final int getSlotVersion() {
+		return slotMap.slotVersion;
+	}
+
 	/**
 	 * Gets the value that will be returned by calling the typeof operator on this object.
 	 *
@@ -2579,7 +2592,8 @@ public abstract class ScriptableObject implements Scriptable, SymbolScriptable,
 		}
 		Map<Object, Object> h = associatedValues;
 		if (h == null) {
-			h = new HashMap<>();
+			// Readers don't lock, see getAssociatedValue()
+			h = new ConcurrentHashMap<>();
 			associatedValues = h;
 		}
 		return Kit.initHash(h, key, value);
@@ -15,16 +15,22 @@ import dev.latvian.mods.rhino.util.Remapper;
 import dev.latvian.mods.rhino.util.wrap.TypeWrappers;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Predicate;
 
 /**
  * Cache of generated classes and data structures to access Java runtime
  * from JavaScript.
+ * <p>
+ * The caches are safe to use from several threads at once. Once the
+ * configuration (wrap factory, type wrappers, remapper, class shutter and
+ * custom wrappers) is done, {@link #seal()} makes it immutable so that
+ * scopes created from a sealed template can share this instance, and with
+ * it all reflection caches, across threads. See
+ * {@link Context#newScopeFromTemplate(ScriptableObject)}.
  *
  * @author Igor Bukanov
  * @since Rhino 1.5 Release 5
@@ -56,18 +62,19 @@ public class SharedContextData {
 	}
 
 	public final Scriptable topLevelScope;
-	final List<CustomJavaToJsWrapperProviderHolder<?>> customScriptableWrappers = new ArrayList<>();
-	final Map<Class<?>, CustomJavaToJsWrapperProvider> customScriptableWrapperCache = new HashMap<>();
-	private final Map<String, Object> extraProperties = new HashMap<>();
-	TypeWrappers typeWrappers;
-	Remapper remapper = DefaultRemapper.INSTANCE;
-	private transient Map<Class<?>, JavaMembers> classTable;
-	private transient Map<JavaAdapter.JavaAdapterSignature, Class<?>> classAdapterCache;
-	private transient Map<Class<?>, Object> interfaceAdapterCache;
+	final List<CustomJavaToJsWrapperProviderHolder<?>> customScriptableWrappers = new CopyOnWriteArrayList<>();
+	final Map<Class<?>, CustomJavaToJsWrapperProvider> customScriptableWrapperCache = new ConcurrentHashMap<>();
+	private final Map<String, Object> extraProperties = new ConcurrentHashMap<>();
+	volatile TypeWrappers typeWrappers;
+	volatile Remapper remapper = DefaultRemapper.INSTANCE;
+	private transient volatile Map<Class<?>, JavaMembers> classTable;
+	private transient volatile Map<JavaAdapter.JavaAdapterSignature, Class<?>> classAdapterCache;
+	private transient volatile Map<Class<?>, Object> interfaceAdapterCache;
 	private int generatedClassSerial;
-	private ClassDataCache classDataCache;
+	private volatile ClassDataCache classDataCache;
 	private ClassShutter classShutter;
-	private WrapFactory wrapFactory;
+	private volatile WrapFactory wrapFactory;
+	private volatile boolean sealed;
 
 	public SharedContextData(Scriptable scope) {
 		topLevelScope = scope;
@@ -77,19 +84,50 @@ public class SharedContextData {
 	 * @return a map from classes to associated JavaMembers objects
 	 */
 	Map<Class<?>, JavaMembers> getClassCacheMap() {
-		if (classTable == null) {
-			// Use 1 as concurrency level here and for other concurrent hash maps
-			// as we don't expect high levels of sustained concurrent writes.
-			classTable = new ConcurrentHashMap<>(16, 0.75f, 1);
+		Map<Class<?>, JavaMembers> map = classTable;
+		if (map == null) {
+			synchronized (this) {
+				map = classTable;
+				if (map == null) {
+					// Use 1 as concurrency level here and for other concurrent hash maps
+					// as we don't expect high levels of sustained concurrent writes.
+					classTable = map = new ConcurrentHashMap<>(16, 0.75f, 1);
+				}
+			}
 		}
-		return classTable;
+		return map;
 	}
 
 	Map<JavaAdapter.JavaAdapterSignature, Class<?>> getInterfaceAdapterCacheMap() {
-		if (classAdapterCache == null) {
-			classAdapterCache = new ConcurrentHashMap<>(16, 0.75f, 1);
+		Map<JavaAdapter.JavaAdapterSignature, Class<?>> map = classAdapterCache;
+		if (map == null) {
+			synchronized (this) {
+				map = classAdapterCache;
+				if (map == null) {
+					classAdapterCache = map = new ConcurrentHashMap<>(16, 0.75f, 1);
+				}
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Make the configuration of this instance immutable. Afterwards only
+	 * the internal caches change, which makes it safe to share between
+	 * threads and scopes.
+	 */
+	public final void seal() {
+		sealed = true;
+	}
+
+	public final boolean isSealed() {
+		return sealed;
+	}
+
+	private void checkNotSealed() {
+		if (sealed) {
+			throw new IllegalStateException("SharedContextData is sealed");
 		}
-		return classAdapterCache;
 	}
 
 	/**
@@ -113,11 +151,20 @@ public class SharedContextData {
 	}
 
 	public TypeWrappers getTypeWrappers() {
-		if (typeWrappers == null) {
-			typeWrappers = new TypeWrappers();
+		TypeWrappers wrappers = typeWrappers;
+
+		if (wrappers == null) {
+			synchronized (this) {
+				wrappers = typeWrappers;
+
+				if (wrappers == null) {
+					checkNotSealed();
+					typeWrappers = wrappers = new TypeWrappers();
+				}
+			}
 		}
 
-		return typeWrappers;
+		return wrappers;
 	}
 
 	public boolean hasTypeWrappers() {
@@ -129,15 +176,24 @@ public class SharedContextData {
 	}
 
 	public void setRemapper(Remapper remapper) {
+		checkNotSealed();
 		this.remapper = remapper;
 	}
 
 	public ClassDataCache getClassDataCache() {
-		if (classDataCache == null) {
-			classDataCache = new ClassDataCache(this);
+		ClassDataCache c = classDataCache;
+
+		if (c == null) {
+			synchronized (this) {
+				c = classDataCache;
+
+				if (c == null) {
+					classDataCache = c = new ClassDataCache(this);
+				}
+			}
 		}
 
-		return classDataCache;
+		return c;
 	}
 
 	@Nullable
@@ -169,6 +225,7 @@ public class SharedContextData {
 	}
 
 	public <T> void addCustomJavaToJsWrapper(Predicate<T> predicate, CustomJavaToJsWrapperProvider<T> provider) {
+		checkNotSealed();
 		customScriptableWrappers.add(new CustomJavaToJsWrapperProviderHolder<>(predicate, provider));
 	}
 
@@ -208,6 +265,8 @@ public class SharedContextData {
 			throw new IllegalArgumentException();
 		}
 
+		checkNotSealed();
+
 		if (classShutter != null) {
 			throw new SecurityException("Cannot overwrite existing " + "ClassShutter object");
 		}
@@ -230,10 +289,16 @@ public class SharedContextData {
 	 * @since 1.5 Release 4
 	 */
 	public final WrapFactory getWrapFactory() {
-		if (wrapFactory == null) {
-			wrapFactory = new WrapFactory();
+		WrapFactory f = wrapFactory;
+		if (f == null) {
+			synchronized (this) {
+				f = wrapFactory;
+				if (f == null) {
+					wrapFactory = f = new WrapFactory();
+				}
+			}
 		}
-		return wrapFactory;
+		return f;
 	}
 
 	/**
@@ -249,6 +314,7 @@ public class SharedContextData {
 		if (wrapFactory == null) {
 			throw new IllegalArgumentException();
 		}
+		checkNotSealed();
 		this.wrapFactory = wrapFactory;
 	}
 }
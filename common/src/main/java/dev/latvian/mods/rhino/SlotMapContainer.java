@@ -25,6 +25,8 @@ class SlotMapContainer implements SlotMap {
 	private static final int LARGE_HASH_SIZE = 2000;
 
 	protected SlotMap map;
+	// Incremented whenever a slot may have been removed or replaced by another Slot instance
+	int slotVersion;
 
 	SlotMapContainer(int initialSize) {
 		if (initialSize > LARGE_HASH_SIZE) {
@@ -52,6 +54,9 @@ class SlotMapContainer implements SlotMap {
 	public Slot get(Object key, int index, SlotAccess accessType) {
 		if (accessType != SlotAccess.QUERY) {
 			checkMapSize();
+			if (accessType == SlotAccess.MODIFY_GETTER_SETTER || accessType == SlotAccess.CONVERT_ACCESSOR_TO_DATA) {
+				slotVersion++;
+			}
 		}
 		return map.get(key, index, accessType);
 	}
@@ -69,6 +74,7 @@ class SlotMapContainer implements SlotMap {
 
 	@Override
 	public void remove(Object key, int index) {
+		slotVersion++;
 		map.remove(key, index);
 	}
 
@@ -7,124 +7,541 @@ package dev.latvian.mods.rhino;
 import java.util.Comparator;
 
 public final class Sorting {
-	private static final int SMALLSORT = 16;
-
 	private static final Sorting sorting = new Sorting();
 
 	public static Sorting get() {
 		return sorting;
 	}
 
-	private static void insertionSort(Object[] a, int start, int end, Comparator<Object> cmp) {
-		int i = start;
-		while (i <= end) {
-			Object x = a[i];
-			int j = i - 1;
-			while ((j >= start) && (cmp.compare(a[j], x) > 0)) {
-				a[j + 1] = a[j];
-				j--;
-			}
-			a[j + 1] = x;
-			i++;
-		}
-	}
-
 	private static void swap(Object[] a, int l, int h) {
 		final Object tmp = a[l];
 		a[l] = a[h];
 		a[h] = tmp;
 	}
 
-	private static int log2(int n) {
-		return (int) (Math.log10(n) / Math.log10(2.0));
-	}
-
 	private Sorting() {
 	}
 
-	public void insertionSort(Object[] a, Comparator<Object> cmp) {
-		insertionSort(a, 0, a.length - 1, cmp);
-	}
-
 	/*
-	Hybrid sorting mechanism similar to Introsort by David Musser. Uses quicksort's
-	partitioning mechanism recursively until the resulting array is small or the
-	recursion is too deep, and then use insertion sort for the rest.
-	This is the same basic algorithm used by the GNU Standard C++ library.
+	Stable merge sort that finds existing runs and gallops through merges, like
+	java.util.Arrays.sort, to compare as few times as possible when every comparison
+	calls a script. Unlike java.util.TimSort it never throws when the comparator is
+	inconsistent, the elements just end up in an unspecified order as ECMA allows.
 	*/
-	public void hybridSort(Object[] a, Comparator<Object> cmp) {
-		hybridSort(a, 0, a.length - 1, cmp, log2(a.length) * 2);
+	public void timSort(Object[] a, Comparator<Object> cmp) {
+		int n = a.length;
+
+		if (n < 2) {
+			return;
+		} else if (n < TimSort.MIN_MERGE) {
+			TimSort.binarySort(a, 0, n, TimSort.countRunAndMakeAscending(a, 0, n, cmp), cmp);
+			return;
+		}
+
+		var ts = new TimSort(a, cmp);
+		int minRun = TimSort.minRunLength(n);
+		int lo = 0;
+
+		while (lo < n) {
+			int runLen = TimSort.countRunAndMakeAscending(a, lo, n, cmp);
+
+			if (runLen < minRun) {
+				int force = Math.min(n - lo, minRun);
+				TimSort.binarySort(a, lo, lo + force, lo + runLen, cmp);
+				runLen = force;
+			}
+
+			ts.pushRun(lo, runLen);
+			ts.mergeCollapse();
+			lo += runLen;
+		}
+
+		ts.mergeForceCollapse();
 	}
 
-	private void hybridSort(Object[] a, int start, int end, Comparator<Object> cmp, int maxdepth) {
-		if (start < end) {
-			if ((maxdepth == 0) || ((end - start) <= SMALLSORT)) {
-				insertionSort(a, start, end, cmp);
+	private static final class TimSort {
+		private static final int MIN_MERGE = 32;
+		private static final int MIN_GALLOP = 7;
+
+		private final Object[] a;
+		private final Comparator<Object> cmp;
+		private final int[] runBase = new int[49];
+		private final int[] runLen = new int[49];
+		private int stackSize;
+		private int minGallop = MIN_GALLOP;
+		private Object[] buffer = ScriptRuntime.EMPTY_OBJECTS;
+
+		private TimSort(Object[] a, Comparator<Object> cmp) {
+			this.a = a;
+			this.cmp = cmp;
+		}
+
+		private static int minRunLength(int n) {
+			int r = 0;
+
+			while (n >= MIN_MERGE) {
+				r |= n & 1;
+				n >>= 1;
+			}
+
+			return n + r;
+		}
+
+		/*
+		Returns the length of the run starting at lo, reversing it if it is strictly descending.
+		*/
+		private static int countRunAndMakeAscending(Object[] a, int lo, int hi, Comparator<Object> cmp) {
+			int runHi = lo + 1;
+
+			if (runHi == hi) {
+				return 1;
+			}
+
+			if (cmp.compare(a[runHi++], a[lo]) < 0) {
+				while (runHi < hi && cmp.compare(a[runHi], a[runHi - 1]) < 0) {
+					runHi++;
+				}
+
+				for (int l = lo, h = runHi - 1; l < h; l++, h--) {
+					swap(a, l, h);
+				}
 			} else {
-				int p = partition(a, start, end, cmp);
-				hybridSort(a, start, p, cmp, maxdepth - 1);
-				hybridSort(a, p + 1, end, cmp, maxdepth - 1);
+				while (runHi < hi && cmp.compare(a[runHi], a[runHi - 1]) >= 0) {
+					runHi++;
+				}
 			}
+
+			return runHi - lo;
 		}
-	}
 
-	/*
-	Quicksort-style partitioning, using the Hoare partition scheme as coded by
-	Sedgewick at https://algs4.cs.princeton.edu/23quicksort/Quick.java.html.
-	Use the "median of three" method to determine which index to pivot on, and then
-	separate the array into two halves based on the pivot.
-	*/
-	private int partition(Object[] a, int start, int end, Comparator<Object> cmp) {
-		final int p = median(a, start, end, cmp);
-		final Object pivot = a[p];
-		a[p] = a[start];
-		a[start] = pivot;
-
-		int i = start;
-		int j = end + 1;
-
-		while (true) {
-			while (cmp.compare(a[++i], pivot) < 0) {
-				if (i == end) {
-					break;
+		/*
+		Insertion sort of [lo, hi) where [lo, start) is already sorted, using binary search
+		to find where each element goes.
+		*/
+		private static void binarySort(Object[] a, int lo, int hi, int start, Comparator<Object> cmp) {
+			for (; start < hi; start++) {
+				Object pivot = a[start];
+				int left = lo;
+				int right = start;
+
+				while (left < right) {
+					int mid = (left + right) >>> 1;
+
+					if (cmp.compare(pivot, a[mid]) < 0) {
+						right = mid;
+					} else {
+						left = mid + 1;
+					}
 				}
+
+				System.arraycopy(a, left, a, left + 1, start - left);
+				a[left] = pivot;
 			}
-			while (cmp.compare(a[--j], pivot) >= 0) {
-				if (j == start) {
+		}
+
+		private void pushRun(int base, int len) {
+			runBase[stackSize] = base;
+			runLen[stackSize] = len;
+			stackSize++;
+		}
+
+		private void mergeCollapse() {
+			while (stackSize > 1) {
+				int n = stackSize - 2;
+
+				if (n > 0 && runLen[n - 1] <= runLen[n] + runLen[n + 1] || n > 1 && runLen[n - 2] <= runLen[n] + runLen[n - 1]) {
+					if (runLen[n - 1] < runLen[n + 1]) {
+						n--;
+					}
+				} else if (runLen[n] > runLen[n + 1]) {
 					break;
 				}
+
+				mergeAt(n);
 			}
-			if (i >= j) {
-				break;
+		}
+
+		private void mergeForceCollapse() {
+			while (stackSize > 1) {
+				int n = stackSize - 2;
+
+				if (n > 0 && runLen[n - 1] < runLen[n + 1]) {
+					n--;
+				}
+
+				mergeAt(n);
 			}
-			swap(a, i, j);
 		}
 
-		swap(a, start, j);
-		return j;
-	}
+		private void mergeAt(int i) {
+			int base1 = runBase[i];
+			int len1 = runLen[i];
+			int base2 = runBase[i + 1];
+			int len2 = runLen[i + 1];
 
-	/*
-	Return the index of the median of three elements in the specified array range -- the
-	first, the last, and the one in the middle.
-	*/
-	public int median(final Object[] a, int start, int end, Comparator<Object> cmp) {
-		final int m = start + ((end - start) / 2);
-		int smallest = start;
+			runLen[i] = len1 + len2;
+
+			if (i == stackSize - 3) {
+				runBase[i + 1] = runBase[i + 2];
+				runLen[i + 1] = runLen[i + 2];
+			}
+
+			stackSize--;
+
+			// Elements of the first run that are smaller than the second run, and elements of the second run that
+			// are larger than the first one, are already in place
+			int k = gallopRight(a[base2], a, base1, len1, 0);
+			base1 += k;
+			len1 -= k;
+
+			if (len1 == 0) {
+				return;
+			}
+
+			len2 = gallopLeft(a[base1 + len1 - 1], a, base2, len2, len2 - 1);
+
+			if (len2 == 0) {
+				return;
+			}
+
+			if (len1 <= len2) {
+				mergeLo(base1, len1, base2, len2);
+			} else {
+				mergeHi(base1, len1, base2, len2);
+			}
+		}
+
+		/*
+		Returns the index in [base, base + len) before the first element that is not smaller than key,
+		searching outwards from hint.
+		*/
+		private int gallopLeft(Object key, Object[] a, int base, int len, int hint) {
+			int lastOfs = 0;
+			int ofs = 1;
+
+			if (cmp.compare(key, a[base + hint]) > 0) {
+				int maxOfs = len - hint;
+
+				while (ofs < maxOfs && cmp.compare(key, a[base + hint + ofs]) > 0) {
+					lastOfs = ofs;
+					ofs = (ofs << 1) + 1;
+
+					if (ofs <= 0) {
+						ofs = maxOfs;
+					}
+				}
+
+				ofs = Math.min(ofs, maxOfs);
+				lastOfs += hint;
+				ofs += hint;
+			} else {
+				int maxOfs = hint + 1;
+
+				while (ofs < maxOfs && cmp.compare(key, a[base + hint - ofs]) <= 0) {
+					lastOfs = ofs;
+					ofs = (ofs << 1) + 1;
+
+					if (ofs <= 0) {
+						ofs = maxOfs;
+					}
+				}
 
-		if (cmp.compare(a[smallest], a[m]) > 0) {
-			smallest = m;
+				ofs = Math.min(ofs, maxOfs);
+				int t = lastOfs;
+				lastOfs = hint - ofs;
+				ofs = hint - t;
+			}
+
+			lastOfs++;
+
+			while (lastOfs < ofs) {
+				int m = lastOfs + ((ofs - lastOfs) >>> 1);
+
+				if (cmp.compare(key, a[base + m]) > 0) {
+					lastOfs = m + 1;
+				} else {
+					ofs = m;
+				}
+			}
+
+			return ofs;
 		}
-		if (cmp.compare(a[smallest], a[end]) > 0) {
-			smallest = end;
+
+		/*
+		Like gallopLeft, but returns the index after the last element that is not larger than key.
+		*/
+		private int gallopRight(Object key, Object[] a, int base, int len, int hint) {
+			int lastOfs = 0;
+			int ofs = 1;
+
+			if (cmp.compare(key, a[base + hint]) < 0) {
+				int maxOfs = hint + 1;
+
+				while (ofs < maxOfs && cmp.compare(key, a[base + hint - ofs]) < 0) {
+					lastOfs = ofs;
+					ofs = (ofs << 1) + 1;
+
+					if (ofs <= 0) {
+						ofs = maxOfs;
+					}
+				}
+
+				ofs = Math.min(ofs, maxOfs);
+				int t = lastOfs;
+				lastOfs = hint - ofs;
+				ofs = hint - t;
+			} else {
+				int maxOfs = len - hint;
+
+				while (ofs < maxOfs && cmp.compare(key, a[base + hint + ofs]) >= 0) {
+					lastOfs = ofs;
+					ofs = (ofs << 1) + 1;
+
+					if (ofs <= 0) {
+						ofs = maxOfs;
+					}
+				}
+
+				ofs = Math.min(ofs, maxOfs);
+				lastOfs += hint;
+				ofs += hint;
+			}
+
+			lastOfs++;
+
+			while (lastOfs < ofs) {
+				int m = lastOfs + ((ofs - lastOfs) >>> 1);
+
+				if (cmp.compare(key, a[base + m]) < 0) {
+					ofs = m;
+				} else {
+					lastOfs = m + 1;
+				}
+			}
+
+			return ofs;
 		}
 
-		if (smallest == start) {
-			return (cmp.compare(a[m], a[end]) < 0) ? m : end;
+		private Object[] buffer(int len) {
+			if (buffer.length < len) {
+				buffer = new Object[Math.max(len, Math.min(a.length >>> 1, len << 1))];
+			}
+
+			return buffer;
+		}
+
+		/*
+		Merges two adjacent runs where the first one is shorter, copying it out first.
+		*/
+		private void mergeLo(int base1, int len1, int base2, int len2) {
+			Object[] a = this.a;
+			Object[] tmp = buffer(len1);
+			System.arraycopy(a, base1, tmp, 0, len1);
+			int cursor1 = 0;
+			int cursor2 = base2;
+			int dest = base1;
+
+			a[dest++] = a[cursor2++];
+
+			if (--len2 == 0) {
+				System.arraycopy(tmp, cursor1, a, dest, len1);
+				return;
+			} else if (len1 == 1) {
+				System.arraycopy(a, cursor2, a, dest, len2);
+				a[dest + len2] = tmp[cursor1];
+				return;
+			}
+
+			int minGallop = this.minGallop;
+
+			outer:
+			while (true) {
+				int count1 = 0;
+				int count2 = 0;
+
+				do {
+					if (cmp.compare(a[cursor2], tmp[cursor1]) < 0) {
+						a[dest++] = a[cursor2++];
+						count2++;
+						count1 = 0;
+
+						if (--len2 == 0) {
+							break outer;
+						}
+					} else {
+						a[dest++] = tmp[cursor1++];
+						count1++;
+						count2 = 0;
+
+						if (--len1 == 1) {
+							break outer;
+						}
+					}
+				} while ((count1 | count2) < minGallop);
+
+				do {
+					count1 = gallopRight(a[cursor2], tmp, cursor1, len1, 0);
+
+					if (count1 != 0) {
+						System.arraycopy(tmp, cursor1, a, dest, count1);
+						dest += count1;
+						cursor1 += count1;
+						len1 -= count1;
+
+						if (len1 <= 1) {
+							break outer;
+						}
+					}
+
+					a[dest++] = a[cursor2++];
+
+					if (--len2 == 0) {
+						break outer;
+					}
+
+					count2 = gallopLeft(tmp[cursor1], a, cursor2, len2, 0);
+
+					if (count2 != 0) {
+						System.arraycopy(a, cursor2, a, dest, count2);
+						dest += count2;
+						cursor2 += count2;
+						len2 -= count2;
+
+						if (len2 == 0) {
+							break outer;
+						}
+					}
+
+					a[dest++] = tmp[cursor1++];
+
+					if (--len1 == 1) {
+						break outer;
+					}
+
+					minGallop--;
+				} while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+
+				minGallop = Math.max(minGallop, 0) + 2;
+			}
+
+			this.minGallop = Math.max(minGallop, 1);
+
+			if (len1 == 1) {
+				System.arraycopy(a, cursor2, a, dest, len2);
+				a[dest + len2] = tmp[cursor1];
+			} else if (len1 > 0) {
+				// An inconsistent comparator can use up the first run early, the rest of the second one is then already in place
+				System.arraycopy(tmp, cursor1, a, dest, len1);
+			}
 		}
-		if (smallest == m) {
-			return (cmp.compare(a[start], a[end]) < 0) ? start : end;
+
+		/*
+		Merges two adjacent runs where the second one is shorter, copying it out first and merging from the end.
+		*/
+		private void mergeHi(int base1, int len1, int base2, int len2) {
+			Object[] a = this.a;
+			Object[] tmp = buffer(len2);
+			System.arraycopy(a, base2, tmp, 0, len2);
+			int cursor1 = base1 + len1 - 1;
+			int cursor2 = len2 - 1;
+			int dest = base2 + len2 - 1;
+
+			a[dest--] = a[cursor1--];
+
+			if (--len1 == 0) {
+				System.arraycopy(tmp, 0, a, dest - (len2 - 1), len2);
+				return;
+			} else if (len2 == 1) {
+				dest -= len1;
+				cursor1 -= len1;
+				System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+				a[dest] = tmp[cursor2];
+				return;
+			}
+
+			int minGallop = this.minGallop;
+
+			outer:
+			while (true) {
+				int count1 = 0;
+				int count2 = 0;
+
+				do {
+					if (cmp.compare(tmp[cursor2], a[cursor1]) < 0) {
+						a[dest--] = a[cursor1--];
+						count1++;
+						count2 = 0;
+
+						if (--len1 == 0) {
+							break outer;
+						}
+					} else {
+						a[dest--] = tmp[cursor2--];
+						count2++;
+						count1 = 0;
+
+						if (--len2 == 1) {
+							break outer;
+						}
+					}
+				} while ((count1 | count2) < minGallop);
+
+				do {
+					count1 = len1 - gallopRight(tmp[cursor2], a, base1, len1, len1 - 1);
+
+					if (count1 != 0) {
+						dest -= count1;
+						cursor1 -= count1;
+						len1 -= count1;
+						System.arraycopy(a, cursor1 + 1, a, dest + 1, count1);
+
+						if (len1 == 0) {
+							break outer;
+						}
+					}
+
+					a[dest--] = tmp[cursor2--];
+
+					if (--len2 == 1) {
+						break outer;
+					}
+
+					count2 = len2 - gallopLeft(a[cursor1], tmp, 0, len2, len2 - 1);
+
+					if (count2 != 0) {
+						dest -= count2;
+						cursor2 -= count2;
+						len2 -= count2;
+						System.arraycopy(tmp, cursor2 + 1, a, dest + 1, count2);
+
+						if (len2 <= 1) {
+							break outer;
+						}
+					}
+
+					a[dest--] = a[cursor1--];
+
+					if (--len1 == 0) {
+						break outer;
+					}
+
+					minGallop--;
+				} while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+
+				minGallop = Math.max(minGallop, 0) + 2;
+			}
+
+			this.minGallop = Math.max(minGallop, 1);
+
+			if (len2 == 1) {
+				dest -= len1;
+				cursor1 -= len1;
+				System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+				a[dest] = tmp[cursor2];
+			} else if (len2 > 0) {
+				// An inconsistent comparator can use up the second run early, the rest of the first one is then already in place
+				System.arraycopy(tmp, 0, a, dest - (len2 - 1), len2);
+			}
 		}
-		return (cmp.compare(a[start], a[m]) < 0) ? start : m;
 	}
 }
@@ -0,0 +1,66 @@
+package dev.latvian.mods.rhino;
+
+/**
+ * Strings of one compilation. Repeated names and literals share one String, and slices of the
+ * source are looked up without creating one first.
+ */
+final class SymbolTable {
+	private String[] table;
+	private int size;
+
+	SymbolTable() {
+		table = new String[256];
+	}
+
+	/**
+	 * @return the String equal to the given one, which is added if there is none yet
+	 */
+	String intern(String s) {
+		return intern(s, 0, s.length(), s.hashCode());
+	}
+
+	/**
+	 * @param hash {@link String#hashCode()} of the slice
+	 * @return the String equal to the slice of source from start to end, which is added if there is none yet
+	 */
+	String intern(String source, int start, int end, int hash) {
+		int length = end - start;
+		int mask = table.length - 1;
+
+		for (int i = (hash ^ (hash >>> 16)) & mask; ; i = (i + 1) & mask) {
+			String s = table[i];
+
+			if (s == null) {
+				s = start == 0 && end == source.length() ? source : source.substring(start, end);
+				table[i] = s;
+
+				if (++size * 2 > table.length) {
+					grow();
+				}
+
+				return s;
+			} else if (s.hashCode() == hash && s.length() == length && source.regionMatches(start, s, 0, length)) {
+				return s;
+			}
+		}
+	}
+
+	private void grow() {
+		String[] old = table;
+		table = new String[old.length * 2];
+		int mask = table.length - 1;
+
+		for (String s : old) {
+			if (s != null) {
+				int hash = s.hashCode();
+				int i = (hash ^ (hash >>> 16)) & mask;
+
+				while (table[i] != null) {
+					i = (i + 1) & mask;
+				}
+
+				table[i] = s;
+			}
+		}
+	}
+}
@@ -7,6 +7,8 @@
 package dev.latvian.mods.rhino;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
 
 /**
  * This class implements the JavaScript scanner.
@@ -29,53 +31,96 @@ class TokenStream {
 
 	private final static char BYTE_ORDER_MARK = '\uFEFF';
 
+	// States of skipFunctionBody
+	private static final int SKIP_CODE = 0;
+	private static final int SKIP_LINE_COMMENT = 1;
+	private static final int SKIP_BLOCK_COMMENT = 2;
+	private static final int SKIP_STRING = 3;
+	private static final int SKIP_TEMPLATE = 4;
+	private static final int SKIP_REGEXP = 5;
+	private static final int SKIP_REGEXP_CLASS = 6;
+
+	// Keywords and their tokens indexed by keywordHash, which has no collisions for them
+	private static final String[] KEYWORDS = new String[128];
+	private static final int[] KEYWORD_TOKENS = new int[128];
+
+	static {
+		addKeyword("break", Token.BREAK);
+		addKeyword("case", Token.CASE);
+		addKeyword("catch", Token.CATCH);
+		addKeyword("const", Token.CONST);
+		addKeyword("continue", Token.CONTINUE);
+		addKeyword("default", Token.DEFAULT);
+		addKeyword("delprop", Token.DELPROP);
+		addKeyword("do", Token.DO);
+		addKeyword("else", Token.ELSE);
+		addKeyword("finally", Token.FINALLY);
+		addKeyword("for", Token.FOR);
+		addKeyword("function", Token.FUNCTION);
+		addKeyword("if", Token.IF);
+		addKeyword("in", Token.IN);
+		addKeyword("instanceof", Token.INSTANCEOF);
+		addKeyword("new", Token.NEW);
+		addKeyword("return", Token.RETURN);
+		addKeyword("switch", Token.SWITCH);
+		addKeyword("this", Token.THIS);
+		addKeyword("throw", Token.THROW);
+		addKeyword("try", Token.TRY);
+		addKeyword("typeof", Token.TYPEOF);
+		addKeyword("var", Token.VAR);
+		addKeyword("void", Token.VOID);
+		addKeyword("while", Token.WHILE);
+		addKeyword("with", Token.WITH);
+		addKeyword("yield", Token.YIELD);
+		addKeyword("false", Token.FALSE);
+		addKeyword("null", Token.NULL);
+		addKeyword("true", Token.TRUE);
+		addKeyword("let", Token.LET);
+
+		for (String reserved : new String[]{"class", "export", "static", "public", "protected", "private", "package", "interface", "implements", "enum", "await", "super", "import", "extends"}) {
+			addKeyword(reserved, Token.RESERVED);
+		}
+	}
+
+	private static void addKeyword(String name, int token) {
+		int h = keywordHash(name, 0, name.length());
+
+		if (KEYWORDS[h] != null) {
+			throw Kit.codeBug("Keyword hash collision: " + name + ", " + KEYWORDS[h]);
+		}
+
+		KEYWORDS[h] = name;
+		KEYWORD_TOKENS[h] = token;
+	}
+
+	private static int keywordHash(String s, int start, int end) {
+		return ((end - start) * 11 + (s.charAt(start) << 3) + s.charAt(start + 1) + s.charAt(end - 1) * 52) & 127;
+	}
+
 	static boolean isKeyword(String s, boolean isStrict) {
 		return Token.EOF != stringToKeyword(s, isStrict);
 	}
 
 	private static int stringToKeyword(String name, boolean isStrict) {
-		return stringToKeywordForES(name, isStrict);
+		int index = keywordIndex(name, 0, name.length());
+		return index == -1 ? Token.EOF : KEYWORD_TOKENS[index];
 	}
 
 	/**
 	 * ECMAScript 6.
+	 *
+	 * @return index in {@link #KEYWORDS} of the keyword in source from start to end, or -1 if it isn't one
 	 */
-	private static int stringToKeywordForES(String name, boolean isStrict) {
-		return switch (name) {
-			case "break" -> Token.BREAK;
-			case "case" -> Token.CASE;
-			case "catch" -> Token.CATCH;
-			case "const" -> Token.CONST;
-			case "continue" -> Token.CONTINUE;
-			case "default" -> Token.DEFAULT;
-			case "delprop" -> Token.DELPROP;
-			case "do" -> Token.DO;
-			case "else" -> Token.ELSE;
-			case "finally" -> Token.FINALLY;
-			case "for" -> Token.FOR;
-			case "function" -> Token.FUNCTION;
-			case "if" -> Token.IF;
-			case "in" -> Token.IN;
-			case "instanceof" -> Token.INSTANCEOF;
-			case "new" -> Token.NEW;
-			case "return" -> Token.RETURN;
-			case "switch" -> Token.SWITCH;
-			case "this" -> Token.THIS;
-			case "throw" -> Token.THROW;
-			case "try" -> Token.TRY;
-			case "typeof" -> Token.TYPEOF;
-			case "var" -> Token.VAR;
-			case "void" -> Token.VOID;
-			case "while" -> Token.WHILE;
-			case "with" -> Token.WITH;
-			case "yield" -> Token.YIELD;
-			case "false" -> Token.FALSE;
-			case "null" -> Token.NULL;
-			case "true" -> Token.TRUE;
-			case "let" -> Token.LET;
-			case "class", "export", "static", "public", "protected", "private", "package", "interface", "implements", "enum", "await", "super", "import", "extends" -> Token.RESERVED;
-			default -> Token.EOF;
-		}; // & 0xFF;
+	private static int keywordIndex(String source, int start, int end) {
+		int length = end - start;
+
+		if (length < 2 || length > 10) {
+			return -1;
+		}
+
+		int h = keywordHash(source, start, end);
+		String keyword = KEYWORDS[h];
+		return keyword != null && keyword.length() == length && source.regionMatches(start, keyword, 0, length) ? h : -1;
 	}
 
 	private static boolean isAlpha(int c) {
@@ -118,7 +163,7 @@ class TokenStream {
 	}
 
 	private final StringBuilder rawString = new StringBuilder();
-	private final ObjToIntMap allStrings = new ObjToIntMap(50);
+	private final SymbolTable symbols = new SymbolTable();
 	// Room to backtrace from to < on failed match of the last - in <!--
 	private final int[] ungetBuffer = new int[3];
 	private final String sourceString;
@@ -244,6 +289,46 @@ class TokenStream {
 			}
 			*/
 
+			// Names of ASCII letters and digits are sliced from the source
+			if (c < 128 && ungetCursor == 0 && (isAlpha(c) || c == '_' || c == '$')) {
+				int end = sourceCursor;
+				int hash = c;
+				int next = EOF_CHAR;
+
+				while (end < sourceEnd) {
+					next = sourceString.charAt(end);
+
+					if (isAlpha(next) || isDigit(next) || next == '_' || next == '$') {
+						hash = 31 * hash + next;
+						end++;
+						next = EOF_CHAR;
+					} else {
+						break;
+					}
+				}
+
+				// Escapes and other characters in the name need the full scan
+				if (next < 128 && next != '\\') {
+					int start = sourceCursor - 1;
+					cursor += end - sourceCursor;
+					sourceCursor = end;
+					tokenEnd = cursor;
+					if (end == sourceEnd) {
+						hitEOF = true;
+					}
+
+					int keyword = keywordIndex(sourceString, start, end);
+
+					if (keyword != -1) {
+						this.string = KEYWORDS[keyword];
+						return KEYWORD_TOKENS[keyword];
+					}
+
+					this.string = symbols.intern(sourceString, start, end, hash);
+					return Token.NAME;
+				}
+			}
+
 			// identifier/keyword/instanceof?
 			// watch out for starting with a <backslash>
 			boolean identifierStart;
@@ -323,7 +408,7 @@ class TokenStream {
 					if (result != Token.EOF) {
 						// Save the string in case we need to use in
 						// object literal definitions.
-						this.string = (String) allStrings.intern(str);
+						this.string = symbols.intern(str);
 						return result;
 					}
 				} else if (isKeyword(str, parser.inUseStrictDirective())) {
@@ -331,7 +416,7 @@ class TokenStream {
 					// we convert the last character back to unicode
 					str = convertLastCharToHex(str);
 				}
-				this.string = (String) allStrings.intern(str);
+				this.string = symbols.intern(str);
 				return Token.NAME;
 			}
 
@@ -458,6 +543,33 @@ class TokenStream {
 				quoteChar = c;
 				stringBufferTop = 0;
 
+				if (ungetCursor == 0) {
+					// Literals without escapes are sliced from the source
+					int end = sourceCursor;
+					int hash = 0;
+					int next = EOF_CHAR;
+
+					while (end < sourceEnd) {
+						next = sourceString.charAt(end);
+
+						if (next == quoteChar || next == '\\' || next == '\n' || next == '\r' || next == 0x2028 || next == 0x2029) {
+							break;
+						}
+
+						hash = 31 * hash + next;
+						end++;
+						next = EOF_CHAR;
+					}
+
+					if (next == quoteChar) {
+						this.string = symbols.intern(sourceString, sourceCursor, end, hash);
+						cursor += end + 1 - sourceCursor;
+						sourceCursor = end + 1;
+						tokenEnd = cursor;
+						return Token.STRING;
+					}
+				}
+
 				c = getChar(false);
 				strLoop:
 				while (c != quoteChar) {
@@ -567,7 +679,7 @@ class TokenStream {
 				}
 
 				String str = getStringFromBuffer();
-				this.string = (String) allStrings.intern(str);
+				this.string = symbols.intern(str);
 				return Token.STRING;
 			}
 
@@ -1234,6 +1346,236 @@ class TokenStream {
 		return index < 0 || index >= sourceEnd ? EOF_CHAR : sourceString.charAt(index);
 	}
 
+	/**
+	 * Checks whether the next token on the current line is the {@code function}
+	 * keyword, without consuming it. Used to tell {@code async function} apart
+	 * from a plain name, which needs two tokens of lookahead.
+	 */
+	final boolean isFunctionKeywordAhead() {
+		int i = cursor;
+		int c = charAt(i);
+		while (c == ' ' || c == '\t') {
+			c = charAt(++i);
+		}
+		return sourceString.startsWith("function", i) && !Character.isJavaIdentifierPart(charAt(i + 8));
+	}
+
+	/**
+	 * Skips the body of a function after its opening brace without producing tokens, and leaves the
+	 * stream before the closing brace. Only brackets, strings, template literals, comments and
+	 * regular expressions are checked, a slash starts a regular expression unless it follows an
+	 * operand.
+	 *
+	 * @param names      receives every identifier and keyword in the body
+	 * @param allowYield whether the body may use <code>yield</code>, which otherwise needs a full parse
+	 *                   to tell if the function is a generator
+	 * @return false if the body can't be skipped, the stream is then left unchanged
+	 */
+	final boolean skipFunctionBody(Set<String> names, boolean allowYield) {
+		if (ungetCursor != 0 || lineEndChar >= 0 || cursor != sourceCursor) {
+			return false;
+		}
+
+		// Open brackets, with '<' for the condition of if, for, while and with, after which a slash
+		// starts a regular expression, '`' for template literals and '$' for substitutions in them
+		char[] stack = new char[16];
+		int depth = 0;
+		int state = SKIP_CODE;
+		boolean escaped = false;
+		boolean regExp = true;
+		char quote = 0;
+		String word = null;
+		int line = lineno;
+		int start = lineStart;
+		int i = sourceCursor;
+
+		for (; i < sourceEnd; i++) {
+			char c = sourceString.charAt(i);
+
+			if (c == '\n' || c == '\r' || c == 0x2028 || c == 0x2029) {
+				if (c == '\r' && i + 1 < sourceEnd && sourceString.charAt(i + 1) == '\n') {
+					i++;
+				}
+				line++;
+				start = i + 1;
+
+				if (state == SKIP_LINE_COMMENT) {
+					state = SKIP_CODE;
+				} else if (state == SKIP_REGEXP || state == SKIP_REGEXP_CLASS || state == SKIP_STRING && !escaped) {
+					return false;
+				}
+
+				escaped = false;
+				continue;
+			} else if (escaped) {
+				escaped = false;
+				continue;
+			}
+
+			switch (state) {
+				case SKIP_LINE_COMMENT -> {
+				}
+				case SKIP_BLOCK_COMMENT -> {
+					if (c == '*' && charAt(i + 1) == '/') {
+						i++;
+						state = SKIP_CODE;
+					}
+				}
+				case SKIP_STRING -> {
+					if (c == '\\') {
+						escaped = true;
+					} else if (c == quote) {
+						state = SKIP_CODE;
+						regExp = false;
+					}
+				}
+				case SKIP_TEMPLATE -> {
+					if (c == '\\') {
+						escaped = true;
+					} else if (c == '`') {
+						depth--;
+						state = SKIP_CODE;
+						regExp = false;
+					} else if (c == '$' && charAt(i + 1) == '{') {
+						i++;
+						stack = pushSkipBracket(stack, depth++, '$');
+						state = SKIP_CODE;
+						regExp = true;
+					}
+				}
+				case SKIP_REGEXP, SKIP_REGEXP_CLASS -> {
+					if (c == '\\') {
+						escaped = true;
+					} else if (c == '[') {
+						state = SKIP_REGEXP_CLASS;
+					} else if (c == ']') {
+						state = SKIP_REGEXP;
+					} else if (c == '/' && state == SKIP_REGEXP) {
+						while (i + 1 < sourceEnd && Character.isJavaIdentifierPart(sourceString.charAt(i + 1))) {
+							i++;
+						}
+						state = SKIP_CODE;
+						regExp = false;
+					}
+				}
+				default -> {
+					if (isJSSpace(c) || isJSFormatChar(c)) {
+						continue;
+					} else if (c == '/' && charAt(i + 1) == '/') {
+						i++;
+						state = SKIP_LINE_COMMENT;
+						continue;
+					} else if (c == '/' && charAt(i + 1) == '*') {
+						i++;
+						state = SKIP_BLOCK_COMMENT;
+						continue;
+					} else if (Character.isJavaIdentifierStart(c)) {
+						int end = i + 1;
+						while (end < sourceEnd && Character.isJavaIdentifierPart(sourceString.charAt(end))) {
+							end++;
+						}
+						if (charAt(end) == '\\') {
+							// Unicode escapes in names
+							return false;
+						}
+						word = sourceString.substring(i, end);
+						if (!allowYield && word.equals("yield")) {
+							return false;
+						}
+						names.add(word);
+						regExp = isKeywordBeforeRegExp(word);
+						i = end - 1;
+						continue;
+					} else if (isDigit(c) || c == '.' && isDigit(charAt(i + 1))) {
+						while (i + 1 < sourceEnd) {
+							int n = sourceString.charAt(i + 1);
+							if (n == '.' || Character.isJavaIdentifierPart(n) || (n == '+' || n == '-') && (c == 'e' || c == 'E')) {
+								c = (char) n;
+								i++;
+							} else {
+								break;
+							}
+						}
+						regExp = false;
+					} else if (c == '\'' || c == '"') {
+						quote = c;
+						state = SKIP_STRING;
+					} else if (c == '`') {
+						stack = pushSkipBracket(stack, depth++, '`');
+						state = SKIP_TEMPLATE;
+					} else if (c == '/') {
+						if (regExp) {
+							state = SKIP_REGEXP;
+						}
+						regExp = true;
+					} else if (c == '{' || c == '[') {
+						stack = pushSkipBracket(stack, depth++, c);
+						regExp = true;
+					} else if (c == '(') {
+						boolean condition = "if".equals(word) || "for".equals(word) || "while".equals(word) || "with".equals(word);
+						stack = pushSkipBracket(stack, depth++, condition ? '<' : '(');
+						regExp = true;
+					} else if (c == '}') {
+						if (depth == 0) {
+							// Closing brace of the function
+							sourceCursor = cursor = i;
+							lineno = line;
+							lineStart = start;
+							return true;
+						}
+						char open = stack[--depth];
+						if (open == '$') {
+							state = SKIP_TEMPLATE;
+						} else if (open != '{') {
+							return false;
+						}
+						regExp = true;
+					} else if (c == ')') {
+						if (depth == 0 || stack[depth - 1] != '(' && stack[depth - 1] != '<') {
+							return false;
+						}
+						regExp = stack[--depth] == '<';
+					} else if (c == ']') {
+						if (depth == 0 || stack[--depth] != '[') {
+							return false;
+						}
+						regExp = false;
+					} else if (c == '\\' || sourceString.startsWith("<!--", i) || sourceString.startsWith("-->", i)) {
+						// Unicode escapes in names and HTML comments
+						return false;
+					} else if ((c == '+' || c == '-') && charAt(i + 1) == c) {
+						// Increments and decrements don't change whether an operand is expected
+						i++;
+					} else {
+						regExp = true;
+					}
+
+					word = null;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private static char[] pushSkipBracket(char[] stack, int depth, char c) {
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth * 2);
+		}
+		stack[depth] = c;
+		return stack;
+	}
+
+	/**
+	 * Keywords after which a slash starts a regular expression instead of a division.
+	 */
+	private static boolean isKeywordBeforeRegExp(String word) {
+		return switch (word) {
+			case "return", "typeof", "case", "do", "else", "in", "instanceof", "new", "delete", "void", "throw", "yield", "await", "of" -> true;
+			default -> false;
+		};
+	}
+
 	private String substring(int beginIndex, int endIndex) {
 		return sourceString.substring(beginIndex, endIndex);
 	}
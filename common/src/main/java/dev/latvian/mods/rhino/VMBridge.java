@@ -35,6 +35,17 @@ public class VMBridge {
 		return storage;
 	}
 
+	/**
+	 * Same as <code>getContext(getThreadContextHelper())</code>, but doesn't
+	 * set up the thread's storage if it has never entered a Context. This
+	 * keeps lookups from short-lived threads, like virtual threads running
+	 * a single task, from allocating.
+	 */
+	public static Context getCurrentContext() {
+		Object[] storage = contextLocal.get();
+		return storage == null ? null : (Context) storage[0];
+	}
+
 	public static Context getContext(Object contextHelper) {
 		Object[] storage = (Object[]) contextHelper;
 		return (Context) storage[0];
@@ -70,6 +81,8 @@ public class VMBridge {
 			// Should not happen
 			throw new IllegalStateException(ex);
 		}
+		// Proxies of non-public interfaces are not public either
+		tryToMakeAccessible(null, c);
 		return c;
 	}
 
@@ -97,6 +110,9 @@ public class VMBridge {
 					return "Proxy[" + target.toString() + "]";
 				}
 			}
+			if (method.isDefault() && !InterfaceAdapter.overridesDefault(target, method.getName())) {
+				return adapter.invokeDefault(proxy, method, args);
+			}
 			return adapter.invoke(cf, target, topScope, proxy, method, args);
 		};
 		Object proxy;
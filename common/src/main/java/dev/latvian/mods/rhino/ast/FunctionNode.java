@@ -15,6 +15,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A JavaScript function declaration or expression.
@@ -76,11 +77,19 @@ public class FunctionNode extends ScriptNode {
 	// codegen variables
 	private int functionType;
 	private boolean needsActivation;
+	private boolean needsActivationForClosuresOnly;
 	private boolean isGenerator;
 	private boolean isES6Generator;
+	private boolean isAsync;
 	private List<Node> generatorResumePoints;
 	private Map<Node, int[]> liveLocals;
 	private AstNode memberExprNode;
+	// lazily compiled body, see Context.setLazyFunctions
+	private String lazySource;
+	private int lazySourceStart;
+	private int lazySourceEnd;
+	private int lazyLineno;
+	private Set<String> lazyNames;
 
 	{
 		type = Token.FUNCTION;
@@ -279,6 +288,27 @@ public class FunctionNode extends ScriptNode {
 
 	public void setRequiresActivation() {
 		needsActivation = true;
+		needsActivationForClosuresOnly = false;
+	}
+
+	/**
+	 * Return true if the only reason this function requires an activation object
+	 * is that it contains nested functions. Variables that no nested function
+	 * refers to can then stay in the call frame.
+	 */
+	public boolean requiresActivationForClosuresOnly() {
+		return needsActivationForClosuresOnly;
+	}
+
+	/**
+	 * Mark this function as requiring an activation object because it contains
+	 * nested functions.
+	 */
+	public void setRequiresActivationForClosures() {
+		if (!needsActivation) {
+			needsActivation = true;
+			needsActivationForClosuresOnly = true;
+		}
 	}
 
 	public boolean isGenerator() {
@@ -298,6 +328,19 @@ public class FunctionNode extends ScriptNode {
 		isGenerator = true;
 	}
 
+	public boolean isAsync() {
+		return isAsync;
+	}
+
+	/**
+	 * Marks an async function, its body is compiled as an ES6 generator
+	 * that yields at each {@code await}.
+	 */
+	public void setIsAsync() {
+		isAsync = true;
+		setIsES6Generator();
+	}
+
 	public void addResumptionPoint(Node target) {
 		if (generatorResumePoints == null) {
 			generatorResumePoints = new ArrayList<>();
@@ -324,7 +367,7 @@ public class FunctionNode extends ScriptNode {
 	public int addFunction(FunctionNode fnNode) {
 		int result = super.addFunction(fnNode);
 		if (getFunctionCount() > 0) {
-			needsActivation = true;
+			setRequiresActivationForClosures();
 		}
 		return result;
 	}
@@ -389,6 +432,51 @@ public class FunctionNode extends ScriptNode {
 		}
 	}
 
+	/**
+	 * Return true if the body of this function was only scanned by the parser and is compiled
+	 * from its source on first call.
+	 */
+	public boolean isLazy() {
+		return lazySource != null;
+	}
+
+	/**
+	 * Marks a function whose body was skipped by the parser. Its body node stays empty.
+	 *
+	 * @param source the whole source the function is in
+	 * @param start  position of the opening parenthesis of the parameters
+	 * @param end    position after the closing brace of the body
+	 * @param lineno line of the opening parenthesis
+	 * @param names  every identifier and keyword in the body
+	 */
+	public void setLazyBody(String source, int start, int end, int lineno, Set<String> names) {
+		lazySource = source;
+		lazySourceStart = start;
+		lazySourceEnd = end;
+		lazyLineno = lineno;
+		lazyNames = names;
+	}
+
+	public String getLazySource() {
+		return lazySource;
+	}
+
+	public int getLazySourceStart() {
+		return lazySourceStart;
+	}
+
+	public int getLazySourceEnd() {
+		return lazySourceEnd;
+	}
+
+	public int getLazyLineno() {
+		return lazyLineno;
+	}
+
+	public Set<String> getLazyNames() {
+		return lazyNames;
+	}
+
 	public enum Form {
 		FUNCTION, GETTER, SETTER, METHOD
 	}
@@ -1,16 +1,28 @@
 package dev.latvian.mods.rhino.classdata;
 
+import dev.latvian.mods.rhino.JavaMembers;
 import dev.latvian.mods.rhino.util.HideFromJS;
+import dev.latvian.mods.rhino.util.RemapForJS;
+import dev.latvian.mods.rhino.util.RemapPrefixForJS;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * Reflection data of one class, shared by {@link JavaMembers} and the {@link ClassMember} lookups of a
+ * {@link ClassDataCache}, so that each class is only reflected and remapped once.
+ */
 public class ClassData {
 	private static boolean isVoid(Class<?> c) {
 		return c == void.class || c == Void.class;
@@ -20,12 +32,57 @@ public class ClassData {
 		return c == boolean.class || c == Boolean.class;
 	}
 
+	private static Method[] getDeclaredMethodsSafe(Class<?> cl) {
+		try {
+			return cl.getDeclaredMethods();
+		} catch (Throwable t) {
+			System.err.println("[Rhino] Failed to get declared methods for " + cl.getName() + ": " + t);
+			return new Method[0];
+		}
+	}
+
+	private static Field[] getDeclaredFieldsSafe(Class<?> cl) {
+		try {
+			return cl.getDeclaredFields();
+		} catch (Throwable t) {
+			System.err.println("[Rhino] Failed to get declared fields for " + cl.getName() + ": " + t);
+			return new Field[0];
+		}
+	}
+
+	private static String remap(Member member, @Nullable RemapForJS remap, Set<String> remapPrefixes) {
+		if (remap != null) {
+			String s = remap.value().trim();
+
+			if (!s.isEmpty()) {
+				return s;
+			}
+		}
+
+		for (String s : remapPrefixes) {
+			if (member.getName().startsWith(s)) {
+				String n = member.getName().substring(s.length()).trim();
+
+				if (!n.isEmpty()) {
+					return n;
+				}
+			}
+		}
+
+		return "";
+	}
+
 	public final ClassDataCache cache;
 	public final Class<?> type;
 	private ClassData parent;
-	private Map<String, ClassMember> ownMembers;
-	private Map<String, ClassMember> actualMembers;
-	private Map<MethodSignature, Constructor<?>> constructors;
+	// Lazily built and only published once complete, so that readers on
+	// other threads never see a partially filled map
+	private volatile List<MethodInfo> declaredMethods;
+	private volatile List<FieldInfo> declaredFields;
+	private volatile List<Constructor<?>> declaredConstructors;
+	private volatile Map<String, ClassMember> ownMembers;
+	private volatile Map<String, ClassMember> actualMembers;
+	private volatile Map<MethodSignature, Constructor<?>> constructors;
 
 	ClassData(ClassDataCache c, Class<?> t) {
 		cache = c;
@@ -45,7 +102,134 @@ public class ClassData {
 		return parent;
 	}
 
-	private ClassMember make(String name) {
+	private Set<String> getRemapPrefixes() {
+		Set<String> remapPrefixes = new HashSet<>();
+
+		for (RemapPrefixForJS r : type.getAnnotationsByType(RemapPrefixForJS.class)) {
+			String s = r.value().trim();
+
+			if (!s.isEmpty()) {
+				remapPrefixes.add(s);
+			}
+		}
+
+		return remapPrefixes;
+	}
+
+	/**
+	 * Public and protected methods declared by this class, reflected and remapped once for all
+	 * {@link JavaMembers} and {@link ClassMember}s of this cache.
+	 */
+	public List<MethodInfo> getDeclaredMethods() {
+		List<MethodInfo> declaredMethods = this.declaredMethods;
+
+		if (declaredMethods == null) {
+			var remapPrefixes = getRemapPrefixes();
+			var names = cache.data.getRemapper().remapClass(type);
+			var list = new ArrayList<MethodInfo>();
+
+			for (Method method : getDeclaredMethodsSafe(type)) {
+				int m = method.getModifiers();
+
+				if (Modifier.isPublic(m) || Modifier.isProtected(m)) {
+					var signature = MethodSignature.of(method.getParameterTypes());
+
+					if (method.isAnnotationPresent(HideFromJS.class)) {
+						list.add(new MethodInfo(method, signature, method.getName(), null, true, false, false));
+						continue;
+					}
+
+					var remap = method.getAnnotation(RemapForJS.class);
+					String n = remap(method, remap, remapPrefixes);
+					boolean hasRemapForJS = remap != null && !remap.value().trim().isEmpty();
+
+					if (n.isEmpty()) {
+						n = names.getMappedMethod(method);
+					}
+
+					boolean isRemapped = !n.isEmpty();
+
+					if (!isRemapped) {
+						n = method.getName();
+					}
+
+					String bean = null;
+
+					if (signature.types.length == 0 && n.length() >= 4 && !isVoid(method.getReturnType()) && Character.isUpperCase(n.charAt(3)) && n.startsWith("get")) {
+						bean = n.substring(3, 4).toLowerCase() + n.substring(4);
+					} else if (signature.types.length == 1 && n.length() >= 4 && Character.isUpperCase(n.charAt(3)) && n.startsWith("set")) {
+						bean = n.substring(3, 4).toLowerCase() + n.substring(4);
+					} else if (signature.types.length == 0 && n.length() >= 3 && isBoolean(method.getReturnType()) && Character.isUpperCase(n.charAt(2)) && n.startsWith("is")) {
+						bean = n.substring(2, 3).toLowerCase() + n.substring(3);
+					}
+
+					list.add(new MethodInfo(method, signature, n, bean, false, isRemapped, hasRemapForJS));
+				}
+			}
+
+			this.declaredMethods = declaredMethods = List.copyOf(list);
+		}
+
+		return declaredMethods;
+	}
+
+	/**
+	 * Public and protected, non-transient fields declared by this class, reflected and remapped once.
+	 */
+	public List<FieldInfo> getDeclaredFields() {
+		List<FieldInfo> declaredFields = this.declaredFields;
+
+		if (declaredFields == null) {
+			var remapPrefixes = getRemapPrefixes();
+			var names = cache.data.getRemapper().remapClass(type);
+			var list = new ArrayList<FieldInfo>();
+
+			for (Field field : getDeclaredFieldsSafe(type)) {
+				int m = field.getModifiers();
+
+				if ((Modifier.isPublic(m) || Modifier.isProtected(m)) && !Modifier.isTransient(m) && !field.isAnnotationPresent(HideFromJS.class)) {
+					String n = remap(field, field.getAnnotation(RemapForJS.class), remapPrefixes);
+
+					if (n.isEmpty()) {
+						n = names.getMappedField(field);
+					}
+
+					if (n.isEmpty()) {
+						n = field.getName();
+					}
+
+					list.add(new FieldInfo(field, n));
+				}
+			}
+
+			this.declaredFields = declaredFields = List.copyOf(list);
+		}
+
+		return declaredFields;
+	}
+
+	/**
+	 * Public constructors of this class, not hidden from scripts.
+	 */
+	public List<Constructor<?>> getDeclaredConstructors() {
+		List<Constructor<?>> declaredConstructors = this.declaredConstructors;
+
+		if (declaredConstructors == null) {
+			var list = new ArrayList<Constructor<?>>();
+
+			for (Constructor<?> c : type.getDeclaredConstructors()) {
+				if (Modifier.isPublic(c.getModifiers()) && !c.isAnnotationPresent(HideFromJS.class)) {
+					list.add(c);
+				}
+			}
+
+			this.declaredConstructors = declaredConstructors = List.copyOf(list);
+		}
+
+		return declaredConstructors;
+	}
+
+	private ClassMember make(Map<String, ClassMember> ownMembers, String name) {
 		ClassMember m = ownMembers.get(name);
 
 		if (m == null) {
@@ -57,56 +241,44 @@ public class ClassData {
 	}
 
 	private Map<String, ClassMember> getOwnMembers() {
+		Map<String, ClassMember> ownMembers = this.ownMembers;
+
 		if (ownMembers == null) {
 			if (type == Object.class) {
-				ownMembers = Map.of();
+				this.ownMembers = ownMembers = Map.of();
 				return ownMembers;
 			}
 
 			ownMembers = new HashMap<>();
 
-			for (Field field : type.getDeclaredFields()) {
-				int m = field.getModifiers();
+			for (FieldInfo fi : getDeclaredFields()) {
+				int m = fi.field.getModifiers();
 
-				if (Modifier.isPublic(m) && !Modifier.isTransient(m) && !field.isAnnotationPresent(HideFromJS.class)) {
-					String n = cache.data.getRemapper().getMappedField(type, field);
-					var cm = make(n);
-					cm.field = field;
+				if (Modifier.isPublic(m)) {
+					var cm = make(ownMembers, fi.name);
+					cm.field = fi.field;
 					cm.isFinal = Modifier.isFinal(m);
 				}
 			}
 
-			for (Method method : type.getDeclaredMethods()) {
-				int m = method.getModifiers();
+			for (MethodInfo mi : getDeclaredMethods()) {
+				int m = mi.method.getModifiers();
 
 				if (Modifier.isPublic(m) && !Modifier.isNative(m)) {
-					String n = cache.data.getRemapper().getMappedMethod(type, method);
-					var cm = make(n);
+					var cm = make(ownMembers, mi.name);
 
 					if (cm.methods == null) {
 						cm.methods = new HashMap<>();
 					}
 
-					MethodInfo mi = new MethodInfo();
-					mi.method = method;
-					mi.signature = MethodSignature.of(method.getParameterTypes());
 					cm.methods.put(mi.signature, mi);
 
-					mi.isHidden = method.isAnnotationPresent(HideFromJS.class);
-
-					if (mi.isHidden) {
-						continue;
-					}
-
-					if (mi.signature.types.length == 0 && n.length() >= 4 && !isVoid(method.getReturnType()) && Character.isUpperCase(n.charAt(3)) && n.startsWith("get")) {
-						mi.bean = n.substring(3, 4).toLowerCase() + n.substring(4);
-						make(mi.bean).beanGet = mi;
-					} else if (mi.signature.types.length == 1 && n.length() >= 4 && Character.isUpperCase(n.charAt(3)) && n.startsWith("set")) {
-						mi.bean = n.substring(3, 4).toLowerCase() + n.substring(4);
-						make(mi.bean).beanSet = mi;
-					} else if (mi.signature.types.length == 0 && n.length() >= 3 && isBoolean(method.getReturnType()) && Character.isUpperCase(n.charAt(2)) && n.startsWith("is")) {
-						mi.bean = n.substring(2, 3).toLowerCase() + n.substring(3);
-						make(mi.bean).beanGet = mi;
+					if (mi.bean != null) {
+						if (mi.signature.types.length == 0) {
+							make(ownMembers, mi.bean).beanGet = mi;
+						} else {
+							make(ownMembers, mi.bean).beanSet = mi;
+						}
 					}
 				}
 			}
@@ -114,12 +286,16 @@ public class ClassData {
 			if (ownMembers.isEmpty()) {
 				ownMembers = Map.of();
 			}
+
+			this.ownMembers = ownMembers;
 		}
 
 		return ownMembers;
 	}
 
 	private Map<String, ClassMember> getActualMembers() {
+		Map<String, ClassMember> actualMembers = this.actualMembers;
+
 		if (actualMembers == null) {
 			Map<String, ClassMember> members = new HashMap<>();
 			var stack = new ArrayDeque<ClassData>();
@@ -159,6 +335,8 @@ public class ClassData {
 			if (actualMembers.isEmpty()) {
 				actualMembers = Map.of();
 			}
+
+			this.actualMembers = actualMembers;
 		}
 
 		return actualMembers;
@@ -171,16 +349,16 @@ public class ClassData {
 
 	@Nullable
 	public Constructor<?> getConstructor(MethodSignature sig) {
+		Map<MethodSignature, Constructor<?>> constructors = this.constructors;
+
 		if (constructors == null) {
 			constructors = new HashMap<>();
 
-			for (Constructor<?> c : type.getDeclaredConstructors()) {
-				int m = c.getModifiers();
-
-				if (Modifier.isPublic(m) && !c.isAnnotationPresent(HideFromJS.class)) {
-					constructors.put(MethodSignature.of(c.getParameterTypes()), c);
-				}
+			for (Constructor<?> c : getDeclaredConstructors()) {
+				constructors.put(MethodSignature.of(c.getParameterTypes()), c);
 			}
+
+			this.constructors = constructors;
 		}
 
 		return constructors.get(sig);
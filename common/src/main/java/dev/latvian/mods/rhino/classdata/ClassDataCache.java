@@ -2,21 +2,19 @@ package dev.latvian.mods.rhino.classdata;
 
 import dev.latvian.mods.rhino.SharedContextData;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ClassDataCache {
 	public final SharedContextData data;
 	final ClassData objectClassData;
-	private final Object lock;
 	private final Map<Class<?>, ClassData> cache;
 	private final ClassData arrayClassData;
 	private final ClassData classClassData;
 
 	public ClassDataCache(SharedContextData d) {
 		data = d;
-		lock = new Object();
-		cache = new HashMap<>();
+		cache = new ConcurrentHashMap<>();
 		objectClassData = new ClassData(this, Object.class);
 		arrayClassData = new ClassData(this, Object[].class);
 		classClassData = new ClassData(this, Class.class);
@@ -31,15 +29,12 @@ public class ClassDataCache {
 			return arrayClassData;
 		}
 
-		synchronized (lock) {
-			ClassData d = cache.get(c);
+		ClassData d = cache.get(c);
 
-			if (d == null) {
-				d = new ClassData(this, c);
-				cache.put(c, d);
-			}
-
-			return d;
+		if (d == null) {
+			d = cache.computeIfAbsent(c, type -> new ClassData(this, type));
 		}
+
+		return d;
 	}
 }
@@ -7,6 +7,7 @@ import org.jetbrains.annotations.Nullable;
 import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ClassMember {
 	public final ClassData classData;
@@ -18,7 +19,7 @@ public class ClassMember {
 	public MethodInfo beanGet;
 	public MethodInfo beanSet;
 
-	private Map<MethodSignature, Possible<MethodInfo>> jsMethods;
+	private volatile Map<MethodSignature, Possible<MethodInfo>> jsMethods;
 
 	ClassMember(ClassData c, String n) {
 		classData = c;
@@ -66,8 +67,16 @@ public class ClassMember {
 			return Possible.absent();
 		}
 
+		var jsMethods = this.jsMethods;
+
 		if (jsMethods == null) {
-			jsMethods = new HashMap<>();
+			synchronized (this) {
+				jsMethods = this.jsMethods;
+
+				if (jsMethods == null) {
+					this.jsMethods = jsMethods = new ConcurrentHashMap<>();
+				}
+			}
 		}
 
 		var p = jsMethods.get(sig);
@@ -107,11 +116,7 @@ public class ClassMember {
 				if (mi == null) {
 					methods.put(entry.getKey(), m);
 				} else {
-					mi.isHidden = mi.isHidden || m.isHidden;
-
-					if (mi.bean == null) {
-						mi.bean = m.bean;
-					}
+					methods.put(entry.getKey(), mi.merge(m));
 				}
 			}
 		}
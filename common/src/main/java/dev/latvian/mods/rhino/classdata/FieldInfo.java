@@ -0,0 +1,22 @@
+package dev.latvian.mods.rhino.classdata;
+
+import java.lang.reflect.Field;
+
+/**
+ * A field declared by a class, with its name for scripts. Shared by everything that reflects
+ * the class and never modified.
+ */
+public final class FieldInfo {
+	public final Field field;
+	public final String name;
+
+	FieldInfo(Field field, String name) {
+		this.field = field;
+		this.name = name;
+	}
+
+	@Override
+	public String toString() {
+		return field.toString();
+	}
+}
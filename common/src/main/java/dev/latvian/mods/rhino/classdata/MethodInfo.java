@@ -2,11 +2,42 @@ package dev.latvian.mods.rhino.classdata;
 
 import java.lang.reflect.Method;
 
-public class MethodInfo {
-	public Method method;
-	public String bean;
-	public MethodSignature signature;
-	public boolean isHidden;
+/**
+ * A method declared by a class, with its name for scripts. Shared by everything that reflects
+ * the class and never modified.
+ */
+public final class MethodInfo {
+	public final Method method;
+	public final MethodSignature signature;
+	public final String name;
+	public final String bean;
+	public final boolean isHidden;
+	public final boolean isRemapped; // name is not the Java name, but from an annotation or the remapper
+	public final boolean hasRemapForJS;
+
+	MethodInfo(Method method, MethodSignature signature, String name, String bean, boolean isHidden, boolean isRemapped, boolean hasRemapForJS) {
+		this.method = method;
+		this.signature = signature;
+		this.name = name;
+		this.bean = bean;
+		this.isHidden = isHidden;
+		this.isRemapped = isRemapped;
+		this.hasRemapForJS = hasRemapForJS;
+	}
+
+	/**
+	 * @return this method, hidden if it or the method it overrides is
+	 */
+	MethodInfo merge(MethodInfo m) {
+		boolean hidden = isHidden || m.isHidden;
+		String b = bean == null ? m.bean : bean;
+
+		if (hidden == isHidden && b == bean) {
+			return this;
+		}
+
+		return new MethodInfo(method, signature, name, b, hidden, isRemapped, hasRemapForJS);
+	}
 
 	@Override
 	public String toString() {
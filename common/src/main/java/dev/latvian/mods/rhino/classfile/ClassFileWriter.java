@@ -2161,6 +2161,15 @@ public class ClassFileWriter {
 	}
 
 	public void addInvoke(int theOpCode, String className, String methodName, String methodType) {
+		addInvoke(theOpCode, className, methodName, methodType, theOpCode == ByteCode.INVOKEINTERFACE);
+	}
+
+	/**
+	 * Adds a method invocation, referencing the method as an interface method
+	 * if <code>isInterface</code> is set, as needed to call an interface's default
+	 * or static method with INVOKESPECIAL or INVOKESTATIC.
+	 */
+	public void addInvoke(int theOpCode, String className, String methodName, String methodType, boolean isInterface) {
 		if (DEBUGCODE) {
 			System.out.println("Add " + bytecodeStr(theOpCode) + ", " + className + ", " + methodName + ", " + methodType);
 		}
@@ -2177,11 +2186,13 @@ public class ClassFileWriter {
 		switch (theOpCode) {
 			case ByteCode.INVOKEVIRTUAL, ByteCode.INVOKESPECIAL, ByteCode.INVOKESTATIC, ByteCode.INVOKEINTERFACE -> {
 				addToCodeBuffer(theOpCode);
-				if (theOpCode == ByteCode.INVOKEINTERFACE) {
+				if (isInterface) {
 					short ifMethodRefIndex = itsConstantPool.addInterfaceMethodRef(className, methodName, methodType);
 					addToCodeInt16(ifMethodRefIndex);
-					addToCodeBuffer(parameterCount + 1);
-					addToCodeBuffer(0);
+					if (theOpCode == ByteCode.INVOKEINTERFACE) {
+						addToCodeBuffer(parameterCount + 1);
+						addToCodeBuffer(0);
+					}
 				} else {
 					short methodRefIndex = itsConstantPool.addMethodRef(className, methodName, methodType);
 					addToCodeInt16(methodRefIndex);
@@ -0,0 +1,317 @@
+package dev.latvian.mods.rhino.mod.util;
+
+import dev.latvian.mods.rhino.util.MemberNameTable;
+import dev.latvian.mods.rhino.util.Remapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the names a remapper gave to the classes and members scripts used, on disk, so that later
+ * launches can answer them without loading the full mappings. The remapper is only loaded on the first
+ * lookup that isn't cached.
+ * <p>
+ * The cache is only used with the mappings it was written for. Members are keyed by name and descriptor,
+ * so classes that changed since just miss the cache for their new members.
+ */
+public class CachedRemapper implements Remapper {
+	private static final int VERSION = 1;
+
+	private static final class CachedClass {
+		private volatile String mappedName;
+		private final Map<String, String> fields = new ConcurrentHashMap<>();
+		private final Map<String, String> methods = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * @param mappingsKey identifies the mappings the remapper loads, the cache file is ignored if it was written for other ones.
+	 *                    If empty, the file is neither read nor written
+	 */
+	public static CachedRemapper load(Path file, String mappingsKey, Supplier<? extends Remapper> remapper) {
+		var r = new CachedRemapper(file, mappingsKey, remapper);
+
+		if (!mappingsKey.isEmpty() && Files.exists(file)) {
+			try (var in = new BufferedInputStream(Files.newInputStream(file))) {
+				r.read(in);
+			} catch (Exception ex) {
+				RemappingHelper.LOGGER.warn("Failed to load remapper cache from " + file + ", ignoring it", ex);
+				r.classes.clear();
+				r.unmappedClasses.clear();
+				r.changed = true;
+			}
+		}
+
+		return r;
+	}
+
+	private static String methodKey(Method method) {
+		if (method.getParameterCount() == 0) {
+			return method.getName();
+		}
+
+		var sb = new StringBuilder();
+		sb.append(method.getName());
+		sb.append('(');
+
+		for (var t : method.getParameterTypes()) {
+			sb.append(t.descriptorString());
+		}
+
+		return sb.toString();
+	}
+
+	private final Path file;
+	private final String mappingsKey;
+	private final Supplier<? extends Remapper> remapperSupplier;
+	private final Map<String, CachedClass> classes;
+	private final Map<String, String> unmappedClasses;
+	private volatile Remapper remapper;
+	private volatile boolean changed;
+
+	private CachedRemapper(Path file, String mappingsKey, Supplier<? extends Remapper> remapper) {
+		this.file = file;
+		this.mappingsKey = mappingsKey;
+		this.remapperSupplier = remapper;
+		this.classes = new ConcurrentHashMap<>();
+		this.unmappedClasses = new ConcurrentHashMap<>();
+	}
+
+	private Remapper getRemapper() {
+		Remapper r = remapper;
+
+		if (r == null) {
+			synchronized (this) {
+				r = remapper;
+
+				if (r == null) {
+					remapper = r = remapperSupplier.get();
+				}
+			}
+		}
+
+		return r;
+	}
+
+	/**
+	 * @return whether the remapper had to be loaded because something wasn't cached
+	 */
+	public boolean isRemapperLoaded() {
+		return remapper != null;
+	}
+
+	private CachedClass getCachedClass(Class<?> from) {
+		return classes.computeIfAbsent(from.getName(), k -> new CachedClass());
+	}
+
+	/**
+	 * Looks up the cached names of the class once, the remapper is only asked for the class when a
+	 * member isn't cached.
+	 */
+	@Override
+	public MemberNameTable remapClass(Class<?> from) {
+		if (!MinecraftRemapper.canRemap(from)) {
+			return MemberNameTable.NONE;
+		}
+
+		return new CachedTable(from, getCachedClass(from));
+	}
+
+	@Override
+	public String getMappedClass(Class<?> from) {
+		return remapClass(from).getMappedClass();
+	}
+
+	@Override
+	public String getUnmappedClass(String from) {
+		var s = unmappedClasses.get(from);
+
+		if (s == null) {
+			s = getRemapper().getUnmappedClass(from);
+			unmappedClasses.put(from, s);
+			changed = true;
+		}
+
+		return s;
+	}
+
+	@Override
+	public String getMappedField(Class<?> from, Field field) {
+		return remapClass(from).getMappedField(field);
+	}
+
+	@Override
+	public String getMappedMethod(Class<?> from, Method method) {
+		return remapClass(from).getMappedMethod(method);
+	}
+
+	private final class CachedTable implements MemberNameTable {
+		private final Class<?> from;
+		private final CachedClass cached;
+		private MemberNameTable table;
+
+		private CachedTable(Class<?> from, CachedClass cached) {
+			this.from = from;
+			this.cached = cached;
+		}
+
+		private MemberNameTable getTable() {
+			if (table == null) {
+				table = getRemapper().remapClass(from);
+			}
+
+			return table;
+		}
+
+		@Override
+		public String getMappedClass() {
+			var s = cached.mappedName;
+
+			if (s == null) {
+				cached.mappedName = s = getTable().getMappedClass();
+				changed = true;
+			}
+
+			return s;
+		}
+
+		@Override
+		public String getMappedField(Field field) {
+			var s = cached.fields.get(field.getName());
+
+			if (s == null) {
+				s = getTable().getMappedField(field);
+				cached.fields.put(field.getName(), s);
+				changed = true;
+			}
+
+			return s;
+		}
+
+		@Override
+		public String getMappedMethod(Method method) {
+			var key = methodKey(method);
+			var s = cached.methods.get(key);
+
+			if (s == null) {
+				s = getTable().getMappedMethod(method);
+				cached.methods.put(key, s);
+				changed = true;
+			}
+
+			return s;
+		}
+	}
+
+	private void read(InputStream in) throws Exception {
+		if (in.read() != 0) {
+			throw new RemapperException("Invalid remapper cache file!");
+		}
+
+		if (in.read() != VERSION || !RemappingHelper.readUtf(in).equals(mappingsKey)) {
+			// Written by another version or for other mappings, start over
+			changed = true;
+			return;
+		}
+
+		int classCount = RemappingHelper.readVarInt(in);
+
+		for (int i = 0; i < classCount; i++) {
+			var c = new CachedClass();
+			classes.put(RemappingHelper.readUtf(in), c);
+
+			if (in.read() == 1) {
+				c.mappedName = RemappingHelper.readUtf(in);
+			}
+
+			int fieldCount = RemappingHelper.readVarInt(in);
+
+			for (int j = 0; j < fieldCount; j++) {
+				c.fields.put(RemappingHelper.readUtf(in), RemappingHelper.readUtf(in));
+			}
+
+			int methodCount = RemappingHelper.readVarInt(in);
+
+			for (int j = 0; j < methodCount; j++) {
+				c.methods.put(RemappingHelper.readUtf(in), RemappingHelper.readUtf(in));
+			}
+		}
+
+		int unmappedCount = RemappingHelper.readVarInt(in);
+
+		for (int i = 0; i < unmappedCount; i++) {
+			unmappedClasses.put(RemappingHelper.readUtf(in), RemappingHelper.readUtf(in));
+		}
+	}
+
+	private void write(OutputStream out) throws Exception {
+		out.write(0);
+		out.write(VERSION);
+		RemappingHelper.writeUtf(out, mappingsKey);
+		// Copy first, the maps may change while they are written
+		var classEntries = Map.copyOf(classes).entrySet();
+		RemappingHelper.writeVarInt(out, classEntries.size());
+
+		for (var entry : classEntries) {
+			var c = entry.getValue();
+			RemappingHelper.writeUtf(out, entry.getKey());
+
+			var mappedName = c.mappedName;
+
+			if (mappedName == null) {
+				out.write(0);
+			} else {
+				out.write(1);
+				RemappingHelper.writeUtf(out, mappedName);
+			}
+
+			writeMap(out, c.fields);
+			writeMap(out, c.methods);
+		}
+
+		writeMap(out, unmappedClasses);
+	}
+
+	private static void writeMap(OutputStream out, Map<String, String> map) throws Exception {
+		var entries = Map.copyOf(map).entrySet();
+		RemappingHelper.writeVarInt(out, entries.size());
+
+		for (var entry : entries) {
+			RemappingHelper.writeUtf(out, entry.getKey());
+			RemappingHelper.writeUtf(out, entry.getValue());
+		}
+	}
+
+	/**
+	 * Write the cache file, if anything was added to it since it was loaded.
+	 */
+	public synchronized void save() {
+		if (!changed || mappingsKey.isEmpty()) {
+			return;
+		}
+
+		changed = false;
+
+		try {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+			try (var out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+				write(out);
+			}
+
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (Exception ex) {
+			RemappingHelper.LOGGER.error("Failed to save remapper cache to " + file, ex);
+		}
+	}
+}
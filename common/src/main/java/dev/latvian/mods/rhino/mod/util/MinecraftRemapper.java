@@ -1,31 +1,41 @@
 package dev.latvian.mods.rhino.mod.util;
 
+import dev.latvian.mods.rhino.util.MemberNameTable;
 import dev.latvian.mods.rhino.util.Remapper;
 
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Remaps Minecraft classes and members with the mappings written by {@link MojangMappings#write(java.io.OutputStream)}.
+ * <p>
+ * Only the types are decoded when the mappings are loaded. The members of a class are decoded from the
+ * buffer, which may be a mapped file, the first time that class is remapped.
+ */
 public class MinecraftRemapper implements Remapper {
 	private static final class RemappedClass {
 		private final String realName;
 		private final String remappedName;
 		private final boolean remapped;
-		private Map<String, String> fields;
-		private Map<String, String> emptyMethods;
-		private Map<String, String> methods;
+		private int membersOffset;
+		private volatile Members members;
 		private String descriptorString;
 
 		private RemappedClass(String realName, String remappedName, boolean remapped) {
 			this.realName = realName;
 			this.remappedName = remappedName;
 			this.remapped = remapped;
-			this.fields = null;
-			this.emptyMethods = null;
-			this.methods = null;
+			this.membersOffset = -1;
 		}
 
 		@Override
@@ -57,6 +67,130 @@ public class MinecraftRemapper implements Remapper {
 		}
 	}
 
+	private record MappedMethod(RemappedType[] params, String name) {
+		private boolean matches(Method method) {
+			if (method.getParameterCount() != params.length) {
+				return false;
+			}
+
+			var types = method.getParameterTypes();
+
+			for (int i = 0; i < params.length; i++) {
+				if (!params[i].matches(types[i])) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * Decoded members of a mapped class. Methods with parameters are grouped by name, and their
+	 * signatures are compared type by type, so no descriptor has to be built to look one up.
+	 */
+	private record Members(String className, Map<String, String> fields, Map<String, String> emptyMethods, Map<String, MappedMethod[]> methods) implements MemberNameTable {
+		private Members(String className) {
+			this(className, Map.of(), Map.of(), Map.of());
+		}
+
+		@Override
+		public String getMappedClass() {
+			return className;
+		}
+
+		@Override
+		public String getMappedField(Field field) {
+			return fields.getOrDefault(field.getName(), "");
+		}
+
+		@Override
+		public String getMappedMethod(Method method) {
+			if (method.getParameterCount() == 0) {
+				return emptyMethods.getOrDefault(method.getName(), "");
+			}
+
+			var overloads = methods.get(method.getName());
+
+			if (overloads != null) {
+				for (var m : overloads) {
+					if (m.matches(method)) {
+						return m.name;
+					}
+				}
+			}
+
+			return "";
+		}
+	}
+
+	/**
+	 * Reads from a position of the mappings buffer. Only uses absolute gets, so any number of them can
+	 * read the same buffer at once.
+	 */
+	private static final class Reader {
+		private final ByteBuffer buffer;
+		private int pos;
+
+		private Reader(ByteBuffer buffer, int pos) {
+			this.buffer = buffer;
+			this.pos = pos;
+		}
+
+		private int readByte() {
+			if (pos >= buffer.limit()) {
+				throw new RemapperException("Unexpected end of mappings");
+			}
+
+			return buffer.get(pos++) & 0xFF;
+		}
+
+		private int readVarInt() {
+			int i = 0;
+			int j = 0;
+			int b;
+
+			do {
+				b = readByte();
+				i |= (b & 127) << j++ * 7;
+
+				if (j > 5) {
+					throw new RemapperException("VarInt too big");
+				}
+			} while ((b & 128) == 128);
+
+			return i;
+		}
+
+		private String readUtf() {
+			int length = readVarInt();
+
+			if (length == 0) {
+				return "";
+			} else if (pos + length > buffer.limit()) {
+				throw new RemapperException("Unexpected end of mappings");
+			}
+
+			String s;
+
+			if (buffer.hasArray()) {
+				s = new String(buffer.array(), buffer.arrayOffset() + pos, length, StandardCharsets.UTF_8);
+			} else {
+				byte[] bytes = new byte[length];
+				buffer.get(pos, bytes);
+				s = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			pos += length;
+			return s;
+		}
+
+		private void skipUtf() {
+			int length = readVarInt();
+			pos += length;
+		}
+	}
+
 	private static final class RemappedType {
 		private final RemappedClass parent;
 		private final int array;
@@ -90,6 +224,21 @@ public class MinecraftRemapper implements Remapper {
 			return Objects.hash(parent, array);
 		}
 
+		/**
+		 * @return whether the class is this type, without building its descriptor
+		 */
+		private boolean matches(Class<?> c) {
+			for (int i = 0; i < array; i++) {
+				if (!c.isArray()) {
+					return false;
+				}
+
+				c = c.getComponentType();
+			}
+
+			return !c.isArray() && c.getName().equals(parent.realName);
+		}
+
 		public String descriptorString() {
 			if (descriptorString == null) {
 				if (array > 0) {
@@ -103,41 +252,59 @@ public class MinecraftRemapper implements Remapper {
 		}
 	}
 
-	private static int readVarInt(InputStream stream) throws Exception {
-		return RemappingHelper.readVarInt(stream);
+	/**
+	 * @return whether the class may have mappings, classes of the JDK never do
+	 */
+	public static boolean canRemap(Class<?> from) {
+		return from != null && from != Object.class && !from.getPackageName().startsWith("java.");
 	}
 
-	private static String readUtf(InputStream stream) throws Exception {
-		return RemappingHelper.readUtf(stream);
+	public static MinecraftRemapper load(InputStream stream, boolean debug) throws Exception {
+		return load(ByteBuffer.wrap(stream.readAllBytes()), debug);
 	}
 
-	public static MinecraftRemapper load(InputStream stream, boolean debug) throws Exception {
-		var m = new MinecraftRemapper(new HashMap<>(), new HashMap<>());
-		m.load0(stream, debug);
+	/**
+	 * Load uncompressed mappings from a file, which is mapped into memory instead of read.
+	 */
+	public static MinecraftRemapper load(Path file, boolean debug) throws Exception {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return load(channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()), debug);
+		}
+	}
+
+	public static MinecraftRemapper load(ByteBuffer buffer, boolean debug) throws Exception {
+		var m = new MinecraftRemapper(buffer);
+		m.load0(debug);
 		return m;
 	}
 
+	private final ByteBuffer buffer;
 	private final Map<String, RemappedClass> classMap;
-	private final Map<String, String> unmapClassMap;
+	private RemappedType[] types;
+	private int[] signatureOffsets;
+	private RemappedType[][] signatures;
+	private volatile Map<String, String> unmapClassMap;
+
+	private void load0(boolean debug) throws Exception {
+		var in = new Reader(buffer, 0);
 
-	private void load0(InputStream stream, boolean debug) throws Exception {
-		if (stream.read() != 0) {
+		if (in.readByte() != 0) {
 			throw new RemapperException("Invalid Minecraft Remapper file!");
 		}
 
-		int version = stream.read();
+		int version = in.readByte();
 
 		if (version > 1) {
 			throw new RemapperException("Invalid Minecraft Remapper file version!");
 		}
 
-		RemappingHelper.LOGGER.info("Loading mappings for " + readUtf(stream));
+		RemappingHelper.LOGGER.info("Loading mappings for " + in.readUtf());
 
-		int unmappedTypes = readVarInt(stream);
-		var mappedTypes = new RemappedType[readVarInt(stream)];
-		int arrayTypes = readVarInt(stream);
+		int unmappedTypes = in.readVarInt();
+		var mappedTypes = new RemappedType[in.readVarInt()];
+		int arrayTypes = in.readVarInt();
 
-		var types = new RemappedType[unmappedTypes + mappedTypes.length + arrayTypes];
+		types = new RemappedType[unmappedTypes + mappedTypes.length + arrayTypes];
 
 		if (debug) {
 			RemappingHelper.LOGGER.info("Unmapped Types: " + unmappedTypes);
@@ -147,24 +314,24 @@ public class MinecraftRemapper implements Remapper {
 		}
 
 		for (int i = 0; i < unmappedTypes; i++) {
-			int index = readVarInt(stream);
-			var name = readUtf(stream);
+			int index = in.readVarInt();
+			var name = in.readUtf();
 			types[index] = new RemappedType(new RemappedClass(name, name, false), 0);
 		}
 
 		for (int i = 0; i < mappedTypes.length; i++) {
-			int index = readVarInt(stream);
-			var realName = readUtf(stream);
-			var remappedName = readUtf(stream);
+			int index = in.readVarInt();
+			var realName = in.readUtf();
+			var remappedName = in.readUtf();
 			types[index] = new RemappedType(new RemappedClass(realName.isEmpty() ? remappedName : realName, remappedName, true), 0);
 			mappedTypes[i] = types[index];
 			classMap.put(types[index].parent.realName, types[index].parent);
 		}
 
 		for (int i = 0; i < arrayTypes; i++) {
-			int index = readVarInt(stream);
-			int type = readVarInt(stream);
-			int array = readVarInt(stream);
+			int index = in.readVarInt();
+			int type = in.readVarInt();
+			int array = in.readVarInt();
 
 			if (type < 0 || type >= types.length || types[type] == null) {
 				throw new RemapperException("Invalid array index: " + type + "!");
@@ -173,93 +340,199 @@ public class MinecraftRemapper implements Remapper {
 			types[index] = new RemappedType(types[type].parent, array);
 		}
 
-		var sig = new String[readVarInt(stream)];
+		// Signatures are only turned into descriptors when a method that uses them is remapped
+		signatureOffsets = new int[in.readVarInt()];
+		signatures = new RemappedType[signatureOffsets.length][];
 
-		for (int i = 0; i < sig.length; i++) {
-			int params = readVarInt(stream);
-			var sb = new StringBuilder();
-			sb.append('(');
+		for (int i = 0; i < signatureOffsets.length; i++) {
+			signatureOffsets[i] = in.pos;
+			int params = in.readVarInt();
 
 			for (int j = 0; j < params; j++) {
-				sb.append(types[readVarInt(stream)].descriptorString());
+				in.readVarInt();
 			}
-
-			sig[i] = sb.toString();
 		}
 
+		// Skip over the members of each class and remember where they start
 		for (var c : mappedTypes) {
-			if (debug) {
-				RemappingHelper.LOGGER.info(String.format("- %s -> %s", c.parent.realName, c.parent.remappedName));
+			c.parent.membersOffset = in.pos;
+			int fields = in.readVarInt();
+			int arg0 = in.readVarInt();
+			int argN = in.readVarInt();
+
+			for (int i = 0; i < fields + arg0; i++) {
+				in.skipUtf();
+				in.skipUtf();
 			}
 
-			int fields = readVarInt(stream);
-			int arg0 = readVarInt(stream);
-			int argN = readVarInt(stream);
+			for (int i = 0; i < argN; i++) {
+				in.skipUtf();
+				in.skipUtf();
+				in.readVarInt();
+			}
+		}
 
-			for (int i = 0; i < fields; i++) {
-				var unmappedName = readUtf(stream);
-				var mmName = readUtf(stream);
+		if (debug) {
+			for (var c : mappedTypes) {
+				RemappingHelper.LOGGER.info(String.format("- %s -> %s", c.parent.realName, c.parent.remappedName));
+				var members = getMembers(c.parent);
 
-				if (unmappedName.isEmpty() || mmName.isEmpty() || unmappedName.equals(mmName)) {
-					continue;
+				for (var entry : members.fields.entrySet()) {
+					RemappingHelper.LOGGER.info(String.format("  %s -> %s", entry.getKey(), entry.getValue()));
 				}
 
-				if (c.parent.fields == null) {
-					c.parent.fields = new HashMap<>(arg0 + argN);
+				for (var entry : members.emptyMethods.entrySet()) {
+					RemappingHelper.LOGGER.info(String.format("  %s() -> %s", entry.getKey(), entry.getValue()));
 				}
 
-				c.parent.fields.put(unmappedName, mmName);
+				for (var entry : members.methods.entrySet()) {
+					for (var m : entry.getValue()) {
+						var sb = new StringBuilder();
 
-				if (debug) {
-					RemappingHelper.LOGGER.info(String.format("  %s -> %s", unmappedName, mmName));
+						for (var t : m.params) {
+							sb.append(t.descriptorString());
+						}
+
+						RemappingHelper.LOGGER.info(String.format("  %s(%s) -> %s", entry.getKey(), sb, m.name));
+					}
 				}
 			}
+		}
+	}
 
-			for (int i = 0; i < arg0; i++) {
-				var realName = readUtf(stream);
-				var remappedName = readUtf(stream);
+	// Shared by the member tables of all classes, which are decoded under their own locks
+	private synchronized RemappedType[] getSignature(int index) {
+		if (index < 0 || index >= signatures.length) {
+			throw new RemapperException("Invalid signature index: " + index + "!");
+		}
 
-				if (realName.isEmpty() || remappedName.isEmpty() || realName.equals(remappedName)) {
-					continue;
-				}
+		var sig = signatures[index];
 
-				if (c.parent.emptyMethods == null) {
-					c.parent.emptyMethods = new HashMap<>(arg0);
-				}
+		if (sig == null) {
+			var in = new Reader(buffer, signatureOffsets[index]);
+			sig = new RemappedType[in.readVarInt()];
 
-				c.parent.emptyMethods.put(realName, remappedName);
+			for (int j = 0; j < sig.length; j++) {
+				int type = in.readVarInt();
 
-				if (debug) {
-					RemappingHelper.LOGGER.info(String.format("  %s() -> %s", realName, remappedName));
+				if (type < 0 || type >= types.length || types[type] == null) {
+					throw new RemapperException("Invalid type index: " + type + "!");
 				}
+
+				sig[j] = types[type];
 			}
 
-			for (int i = 0; i < argN; i++) {
-				var realName = readUtf(stream);
-				var remappedName = readUtf(stream);
+			signatures[index] = sig;
+		}
 
-				if (realName.isEmpty() || remappedName.isEmpty() || realName.equals(remappedName)) {
-					continue;
-				}
+		return sig;
+	}
 
-				if (c.parent.methods == null) {
-					c.parent.methods = new HashMap<>(argN);
-				}
+	private Members getMembers(RemappedClass c) {
+		var members = c.members;
 
-				int index = readVarInt(stream);
-				var key = realName + sig[index];
-				c.parent.methods.put(key, remappedName);
+		if (members == null) {
+			synchronized (c) {
+				members = c.members;
 
-				if (debug) {
-					RemappingHelper.LOGGER.info(String.format("  %s -> %s", key, remappedName));
+				if (members == null) {
+					try {
+						members = decodeMembers(c);
+					} catch (RemapperException ex) {
+						RemappingHelper.LOGGER.error("Failed to decode mappings of " + c.realName, ex);
+						members = new Members(c.remappedName);
+					}
+
+					c.members = members;
 				}
 			}
 		}
+
+		return members;
 	}
 
-	MinecraftRemapper(Map<String, RemappedClass> m1, Map<String, String> m2) {
-		classMap = m1;
-		unmapClassMap = m2;
+	private Members decodeMembers(RemappedClass c) {
+		if (c.membersOffset < 0) {
+			return new Members(c.remappedName);
+		}
+
+		var in = new Reader(buffer, c.membersOffset);
+		int fieldCount = in.readVarInt();
+		int arg0 = in.readVarInt();
+		int argN = in.readVarInt();
+
+		Map<String, String> fields = Map.of();
+		Map<String, String> emptyMethods = Map.of();
+		Map<String, MappedMethod[]> methods = Map.of();
+
+		for (int i = 0; i < fieldCount; i++) {
+			var unmappedName = in.readUtf();
+			var mmName = in.readUtf();
+
+			if (unmappedName.isEmpty() || mmName.isEmpty() || unmappedName.equals(mmName)) {
+				continue;
+			}
+
+			if (fields.isEmpty()) {
+				fields = new HashMap<>(fieldCount);
+			}
+
+			fields.put(unmappedName, mmName);
+		}
+
+		for (int i = 0; i < arg0; i++) {
+			var realName = in.readUtf();
+			var remappedName = in.readUtf();
+
+			if (realName.isEmpty() || remappedName.isEmpty() || realName.equals(remappedName)) {
+				continue;
+			}
+
+			if (emptyMethods.isEmpty()) {
+				emptyMethods = new HashMap<>(arg0);
+			}
+
+			emptyMethods.put(realName, remappedName);
+		}
+
+		for (int i = 0; i < argN; i++) {
+			var realName = in.readUtf();
+			var remappedName = in.readUtf();
+			int index = in.readVarInt();
+
+			if (realName.isEmpty() || remappedName.isEmpty() || realName.equals(remappedName)) {
+				continue;
+			}
+
+			if (methods.isEmpty()) {
+				methods = new HashMap<>(argN);
+			}
+
+			var m = new MappedMethod(getSignature(index), remappedName);
+			var overloads = methods.get(realName);
+
+			if (overloads == null) {
+				methods.put(realName, new MappedMethod[]{m});
+			} else {
+				overloads = Arrays.copyOf(overloads, overloads.length + 1);
+				overloads[overloads.length - 1] = m;
+				methods.put(realName, overloads);
+			}
+		}
+
+		return new Members(c.remappedName, fields, emptyMethods, methods);
+	}
+
+	MinecraftRemapper() {
+		this(ByteBuffer.allocate(0));
+		types = new RemappedType[0];
+		signatureOffsets = new int[0];
+		signatures = new RemappedType[0][];
+	}
+
+	private MinecraftRemapper(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.classMap = new HashMap<>();
 	}
 
 	@Override
@@ -274,57 +547,42 @@ public class MinecraftRemapper implements Remapper {
 			return "";
 		}
 
-		var s = unmapClassMap.get(mmName);
+		var map = unmapClassMap;
 
-		if (s == null) {
-			s = "";
+		if (map == null) {
+			map = new HashMap<>(classMap.size());
 
 			for (var c : classMap.values()) {
-				if (c.remappedName.equals(mmName)) {
-					s = c.realName;
-				}
+				map.put(c.remappedName, c.realName);
 			}
 
-			unmapClassMap.put(mmName, s);
+			unmapClassMap = map;
 		}
 
-		return s;
+		return map.getOrDefault(mmName, "");
 	}
 
+	/**
+	 * Decodes the members of the class the first time it is remapped. Lookups in the returned table
+	 * compare parameter types directly instead of building descriptors.
+	 */
 	@Override
-	public String getMappedField(Class<?> from, Field field) {
-		if (from == null || from == Object.class || from.getPackageName().startsWith("java.")) {
-			return "";
+	public MemberNameTable remapClass(Class<?> from) {
+		if (!canRemap(from)) {
+			return MemberNameTable.NONE;
 		}
 
 		var c = classMap.get(from.getName());
-		return c == null || c.fields == null ? "" : c.fields.getOrDefault(field.getName(), "");
+		return c == null ? MemberNameTable.NONE : getMembers(c);
 	}
 
 	@Override
-	public String getMappedMethod(Class<?> from, Method method) {
-		if (from == null || from == Object.class || from.getPackageName().startsWith("java.")) {
-			return "";
-		}
-
-		var c = classMap.get(from.getName());
-
-		if (c == null) {
-			return "";
-		} else if (method.getParameterCount() == 0) {
-			return c.emptyMethods == null ? "" : c.emptyMethods.getOrDefault(method.getName(), "");
-		} else if (c.methods == null) {
-			return "";
-		}
-
-		var sb = new StringBuilder();
-		sb.append(method.getName());
-		sb.append('(');
-
-		for (var t : method.getParameterTypes()) {
-			sb.append(t.descriptorString());
-		}
+	public String getMappedField(Class<?> from, Field field) {
+		return remapClass(from).getMappedField(field);
+	}
 
-		return c.methods.getOrDefault(sb.toString(), "");
+	@Override
+	public String getMappedMethod(Class<?> from, Method method) {
+		return remapClass(from).getMappedMethod(method);
 	}
 }
\ No newline at end of file
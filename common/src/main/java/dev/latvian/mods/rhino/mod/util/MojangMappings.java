@@ -3,8 +3,12 @@ package dev.latvian.mods.rhino.mod.util;
 import org.apache.commons.lang3.mutable.MutableObject;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -185,69 +189,137 @@ public class MojangMappings {
 		return s.isBlank() || s.startsWith("#") || s.endsWith("init>") || s.contains(".package-info ");
 	}
 
-	private void parse0(List<String> lines) {
-		lines.removeIf(MojangMappings::invalidLine);
+	/**
+	 * Lines of one class in the mappings text, from after its header to the next class.
+	 */
+	private record ClassBlock(ClassDef classDef, String text, int start, int end) {
+	}
+
+	/**
+	 * A member line split into its names and type names. Types are only resolved when the blocks are merged.
+	 *
+	 * @param params null for fields
+	 */
+	private record ParsedMember(String name, String rawName, String type, @Nullable String[] params) {
+	}
+
+	private static final String[] NO_PARAMS = new String[0];
+
+	private static int lineEnd(String text, int start, int end) {
+		int i = text.indexOf('\n', start);
+		return i == -1 || i > end ? end : i;
+	}
+
+	private static String line(String text, int start, int end) {
+		return text.substring(start, end > start && text.charAt(end - 1) == '\r' ? end - 1 : end);
+	}
+
+	private static List<ParsedMember> parseBlock(ClassBlock block) {
+		var text = block.text;
+		var members = new ArrayList<ParsedMember>();
 
-		for (var line : lines) {
-			if (line.charAt(line.length() - 1) == ':') {
-				var s = line.split(" -> ", 2); // replace with faster, last index of space check
-				var c = new ClassDef(this, s[1].substring(0, s[1].length() - 1), s[0], new HashMap<>(0), new HashSet<>(0));
-				c.mapped = true;
-				classes.put(c.rawName, c);
-				classesMM.put(c.mmName, c);
-				allTypes.put(c.noArrayType, c.noArrayType);
+		for (int pos = block.start; pos < block.end; ) {
+			int end = lineEnd(text, pos, block.end);
+
+			if (end > pos && text.charAt(pos) == ' ') {
+				var line = line(text, pos, end);
+
+				if (!invalidLine(line)) {
+					int from = Math.max(4, line.lastIndexOf(':') + 1);
+					int typeSpace = line.indexOf(' ', from);
+					int nameEnd = line.indexOf(' ', typeSpace + 1);
+					var type = line.substring(from, typeSpace);
+					var rawName = line.substring(line.lastIndexOf(' ') + 1);
+
+					if (line.charAt(nameEnd - 1) == ')') {
+						int lp = line.indexOf('(', typeSpace + 1);
+						var params = lp + 1 == nameEnd - 1 ? NO_PARAMS : line.substring(lp + 1, nameEnd - 1).split(",");
+						members.add(new ParsedMember(line.substring(typeSpace + 1, lp), rawName, type, params));
+					} else {
+						members.add(new ParsedMember(line.substring(typeSpace + 1, nameEnd), rawName, type, null));
+					}
+				}
 			}
+
+			pos = end + 1;
 		}
 
-		ClassDef currentClassDef = null;
+		return members;
+	}
 
-		for (var line : lines) {
-			if (line.charAt(0) == ' ') {
-				if (currentClassDef == null) {
-					throw new RemapperException("Field or method without class! " + line);
-				}
+	private void parse0(String text) {
+		// Find all classes first, members refer to them by their Mojang names
+		var blocks = new ArrayList<ClassBlock>();
+		ClassDef current = null;
+		int membersStart = 0;
 
-				line = line.substring(Math.max(4, line.lastIndexOf(':') + 1));
-				int typeSpace = line.indexOf(' ');
-				var type = getType(line.substring(0, typeSpace));
-				line = line.substring(typeSpace + 1);
-				var rawName = line.substring(line.lastIndexOf(' ') + 1);
-				line = line.substring(0, line.indexOf(' '));
-				String name;
-				MethodDefSignature sig;
+		for (int pos = 0; pos < text.length(); ) {
+			int end = lineEnd(text, pos, text.length());
 
-				if (line.charAt(line.length() - 1) == ')') {
-					int lp = line.indexOf('(');
-					name = line.substring(0, lp);
-					line = line.substring(lp + 1, line.length() - 1);
+			if (end > pos) {
+				if (text.charAt(pos) != ' ') {
+					var line = line(text, pos, end);
 
-					if (line.isEmpty()) {
-						sig = SIG_EMPTY;
-					} else {
-						var sclasses = line.split(",");
-						var types = new TypeDef[sclasses.length];
-						for (int i = 0; i < sclasses.length; i++) {
-							types[i] = getType(sclasses[i]);
+					if (!invalidLine(line) && line.charAt(line.length() - 1) == ':') {
+						if (current != null) {
+							blocks.add(new ClassBlock(current, text, membersStart, pos));
 						}
 
-						sig = getSignature(types);
+						int arrow = line.indexOf(" -> ");
+						var c = new ClassDef(this, line.substring(arrow + 4, line.length() - 1), line.substring(0, arrow), new HashMap<>(0), new HashSet<>(0));
+						c.mapped = true;
+						classes.put(c.rawName, c);
+						classesMM.put(c.mmName, c);
+						allTypes.put(c.noArrayType, c.noArrayType);
+						current = c;
+						membersStart = end + 1;
 					}
-				} else {
-					name = line;
+				} else if (current == null && !invalidLine(line(text, pos, end))) {
+					throw new RemapperException("Field or method without class! " + line(text, pos, end));
+				}
+			}
+
+			pos = end + 1;
+		}
+
+		if (current != null) {
+			blocks.add(new ClassBlock(current, text, membersStart, text.length()));
+		}
+
+		// Split the member lines of all classes in parallel, but resolve their types in order,
+		// so that types and signatures are created in the same order as by a single thread
+		var parsed = blocks.parallelStream().map(MojangMappings::parseBlock).toList();
+
+		for (int i = 0; i < blocks.size(); i++) {
+			var classDef = blocks.get(i).classDef;
+
+			for (var member : parsed.get(i)) {
+				var type = getType(member.type);
+				MethodDefSignature sig;
+
+				if (member.params == null) {
 					sig = null;
+				} else if (member.params.length == 0) {
+					sig = SIG_EMPTY;
+				} else {
+					var types = new TypeDef[member.params.length];
+
+					for (int j = 0; j < types.length; j++) {
+						types[j] = getType(member.params[j]);
+					}
+
+					sig = getSignature(types);
 				}
 
-				var rawNameSig = new NamedSignature(rawName, sig);
+				var rawNameSig = new NamedSignature(member.rawName, sig);
+				var name = member.name;
 
-				if (name.startsWith("lambda$") || name.startsWith("access$") || line.startsWith("val$") || line.startsWith("this$")) {
-					currentClassDef.ignoredMembers.add(rawNameSig);
+				if (name.startsWith("lambda$") || name.startsWith("access$") || name.startsWith("val$") || name.startsWith("this$")) {
+					classDef.ignoredMembers.add(rawNameSig);
 					continue;
 				}
 
-				var m = new MemberDef(currentClassDef, rawNameSig, name, type, new MutableObject<>(""));
-				currentClassDef.members.put(rawNameSig, m);
-			} else if (line.charAt(line.length() - 1) == ':') {
-				currentClassDef = classes.get(line.substring(line.lastIndexOf(' ') + 1, line.length() - 1));
+				classDef.members.put(rawNameSig, new MemberDef(classDef, rawNameSig, name, type, new MutableObject<>("")));
 			}
 		}
 	}
@@ -286,20 +358,180 @@ public class MojangMappings {
 		RemappingHelper.writeUtf(stream, value);
 	}
 
+	/**
+	 * Key of a type as it is written, which stays the same between versions of the game.
+	 */
+	private static String typeKey(TypeDef t) {
+		var c = t.parent;
+		var key = c.mapped ? "M" + c.unmappedName.getValue() + " " + c.mmName : "U" + c.rawName;
+		return t.array == 0 ? key : "[".repeat(t.array) + key;
+	}
+
+	private record MemberEntry(String unmappedName, String mmName, int signature) {
+	}
+
+	private record MemberTable(int offset, int length, Set<MemberEntry> entries) {
+	}
+
+	/**
+	 * Types, signatures and member tables of mappings written before, see {@link #write(OutputStream, byte[])}.
+	 */
+	private static final class PreviousMappings {
+		private final String[] typeNames;
+		private final int[] arrayParents;
+		private final int[] arrays;
+		private final Map<String, Integer> typeIndices;
+		private final int[][] signatures;
+		private final Map<String, Integer> signatureIndices;
+		private final Map<String, MemberTable> memberTables;
+
+		private PreviousMappings(byte[] data) throws Exception {
+			var in = new ByteArrayInputStream(data);
+
+			if (in.read() != 0 || in.read() != 1) {
+				throw new RemapperException("Invalid previous mappings file!");
+			}
+
+			RemappingHelper.readUtf(in);
+			int unmappedTypes = RemappingHelper.readVarInt(in);
+			int mappedTypes = RemappingHelper.readVarInt(in);
+			int arrayTypes = RemappingHelper.readVarInt(in);
+			int total = unmappedTypes + mappedTypes + arrayTypes;
+			var keys = new String[total];
+			var mappedKeys = new String[mappedTypes];
+			typeNames = new String[total];
+			arrayParents = new int[total];
+			arrays = new int[total];
+			typeIndices = new HashMap<>(total);
+
+			for (int i = 0; i < unmappedTypes; i++) {
+				int index = readIndex(in, total);
+				typeNames[index] = RemappingHelper.readUtf(in);
+				keys[index] = "U" + typeNames[index];
+			}
+
+			for (int i = 0; i < mappedTypes; i++) {
+				int index = readIndex(in, total);
+				var unmappedName = RemappingHelper.readUtf(in);
+				var mmName = RemappingHelper.readUtf(in);
+				typeNames[index] = unmappedName.isEmpty() ? mmName : unmappedName;
+				keys[index] = mappedKeys[i] = "M" + unmappedName + " " + mmName;
+			}
+
+			for (int i = 0; i < arrayTypes; i++) {
+				int index = readIndex(in, total);
+				int parent = readIndex(in, total);
+				arrayParents[index] = parent;
+				arrays[index] = RemappingHelper.readVarInt(in);
+				keys[index] = "[".repeat(arrays[index]) + keys[parent];
+			}
+
+			for (int i = 0; i < total; i++) {
+				if (keys[i] == null) {
+					throw new RemapperException("Missing type " + i + " in previous mappings!");
+				}
+
+				typeIndices.putIfAbsent(keys[i], i);
+			}
+
+			signatures = new int[RemappingHelper.readVarInt(in)][];
+			signatureIndices = new HashMap<>(signatures.length);
+
+			for (int i = 0; i < signatures.length; i++) {
+				signatures[i] = new int[RemappingHelper.readVarInt(in)];
+
+				for (int j = 0; j < signatures[i].length; j++) {
+					signatures[i][j] = readIndex(in, total);
+				}
+
+				signatureIndices.putIfAbsent(Arrays.toString(signatures[i]), i);
+			}
+
+			memberTables = new HashMap<>(mappedTypes);
+
+			for (var key : mappedKeys) {
+				int offset = data.length - in.available();
+				int fields = RemappingHelper.readVarInt(in);
+				int arg0 = RemappingHelper.readVarInt(in);
+				int argN = RemappingHelper.readVarInt(in);
+				var entries = new HashSet<MemberEntry>();
+
+				for (int i = 0; i < fields; i++) {
+					entries.add(new MemberEntry(RemappingHelper.readUtf(in), RemappingHelper.readUtf(in), -1));
+				}
+
+				for (int i = 0; i < arg0; i++) {
+					entries.add(new MemberEntry(RemappingHelper.readUtf(in), RemappingHelper.readUtf(in), -2));
+				}
+
+				for (int i = 0; i < argN; i++) {
+					entries.add(new MemberEntry(RemappingHelper.readUtf(in), RemappingHelper.readUtf(in), readIndex(in, signatures.length)));
+				}
+
+				memberTables.put(key, new MemberTable(offset, data.length - in.available() - offset, entries));
+			}
+		}
+
+		private static int readIndex(InputStream in, int size) throws Exception {
+			int index = RemappingHelper.readVarInt(in);
+
+			if (index < 0 || index >= size) {
+				throw new RemapperException("Invalid index " + index + " in previous mappings!");
+			}
+
+			return index;
+		}
+	}
+
 	public void write(OutputStream stream) throws Exception {
+		write(stream, null);
+	}
+
+	/**
+	 * @param previous uncompressed mappings written for an earlier version, or null. If given, types and
+	 *                 signatures keep their indices from it and new ones are added after them, and the
+	 *                 member tables of classes that didn't change are copied from it instead of encoded again.
+	 *                 Types and signatures that are no longer used are kept, so the file only shrinks again
+	 *                 when it is written without previous mappings
+	 */
+	public void write(OutputStream stream, @Nullable byte[] previous) throws Exception {
 		cleanup();
 		updateOccurrences();
 
+		PreviousMappings prev = null;
+
+		if (previous != null) {
+			try {
+				prev = new PreviousMappings(previous);
+			} catch (Exception ex) {
+				RemappingHelper.LOGGER.warn("Failed to read previous mappings, writing all classes", ex);
+			}
+		}
+
 		var typeDefList = new ArrayList<>(allTypes.values());
 		typeDefList.sort(TypeDef::compareTo);
 
 		var unmappedTypes = new ArrayList<TypeDef>();
 		var mappedTypes = new ArrayList<TypeDef>();
 		var arrayTypes = new ArrayList<TypeDef>();
+		int typeCount = prev == null ? typeDefList.size() : prev.typeNames.length;
+		var usedTypes = new boolean[prev == null ? 0 : typeCount];
 
 		for (int i = 0; i < typeDefList.size(); i++) {
 			var c = typeDefList.get(i);
-			c.index = i;
+
+			if (prev == null) {
+				c.index = i;
+			} else {
+				var index = prev.typeIndices.get(typeKey(c));
+
+				if (index != null && !usedTypes[index]) {
+					c.index = index;
+					usedTypes[index] = true;
+				} else {
+					c.index = typeCount++;
+				}
+			}
 
 			if (c.array > 0) {
 				arrayTypes.add(c);
@@ -310,32 +542,76 @@ public class MojangMappings {
 			}
 		}
 
+		// Types of the previous mappings that aren't used anymore, other types and signatures may still refer to them
+		var unusedTypes = new ArrayList<Integer>();
+		var unusedArrayTypes = new ArrayList<Integer>();
+
+		for (int i = 0; i < usedTypes.length; i++) {
+			if (!usedTypes[i]) {
+				(prev.arrays[i] > 0 ? unusedArrayTypes : unusedTypes).add(i);
+			}
+		}
+
 		var sigList = new ArrayList<>(methodSignatures.values());
 		sigList.sort(MethodDefSignature::compareTo);
+		int sigCount = prev == null ? sigList.size() : prev.signatures.length;
+		int[][] signatures = new int[sigCount + (prev == null ? 0 : sigList.size())][];
+		var usedSignatures = new boolean[prev == null ? 0 : sigCount];
 
 		for (int i = 0; i < sigList.size(); i++) {
-			sigList.get(i).index = i;
+			var s = sigList.get(i);
+			var types = new int[s.types.length];
+
+			for (int j = 0; j < types.length; j++) {
+				types[j] = s.types[j].index;
+			}
+
+			if (prev == null) {
+				s.index = i;
+			} else {
+				var index = prev.signatureIndices.get(Arrays.toString(types));
+
+				if (index != null && !usedSignatures[index]) {
+					s.index = index;
+					usedSignatures[index] = true;
+				} else {
+					s.index = sigCount++;
+				}
+			}
+
+			signatures[s.index] = types;
 		}
 
-		RemappingHelper.LOGGER.info("Total Types: " + typeDefList.size());
-		RemappingHelper.LOGGER.info("Total Signatures: " + sigList.size());
-		RemappingHelper.LOGGER.info("Unmapped Types: " + unmappedTypes.size());
+		for (int i = 0; i < usedSignatures.length; i++) {
+			if (!usedSignatures[i]) {
+				signatures[i] = prev.signatures[i];
+			}
+		}
+
+		RemappingHelper.LOGGER.info("Total Types: " + typeCount);
+		RemappingHelper.LOGGER.info("Total Signatures: " + sigCount);
+		RemappingHelper.LOGGER.info("Unmapped Types: " + (unmappedTypes.size() + unusedTypes.size()));
 		RemappingHelper.LOGGER.info("Mapped Types: " + mappedTypes.size());
-		RemappingHelper.LOGGER.info("Array Types: " + arrayTypes.size());
+		RemappingHelper.LOGGER.info("Array Types: " + (arrayTypes.size() + unusedArrayTypes.size()));
 
 		stream.write(0); // Binary indicator
 		stream.write(1); // Version
 		writeUtf(stream, mcVersion);
 
-		writeVarInt(stream, unmappedTypes.size());
+		writeVarInt(stream, unmappedTypes.size() + unusedTypes.size());
 		writeVarInt(stream, mappedTypes.size());
-		writeVarInt(stream, arrayTypes.size());
+		writeVarInt(stream, arrayTypes.size() + unusedArrayTypes.size());
 
 		for (var c : unmappedTypes) {
 			writeVarInt(stream, c.index);
 			writeUtf(stream, c.parent.rawName);
 		}
 
+		for (int i : unusedTypes) {
+			writeVarInt(stream, i);
+			writeUtf(stream, prev.typeNames[i]);
+		}
+
 		for (var c : mappedTypes) {
 			writeVarInt(stream, c.index);
 			writeUtf(stream, c.parent.unmappedName.getValue());
@@ -348,16 +624,24 @@ public class MojangMappings {
 			writeVarInt(stream, c.array);
 		}
 
-		writeVarInt(stream, sigList.size());
+		for (int i : unusedArrayTypes) {
+			writeVarInt(stream, i);
+			writeVarInt(stream, prev.arrayParents[i]);
+			writeVarInt(stream, prev.arrays[i]);
+		}
+
+		writeVarInt(stream, sigCount);
 
-		for (var s : sigList) {
-			writeVarInt(stream, s.types.length);
+		for (int i = 0; i < sigCount; i++) {
+			writeVarInt(stream, signatures[i].length);
 
-			for (var c : s.types) {
-				writeVarInt(stream, c.index);
+			for (int type : signatures[i]) {
+				writeVarInt(stream, type);
 			}
 		}
 
+		int copied = 0;
+
 		for (var c : mappedTypes) {
 			var fields = new ArrayList<MemberDef>();
 			var arg0methods = new ArrayList<MemberDef>();
@@ -373,6 +657,30 @@ public class MojangMappings {
 				}
 			}
 
+			var table = prev == null ? null : prev.memberTables.get(typeKey(c));
+
+			if (table != null && table.entries.size() == c.parent.members.size()) {
+				var entries = new HashSet<MemberEntry>();
+
+				for (var m : fields) {
+					entries.add(new MemberEntry(m.unmappedName.getValue(), m.mmName, -1));
+				}
+
+				for (var m : arg0methods) {
+					entries.add(new MemberEntry(m.unmappedName.getValue(), m.mmName, -2));
+				}
+
+				for (var m : argNmethods) {
+					entries.add(new MemberEntry(m.unmappedName.getValue(), m.mmName, m.rawName.signature.index));
+				}
+
+				if (entries.equals(table.entries)) {
+					stream.write(previous, table.offset, table.length);
+					copied++;
+					continue;
+				}
+			}
+
 			writeVarInt(stream, fields.size());
 			writeVarInt(stream, arg0methods.size());
 			writeVarInt(stream, argNmethods.size());
@@ -393,14 +701,30 @@ public class MojangMappings {
 				writeVarInt(stream, m.rawName.signature.index);
 			}
 		}
+
+		if (prev != null) {
+			RemappingHelper.LOGGER.info("Copied " + copied + " of " + mappedTypes.size() + " classes from previous mappings");
+		}
 	}
 
-	public static MojangMappings parse(String mcVersion, List<String> lines) throws Exception {
+	/**
+	 * Parse the official mappings text. Classes are parsed in parallel on the common fork-join pool, the
+	 * result is the same as parsing them one by one.
+	 */
+	public static MojangMappings parse(String mcVersion, String text) throws Exception {
 		var mappings = new MojangMappings(mcVersion);
-		mappings.parse0(lines);
+		mappings.parse0(text);
 		return mappings;
 	}
 
+	public static MojangMappings parse(String mcVersion, Path file) throws Exception {
+		return parse(mcVersion, Files.readString(file));
+	}
+
+	public static MojangMappings parse(String mcVersion, List<String> lines) throws Exception {
+		return parse(mcVersion, String.join("\n", lines));
+	}
+
 	public static class MethodDefSignature {
 		public final TypeDef[] types;
 		public int occurrences;
@@ -17,15 +17,19 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 public class RemappingHelper {
 	public static final boolean GENERATE = System.getProperty("generaterhinomappings", "0").equals("1");
+	public static final boolean GENERATE_INCREMENTAL = System.getProperty("incrementalrhinomappings", "0").equals("1");
 	private static final Gson GSON = new GsonBuilder().setLenient().setPrettyPrinting().disableHtmlEscaping().create();
 	public static final Logger LOGGER = LoggerFactory.getLogger("Rhino Script Remapper");
 	private static final Map<String, Optional<Class<?>>> CLASS_CACHE = new HashMap<>();
@@ -63,28 +67,27 @@ public class RemappingHelper {
 	}
 
 	private static MinecraftRemapper minecraftRemapper = null;
+	private static CachedRemapper cachedMinecraftRemapper = null;
+	private static String mappingsKey = null;
 
-	public static MinecraftRemapper getMinecraftRemapper(boolean debug) {
+	public static synchronized MinecraftRemapper getMinecraftRemapper(boolean debug) {
 		if (minecraftRemapper == null) {
 			LOGGER.info("Loading Rhino Minecraft remapper...");
 			long time = System.currentTimeMillis();
 			var configPath = RhinoProperties.getGameDir().resolve("config/mm.jsmappings");
+			var source = Files.exists(configPath) ? "config/mm.jsmappings" : "mod jar";
 
-			if (Files.exists(configPath)) {
-				try (var in = new BufferedInputStream(new GZIPInputStream(Objects.requireNonNull(Files.newInputStream(configPath))))) {
-					minecraftRemapper = MinecraftRemapper.load(in, debug);
-				} catch (Exception ex) {
-					ex.printStackTrace();
-					LOGGER.error("Failed to load Rhino Minecraft remapper from config/mm.jsmappings!", ex);
-					minecraftRemapper = new MinecraftRemapper(Map.of(), Map.of());
-				}
-			} else {
-				try (var in = new BufferedInputStream(new GZIPInputStream(Objects.requireNonNull(RhinoProperties.openResource("mm.jsmappings"))))) {
+			try {
+				minecraftRemapper = MinecraftRemapper.load(getUnpackedMappings(), debug);
+			} catch (Exception ex) {
+				LOGGER.warn("Failed to map unpacked Rhino Minecraft mappings, reading them from " + source, ex);
+
+				try (var in = new BufferedInputStream(new GZIPInputStream(openMappings()))) {
 					minecraftRemapper = MinecraftRemapper.load(in, debug);
-				} catch (Exception ex) {
-					ex.printStackTrace();
-					LOGGER.error("Failed to load Rhino Minecraft remapper from mod jar!", ex);
-					minecraftRemapper = new MinecraftRemapper(Map.of(), Map.of());
+				} catch (Exception ex1) {
+					ex1.printStackTrace();
+					LOGGER.error("Failed to load Rhino Minecraft remapper from " + source + "!", ex1);
+					minecraftRemapper = new MinecraftRemapper();
 				}
 			}
 
@@ -94,10 +97,81 @@ public class RemappingHelper {
 		return minecraftRemapper;
 	}
 
+	private static InputStream openMappings() throws Exception {
+		var configPath = RhinoProperties.getGameDir().resolve("config/mm.jsmappings");
+		return Files.exists(configPath) ? Files.newInputStream(configPath) : Objects.requireNonNull(RhinoProperties.openResource("mm.jsmappings"));
+	}
+
+	/**
+	 * @return the mappings, unpacked into local/rhino once per version of them so that they can be mapped into memory
+	 */
+	private static Path getUnpackedMappings() throws Exception {
+		var dir = RhinoProperties.getGameDir().resolve("local/rhino");
+		var file = dir.resolve("mm-" + getMappingsKey().replace(':', '-') + ".jsmappings");
+
+		if (!Files.exists(file)) {
+			Files.createDirectories(dir);
+			var tmp = dir.resolve(file.getFileName() + ".tmp");
+
+			try (var in = new GZIPInputStream(openMappings())) {
+				Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			// Remove the ones of older mappings
+			try (var files = Files.newDirectoryStream(dir, "mm-*.jsmappings")) {
+				for (var f : files) {
+					if (!f.equals(file)) {
+						Files.deleteIfExists(f);
+					}
+				}
+			} catch (Exception ignored) {
+			}
+		}
+
+		return file;
+	}
+
 	public static MinecraftRemapper getMinecraftRemapper() {
 		return getMinecraftRemapper(false);
 	}
 
+	/**
+	 * Minecraft remapper that answers from local/rhino/mm.jscache, the names looked up in previous launches,
+	 * and only loads the mappings when something isn't in it. The cache is saved when the game exits.
+	 */
+	public static synchronized CachedRemapper getCachedMinecraftRemapper() {
+		if (cachedMinecraftRemapper == null) {
+			String key;
+
+			try {
+				key = getMappingsKey();
+			} catch (Exception ex) {
+				LOGGER.error("Failed to read Rhino Minecraft mappings, not using remapper cache", ex);
+				key = "";
+			}
+
+			long time = System.currentTimeMillis();
+			cachedMinecraftRemapper = CachedRemapper.load(RhinoProperties.getGameDir().resolve("local/rhino/mm.jscache"), key, RemappingHelper::getMinecraftRemapper);
+			Runtime.getRuntime().addShutdownHook(new Thread(cachedMinecraftRemapper::save, "Rhino Remapper Cache"));
+			LOGGER.info(String.format("Loaded Rhino Minecraft remapper cache in %.03f s", (System.currentTimeMillis() - time) / 1000F));
+		}
+
+		return cachedMinecraftRemapper;
+	}
+
+	private static synchronized String getMappingsKey() throws Exception {
+		if (mappingsKey == null) {
+			try (var in = new CheckedInputStream(openMappings(), new CRC32())) {
+				long size = in.transferTo(OutputStream.nullOutputStream());
+				mappingsKey = Long.toHexString(in.getChecksum().getValue()) + ":" + size;
+			}
+		}
+
+		return mappingsKey;
+	}
+
 	public static Reader createReader(String url) throws Exception {
 		LOGGER.info("Fetching " + url + "...");
 		var connection = new URL(url).openConnection();
@@ -136,12 +210,23 @@ public class RemappingHelper {
 
 						if (meta.get("downloads") instanceof JsonObject o && o.get("client_mappings") instanceof JsonObject cmap && cmap.has("url")) {
 							try (var cmapReader = createReader(cmap.get("url").getAsString())) {
-								var mojangMappings = MojangMappings.parse(mcVersion, IOUtils.readLines(cmapReader));
+								var mojangMappings = MojangMappings.parse(mcVersion, IOUtils.toString(cmapReader));
 								callback.generateMappings(new MappingContext(mcVersion, mojangMappings));
 								mojangMappings.cleanup();
 
-								try (var out = new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(Path.of("mm.jsmappings"))))) {
-									mojangMappings.write(out);
+								var output = Path.of("mm.jsmappings");
+								byte[] previous = null;
+
+								if (GENERATE_INCREMENTAL && Files.exists(output)) {
+									try (var in = new GZIPInputStream(Files.newInputStream(output))) {
+										previous = in.readAllBytes();
+									} catch (Exception ex) {
+										LOGGER.warn("Failed to read previous mappings, writing all classes", ex);
+									}
+								}
+
+								try (var out = new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(output)))) {
+									mojangMappings.write(out, previous);
 								}
 
 								LOGGER.info("Finished generating mappings!");
@@ -4,10 +4,11 @@ import dev.latvian.mods.rhino.util.wrap.TypeWrapperFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class EnumTypeWrapper<T> implements TypeWrapperFactory<T> {
-	private static final Map<Class<?>, EnumTypeWrapper<?>> WRAPPERS = new HashMap<>();
+	private static final Map<Class<?>, EnumTypeWrapper<?>> WRAPPERS = new ConcurrentHashMap<>();
 
 	@SuppressWarnings("unchecked")
 	public static <T> EnumTypeWrapper<T> get(Class<T> enumType) {
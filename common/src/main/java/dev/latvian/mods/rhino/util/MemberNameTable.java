@@ -0,0 +1,25 @@
+package dev.latvian.mods.rhino.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Remapped names of one class and its declared members, see {@link Remapper#remapClass(Class)}.
+ * Empty strings mean the class or member isn't remapped.
+ */
+public interface MemberNameTable {
+	MemberNameTable NONE = new MemberNameTable() {
+	};
+
+	default String getMappedClass() {
+		return "";
+	}
+
+	default String getMappedField(Field field) {
+		return "";
+	}
+
+	default String getMappedMethod(Method method) {
+		return "";
+	}
+}
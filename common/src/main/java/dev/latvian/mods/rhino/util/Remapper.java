@@ -43,4 +43,29 @@ public interface Remapper {
 	default String getMappedMethod(Class<?> from, Method method) {
 		return "";
 	}
+
+	/**
+	 * Look up a class once to remap all of its members. Remappers that can find the mappings of a
+	 * class up front should override this, by default each member is remapped on its own.
+	 */
+	default MemberNameTable remapClass(Class<?> from) {
+		var remapper = this;
+
+		return new MemberNameTable() {
+			@Override
+			public String getMappedClass() {
+				return remapper.getMappedClass(from);
+			}
+
+			@Override
+			public String getMappedField(Field field) {
+				return remapper.getMappedField(from, field);
+			}
+
+			@Override
+			public String getMappedMethod(Method method) {
+				return remapper.getMappedMethod(from, method);
+			}
+		};
+	}
 }
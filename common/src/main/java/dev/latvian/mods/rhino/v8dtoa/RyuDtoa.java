@@ -0,0 +1,290 @@
+package dev.latvian.mods.rhino.v8dtoa;
+
+import java.math.BigInteger;
+
+/**
+ * Shortest round-trip conversion of doubles to decimal strings, following Ulf Adams' Ryu
+ * (PLDI 2018). Unlike {@link FastDtoa} it never gives up, and it produces the digits closest to the
+ * input when there is more than one shortest representation, as Number.prototype.toString requires.
+ */
+public class RyuDtoa {
+	private static final int MANTISSA_BITS = 52;
+	private static final int EXPONENT_BITS = 11;
+	private static final int EXPONENT_BIAS = 1023;
+
+	private static final int POW5_BITCOUNT = 125;
+	private static final int POW5_INV_BITCOUNT = 125;
+	private static final int POW5_TABLE_SIZE = 326;
+	private static final int POW5_INV_TABLE_SIZE = 342;
+
+	// 5^i scaled to 125 bits, and 2^(125 + bits(5^i) - 1) / 5^i rounded up, as {low, high} pairs of 64 bit words
+	private static final long[] POW5 = new long[POW5_TABLE_SIZE * 2];
+	private static final long[] POW5_INV = new long[POW5_INV_TABLE_SIZE * 2];
+
+	static {
+		var mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+		var five = BigInteger.valueOf(5);
+
+		for (int i = 0; i < POW5_INV_TABLE_SIZE; i++) {
+			var pow = five.pow(i);
+			int bits = pow.bitLength();
+
+			if (i < POW5_TABLE_SIZE) {
+				var scaled = pow.shiftLeft(POW5_BITCOUNT - bits);
+				POW5[i * 2] = scaled.and(mask).longValue();
+				POW5[i * 2 + 1] = scaled.shiftRight(64).longValue();
+			}
+
+			var inv = BigInteger.ONE.shiftLeft(bits - 1 + POW5_INV_BITCOUNT).divide(pow).add(BigInteger.ONE);
+			POW5_INV[i * 2] = inv.and(mask).longValue();
+			POW5_INV[i * 2 + 1] = inv.shiftRight(64).longValue();
+		}
+	}
+
+	// ceil(log2(5^e)) for e > 0, 1 for e == 0
+	private static int pow5bits(int e) {
+		return ((e * 1217359) >>> 19) + 1;
+	}
+
+	// floor(log10(2^e))
+	private static int log10Pow2(int e) {
+		return (e * 78913) >>> 18;
+	}
+
+	// floor(log10(5^e))
+	private static int log10Pow5(int e) {
+		return (e * 732923) >>> 20;
+	}
+
+	private static boolean multipleOfPowerOf5(long value, int p) {
+		int count = 0;
+
+		while (value % 5 == 0) {
+			value /= 5;
+			count++;
+		}
+
+		return count >= p;
+	}
+
+	private static boolean multipleOfPowerOf2(long value, int p) {
+		return (value & ((1L << p) - 1)) == 0;
+	}
+
+	/**
+	 * (m * table[index]) >> j for a 128 bit table entry, m < 2^55 and 64 < j < 128.
+	 */
+	private static long mulShift64(long m, long[] table, int index, int j) {
+		long low = table[index];
+		long high = table[index + 1];
+		// m is never negative, so only the table words need correcting for an unsigned product
+		long high0 = Math.multiplyHigh(m, low) + (low < 0 ? m : 0);
+		long low1 = m * high;
+		long high1 = Math.multiplyHigh(m, high) + (high < 0 ? m : 0);
+		long sum = high0 + low1;
+
+		if (Long.compareUnsigned(sum, high0) < 0) {
+			high1++;
+		}
+
+		int shift = j - 64;
+		return (high1 << (64 - shift)) | (sum >>> shift);
+	}
+
+	private static int decimalLength(long v) {
+		long p = 10;
+
+		for (int i = 1; i < 19; i++) {
+			if (v < p) {
+				return i;
+			}
+
+			p *= 10;
+		}
+
+		return 19;
+	}
+
+	public static String numberToString(double v) {
+		var sb = new StringBuilder(24);
+		numberToString(v, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Appends a finite, non-zero number in the format of Number.prototype.toString.
+	 */
+	public static void numberToString(double v, StringBuilder out) {
+		long bits = Double.doubleToRawLongBits(v);
+		long ieeeMantissa = bits & ((1L << MANTISSA_BITS) - 1);
+		int ieeeExponent = (int) (bits >>> MANTISSA_BITS) & ((1 << EXPONENT_BITS) - 1);
+
+		int e2;
+		long m2;
+
+		if (ieeeExponent == 0) {
+			e2 = 1 - EXPONENT_BIAS - MANTISSA_BITS - 2;
+			m2 = ieeeMantissa;
+		} else {
+			e2 = ieeeExponent - EXPONENT_BIAS - MANTISSA_BITS - 2;
+			m2 = (1L << MANTISSA_BITS) | ieeeMantissa;
+		}
+
+		boolean acceptBounds = (m2 & 1) == 0;
+
+		// The interval of numbers that round to v is (mm, mp) * 2^e2, inclusive when acceptBounds
+		long mv = 4 * m2;
+		int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+		long mp = mv + 2;
+		long mm = mv - 1 - mmShift;
+
+		long vr, vp, vm;
+		int e10;
+		boolean vmIsTrailingZeros = false;
+		boolean vrIsTrailingZeros = false;
+
+		if (e2 >= 0) {
+			int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+			e10 = q;
+			int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+			int i = -e2 + q + k;
+			vr = mulShift64(mv, POW5_INV, q * 2, i);
+			vp = mulShift64(mp, POW5_INV, q * 2, i);
+			vm = mulShift64(mm, POW5_INV, q * 2, i);
+
+			if (q <= 21) {
+				if (mv % 5 == 0) {
+					vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+				} else if (acceptBounds) {
+					vmIsTrailingZeros = multipleOfPowerOf5(mm, q);
+				} else if (multipleOfPowerOf5(mp, q)) {
+					vp--;
+				}
+			}
+		} else {
+			int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+			e10 = q + e2;
+			int i = -e2 - q;
+			int k = pow5bits(i) - POW5_BITCOUNT;
+			int j = q - k;
+			vr = mulShift64(mv, POW5, i * 2, j);
+			vp = mulShift64(mp, POW5, i * 2, j);
+			vm = mulShift64(mm, POW5, i * 2, j);
+
+			if (q <= 1) {
+				vrIsTrailingZeros = true;
+
+				if (acceptBounds) {
+					vmIsTrailingZeros = mmShift == 1;
+				} else {
+					vp--;
+				}
+			} else if (q < 63) {
+				vrIsTrailingZeros = multipleOfPowerOf2(mv, q);
+			}
+		}
+
+		// Remove digits while the interval still contains a shorter number
+		int removed = 0;
+		long output;
+
+		if (vmIsTrailingZeros || vrIsTrailingZeros) {
+			int lastRemovedDigit = 0;
+
+			while (vp / 10 > vm / 10) {
+				vmIsTrailingZeros &= vm % 10 == 0;
+				vrIsTrailingZeros &= lastRemovedDigit == 0;
+				lastRemovedDigit = (int) (vr % 10);
+				vr /= 10;
+				vp /= 10;
+				vm /= 10;
+				removed++;
+			}
+
+			if (vmIsTrailingZeros) {
+				while (vm % 10 == 0) {
+					vrIsTrailingZeros &= lastRemovedDigit == 0;
+					lastRemovedDigit = (int) (vr % 10);
+					vr /= 10;
+					vp /= 10;
+					vm /= 10;
+					removed++;
+				}
+			}
+
+			if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+				// Exactly halfway, round to even
+				lastRemovedDigit = 4;
+			}
+
+			output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+		} else {
+			boolean roundUp = false;
+
+			if (vp / 100 > vm / 100) {
+				roundUp = vr % 100 >= 50;
+				vr /= 100;
+				vp /= 100;
+				vm /= 100;
+				removed += 2;
+			}
+
+			while (vp / 10 > vm / 10) {
+				roundUp = vr % 10 >= 5;
+				vr /= 10;
+				vp /= 10;
+				vm /= 10;
+				removed++;
+			}
+
+			output = vr + (vr == vm || roundUp ? 1 : 0);
+		}
+
+		if (v < 0) {
+			out.append('-');
+		}
+
+		format(output, e10 + removed, out);
+	}
+
+	/**
+	 * Formats output * 10^exponent as described by Number::toString in ECMA 6.1.6.1.20.
+	 */
+	private static void format(long output, int exponent, StringBuilder out) {
+		int length = decimalLength(output);
+		char[] digits = new char[length];
+
+		for (int i = length - 1; i >= 0; i--) {
+			digits[i] = (char) ('0' + output % 10);
+			output /= 10;
+		}
+
+		int point = exponent + length;
+
+		if (length <= point && point <= 21) {
+			out.append(digits);
+
+			for (int i = length; i < point; i++) {
+				out.append('0');
+			}
+		} else if (0 < point && point <= 21) {
+			out.append(digits, 0, point).append('.').append(digits, point, length - point);
+		} else if (-6 < point && point <= 0) {
+			out.append('0').append('.');
+
+			for (int i = point; i < 0; i++) {
+				out.append('0');
+			}
+
+			out.append(digits);
+		} else {
+			out.append(digits[0]);
+
+			if (length > 1) {
+				out.append('.').append(digits, 1, length - 1);
+			}
+
+			out.append('e').append(point > 0 ? '+' : '-').append(Math.abs(point - 1));
+		}
+	}
+}
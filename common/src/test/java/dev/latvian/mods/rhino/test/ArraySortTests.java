@@ -0,0 +1,110 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Sorting;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Sorts arrays with and without comparators.
+ * Run {@link #main(String[])} to print how long sorting 100k elements takes and how many times the comparator is called.
+ */
+@SuppressWarnings("unused")
+public class ArraySortTests {
+	public static final RhinoTest TEST = new RhinoTest("sort");
+
+	@Test
+	@DisplayName("Default Order")
+	public void defaultOrder() {
+		Assertions.assertEquals("-1,-10,-3,0,1,10,100,2,9", TEST.eval("[10, 9, 1, -3, 100, 2, -1, -10, 0].sort().join()"));
+		Assertions.assertEquals("1,1.5,10,a,b,true,,,", TEST.eval("var a = ['b', 10, undefined, 1.5, 'a', true, 1]; a.length = 9; a.sort().join()"));
+		Assertions.assertEquals("true", TEST.eval("""
+				var a = []
+				for (var i = 0; i < 20000; i++) a.push((i * 7919) % 10007 - 5000)
+				var s = a.slice().sort()
+				var ok = true
+				for (var i = 1; i < s.length; i++) ok = ok && String(s[i - 1]) <= String(s[i])
+				ok && s.length === a.length"""));
+	}
+
+	@Test
+	@DisplayName("Comparator")
+	public void comparator() {
+		Assertions.assertEquals("1,2,9,10,100", TEST.eval("[10, 9, 1, 100, 2].sort((a, b) => a - b).join()"));
+		// Equal elements keep their order
+		Assertions.assertEquals("a1,b1,a2,b2,a3", TEST.eval("['a1', 'a2', 'b1', 'a3', 'b2'].sort((a, b) => a[1] - b[1]).join()"));
+		Assertions.assertEquals("3,2,1,,", TEST.eval("[undefined, 1, 3, undefined, 2].sort((a, b) => b - a).join()"));
+		// An inconsistent comparator gives some order of the same elements
+		Assertions.assertEquals("true", TEST.eval("""
+				var a = []
+				for (var i = 0; i < 1000; i++) a.push(i)
+				a.sort(() => Math.random() - 0.5)
+				a.slice().sort((x, y) => x - y).every((x, i) => x === i)"""));
+	}
+
+	@Test
+	@DisplayName("Tim Sort")
+	public void timSort() {
+		var random = new Random(50L);
+		Comparator<Object> byFirst = (x, y) -> Integer.compare(((int[]) x)[0], ((int[]) y)[0]);
+
+		for (int round = 0; round < 500; round++) {
+			int n = random.nextInt(round < 400 ? 100 : 5000);
+			var a = new Object[n];
+
+			for (int i = 0; i < n; i++) {
+				int v = switch (round % 4) {
+					case 0 -> random.nextInt(10);
+					case 1 -> i;
+					case 2 -> n - i;
+					default -> random.nextInt();
+				};
+
+				a[i] = new int[]{v};
+			}
+
+			var expected = a.clone();
+			Arrays.sort(expected, byFirst);
+			Sorting.get().timSort(a, byFirst);
+			Assertions.assertArrayEquals(expected, a);
+
+			Sorting.get().timSort(a, (x, y) -> random.nextInt(3) - 1);
+			Assertions.assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(Arrays.asList(a)));
+		}
+	}
+
+	public static void main(String[] args) {
+		TEST.benchmark("""
+				function data(n) {
+					var a = []
+					var seed = 1
+					for (var i = 0; i < n; i++) {
+						seed = (seed * 16807) % 2147483647
+						a.push(i % 10 == 0 ? i : seed % 1000000)
+					}
+					return a
+				}
+				var calls = 0
+				var a = data(100000)
+				var start = Date.now()
+				a.sort()
+				var numbers = Date.now() - start
+				var s = a.map(x => 'item' + x)
+				start = Date.now()
+				s.sort()
+				var strings = Date.now() - start
+				start = Date.now()
+				a.sort((x, y) => { calls++; return x - y })
+				var comparator = Date.now() - start
+				var comparatorCalls = calls
+				start = Date.now()
+				a.sort((x, y) => { calls++; return y - x })
+				var reversed = Date.now() - start
+				'numbers ' + numbers + ' ms, strings ' + strings + ' ms, comparator ' + comparator + ' ms (' + comparatorCalls + ' calls), reversing ' + reversed + ' ms (' + (calls - comparatorCalls) + ' calls)'""", 10);
+	}
+}
@@ -0,0 +1,133 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.ContextFactory;
+import dev.latvian.mods.rhino.Script;
+import dev.latvian.mods.rhino.ScriptableObject;
+import dev.latvian.mods.rhino.SharedContextData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent scripts on several threads over one sealed template.
+ * Run {@link #main(String[])} to print the throughput for 1 to N threads.
+ */
+@SuppressWarnings("unused")
+public class ConcurrencyTests {
+	public static final String SCRIPT = """
+			function fib(n) {
+				return n < 2 ? n : fib(n - 1) + fib(n - 2)
+			}
+			var words = 'the quick brown fox'.split(' ').map(function (w) { return w.toUpperCase() })
+			var same = Symbol.for('shared') === Symbol.for('shared') ? 1 : 0
+			fib(15) + words.join('').length + JSON.parse('{"a":3}').a + /(\\d+)/.exec('x' + id)[1].length + same + id
+			""";
+
+	public static final ContextFactory FACTORY = new ContextFactory();
+
+	public static ScriptableObject createTemplate() {
+		return FACTORY.call(cx -> {
+			var template = cx.initStandardObjectsTemplate(true);
+			SharedContextData.get(template).seal();
+			return template;
+		});
+	}
+
+	public static Script compile() {
+		return FACTORY.call(cx -> cx.compileString(SCRIPT, "concurrency", 1, null));
+	}
+
+	public static double run(ScriptableObject template, Script script, int id) {
+		return FACTORY.call(cx -> {
+			var scope = cx.newScopeFromTemplate(template);
+			ScriptableObject.putProperty(scope, "id", id);
+			return Context.toNumber(script.exec(cx, scope));
+		});
+	}
+
+	public static long runAll(ScriptableObject template, Script script, int threads, int tasks) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			var futures = new ArrayList<Future<Double>>(tasks);
+			long start = System.nanoTime();
+
+			for (int i = 0; i < tasks; i++) {
+				int id = i;
+				futures.add(executor.submit(() -> run(template, script, id)));
+			}
+
+			for (int i = 0; i < tasks; i++) {
+				Assertions.assertEquals(610D + 16D + 3D + String.valueOf(i).length() + 1D + i, futures.get(i).get());
+			}
+
+			return System.nanoTime() - start;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	@DisplayName("Shared Template")
+	public void sharedTemplate() throws Exception {
+		var template = createTemplate();
+		var script = compile();
+		runAll(template, script, 4, 400);
+		Assertions.assertTrue(SharedContextData.get(template).isSealed());
+		Assertions.assertThrows(IllegalStateException.class, () -> SharedContextData.get(template).setRemapper(null));
+	}
+
+	@Test
+	@DisplayName("Submitted Tasks")
+	public void submittedTasks() throws Exception {
+		var template = createTemplate();
+		var script = compile();
+		var executor = Executors.newFixedThreadPool(4);
+
+		try {
+			var futures = new ArrayList<CompletableFuture<Double>>();
+
+			for (int i = 0; i < 500; i++) {
+				int id = i;
+				futures.add(FACTORY.submit(executor, cx -> run(template, script, id)));
+			}
+
+			for (int i = 0; i < futures.size(); i++) {
+				Assertions.assertEquals(610D + 16D + 3D + String.valueOf(i).length() + 1D + i, futures.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Assertions.assertNull(Context.getCurrentContext());
+	}
+
+	public static void main(String[] args) throws Exception {
+		var template = createTemplate();
+		var script = compile();
+		int cores = Runtime.getRuntime().availableProcessors();
+		int tasks = 2000;
+
+		runAll(template, script, cores, tasks);
+
+		double base = 0D;
+
+		for (int threads = 1; threads <= cores; threads *= 2) {
+			long time = runAll(template, script, threads, tasks * threads);
+			double perSecond = tasks * threads / (time / 1_000_000_000D);
+
+			if (threads == 1) {
+				base = perSecond;
+			}
+
+			System.out.printf("%2d threads: %10.0f scripts/s, %.2fx%n", threads, perSecond, perSecond / base);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.ConsString;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Builds strings by appending and prepending, and reads them without flattening.
+ * Run {@link #main(String[])} to print how long it takes to build a log line by line while inspecting it and branching off it.
+ */
+@SuppressWarnings("unused")
+public class ConsStringTests {
+	public static final RhinoTest TEST = new RhinoTest("cons");
+
+	private static CharSequence build(boolean prepend, int count) {
+		CharSequence s = "";
+		var expected = new StringBuilder();
+
+		for (int i = 0; i < count; i++) {
+			var part = Integer.toString(i % 10);
+			s = prepend ? ConsString.concat(part, s) : ConsString.concat(s, part);
+
+			if (prepend) {
+				expected.insert(0, part);
+			} else {
+				expected.append(part);
+			}
+		}
+
+		Assertions.assertEquals(expected.length(), s.length());
+
+		for (int i = 0; i < s.length(); i += 7) {
+			Assertions.assertEquals(expected.charAt(i), s.charAt(i));
+		}
+
+		Assertions.assertEquals(expected.toString(), s.toString());
+		return s;
+	}
+
+	@Test
+	@DisplayName("Append")
+	public void append() {
+		var s = build(false, 5000);
+		Assertions.assertEquals("34567", s.subSequence(3, 8).toString());
+		Assertions.assertEquals(15, ConsString.indexOf(s, "56789", 8));
+
+		// Appending to a string that is not the last one in its buffer leaves the other one unchanged
+		var a = ConsString.concat(s, "a");
+		var b = ConsString.concat(s, "b");
+		Assertions.assertEquals('a', a.charAt(a.length() - 1));
+		Assertions.assertEquals('b', b.charAt(b.length() - 1));
+		Assertions.assertEquals(s.toString() + "a", a.toString());
+		Assertions.assertEquals(s.toString() + "b", b.toString());
+	}
+
+	@Test
+	@DisplayName("Prepend")
+	public void prepend() {
+		build(true, 5000);
+		Assertions.assertThrows(IndexOutOfBoundsException.class, () -> build(true, 100).charAt(100));
+	}
+
+	@Test
+	@DisplayName("Branches")
+	public void branches() {
+		// Every step branches off the string being appended to, so it keeps losing the end of its buffer
+		CharSequence s = "";
+		var expected = new StringBuilder();
+		var branches = new ArrayList<CharSequence>();
+
+		for (int i = 0; i < 20000; i++) {
+			var part = "line " + i + "\n";
+			s = ConsString.concat(s, part);
+			expected.append(part);
+			branches.add(ConsString.concat(s, i % 2 == 0 ? "!" : "?"));
+		}
+
+		Assertions.assertEquals(expected.toString(), s.toString());
+
+		for (int i = 0; i < branches.size(); i += 97) {
+			var branch = branches.get(i);
+			int end = expected.indexOf("line " + (i + 1) + "\n");
+			end = end == -1 ? expected.length() : end;
+			Assertions.assertEquals(end + 1, branch.length());
+			Assertions.assertEquals(i % 2 == 0 ? '!' : '?', branch.charAt(end));
+			Assertions.assertEquals(expected.substring(0, end), branch.subSequence(0, end).toString());
+		}
+
+		Assertions.assertEquals("true", TEST.eval("""
+				var s = '', all = []
+				for (var i = 0; i < 5000; i++) {
+					s += i + ','
+					var t = s + '!'
+					all.push(t)
+				}
+				all.every(function (t, i) { return t.charAt(t.length - 1) === '!' && t.charAt(t.length - 2) === ',' && t.indexOf(i + ',!') === t.length - String(i).length - 2 })"""));
+	}
+
+	@Test
+	@DisplayName("Script Methods")
+	public void scriptMethods() {
+		Assertions.assertEquals("true", TEST.eval("""
+				var s = '', t = ''
+				var ok = true
+				for (var i = 0; i < 2000; i++) {
+					s += 'line ' + i + '\\n'
+					t = i + ',' + t
+					ok = ok && s.charAt(s.length - 2) === String(i % 10) && s.charCodeAt(0) === 108 && t.charAt(0) === String(i).charAt(0)
+				}
+				ok && s.indexOf('line 1999') === s.length - 10 && s.includes('line 1000\\n') && s.startsWith('line 0') && s.endsWith('1999\\n')
+					&& s.split('\\n').length === 2001 && t.indexOf('1999,1998,') === 0"""));
+	}
+
+	public static void main(String[] args) {
+		TEST.benchmark("""
+				var log = ''
+				var n = 0
+				var kept = []
+				for (var i = 0; i < 100000; i++) {
+					log += '[' + i + '] message ' + (i * 7) + '\\n'
+					var line = log + '>'
+					n += line.length + log.charCodeAt(log.length - 2)
+					if (i % 1000 == 0) n += log.indexOf('[' + i + ']') + kept.push(log + '#')
+				}
+				n""", 10);
+	}
+}
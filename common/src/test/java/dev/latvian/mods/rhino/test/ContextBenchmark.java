@@ -0,0 +1,90 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.ContextFactory;
+import dev.latvian.mods.rhino.Script;
+import dev.latvian.mods.rhino.ScriptableObject;
+import dev.latvian.mods.rhino.SharedContextData;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the cost of entering and exiting a Context, of calls made while
+ * one is already entered, and of running many small script tasks through
+ * {@link ContextFactory#call} and {@link ContextFactory#submit}.
+ */
+public class ContextBenchmark {
+	private static final int ROUNDS = 5;
+	private static final int CALLS = 1_000_000;
+	private static final int TASKS = 20_000;
+
+	private static void report(String name, long nanos, int count) {
+		System.out.printf("%-24s %10.1f ns/op%n", name, (double) nanos / count);
+	}
+
+	private static long enterExit(ContextFactory factory) {
+		long start = System.nanoTime();
+
+		for (int i = 0; i < CALLS; i++) {
+			factory.call(cx -> cx);
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	private static long nested(ContextFactory factory) {
+		return factory.call(outer -> {
+			long start = System.nanoTime();
+
+			for (int i = 0; i < CALLS; i++) {
+				factory.call(cx -> cx);
+			}
+
+			return System.nanoTime() - start;
+		});
+	}
+
+	private static long tasks(ContextFactory factory, ExecutorService executor, ScriptableObject template, Script script) throws Exception {
+		var futures = new ArrayList<CompletableFuture<Object>>(TASKS);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < TASKS; i++) {
+			futures.add(factory.submit(executor, cx -> script.exec(cx, cx.newScopeFromTemplate(template))));
+		}
+
+		for (var future : futures) {
+			future.get();
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	public static void main(String[] args) throws Exception {
+		var factory = new ContextFactory();
+		var template = factory.call(cx -> {
+			var t = cx.initStandardObjectsTemplate(true);
+			SharedContextData.get(t).seal();
+			return t;
+		});
+		var script = factory.call(cx -> cx.compileString("function f(x) { return x + 1 } var s = 0; for (var i = 0; i < 200; i++) { s = f(s) } s", "benchmark", 1, null));
+		var executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+		try {
+			for (int round = 0; round < ROUNDS; round++) {
+				System.out.println("Round " + (round + 1));
+				report("call (enter/exit)", enterExit(factory), CALLS);
+				report("call (already entered)", nested(factory), CALLS);
+				report("script task", tasks(factory, executor, template, script), TASKS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		if (Context.getCurrentContext() != null) {
+			throw new IllegalStateException("Context leaked");
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.BaseFunction;
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.ContextFactory;
+import dev.latvian.mods.rhino.ContinuationPending;
+import dev.latvian.mods.rhino.ContinuationSerializer;
+import dev.latvian.mods.rhino.Script;
+import dev.latvian.mods.rhino.Scriptable;
+import dev.latvian.mods.rhino.ScriptableObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+/**
+ * Suspends scripts, writes their continuations to bytes and resumes them from a fresh runtime.
+ * Run {@link #main(String[])} to print capture and resume latency and bytes per task.
+ */
+@SuppressWarnings("unused")
+public class ContinuationSerializerTests {
+	public static final String SCRIPT = """
+			function Counter(start) {
+				this.value = start
+			}
+			Counter.prototype.add = function (n) {
+				this.value += n
+				return this
+			}
+			function step(counter, items) {
+				var received = suspend(items.length)
+				items.push(received)
+				return counter.add(received)
+			}
+			var counter = new Counter(id)
+			var items = [1, 'two', { three: 3 }]
+			var half = id / 2
+			for (var i = 0; i < 2; i++) {
+				step(counter, items)
+			}
+			counter.value + ',' + items.length + ',' + items[2].three + ',' + half + ',' + Math.max(items[3], items[4])
+			""";
+
+	public static final ContextFactory FACTORY = new ContextFactory();
+
+	public static ScriptableObject createTemplate() {
+		return FACTORY.call(cx -> {
+			var template = cx.initSafeStandardObjects(null, true);
+
+			ScriptableObject.putProperty(template, "suspend", new BaseFunction() {
+				@Override
+				public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+					throw cx.captureContinuation();
+				}
+			});
+
+			template.sealObject();
+			return template;
+		});
+	}
+
+	public static ContinuationSerializer createSerializer(ScriptableObject template) {
+		return FACTORY.call(cx -> new ContinuationSerializer(template));
+	}
+
+	public static Script compile() {
+		return compile(SCRIPT);
+	}
+
+	public static Script compile(String source) {
+		return FACTORY.call(cx -> cx.compileString(source, "continuation", 1, null));
+	}
+
+	/**
+	 * Runs a script up to its first suspension, then resumes it from bytes with a fresh serializer.
+	 */
+	public static Object suspendAndResume(String source, Object value) {
+		var template = createTemplate();
+		var writer = createSerializer(template);
+		var script = compile(source);
+		writer.registerScript(script);
+		var reader = createSerializer(template);
+		reader.registerScript(compile(source));
+		return resume(reader, start(writer, template, script, 0), value);
+	}
+
+	/**
+	 * Starts the script and returns its first continuation.
+	 */
+	public static byte[] start(ContinuationSerializer serializer, ScriptableObject template, Script script, int id) {
+		return FACTORY.call(cx -> {
+			var scope = cx.newScopeFromTemplate(template);
+			ScriptableObject.putProperty(scope, "id", id);
+
+			try {
+				cx.executeScriptWithContinuations(script, scope);
+				throw new IllegalStateException("Script didn't suspend");
+			} catch (ContinuationPending pending) {
+				return serializer.write(pending.getContinuation());
+			}
+		});
+	}
+
+	/**
+	 * Resumes a continuation, returning either the next continuation or the result of the script.
+	 */
+	public static Object resume(ContinuationSerializer serializer, byte[] data, Object value) {
+		return FACTORY.call(cx -> {
+			try {
+				var continuation = serializer.read(cx, data);
+				return Context.toString(cx.resumeContinuation(continuation, continuation.getParentScope(), value));
+			} catch (ContinuationPending pending) {
+				return serializer.write(pending.getContinuation());
+			} catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+	}
+
+	@Test
+	@DisplayName("Resume From Bytes")
+	public void resumeFromBytes() {
+		// Writing and reading sides only share the source code
+		var writerTemplate = createTemplate();
+		var writer = createSerializer(writerTemplate);
+		var writerScript = compile();
+		writer.registerScript(writerScript);
+		var reader = createSerializer(createTemplate());
+		reader.registerScript(compile());
+
+		var data = start(writer, writerTemplate, writerScript, 10);
+		var next = resume(reader, data, 5);
+		Assertions.assertTrue(next instanceof byte[]);
+		Assertions.assertEquals("22,5,3,5,7", resume(reader, (byte[]) next, 7));
+
+		// The same bytes can be resumed again
+		Assertions.assertTrue(resume(reader, data, 1) instanceof byte[]);
+	}
+
+	@Test
+	@DisplayName("Unknown Script")
+	public void unknownScript() {
+		var template = createTemplate();
+		var writer = createSerializer(template);
+		var script = compile();
+		writer.registerScript(script);
+		var data = start(writer, template, script, 1);
+
+		var reader = createSerializer(template);
+		Assertions.assertThrows(IllegalStateException.class, () -> resume(reader, data, 1));
+	}
+
+	@Test
+	@DisplayName("Cycles")
+	public void cycles() {
+		// The arguments object is reached through a global before its activation
+		Assertions.assertEquals("1,2,2", suspendAndResume("""
+				var saved
+				function f(a) {
+					saved = arguments
+					var r = suspend(0)
+					return saved[0] + ',' + r + ',' + arguments.length
+				}
+				f(1, 'b')
+				""", 2));
+
+		// The with scope is reached first, through it its object, which holds a function whose parent is the with scope
+		Assertions.assertEquals("3,3", suspendAndResume("""
+				function f(o) {
+					with (o) {
+						o.get = function () { return x }
+						x = suspend(0)
+					}
+					return o.get() + ',' + o.x
+				}
+				f({ x: 1 })
+				""", 3));
+	}
+
+	@Test
+	@DisplayName("Property Keys")
+	public void propertyKeys() {
+		Assertions.assertEquals("empty,zero,one,5", suspendAndResume("""
+				var o = {}
+				o[''] = 'empty'
+				o['0'] = 'zero'
+				o[1] = 'one'
+				var r = suspend(0)
+				o[''] + ',' + o[0] + ',' + o['1'] + ',' + r
+				""", 5));
+	}
+
+	@Test
+	@DisplayName("Long Strings")
+	public void longStrings() {
+		Assertions.assertEquals("70004,120,0,233,8364,55296,ok", suspendAndResume("""
+				var s = new Array(70001).join('x') + '\\u0000\\u00e9\\u20ac\\ud800'
+				var r = suspend(0)
+				var codes = [s.charCodeAt(69999), s.charCodeAt(70000), s.charCodeAt(70001), s.charCodeAt(70002), s.charCodeAt(70003)]
+				s.length + ',' + codes.join() + ',' + r
+				""", "ok"));
+	}
+
+	public static void main(String[] args) {
+		int tasks = 20_000;
+		var template = createTemplate();
+		var script = compile();
+		var serializer = createSerializer(template);
+		serializer.registerScript(script);
+
+		for (int round = 0; round < 5; round++) {
+			var suspended = new byte[tasks][];
+			long bytes = 0L;
+			long start = System.nanoTime();
+
+			for (int i = 0; i < tasks; i++) {
+				suspended[i] = start(serializer, template, script, i);
+				bytes += suspended[i].length;
+			}
+
+			long captured = System.nanoTime();
+
+			for (int i = 0; i < tasks; i++) {
+				suspended[i] = (byte[]) resume(serializer, suspended[i], 1);
+			}
+
+			long resumed = System.nanoTime();
+			System.out.printf("start and capture %8.1f us/task, resume and capture %8.1f us/task, %6d bytes/task%n", (captured - start) / 1000D / tasks, (resumed - captured) / 1000D / tasks, bytes / tasks);
+		}
+	}
+}
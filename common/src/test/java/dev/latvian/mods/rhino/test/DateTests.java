@@ -0,0 +1,103 @@
+package dev.latvian.mods.rhino.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts between UTC and local time, formats and parses dates. Passes in any default time zone.
+ * Run {@link #main(String[])} to print how fast dates are formatted and parsed.
+ */
+@SuppressWarnings("unused")
+public class DateTests {
+	public static final RhinoTest TEST = new RhinoTest("date");
+
+	@Test
+	@DisplayName("ISO Strings")
+	public void isoStrings() {
+		Assertions.assertEquals("true", TEST.eval("""
+				var ok = true
+				for (var t = -2e12; t < 4e12; t += 7777777777) {
+					var s = new Date(t).toISOString()
+					ok = ok && Date.parse(s) === t && new Date(s).getTime() === t
+				}
+				ok"""));
+		Assertions.assertEquals("1679788800000,1679832000000,1679832000000,NaN,NaN", TEST.eval("""
+				[Date.parse('2023-03-26'), Date.parse('2023-03-26T12:00:00.000Z'), Date.parse('2023-03-26T14:00:00.000+02:00'), Date.parse('2023-02-30'), Date.parse('2023-03-26T24:30:00.000Z')].join()"""));
+	}
+
+	@Test
+	@DisplayName("Local Time")
+	public void localTime() {
+		// Noon is never skipped or repeated by a transition, so it converts back to the same time
+		Assertions.assertEquals("true", TEST.eval("""
+				var ok = true
+				for (var day = 0; day < 3 * 366; day++) {
+					var d = new Date(1950 + day * 17 % 100, day % 12, day % 28 + 1, 12, day % 60, 30)
+					var e = new Date(d.getFullYear(), d.getMonth(), d.getDate(), d.getHours(), d.getMinutes(), d.getSeconds())
+					ok = ok && d.getHours() === 12 && d.getTime() === e.getTime()
+					ok = ok && d.getTimezoneOffset() === (Date.UTC(d.getFullYear(), d.getMonth(), d.getDate(), 12, d.getMinutes(), 30) - d.getTime()) / -60000
+				}
+				ok"""));
+	}
+
+	@Test
+	@DisplayName("Locale Years")
+	public void localeYears() {
+		// Years are printed as is, padded to four digits and without a sign
+		Assertions.assertEquals("true,true,true,true", TEST.eval("""
+				var years = [11476, 2023, 5, 123456]
+				years.map(function (y) {
+					var d = new Date(2000, 7, 15, 12)
+					d.setFullYear(y)
+					var s = d.toLocaleString() + ' ' + d.toLocaleDateString()
+					var padded = ('000' + y).slice(-Math.max(4, String(y).length))
+					return s.indexOf('+') < 0 && s.split(padded).length === 3
+				}).join()"""));
+	}
+
+	@Test
+	@DisplayName("Concurrent Formatting")
+	public void concurrentFormatting() throws Exception {
+		var source = """
+				var out = []
+				for (var t = 0; t < 2e12; t += 3333333333) {
+					var d = new Date(t)
+					out.push(d.toString(), d.toLocaleString(), d.toLocaleDateString(), d.toLocaleTimeString())
+				}
+				out.join('\\n')""";
+
+		var expected = TEST.eval(source);
+		var executor = Executors.newFixedThreadPool(4);
+
+		try {
+			var futures = new ArrayList<Future<String>>();
+
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> TEST.eval(source)));
+			}
+
+			for (var future : futures) {
+				Assertions.assertEquals(expected, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public static void main(String[] args) {
+		TEST.benchmark("""
+				var s = 0
+				for (var i = 0; i < 100000; i++) {
+					var d = new Date(1.6e12 + i * 60000)
+					s += d.toString().length + d.toLocaleString().length + d.getHours()
+					s += Date.parse(d.toISOString()) === d.getTime() ? 1 : 0
+					s += new Date(2020, i % 12, 1, i % 24).getTime() % 7
+				}
+				s""", 10);
+	}
+}
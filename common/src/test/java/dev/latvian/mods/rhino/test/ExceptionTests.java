@@ -0,0 +1,74 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.JavaScriptException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("unused")
+public class ExceptionTests {
+	private static final String SCRIPT = """
+			function inner() {
+				throw 'fail'
+			}
+			function outer() {
+				inner()
+			}
+			var caught = 0
+			for (var i = 0; i < 10; i++) {
+				try {
+					outer()
+				} catch (e) {
+					caught++
+				}
+			}
+			function stack() {
+				try {
+					null.x
+				} catch (e) {
+					return e.stack
+				}
+			}
+			caught + '|' + stack().split('\\n')[0]
+			""";
+
+	@Test
+	@DisplayName("Script Stack Without Java Stack")
+	public void scriptStackWithoutJavaStack() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			cx.setCapturingJavaStack(false);
+			var scope = cx.initStandardObjects();
+			Assertions.assertEquals("10|\tat exceptions:17 (stack)", Context.toString(cx.evaluateString(scope, SCRIPT, "exceptions", 1, null)));
+
+			var ex = Assertions.assertThrows(JavaScriptException.class, () -> cx.evaluateString(scope, "outer()", "exceptions", 1, null));
+			Assertions.assertEquals(0, ex.getStackTrace().length);
+
+			var stack = ex.getScriptStack();
+			Assertions.assertEquals(3, stack.length);
+			Assertions.assertEquals("inner", stack[0].functionName);
+			Assertions.assertEquals(2, stack[0].lineNumber);
+			Assertions.assertEquals("outer", stack[1].functionName);
+			Assertions.assertEquals(5, stack[1].lineNumber);
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	@DisplayName("Java Stack By Default")
+	public void javaStackByDefault() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = cx.initStandardObjects();
+			var ex = Assertions.assertThrows(JavaScriptException.class, () -> cx.evaluateString(scope, "function f() { throw 1 }\nf()", "exceptions", 1, null));
+			Assertions.assertTrue(ex.getStackTrace().length > 0);
+			Assertions.assertEquals(2, ex.getScriptStack().length);
+		} finally {
+			Context.exit();
+		}
+	}
+}
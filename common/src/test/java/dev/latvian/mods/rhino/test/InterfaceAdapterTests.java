@@ -0,0 +1,138 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.BaseFunction;
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.Scriptable;
+import dev.latvian.mods.rhino.ScriptableObject;
+import dev.latvian.mods.rhino.SharedContextData;
+import dev.latvian.mods.rhino.Undefined;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+@SuppressWarnings({"unused", "unchecked"})
+public class InterfaceAdapterTests {
+	interface Counter {
+		int count();
+
+		default int twice() {
+			return count() * 2;
+		}
+	}
+
+	public static <T> T adapt(Context cx, Scriptable scope, Class<T> type, String function) {
+		var result = new Object[1];
+
+		ScriptableObject.putProperty(scope, "adapt", new BaseFunction() {
+			@Override
+			public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+				result[0] = Context.jsToJava(SharedContextData.get(cx, scope), args[0], type);
+				return Undefined.instance;
+			}
+		});
+
+		cx.evaluateString(scope, "adapt(" + function + ")", "adapter", 1, null);
+		return type.cast(result[0]);
+	}
+
+	@Test
+	@DisplayName("Primitive Signatures")
+	public void primitiveSignatures() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = cx.initStandardObjects();
+			var add = adapt(cx, scope, IntBinaryOperator.class, "(function (a, b) { return a * b + 1 })");
+			Assertions.assertFalse(Proxy.isProxyClass(add.getClass()));
+			Assertions.assertEquals(7, add.applyAsInt(2, 3));
+
+			var half = adapt(cx, scope, DoubleUnaryOperator.class, "(function (x) { return x / 2 })");
+			Assertions.assertEquals(1.25D, half.applyAsDouble(2.5D));
+
+			var length = (ToLongFunction<Object>) adapt(cx, scope, ToLongFunction.class, "(function (s) { return s.length })");
+			Assertions.assertEquals(5L, length.applyAsLong("hello"));
+
+			var even = (Predicate<Object>) adapt(cx, scope, Predicate.class, "(function (n) { return n % 2 == 0 })");
+			Assertions.assertTrue(even.test(4));
+			Assertions.assertFalse(even.test(3));
+			Assertions.assertTrue(even.negate().test(3));
+
+			var order = (Comparator<Object>) adapt(cx, scope, Comparator.class, "(function (a, b) { return b - a })");
+			Assertions.assertTrue(order.compare(1, 2) > 0);
+			Assertions.assertEquals(order, order);
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	@DisplayName("Default Methods")
+	public void defaultMethods() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = cx.initStandardObjects();
+			cx.evaluateString(scope, "var i = 0, removed = [], reversed = 0", "setup", 1, null);
+			var it = (Iterator<Object>) adapt(cx, scope, Iterator.class, "({ hasNext: function () { return i < 3 }, next: function () { return i++ }, remove: function () { removed.push(i) } })");
+			Assertions.assertFalse(Proxy.isProxyClass(it.getClass()));
+
+			while (it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+
+			Assertions.assertEquals("1,2,3", Context.toString(cx.evaluateString(scope, "removed.join()", "removed", 1, null)));
+
+			// Default methods that aren't overridden keep their Java implementation
+			var rest = (Iterator<Object>) adapt(cx, scope, Iterator.class, "({ hasNext: function () { return i < 6 }, next: function () { return i++ } })");
+			Assertions.assertThrows(UnsupportedOperationException.class, rest::remove);
+			var list = new ArrayList<>();
+			rest.forEachRemaining(list::add);
+			Assertions.assertEquals(3, list.size());
+
+			var order = (Comparator<Object>) adapt(cx, scope, Comparator.class, "({ compare: function (a, b) { return a - b }, reversed: function () { reversed++; return this } })");
+			Assertions.assertSame(order, order.reversed());
+			Assertions.assertEquals("1", Context.toString(cx.evaluateString(scope, "reversed", "reversed", 1, null)));
+
+			// Functions only implement the abstract method
+			var function = (Comparator<Object>) adapt(cx, scope, Comparator.class, "(function (a, b) { return a - b })");
+			Assertions.assertTrue(function.reversed().compare(1, 2) > 0);
+
+			// Non-public interfaces go through a proxy and behave the same
+			var counter = adapt(cx, scope, Counter.class, "({ count: function () { return 3 } })");
+			Assertions.assertTrue(Proxy.isProxyClass(counter.getClass()));
+			Assertions.assertEquals(6, counter.twice());
+			counter = adapt(cx, scope, Counter.class, "({ count: function () { return 3 }, twice: function () { return 7 } })");
+			Assertions.assertEquals(7, counter.twice());
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	@DisplayName("Call Outside Context")
+	public void callOutsideContext() {
+		IntBinaryOperator op;
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = cx.initStandardObjects();
+			op = adapt(cx, scope, IntBinaryOperator.class, "(function (a, b) { return a - b })");
+			Assertions.assertEquals(1, op.applyAsInt(3, 2));
+		} finally {
+			Context.exit();
+		}
+
+		Assertions.assertNull(Context.getCurrentContext());
+		Assertions.assertEquals(3, op.applyAsInt(5, 2));
+	}
+}
@@ -0,0 +1,234 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.NativeJavaClass;
+import dev.latvian.mods.rhino.ScriptableObject;
+import dev.latvian.mods.rhino.SharedContextData;
+import dev.latvian.mods.rhino.util.Remapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Looks up members of Java objects, which are reflected on first use.
+ * Run {@link #main(String[])} to print the time and heap used to wrap and look up the public classes of a few JDK packages.
+ */
+@SuppressWarnings("unused")
+public class JavaMembersTests {
+	public static class Base {
+		public String shadowed = "base";
+		public int value = 3;
+
+		public int value() {
+			return value * 2;
+		}
+	}
+
+	public static class Bean extends Base {
+		public static int counter = 5;
+		public String shadowed = "bean";
+		private String name = "a";
+		private boolean active;
+		private Object data;
+
+		public static int next() {
+			return ++counter;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		public void setData(String s) {
+			data = "s:" + s;
+		}
+
+		public void setData(Number n) {
+			data = "n:" + n.intValue();
+		}
+
+		public Object dataValue() {
+			return data;
+		}
+
+		public String add(int a) {
+			return "int";
+		}
+
+		public String add(String a) {
+			return "string";
+		}
+	}
+
+	public static final RhinoTest TEST = new RhinoTest("members") {
+		@Override
+		public void registerData(SharedContextData data) {
+			super.registerData(data);
+			data.addToTopLevelScope("bean", new Bean());
+			data.addToTopLevelScope("Bean", Bean.class);
+		}
+	};
+
+	@Test
+	@DisplayName("Methods")
+	public void methods() {
+		Assertions.assertEquals("int,string,6,string", TEST.eval("[bean.add(1), bean.add('x'), bean.value(), bean['add(java.lang.String)'](1)].join()"));
+		Assertions.assertEquals("3", TEST.eval("'' + bean.value"));
+	}
+
+	@Test
+	@DisplayName("Bean Properties")
+	public void beanProperties() {
+		Assertions.assertEquals("a,b,false,true", TEST.eval("var r = [bean.name]; bean.name = 'b'; r.push(bean.name, bean.active); bean.active = true; r.push(bean.active); r.join()"));
+		Assertions.assertEquals("s:x,n:4", TEST.eval("var r = []; bean.data = 'x'; r.push(bean.dataValue()); bean.data = 4; r.push(bean.dataValue()); r.join()"));
+		Assertions.assertEquals("true", TEST.eval("'data' in bean && bean.data === undefined"));
+	}
+
+	@Test
+	@DisplayName("Fields And Statics")
+	public void fieldsAndStatics() {
+		Assertions.assertEquals("bean,6,7,7", TEST.eval("Bean.counter = 5; [bean.shadowed, Bean.next(), Bean.next(), Bean.counter].join()"));
+	}
+
+	@Test
+	@DisplayName("Ids")
+	public void ids() {
+		var ids = TEST.eval("var ids = []; for (var id in bean) ids.push(id); ids.sort().join()").split(",");
+		var list = List.of(ids);
+
+		for (var name : new String[]{"add", "value", "shadowed", "name", "active", "data", "getName", "setData", "hashCode"}) {
+			Assertions.assertTrue(list.contains(name), name);
+		}
+
+		Assertions.assertFalse(list.contains("next"));
+	}
+
+	@Test
+	@DisplayName("Shared Reflection")
+	public void sharedReflection() {
+		var remapped = new HashMap<Member, Integer>();
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = cx.initStandardObjects();
+			cx.sharedContextData.setRemapper(new Remapper() {
+				@Override
+				public String getMappedMethod(Class<?> from, Method method) {
+					remapped.merge(method, 1, Integer::sum);
+					return method.getName().equals("add") ? "plus" : "";
+				}
+
+				@Override
+				public String getMappedField(Class<?> from, Field field) {
+					remapped.merge(field, 1, Integer::sum);
+					return "";
+				}
+			});
+
+			ScriptableObject.putProperty(scope, "bean", Context.javaToJS(cx.sharedContextData, new Bean(), scope));
+			ScriptableObject.putProperty(scope, "Bean", new NativeJavaClass(scope, Bean.class));
+			Assertions.assertEquals("int,a,bean,function", Context.toString(cx.evaluateString(scope, "[bean.plus(1), bean.name, bean.shadowed, typeof Bean.next].join()", "members", 1, null)));
+
+			var data = cx.sharedContextData.getClassDataCache().of(Bean.class);
+			Assertions.assertNotNull(data.getMember("plus"));
+			Assertions.assertNotNull(data.getMember("name").beanGet);
+			Assertions.assertNull(data.getMember("add"));
+		} finally {
+			Context.exit();
+		}
+
+		Assertions.assertFalse(remapped.isEmpty());
+
+		for (var entry : remapped.entrySet()) {
+			Assertions.assertEquals(1, entry.getValue(), entry.getKey().toString());
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		var classes = new ArrayList<Class<?>>();
+		var jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+
+		for (var pkg : new String[]{"java/lang", "java/util", "java/util/concurrent", "java/io", "java/nio", "java/time", "java/net"}) {
+			try (Stream<Path> files = Files.list(jrt.getPath("modules", "java.base", pkg))) {
+				for (var file : files.map(Path::toString).filter(f -> f.endsWith(".class") && !f.contains("$")).sorted().toList()) {
+					try {
+						var c = Class.forName(pkg.replace('/', '.') + "." + file.substring(file.lastIndexOf('/') + 1, file.length() - 6));
+
+						if (Modifier.isPublic(c.getModifiers())) {
+							classes.add(c);
+						}
+					} catch (Throwable ignored) {
+					}
+				}
+			}
+		}
+
+		for (int round = 0; round < 5; round++) {
+			var runtime = Runtime.getRuntime();
+			System.gc();
+			long heap = runtime.totalMemory() - runtime.freeMemory();
+			long start = System.nanoTime();
+			var cx = Context.enterWithNewFactory();
+
+			try {
+				var scope = cx.initStandardObjects();
+				var remapped = new int[1];
+				cx.sharedContextData.setRemapper(new Remapper() {
+					@Override
+					public String getMappedMethod(Class<?> from, Method method) {
+						remapped[0]++;
+						return "";
+					}
+
+					@Override
+					public String getMappedField(Class<?> from, Field field) {
+						remapped[0]++;
+						return "";
+					}
+				});
+
+				var wrapped = new ArrayList<Object>();
+
+				for (var c : classes) {
+					var obj = new NativeJavaClass(scope, c);
+					wrapped.add(obj);
+					obj.has("valueOf", obj);
+					wrapped.add(cx.sharedContextData.getClassDataCache().of(c).getMember("toString"));
+				}
+
+				long end = System.nanoTime();
+				System.gc();
+				long used = runtime.totalMemory() - runtime.freeMemory() - heap;
+				System.out.printf("%d classes in %.1f ms, %d KB retained, %d members remapped%n", classes.size(), (end - start) / 1_000_000D, used / 1024L, remapped[0]);
+			} finally {
+				Context.exit();
+			}
+		}
+	}
+}
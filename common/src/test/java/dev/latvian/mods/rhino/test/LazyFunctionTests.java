@@ -0,0 +1,166 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.EvaluatorException;
+import dev.latvian.mods.rhino.RhinoException;
+import dev.latvian.mods.rhino.Scriptable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compiles function bodies on first call with {@link Context#setLazyFunctions(boolean)}.
+ * Run {@link #main(String[])} to print compile times of a large script with and without it.
+ */
+@SuppressWarnings("unused")
+public class LazyFunctionTests {
+	public static final String SCRIPT = """
+			var log = []
+			function counter(start) {
+				var count = start, unused = 'x'
+				return function next(step) {
+					count += step || 1 // } in a comment
+					return count
+				}
+			}
+			function braces() {
+				var s = '}' + "{" + `}${ { a: '}' }.a }{` /* } */
+				var re = /[}]{1}\\//g
+				if (s) /}/.test(s)
+				return s.replace(re, '') + '|' + (4 / 2 / 1)
+			}
+			function scoped() {
+				var fns = []
+				for (let i = 0; i < 3; i++) {
+					fns.push(function () { return i })
+				}
+				return fns.map(function (f) { return f() }).join()
+			}
+			function strict() {
+				'use strict'
+				return this === undefined
+			}
+			function* gen(n) {
+				for (var i = 0; i < n; i++) {
+					yield i
+				}
+			}
+			function args() {
+				return arguments.length + ':' + [].slice.call(arguments).join()
+			}
+			var fact = function f(n) {
+				return n <= 1 ? 1 : n * f(n - 1)
+			}
+			var c = counter(10)
+			c()
+			log.push(c(5), braces(), scoped(), strict(), Array.from(gen(3)).join(), args(1, 2), fact(5))
+			log.join(' ')
+			""";
+
+	public static final String EXPECTED = "16 }{}}{|2 3,3,3 false 0,1,2 2:1,2 120";
+
+	private static Object eval(String source, boolean lazy) {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			cx.setLazyFunctions(lazy);
+			var scope = cx.initStandardObjects();
+			return cx.evaluateString(scope, source, "lazy", 1, null);
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	@DisplayName("Same Results")
+	public void sameResults() {
+		Assertions.assertEquals(EXPECTED, Context.toString(eval(SCRIPT, false)));
+		Assertions.assertEquals(EXPECTED, Context.toString(eval(SCRIPT, true)));
+		Assertions.assertEquals(EXPECTED, Context.toString(eval("'use strict'\n" + SCRIPT, true)));
+	}
+
+	@Test
+	@DisplayName("Syntax Error On Call")
+	public void syntaxErrorOnCall() {
+		var source = """
+				function broken() {
+					var x = ;
+				}
+				function ok() {
+					return 1
+				}
+				""";
+
+		Assertions.assertThrows(EvaluatorException.class, () -> eval(source, false));
+		Assertions.assertEquals("1", Context.toString(eval(source + "ok()", true)));
+
+		var ex = Assertions.assertThrows(EvaluatorException.class, () -> eval(source + "broken()", true));
+		Assertions.assertEquals(2, ex.lineNumber());
+	}
+
+	@Test
+	@DisplayName("Unbalanced Body")
+	public void unbalancedBody() {
+		// Brackets and strings are still checked when the script is compiled
+		Assertions.assertThrows(EvaluatorException.class, () -> eval("function f() {\n\tvar s = 'x\n}\n", true));
+		Assertions.assertThrows(EvaluatorException.class, () -> eval("function f() {\n\tif (x) {\n}\n", true));
+	}
+
+	@Test
+	@DisplayName("Line Numbers")
+	public void lineNumbers() {
+		var source = """
+				var a = 1
+
+				function
+				thrower(x) {
+					var y = x
+
+					throw new Error('fail')
+				}
+				thrower(a)
+				""";
+
+		var ex = Assertions.assertThrows(RhinoException.class, () -> eval(source, true));
+		var stack = ex.getScriptStack();
+		Assertions.assertEquals("thrower", stack[0].functionName);
+		Assertions.assertEquals(7, stack[0].lineNumber);
+		Assertions.assertEquals(9, stack[1].lineNumber);
+	}
+
+	public static void main(String[] args) {
+		var sb = new StringBuilder();
+
+		for (int i = 0; i < 20_000; i++) {
+			sb.append("function f").append(i).append("(a, b) {\n");
+			sb.append("\tvar list = [a, b, '").append(i).append("'];\n");
+			sb.append("\tfor (var j = 0; j < list.length; j++) {\n");
+			sb.append("\t\tif (list[j] < -").append(i).append(") { return list.map(function (x) { return x * 2 }) }\n");
+			sb.append("\t}\n");
+			sb.append("\treturn { value: a + b, text: `").append(i).append(" ${a}` };\n");
+			sb.append("}\n");
+		}
+
+		sb.append("f1(1, 2).value + f19999(3, 4).value\n");
+		var source = sb.toString();
+
+		for (int round = 0; round < 5; round++) {
+			for (var lazy : new boolean[]{false, true}) {
+				var cx = Context.enterWithNewFactory();
+
+				try {
+					cx.setLazyFunctions(lazy);
+					Scriptable scope = cx.initStandardObjects();
+					long start = System.nanoTime();
+					var script = cx.compileString(source, "pack", 1, null);
+					long compiled = System.nanoTime();
+					var result = script.exec(cx, scope);
+					long end = System.nanoTime();
+					System.out.printf("%-5s compile %7.1f ms, run %6.1f ms, result %s%n", lazy ? "lazy" : "eager", (compiled - start) / 1_000_000D, (end - compiled) / 1_000_000D, Context.toString(result));
+				} finally {
+					Context.exit();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.mod.util.MinecraftRemapper;
+import dev.latvian.mods.rhino.mod.util.RemappingHelper;
+import dev.latvian.mods.rhino.util.MemberNameTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Loads mappings in the format of {@link dev.latvian.mods.rhino.mod.util.MojangMappings}, from a buffer or a mapped file.
+ */
+@SuppressWarnings("unused")
+public class MinecraftRemapperTests {
+	private static byte[] mappings() throws Exception {
+		var out = new ByteArrayOutputStream();
+		out.write(0);
+		out.write(1);
+		RemappingHelper.writeUtf(out, "test");
+
+		// Types
+		RemappingHelper.writeVarInt(out, 2);
+		RemappingHelper.writeVarInt(out, 2);
+		RemappingHelper.writeVarInt(out, 1);
+		RemappingHelper.writeVarInt(out, 0);
+		RemappingHelper.writeUtf(out, "int");
+		RemappingHelper.writeVarInt(out, 1);
+		RemappingHelper.writeUtf(out, "java.lang.String");
+		RemappingHelper.writeVarInt(out, 2);
+		RemappingHelper.writeUtf(out, JavaMembersTests.Bean.class.getName());
+		RemappingHelper.writeUtf(out, "net.minecraft.Bean");
+		RemappingHelper.writeVarInt(out, 3);
+		RemappingHelper.writeUtf(out, "a.b.C");
+		RemappingHelper.writeUtf(out, "net.minecraft.Other");
+		RemappingHelper.writeVarInt(out, 4);
+		RemappingHelper.writeVarInt(out, 0);
+		RemappingHelper.writeVarInt(out, 1);
+
+		// Signatures (int), (String), (int[])
+		RemappingHelper.writeVarInt(out, 3);
+
+		for (int type : new int[]{0, 1, 4}) {
+			RemappingHelper.writeVarInt(out, 1);
+			RemappingHelper.writeVarInt(out, type);
+		}
+
+		// Members of Bean
+		RemappingHelper.writeVarInt(out, 1);
+		RemappingHelper.writeVarInt(out, 1);
+		RemappingHelper.writeVarInt(out, 3);
+		RemappingHelper.writeUtf(out, "shadowed");
+		RemappingHelper.writeUtf(out, "hidden");
+		RemappingHelper.writeUtf(out, "getName");
+		RemappingHelper.writeUtf(out, "name2");
+		RemappingHelper.writeUtf(out, "add");
+		RemappingHelper.writeUtf(out, "plusInt");
+		RemappingHelper.writeVarInt(out, 0);
+		RemappingHelper.writeUtf(out, "add");
+		RemappingHelper.writeUtf(out, "add");
+		RemappingHelper.writeVarInt(out, 2);
+		RemappingHelper.writeUtf(out, "add");
+		RemappingHelper.writeUtf(out, "plusString");
+		RemappingHelper.writeVarInt(out, 1);
+
+		// Members of a.b.C
+		RemappingHelper.writeVarInt(out, 0);
+		RemappingHelper.writeVarInt(out, 0);
+		RemappingHelper.writeVarInt(out, 0);
+		return out.toByteArray();
+	}
+
+	private static void check(MinecraftRemapper remapper) throws Exception {
+		var bean = JavaMembersTests.Bean.class;
+		Assertions.assertEquals("net.minecraft.Bean", remapper.getMappedClass(bean));
+		Assertions.assertEquals("plusInt", remapper.getMappedMethod(bean, bean.getMethod("add", int.class)));
+		Assertions.assertEquals("plusString", remapper.getMappedMethod(bean, bean.getMethod("add", String.class)));
+		Assertions.assertEquals("name2", remapper.getMappedMethod(bean, bean.getMethod("getName")));
+		Assertions.assertEquals("", remapper.getMappedMethod(bean, bean.getMethod("isActive")));
+		Assertions.assertEquals("hidden", remapper.getMappedField(bean, bean.getField("shadowed")));
+		Assertions.assertEquals("", remapper.getMappedField(bean, bean.getField("counter")));
+		Assertions.assertEquals("", remapper.getMappedMethod(String.class, String.class.getMethod("length")));
+		Assertions.assertEquals("a.b.C", remapper.getUnmappedClass("net.minecraft.Other"));
+		Assertions.assertEquals(bean.getName(), remapper.getUnmappedClass("net.minecraft.Bean"));
+		Assertions.assertEquals("", remapper.getUnmappedClass("net.minecraft.Missing"));
+	}
+
+	@Test
+	@DisplayName("Buffer")
+	public void buffer() throws Exception {
+		check(MinecraftRemapper.load(ByteBuffer.wrap(mappings()), false));
+		check(MinecraftRemapper.load(new ByteArrayInputStream(mappings()), false));
+	}
+
+	@Test
+	@DisplayName("Mapped File")
+	public void mappedFile() throws Exception {
+		var file = Files.createTempFile("rhino", ".jsmappings");
+
+		try {
+			Files.write(file, mappings());
+			check(MinecraftRemapper.load(file, false));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	@DisplayName("Remap Class")
+	public void remapClass() throws Exception {
+		var remapper = MinecraftRemapper.load(ByteBuffer.wrap(mappings()), false);
+		var bean = JavaMembersTests.Bean.class;
+		var names = remapper.remapClass(bean);
+		Assertions.assertSame(names, remapper.remapClass(bean));
+		Assertions.assertEquals("net.minecraft.Bean", names.getMappedClass());
+		Assertions.assertEquals("plusInt", names.getMappedMethod(bean.getMethod("add", int.class)));
+		Assertions.assertEquals("plusString", names.getMappedMethod(bean.getMethod("add", String.class)));
+		Assertions.assertEquals("", names.getMappedMethod(bean.getMethod("setData", String.class)));
+		Assertions.assertEquals("hidden", names.getMappedField(bean.getField("shadowed")));
+		Assertions.assertSame(MemberNameTable.NONE, remapper.remapClass(String.class));
+		Assertions.assertSame(MemberNameTable.NONE, remapper.remapClass(JavaMembersTests.Base.class));
+	}
+
+	@Test
+	@DisplayName("Truncated")
+	public void truncated() throws Exception {
+		var bytes = mappings();
+		Assertions.assertThrows(Exception.class, () -> MinecraftRemapper.load(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 3)), false));
+	}
+}
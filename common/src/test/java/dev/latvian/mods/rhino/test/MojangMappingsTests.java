@@ -0,0 +1,188 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.mod.util.MinecraftRemapper;
+import dev.latvian.mods.rhino.mod.util.MojangMappings;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Parses official mappings text and writes it in the format read by {@link MinecraftRemapper}, in full or
+ * incrementally from the previous mappings.
+ * Run {@link #main(String[])} to print the time it takes to parse and write a generated mappings file.
+ */
+@SuppressWarnings("unused")
+public class MojangMappingsTests {
+	private static final String V1 = """
+			# comment
+			net.minecraft.Bean -> a:
+			    java.lang.String shadowedMM -> a
+			    1:1:java.lang.String plus(int) -> b
+			    2:2:java.lang.String plus(java.lang.String) -> c
+			    3:3:java.lang.String name() -> d
+			    void lambda$plus$0() -> e
+			    4:4:void <init>() -> <init>
+			net.minecraft.Other -> b:
+			    net.minecraft.Bean bean -> a
+			    5:5:void use(net.minecraft.Bean[],int) -> b
+			""";
+
+	private static final String V2 = """
+			# comment
+			net.minecraft.Bean -> a:
+			    java.lang.String shadowedMM -> a
+			    1:1:java.lang.String plus(int) -> b
+			    2:2:java.lang.String plusString(java.lang.String) -> c
+			    3:3:java.lang.String name() -> d
+			net.minecraft.Other -> b:
+			    net.minecraft.Bean bean -> a
+			net.minecraft.Third -> c:
+			    int count -> a
+			    long[][] counts -> b
+			""";
+
+	/**
+	 * Gives classes and members the names they would get from the mod loader.
+	 */
+	private static MojangMappings named(MojangMappings mappings) {
+		for (var name : new String[]{"net.minecraft.Bean", "net.minecraft.Other", "net.minecraft.Third"}) {
+			var c = mappings.getClass(name);
+
+			if (c == null) {
+				continue;
+			}
+
+			c.unmappedName().setValue(name.equals("net.minecraft.Bean") ? JavaMembersTests.Bean.class.getName() : name.replace("net.minecraft.", "a.b."));
+
+			for (var m : c.members.values()) {
+				m.unmappedName().setValue(switch (m.mmName()) {
+					case "shadowedMM" -> "shadowed";
+					case "plus", "plusString" -> "add";
+					case "name" -> "getName";
+					default -> "u" + m.mmName();
+				});
+			}
+		}
+
+		return mappings;
+	}
+
+	private static byte[] write(MojangMappings mappings, byte[] previous) throws Exception {
+		var out = new ByteArrayOutputStream();
+		mappings.write(out, previous);
+		return out.toByteArray();
+	}
+
+	private static MinecraftRemapper load(byte[] bytes) throws Exception {
+		return MinecraftRemapper.load(ByteBuffer.wrap(bytes), false);
+	}
+
+	@Test
+	@DisplayName("Parse")
+	public void parse() throws Exception {
+		var mappings = MojangMappings.parse("test", V1);
+		var bean = mappings.getClass("net.minecraft.Bean");
+		Assertions.assertNotNull(bean);
+		Assertions.assertEquals("a", bean.rawName);
+		Assertions.assertEquals(4, bean.members.size());
+		Assertions.assertEquals(1, bean.ignoredMembers.size());
+		Assertions.assertSame(bean, mappings.getClass("a"));
+		Assertions.assertEquals(2, mappings.getClass("net.minecraft.Other").members.size());
+		Assertions.assertThrows(Exception.class, () -> MojangMappings.parse("test", "    int x -> a\n"));
+	}
+
+	@Test
+	@DisplayName("Write And Load")
+	public void writeAndLoad() throws Exception {
+		var remapper = load(write(named(MojangMappings.parse("test", V1)), null));
+		var bean = JavaMembersTests.Bean.class;
+		Assertions.assertEquals("net.minecraft.Bean", remapper.getMappedClass(bean));
+		Assertions.assertEquals("plus", remapper.getMappedMethod(bean, bean.getMethod("add", int.class)));
+		Assertions.assertEquals("plus", remapper.getMappedMethod(bean, bean.getMethod("add", String.class)));
+		Assertions.assertEquals("name", remapper.getMappedMethod(bean, bean.getMethod("getName")));
+		Assertions.assertEquals("shadowedMM", remapper.getMappedField(bean, bean.getField("shadowed")));
+		Assertions.assertEquals("a.b.Other", remapper.getUnmappedClass("net.minecraft.Other"));
+	}
+
+	@Test
+	@DisplayName("Deterministic")
+	public void deterministic() throws Exception {
+		var text = generate(500);
+		var bytes = write(namedAll(MojangMappings.parse("test", text), 500), null);
+		Assertions.assertArrayEquals(bytes, write(namedAll(MojangMappings.parse("test", text), 500), null));
+		Assertions.assertArrayEquals(bytes, write(namedAll(MojangMappings.parse("test", Arrays.asList(text.split("\n"))), 500), null));
+		Assertions.assertEquals("u.C7", load(bytes).getUnmappedClass("net.minecraft.C7"));
+	}
+
+	@Test
+	@DisplayName("Incremental")
+	public void incremental() throws Exception {
+		// Unchanged mappings are written exactly as before
+		var v1 = write(named(MojangMappings.parse("test", V1)), null);
+		Assertions.assertArrayEquals(v1, write(named(MojangMappings.parse("test", V1)), v1));
+
+		var v2 = write(named(MojangMappings.parse("test", V2)), v1);
+		var remapper = load(v2);
+		var bean = JavaMembersTests.Bean.class;
+		Assertions.assertEquals("plus", remapper.getMappedMethod(bean, bean.getMethod("add", int.class)));
+		Assertions.assertEquals("plusString", remapper.getMappedMethod(bean, bean.getMethod("add", String.class)));
+		Assertions.assertEquals("shadowedMM", remapper.getMappedField(bean, bean.getField("shadowed")));
+		Assertions.assertEquals("a.b.Third", remapper.getUnmappedClass("net.minecraft.Third"));
+
+		Assertions.assertArrayEquals(v2, write(named(MojangMappings.parse("test", V2)), v2));
+
+		// Unreadable previous mappings are ignored
+		Assertions.assertArrayEquals(v1, write(named(MojangMappings.parse("test", V1)), new byte[]{1, 2, 3}));
+	}
+
+	private static String generate(int classes) {
+		var sb = new StringBuilder("# generated\n");
+
+		for (int i = 0; i < classes; i++) {
+			sb.append("net.minecraft.C").append(i).append(" -> c").append(i).append(":\n");
+
+			for (int j = 0; j < 20; j++) {
+				var other = "net.minecraft.C" + (i * 31 + j) % classes;
+				sb.append("    ").append(other).append(j % 3 == 0 ? "[] f" : " f").append(j).append(" -> f").append(j).append('\n');
+				sb.append("    ").append(j).append(':').append(j).append(":void m").append(j).append('(').append(other).append(",int,java.lang.String) -> m").append(j).append('\n');
+				sb.append("    ").append(j).append(':').append(j).append(":int n").append(j).append("() -> n").append(j).append('\n');
+			}
+		}
+
+		return sb.toString();
+	}
+
+	private static MojangMappings namedAll(MojangMappings mappings, int classes) {
+		for (int i = 0; i < classes; i++) {
+			var c = mappings.getClass("net.minecraft.C" + i);
+			c.unmappedName().setValue("u.C" + i);
+
+			for (var m : c.members.values()) {
+				m.unmappedName().setValue("u" + m.mmName());
+			}
+		}
+
+		return mappings;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int classes = 20_000;
+		var text = generate(classes);
+		System.out.printf("%d classes, %.1f MB%n", classes, text.length() / 1_000_000D);
+
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+			var mappings = namedAll(MojangMappings.parse("test", text), classes);
+			long parsed = System.nanoTime();
+			var bytes = write(mappings, null);
+			long written = System.nanoTime();
+			write(namedAll(MojangMappings.parse("test", text), classes), bytes);
+			long incremental = System.nanoTime();
+			System.out.printf("parse %6.1f ms, write %6.1f ms, parse and write incrementally %6.1f ms%n", (parsed - start) / 1_000_000D, (written - parsed) / 1_000_000D, (incremental - written) / 1_000_000D);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.ScriptRuntime;
+import dev.latvian.mods.rhino.v8dtoa.FastDtoa;
+import dev.latvian.mods.rhino.v8dtoa.RyuDtoa;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Converts numbers to strings and back.
+ * Run {@link #main(String[])} to print how fast integers, prices, measurements and random doubles are converted.
+ */
+@SuppressWarnings("unused")
+public class NumberConversionTests {
+	public static final RhinoTest TEST = new RhinoTest("numbers");
+
+	private static String append(double d) {
+		var sb = new StringBuilder();
+		ScriptRuntime.numberToString(d, sb);
+		return sb.toString();
+	}
+
+	@Test
+	@DisplayName("Number To String")
+	public void numberToString() {
+		var values = new double[]{0D, -0D, 1D, -1D, 7D, 1023D, 1024D, -1024D, 9007199254740991D, 9007199254740992D, 1152921504606846976D, 1e21, 1e-7, 1.5e-7, 0.000001, 123.456, -0.1, 1.7976931348623157e308, Double.MIN_VALUE, 2.5e-323, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		var expected = new String[]{"0", "0", "1", "-1", "7", "1023", "1024", "-1024", "9007199254740991", "9007199254740992", "1152921504606847000", "1e+21", "1e-7", "1.5e-7", "0.000001", "123.456", "-0.1", "1.7976931348623157e+308", "5e-324", "2.5e-323", "NaN", "Infinity", "-Infinity"};
+
+		for (int i = 0; i < values.length; i++) {
+			Assertions.assertEquals(expected[i], ScriptRuntime.numberToString(values[i], 10));
+			Assertions.assertEquals(expected[i], append(values[i]));
+		}
+
+		Assertions.assertSame(ScriptRuntime.numberToString(42D, 10), ScriptRuntime.numberToString(42D, 10));
+		Assertions.assertEquals("ff", ScriptRuntime.numberToString(255D, 16));
+	}
+
+	@Test
+	@DisplayName("Shortest Digits")
+	public void shortestDigits() {
+		var random = new Random(49L);
+
+		for (int i = 0; i < 200_000; i++) {
+			double d = i % 2 == 0 ? Double.longBitsToDouble(random.nextLong()) : random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+
+			if (Double.isNaN(d) || Double.isInfinite(d) || d == 0D) {
+				continue;
+			}
+
+			var s = RyuDtoa.numberToString(d);
+			Assertions.assertEquals(d, Double.parseDouble(s), 0D);
+			var fast = FastDtoa.numberToString(d);
+
+			if (fast != null) {
+				Assertions.assertEquals(fast, s);
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("String To Number")
+	public void stringToNumber() {
+		var random = new Random(7L);
+
+		for (int i = 0; i < 100_000; i++) {
+			var s = switch (i % 4) {
+				case 0 -> Integer.toString(random.nextInt());
+				case 1 -> (random.nextInt(100000) / 100D) + "";
+				case 2 -> "-" + random.nextInt(1000) + "." + random.nextInt(1000000);
+				default -> "." + Long.toString(random.nextLong() & 0xFFFFFFFFFFFFL);
+			};
+
+			Assertions.assertEquals(Double.parseDouble(s), ScriptRuntime.toNumber(s), 0D);
+		}
+
+		Assertions.assertEquals(Double.doubleToRawLongBits(-0D), Double.doubleToRawLongBits(ScriptRuntime.toNumber("-0")));
+		Assertions.assertEquals(1D, ScriptRuntime.toNumber("1."), 0D);
+		Assertions.assertTrue(Double.isNaN(ScriptRuntime.toNumber(".")));
+		Assertions.assertTrue(Double.isNaN(ScriptRuntime.toNumber("1.2.3")));
+		Assertions.assertEquals(16D, ScriptRuntime.toNumber(" 0x10 "), 0D);
+		Assertions.assertEquals(1234567890123456789D, ScriptRuntime.toNumber("1234567890123456789"), 0D);
+	}
+
+	@Test
+	@DisplayName("Join")
+	public void join() {
+		Assertions.assertEquals("1,-2.5,,NaN,1e+21,a", TEST.eval("[1, -2.5, undefined, NaN, 1e21, 'a'].join()"));
+	}
+
+	public static void main(String[] args) {
+		var random = new Random(1L);
+		int count = 1_000_000;
+		var values = new double[count];
+		var strings = new String[count];
+
+		for (int i = 0; i < count; i++) {
+			values[i] = switch (i % 4) {
+				case 0 -> random.nextInt(1000);
+				case 1 -> random.nextInt(100_000_000);
+				case 2 -> random.nextInt(1_000_000) / 100D;
+				default -> random.nextDouble() * Math.pow(10, random.nextInt(12) - 6);
+			};
+
+			strings[i] = ScriptRuntime.numberToString(values[i], 10);
+		}
+
+		var sb = new StringBuilder();
+
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+			long length = 0;
+
+			for (double d : values) {
+				length += ScriptRuntime.numberToString(d, 10).length();
+			}
+
+			long toString = System.nanoTime();
+
+			for (double d : values) {
+				sb.setLength(0);
+				ScriptRuntime.numberToString(d, sb);
+				length += sb.length();
+			}
+
+			long appended = System.nanoTime();
+			double sum = 0D;
+
+			for (var s : strings) {
+				sum += ScriptRuntime.toNumber(s);
+			}
+
+			long parsed = System.nanoTime();
+			System.out.printf("to string %6.1f ms, appended %6.1f ms, to number %6.1f ms (%d, %s)%n", (toString - start) / 1_000_000D, (appended - toString) / 1_000_000D, (parsed - appended) / 1_000_000D, length, sum);
+		}
+	}
+}
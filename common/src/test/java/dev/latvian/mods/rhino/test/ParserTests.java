@@ -0,0 +1,133 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.CompilerEnvirons;
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.Parser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Scans names, keywords and string literals.
+ * Run {@link #main(String[])} to print parse throughput over a corpus, the .js files in the directories
+ * passed as arguments or a generated one.
+ */
+@SuppressWarnings("unused")
+public class ParserTests {
+	public static final RhinoTest TEST = new RhinoTest("parser");
+
+	@Test
+	@DisplayName("Names")
+	public void names() {
+		Assertions.assertEquals("1,2,3,4,5,6", TEST.eval("""
+				var iff = 1, nulls = 2, instanceofs = 3, $do = 4, _in = 5
+				var \\u0061b = 6
+				var o = { default: 0, new: 0 }
+				o.default = iff
+				;[o.default, nulls, instanceofs, $do, _in, ab].join()"""));
+		Assertions.assertEquals("7", TEST.eval("var größe = 7; größe"));
+		Assertions.assertEquals("8", TEST.eval("var x = 8; x"));
+	}
+
+	@Test
+	@DisplayName("Strings")
+	public void strings() {
+		Assertions.assertEquals("a\"b|c'd|e\nf|é|g|h", TEST.eval("""
+				['a"b', "c'd", 'e\\nf', '\\u00e9', 'g', "h"].join('|')"""));
+		Assertions.assertEquals("ab", TEST.eval("'a\\\nb'"));
+		Assertions.assertEquals("end", TEST.eval("'end'"));
+	}
+
+	@Test
+	@DisplayName("Compile File")
+	public void compileFile() throws IOException {
+		var file = Files.createTempFile("rhino", ".js");
+
+		try {
+			Files.writeString(file, "var s = 'ünïcödé'\ns.length + ':' + s", StandardCharsets.UTF_8);
+			var cx = Context.enterWithNewFactory();
+
+			try {
+				var scope = cx.initStandardObjects();
+				Assertions.assertEquals("7:ünïcödé", Context.toString(cx.compileFile(file, null, 1, null).exec(cx, scope)));
+			} finally {
+				Context.exit();
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static String generateCorpus() {
+		var sb = new StringBuilder();
+
+		for (var script : new String[]{LazyFunctionTests.SCRIPT, ContinuationSerializerTests.SCRIPT, ScriptSchedulerTests.SCRIPT}) {
+			for (int i = 0; i < 500; i++) {
+				sb.append("(function (id").append(i).append(") {\n").append(script).append("\n});\n");
+			}
+		}
+
+		for (int i = 0; i < 5000; i++) {
+			sb.append("function handler").append(i).append("(event, player) {\n");
+			sb.append("\tif (event.type === 'tick' && player.level > ").append(i % 50).append(") {\n");
+			sb.append("\t\tvar items = player.inventory.filter(function (item) { return item.count > 0 && item.id !== \"minecraft:air\" })\n");
+			sb.append("\t\tfor (var j = 0; j < items.length; j++) {\n");
+			sb.append("\t\t\tplayer.tell('Item ' + items[j].id + ' x' + items[j].count)\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\treturn { handled: true, count: items.length, name: `handler").append(i).append("` }\n");
+			sb.append("\t}\n");
+			sb.append("\treturn null // not handled\n");
+			sb.append("}\n");
+		}
+
+		return sb.toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		var corpus = new ArrayList<String>();
+
+		for (var arg : args) {
+			try (Stream<Path> files = Files.walk(Path.of(arg))) {
+				for (var file : files.filter(p -> p.toString().endsWith(".js")).toList()) {
+					corpus.add(Files.readString(file));
+				}
+			}
+		}
+
+		if (corpus.isEmpty()) {
+			corpus.add(generateCorpus());
+		}
+
+		long chars = corpus.stream().mapToLong(String::length).sum();
+		System.out.printf("%d files, %.1f MB%n", corpus.size(), chars / 1_000_000D);
+
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+
+			for (var source : corpus) {
+				new Parser(new CompilerEnvirons()).parse(source, "corpus", 1);
+			}
+
+			long parsed = System.nanoTime();
+			var cx = Context.enterWithNewFactory();
+
+			try {
+				for (var source : corpus) {
+					cx.compileString(source, "corpus", 1, null);
+				}
+			} finally {
+				Context.exit();
+			}
+
+			long compiled = System.nanoTime();
+			System.out.printf("parse %7.1f MB/s, compile %7.1f MB/s%n", chars * 1000D / (parsed - start), chars * 1000D / (compiled - parsed));
+		}
+	}
+}
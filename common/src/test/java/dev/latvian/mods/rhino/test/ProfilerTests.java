@@ -0,0 +1,82 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.ScriptProfiler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+@SuppressWarnings("unused")
+public class ProfilerTests {
+	public static ScriptProfiler profile(String script) {
+		var profiler = new ScriptProfiler();
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			cx.setScriptProfiler(profiler);
+			var scope = cx.initStandardObjects();
+			cx.evaluateString(scope, script, "profiler", 1, null);
+		} finally {
+			Context.exit();
+		}
+
+		return profiler;
+	}
+
+	public static ScriptProfiler.FunctionProfile get(ScriptProfiler profiler, String name) {
+		for (var f : profiler.getFunctions()) {
+			if (f.getName().equals(name)) {
+				return f;
+			}
+		}
+
+		return Assertions.fail("Function " + name + " not found");
+	}
+
+	@Test
+	@DisplayName("Invocations")
+	public void invocations() {
+		var profiler = profile("""
+				function fib(n) {
+					return n < 2 ? n : fib(n - 1) + fib(n - 2)
+				}
+				function run() {
+					for (let i = 0; i < 3; i++) {
+						fib(5)
+					}
+				}
+				run()
+				""");
+
+		Assertions.assertEquals(1L, get(profiler, "<script>").getInvocations());
+		Assertions.assertEquals(1L, get(profiler, "run").getInvocations());
+		Assertions.assertEquals(45L, get(profiler, "fib").getInvocations());
+		Assertions.assertEquals(45L, get(profiler, "fib").getLineHits(2));
+		Assertions.assertTrue(get(profiler, "run").getTotalNanos() >= get(profiler, "run").getSelfNanos());
+		Assertions.assertEquals("fib", profiler.getHotFunctions(3).stream().filter(f -> f.getName().equals("fib")).findFirst().orElseThrow().getName());
+	}
+
+	@Test
+	@DisplayName("Collapsed Stacks")
+	public void collapsedStacks() throws Exception {
+		var profiler = profile("""
+				function inner() {
+					let s = 0
+					for (let i = 0; i < 20000; i++) {
+						s += i
+					}
+					return s
+				}
+				function outer() {
+					return inner() + 1
+				}
+				outer()
+				""");
+
+		var writer = new StringWriter();
+		profiler.writeCollapsedStacks(writer);
+		Assertions.assertTrue(writer.toString().contains("<script>@profiler;outer@profiler:8;inner@profiler:1 "), writer.toString());
+	}
+}
@@ -0,0 +1,153 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.ScriptableObject;
+import dev.latvian.mods.rhino.SharedContextData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+@SuppressWarnings("unused")
+public class PromiseTests {
+	public static class Loader {
+		public final CompletableFuture<String> pending = new CompletableFuture<>();
+
+		public CompletableFuture<String> load() {
+			return pending;
+		}
+
+		public CompletableFuture<String> loaded(String value) {
+			return CompletableFuture.completedFuture(value);
+		}
+
+		public CompletableFuture<String> failed() {
+			return CompletableFuture.failedFuture(new IllegalStateException("missing"));
+		}
+	}
+
+	private static String eval(Context cx, ScriptableObject scope, String source) {
+		return Context.toString(cx.evaluateString(scope, source, "promise", 1, null));
+	}
+
+	@Test
+	@DisplayName("Async Order")
+	public void asyncOrder() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = cx.initStandardObjects();
+			eval(cx, scope, """
+					var log = []
+					async function add(x) {
+						log.push('start')
+						var a = await x
+						try {
+							await Promise.reject('no')
+						} catch (e) {
+							log.push('caught ' + e)
+						}
+						return a + await Promise.resolve(1)
+					}
+					add(1).then(function (v) { log.push('result ' + v) })
+					Promise.all([add(2), 3]).then(function (v) { log.push('all ' + v.join()) })
+					log.push('sync')
+					""");
+
+			// Jobs ran when the top-level call returned
+			Assertions.assertEquals("start,start,sync,caught no,caught no,result 2,all 3,3", eval(cx, scope, "log.join()"));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	@DisplayName("Nested Await")
+	public void nestedAwait() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = cx.initStandardObjects();
+			eval(cx, scope, """
+					var log = []
+					async function inner(x) {
+						return await x
+					}
+					async function outer(x) {
+						return await inner(x) + await inner(arguments[0] * 2)
+					}
+					async function fail(x) {
+						await x
+						throw 'failed ' + x
+					}
+					async function recover(x) {
+						try {
+							return await fail(x)
+						} catch (e) {
+							return 'caught ' + e
+						}
+					}
+					async function deep(n) {
+						return n == 0 ? 'bottom' : await deep(n - 1)
+					}
+					outer(5).then(function (v) { log.push('outer ' + v) })
+					recover(1).then(function (v) { log.push(v) })
+					fail(2).catch(function (e) { log.push('rejected ' + e) })
+					deep(20).then(function (v) { log.push('deep ' + v) })
+					log.push('sync')
+					""");
+
+			Assertions.assertEquals("sync,rejected failed 2,caught failed 1,outer 15,deep bottom", eval(cx, scope, "log.join()"));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	@DisplayName("Host Job Queue")
+	public void hostJobQueue() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var jobs = new ArrayDeque<Runnable>();
+			cx.setJobQueue(jobs::add);
+			var scope = cx.initStandardObjects();
+			var loader = new Loader();
+			ScriptableObject.putProperty(scope, "loader", Context.javaToJS(SharedContextData.get(scope), loader, scope));
+
+			eval(cx, scope, """
+					var log = []
+					async function run() {
+						log.push(await loader.loaded('a'))
+						log.push(await loader.load())
+						try {
+							await loader.failed()
+						} catch (e) {
+							log.push(e.javaException.message)
+						}
+					}
+					run()
+					""");
+
+			Assertions.assertEquals("", eval(cx, scope, "log.join()"));
+
+			while (!jobs.isEmpty()) {
+				jobs.poll().run();
+			}
+
+			Assertions.assertEquals("a", eval(cx, scope, "log.join()"));
+			loader.pending.complete("b");
+			Assertions.assertEquals(1, jobs.size());
+
+			while (!jobs.isEmpty()) {
+				jobs.poll().run();
+			}
+
+			Assertions.assertEquals("a,b,missing", eval(cx, scope, "log.join()"));
+		} finally {
+			Context.exit();
+		}
+	}
+}
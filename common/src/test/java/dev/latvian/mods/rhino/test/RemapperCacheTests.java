@@ -0,0 +1,110 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.ScriptableObject;
+import dev.latvian.mods.rhino.mod.util.CachedRemapper;
+import dev.latvian.mods.rhino.util.Remapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps remapped names in a {@link CachedRemapper} file between runs.
+ */
+@SuppressWarnings("unused")
+public class RemapperCacheTests {
+	private static final class TestRemapper implements Remapper {
+		private final AtomicInteger lookups = new AtomicInteger();
+
+		@Override
+		public String getMappedClass(Class<?> from) {
+			lookups.incrementAndGet();
+			return from.getSimpleName().equals("Bean") ? "RemappedBean" : "";
+		}
+
+		@Override
+		public String getMappedMethod(Class<?> from, Method method) {
+			lookups.incrementAndGet();
+			return method.getName().equals("add") && method.getParameterTypes()[0] == int.class ? "plusInt" : "";
+		}
+
+		@Override
+		public String getMappedField(Class<?> from, Field field) {
+			lookups.incrementAndGet();
+			return field.getName().equals("shadowed") ? "hidden" : "";
+		}
+	}
+
+	private static String run(Remapper remapper) {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = cx.initStandardObjects();
+			cx.sharedContextData.setRemapper(remapper);
+			ScriptableObject.putProperty(scope, "bean", Context.javaToJS(cx.sharedContextData, new JavaMembersTests.Bean(), scope));
+			return Context.toString(cx.evaluateString(scope, "[bean.plusInt(1), bean.add('x'), bean.hidden, bean.name].join()", "remapper", 1, null));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	@DisplayName("Cache File")
+	public void cacheFile() throws IOException {
+		var dir = Files.createTempDirectory("rhino");
+		var file = dir.resolve("cache/mm.jscache");
+
+		try {
+			var remapper = new TestRemapper();
+			var cache = CachedRemapper.load(file, "v1", () -> remapper);
+			Assertions.assertEquals("int,string,bean,a", run(cache));
+			Assertions.assertEquals("RemappedBean", cache.getMappedClass(JavaMembersTests.Bean.class));
+			Assertions.assertTrue(cache.isRemapperLoaded());
+			cache.save();
+			Assertions.assertTrue(Files.exists(file));
+
+			// Warm start, all names are in the file
+			var warm = new TestRemapper();
+			cache = CachedRemapper.load(file, "v1", () -> warm);
+			Assertions.assertEquals("int,string,bean,a", run(cache));
+			Assertions.assertEquals("RemappedBean", cache.getMappedClass(JavaMembersTests.Bean.class));
+			Assertions.assertFalse(cache.isRemapperLoaded());
+			Assertions.assertEquals(0, warm.lookups.get());
+
+			// Other mappings, the file is ignored
+			var other = new TestRemapper();
+			cache = CachedRemapper.load(file, "v2", () -> other);
+			Assertions.assertEquals("int,string,bean,a", run(cache));
+			Assertions.assertTrue(other.lookups.get() > 0);
+		} finally {
+			try (var files = Files.walk(dir)) {
+				for (var p : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+					Files.delete(p);
+				}
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Broken File")
+	public void brokenFile() throws IOException {
+		var file = Files.createTempFile("rhino", ".jscache");
+
+		try {
+			Files.write(file, new byte[]{0, 1, 2, 'v', '1', (byte) 0xFF});
+			var remapper = new TestRemapper();
+			var cache = CachedRemapper.load(file, "v1", () -> remapper);
+			Assertions.assertEquals("int,string,bean,a", run(cache));
+			Assertions.assertTrue(cache.isRemapperLoaded());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -74,4 +74,37 @@ public class RhinoTest {
 
 		Assertions.assertEquals(console.trim(), TestConsole.getConsoleOutput().trim());
 	}
+
+	/**
+	 * Evaluates a script in a new scope and returns its result as a string.
+	 */
+	public String eval(String script) {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			return Context.toString(cx.evaluateString(createScope(cx), script, testName, 1, null));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	/**
+	 * Compiles a script once and runs it repeatedly in the same scope, printing the time and result of each run.
+	 */
+	public void benchmark(String script, int rounds) {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var scope = createScope(cx);
+			var compiled = cx.compileString(script, testName + "/benchmark", 1, null);
+
+			for (int round = 0; round < rounds; round++) {
+				long start = System.nanoTime();
+				var result = compiled.exec(cx, scope);
+				System.out.printf("%7.1f ms, result %s%n", (System.nanoTime() - start) / 1_000_000D, Context.toString(result));
+			}
+		} finally {
+			Context.exit();
+		}
+	}
 }
@@ -0,0 +1,45 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.EvaluatorException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("unused")
+public class ScopeTemplateTests {
+	@Test
+	@DisplayName("Isolated Globals")
+	public void isolatedGlobals() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var template = cx.initStandardObjectsTemplate(true);
+			var a = cx.newScopeFromTemplate(template);
+			var b = cx.newScopeFromTemplate(template);
+
+			cx.evaluateString(a, "var x = 'a'; parseInt = null; function f() { return Math.max(1, 2) }", "a", 1, null);
+			Assertions.assertEquals("a2object", Context.toString(cx.evaluateString(a, "x + f() + typeof parseInt", "a", 1, null)));
+			Assertions.assertEquals("undefinedfunction", Context.toString(cx.evaluateString(b, "typeof x + typeof parseInt", "b", 1, null)));
+			Assertions.assertEquals("b", Context.toString(cx.evaluateString(b, "/a(b)/.exec('ab')[1]", "b", 1, null)));
+			Assertions.assertEquals("function", Context.toString(cx.evaluateString(template, "typeof parseInt", "template", 1, null)));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	@DisplayName("Sealed Builtins")
+	public void sealedBuiltins() {
+		var cx = Context.enterWithNewFactory();
+
+		try {
+			var template = cx.initStandardObjectsTemplate(true);
+			var scope = cx.newScopeFromTemplate(template);
+			Assertions.assertThrows(EvaluatorException.class, () -> cx.evaluateString(scope, "Array.prototype.foo = 1", "scope", 1, null));
+			Assertions.assertThrows(IllegalArgumentException.class, () -> cx.newScopeFromTemplate(cx.initSafeStandardObjects()));
+		} finally {
+			Context.exit();
+		}
+	}
+}
@@ -25,6 +25,77 @@ public class ScopeTests {
 				""");
 	}
 
+	@Test
+	@DisplayName("Closure Captures")
+	public void closureCaptures() {
+		TEST.test("closureCaptures", """
+				function counter(step) {
+					let count = 0
+					let local = step * 2
+					local++
+					return {
+						inc: () => count += step,
+						get: function () { return count }
+					}
+				}
+
+				let c = counter(3)
+				c.inc()
+				c.inc()
+				console.info(c.get())
+
+				function hoisted(v) {
+					let r = h()
+					function h() { return v * 2 }
+					return r + typeof r
+				}
+
+				console.info(hoisted(4))
+
+				function blocks(n) {
+					let s = 0
+					for (let i = 0; i < n; i++) {
+						let t = i * 2
+						s += t
+					}
+					return [1].map(x => x + s)[0]
+				}
+
+				console.info(blocks(4))
+				""", """
+				6.0
+				8number
+				13.0
+				""");
+	}
+
+	@Test
+	@DisplayName("Global Redefinition")
+	public void globalRedefinition() {
+		TEST.test("globalRedefinition", """
+				var g = 'a'
+				function read() { return g }
+				function call() { return h() }
+				var h = function () { return 'h1' }
+
+				console.info(read() + call())
+				g = 'b'
+				h = function () { return 'h2' }
+				console.info(read() + call())
+
+				this.k = 'c'
+				function readK() { return k }
+				console.info(readK())
+				Object.defineProperty(this, 'k', { get: function () { return 'd' }, configurable: true })
+				console.info(readK())
+				""", """
+				ah1
+				bh2
+				c
+				d
+				""");
+	}
+
 	/* Need to figure out what the actual values should be
 	@Test
 	@DisplayName("Scopes II")
@@ -0,0 +1,132 @@
+package dev.latvian.mods.rhino.test;
+
+import dev.latvian.mods.rhino.Context;
+import dev.latvian.mods.rhino.ContextFactory;
+import dev.latvian.mods.rhino.ScriptScheduler;
+import dev.latvian.mods.rhino.ScriptableObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Time-slices scripts with {@link ScriptScheduler}.
+ * Run {@link #main(String[])} to print tick times and per-task budget usage for a batch of heavy scripts.
+ */
+@SuppressWarnings("unused")
+public class ScriptSchedulerTests {
+	public static final String SCRIPT = """
+			function sum(n) {
+				var total = 0
+				for (var i = 0; i < n; i++) {
+					total += i % 7
+				}
+				return total
+			}
+			var parts = []
+			for (var j = 0; j < 5; j++) {
+				log.push(name + j)
+				parts.push(sum(20000))
+			}
+			;[1, 2, 3].forEach(function (x) { parts.push(sum(x * 1000)) })
+			parts.join()
+			""";
+
+	@Test
+	@DisplayName("Round Robin")
+	public void roundRobin() {
+		var factory = new ContextFactory();
+		var scheduler = new ScriptScheduler(factory);
+		scheduler.setSliceInstructions(100_000);
+		scheduler.setCheckInterval(1000);
+		scheduler.setTickNanos(Long.MAX_VALUE / 2L);
+		scheduler.setSliceNanos(Long.MAX_VALUE / 2L);
+
+		var log = new ArrayList<String>();
+		var tasks = new ArrayList<ScriptScheduler.Task>();
+
+		factory.call(cx -> {
+			var script = cx.compileString(SCRIPT, "scheduler", 1, null);
+
+			for (var name : new String[]{"a", "b"}) {
+				var scope = cx.initStandardObjects();
+				ScriptableObject.putProperty(scope, "log", Context.javaToJS(cx.sharedContextData, log, scope));
+				ScriptableObject.putProperty(scope, "name", name);
+				tasks.add(scheduler.submit(script, scope));
+			}
+
+			return null;
+		});
+
+		int ticks = 0;
+
+		while (scheduler.tick()) {
+			ticks++;
+			Assertions.assertTrue(ticks < 1000);
+		}
+
+		var expected = "59997,59997,59997,59997,59997,2997,5995,8994";
+
+		for (var task : tasks) {
+			Assertions.assertEquals(ScriptScheduler.State.DONE, task.getState());
+			Assertions.assertEquals(expected, Context.toString(task.getResult().join()));
+			Assertions.assertTrue(task.getSlices() > 5, task.toString());
+			// Slices run over their budget until the next check and the next jump outside of forEach
+			Assertions.assertTrue(task.getInstructions() / task.getSlices() < 110_000, task.toString());
+		}
+
+		// Both tasks made progress in turns instead of one after the other
+		Assertions.assertEquals("a0,b0,a1,b1,a2,b2,a3,b3,a4,b4", String.join(",", log));
+	}
+
+	@Test
+	@DisplayName("Failed Task")
+	public void failedTask() {
+		var factory = new ContextFactory();
+		var scheduler = new ScriptScheduler(factory);
+
+		var task = factory.call(cx -> scheduler.submit(cx.compileString("for (var i = 0; i < 1000; i++) {}\nnull.x", "scheduler", 1, null), cx.initStandardObjects()));
+
+		while (scheduler.tick()) {
+		}
+
+		Assertions.assertEquals(ScriptScheduler.State.FAILED, task.getState());
+		Assertions.assertTrue(task.getResult().isCompletedExceptionally());
+	}
+
+	public static void main(String[] args) {
+		var factory = new ContextFactory();
+		var scheduler = new ScriptScheduler(factory);
+		var log = new ArrayList<String>();
+		var tasks = new ArrayList<ScriptScheduler.Task>();
+
+		factory.call(cx -> {
+			var script = cx.compileString(SCRIPT.replace("20000", "2000000"), "scheduler", 1, null);
+
+			for (int i = 0; i < 20; i++) {
+				var scope = cx.initStandardObjects();
+				ScriptableObject.putProperty(scope, "log", Context.javaToJS(cx.sharedContextData, log, scope));
+				ScriptableObject.putProperty(scope, "name", "t" + i);
+				tasks.add(scheduler.submit(script, scope));
+			}
+
+			return null;
+		});
+
+		int ticks = 0;
+		long maxTick = 0L;
+		long start = System.nanoTime();
+
+		while (scheduler.tick()) {
+			ticks++;
+			maxTick = Math.max(maxTick, scheduler.getLastTickNanos());
+		}
+
+		System.out.printf("%d ticks in %.1f ms, longest tick %.2f ms%n", ticks, (System.nanoTime() - start) / 1_000_000D, maxTick / 1_000_000D);
+
+		for (var task : tasks) {
+			System.out.println(task);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package dev.latvian.mods.rhino.test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("unused")
+public class SuperinstructionTests {
+	public static final RhinoTest TEST = new RhinoTest("superinstructions");
+
+	@Test
+	@DisplayName("Local Increment")
+	public void localIncrement() {
+		TEST.test("localIncrement", """
+				function f() {
+					let s = 0
+					let n = 5
+					let i
+					for (i = 0; i < n; i++) {
+						s += i
+					}
+					let q = '3'
+					q++
+					let u
+					u--
+					console.info(s + ' ' + i + ' ' + q + ' ' + u)
+				}
+				f()
+				""", """
+				10 5 4 NaN
+				""");
+	}
+
+	@Test
+	@DisplayName("Local Add Constant")
+	public void localAddConstant() {
+		TEST.test("localAddConstant", """
+				function f() {
+					let a = 'a'
+					a = a + 1
+					let b = '5'
+					b = b - 1
+					let c = 7
+					c -= 2
+					console.info(a + ' ' + b + ' ' + c)
+				}
+				f()
+				""", """
+				a1 4 5
+				""");
+	}
+
+	@Test
+	@DisplayName("Local Add Constant To Non-Numbers")
+	public void localAddConstantNonNumbers() {
+		// Functions this small have no spare stack slots for the slow path of the add
+		TEST.test("localAddConstantNonNumbers", """
+				function str(s) { s = s + 1; return s }
+				function obj(o) { o = o + 2; return o }
+				function sub(o) { o = o - 2; return o }
+				console.info(str('a') + ' ' + obj({ toString: () => 'o' }) + ' ' + obj({ valueOf: () => 40 }) + ' ' + sub({ valueOf: () => 40 }) + ' ' + obj(null) + ' ' + str(undefined))
+				""", """
+				a1 o2 42 38 2 NaN
+				""");
+	}
+
+	@Test
+	@DisplayName("Local Increment Non-Numbers")
+	public void localIncrementNonNumbers() {
+		// The increment is the only statement, so the function has no stack for the slow path
+		TEST.test("localIncrementNonNumbers", """
+				function dec(x) { x-- }
+				function inc(x) { x++ }
+				console.info(dec('3') + ' ' + inc({ valueOf: () => 1 }) + ' ' + inc(undefined))
+				""", """
+				undefined undefined undefined
+				""");
+	}
+
+	@Test
+	@DisplayName("Local Compare")
+	public void localCompare() {
+		TEST.test("localCompare", """
+				function f() {
+					let a = 'b'
+					let b = 'a'
+					let n = NaN
+					let one = 1
+					console.info(a < b ? 'lt' : 'ge')
+					if (n < one) {
+						console.info('lt')
+					} else {
+						console.info('not lt')
+					}
+					if (a >= b) {
+						console.info('ge')
+					}
+				}
+				f()
+				""", """
+				ge
+				not lt
+				ge
+				""");
+	}
+
+	@Test
+	@DisplayName("Local Property")
+	public void localProperty() {
+		TEST.test("localProperty", """
+				function f() {
+					let o = {a: {b: 'c'}}
+					let s = 'abc'
+					console.info(o.a.b + ' ' + s.length)
+				}
+				f()
+				""", """
+				c 3
+				""");
+	}
+}